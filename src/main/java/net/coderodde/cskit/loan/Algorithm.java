@@ -11,9 +11,15 @@ import java.util.List;
 public abstract class Algorithm {
 
     private String name;
+    private final SearchSpace searchSpace;
 
     public Algorithm(String name) {
+        this(name, null);
+    }
+
+    Algorithm(String name, SearchSpace searchSpace) {
         this.name = name;
+        this.searchSpace = searchSpace;
     }
 
     @Override
@@ -21,5 +27,28 @@ public abstract class Algorithm {
         return name;
     }
 
+    /**
+     * Returns the search space of this algorithm as estimated by
+     * {@link SearchSpaceEstimator}.
+     *
+     * @return the search space, or <code>null</code> if not estimated.
+     */
+    SearchSpace getSearchSpace() {
+        return searchSpace;
+    }
+
     public abstract List<Node> exec(List<Node> nodeList);
+
+    /**
+     * Simplifies the input graph into a settlement plan over the indices of
+     * <code>nodeList</code>. This implementation converts the graph returned
+     * by {@link #exec(List)}; algorithms able to produce the plan directly
+     * override it.
+     *
+     * @param nodeList the input graph.
+     * @return the settlement plan.
+     */
+    public SettlementPlan settle(List<Node> nodeList) {
+        return SettlementPlan.of(nodeList, exec(nodeList));
+    }
 }
@@ -2,12 +2,9 @@ package net.coderodde.cskit.loan;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * This class implements the loan simplification algorithms.
@@ -17,179 +14,580 @@ import java.util.Set;
  */
 public class Algorithms {
 
+    /**
+     * The default time budget of {@link #auto()} in milliseconds.
+     */
+    public static final long DEFAULT_BUDGET_MILLIS = 1000L;
+
+    /**
+     * The least amount of nodes {@link #parallelLinearSimplify()} settles in
+     * parallel; smaller graphs do not pay for the threads.
+     */
+    static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    /**
+     * Returns the algorithm of the given name, as returned by its
+     * <code>toString()</code>.
+     *
+     * @param name the name of the algorithm.
+     * @return the algorithm.
+     */
+    public static Algorithm forName(String name) {
+        for (Algorithm algorithm : all()) {
+            if (algorithm.toString().equals(name)) {
+                return algorithm;
+            }
+        }
+
+        throw new IllegalArgumentException("Unknown algorithm: " + name);
+    }
+
+    public static List<Algorithm> all() {
+        return Arrays.asList(linearSimplify(),
+                             parallelLinearSimplify(),
+                             greedyCombinatorialSimplify(),
+                             sortedGreedyCombinatorialSimplify(),
+                             incrementalGreedySimplify(),
+                             subsetSumSimplify(),
+                             partitionalSimplify(),
+                             permutationalSimplify(),
+                             edgeRestrictedSimplify(),
+                             auto());
+    }
+
+    public static Algorithm auto() {
+        return auto(DEFAULT_BUDGET_MILLIS);
+    }
+
+    /**
+     * Returns the algorithm running the best algorithm estimated to fit the
+     * time budget, as chosen by {@link SearchSpaceEstimator#choose(long)}.
+     *
+     * @param budgetMillis the time budget in milliseconds.
+     * @return the algorithm.
+     */
+    public static Algorithm auto(final long budgetMillis) {
+        return auto(budgetMillis, null);
+    }
+
+    /**
+     * Returns the algorithm running the best algorithm estimated to fit the
+     * time budget, with the times per state of <code>costs</code>, such as
+     * an estimator measured by {@link SearchSpaceEstimator#calibrate()}.
+     *
+     * @param budgetMillis the time budget in milliseconds.
+     * @param costs the estimator whose times per state to use, or
+     * <code>null</code> for the preset ones.
+     * @return the algorithm.
+     */
+    public static Algorithm auto(final long budgetMillis,
+                                 final SearchSpaceEstimator costs) {
+        if (budgetMillis < 0L) {
+            throw new IllegalArgumentException(
+                    "Illegal time budget: " + budgetMillis);
+        }
+
+        return new Algorithm("auto") {
+            @Override
+            public List<Node> exec(List<Node> nodeList) {
+                return choose(nodeList).exec(nodeList);
+            }
+
+            @Override
+            public SettlementPlan settle(List<Node> nodeList) {
+                return choose(nodeList).settle(nodeList);
+            }
+
+            private Algorithm choose(List<Node> nodeList) {
+                SearchSpaceEstimator estimator = costs == null ?
+                        new SearchSpaceEstimator(nodeList) :
+                        new SearchSpaceEstimator(nodeList, costs);
+
+                return estimator.choose(budgetMillis);
+            }
+        };
+    }
+
     public static Algorithm linearSimplify() {
-        return new Algorithm("linearSimplify") {
+        return new Algorithm("linearSimplify",
+                             SearchSpace.LINEAR) {
             @Override
             public List<Node> exec(List<Node> nodeList) {
-                return linearSimplify(nodeList);
+                return settle(nodeList).toResultNodeList(nodeList);
+            }
+
+            @Override
+            public SettlementPlan settle(List<Node> nodeList) {
+                final long start = SolverEvents.begin();
+                SettlementPlan plan = linearPlan(nodeList);
+                SolverEvents.end(toString(),
+                                 SolverPhase.EXEC,
+                                 nodeList.size(),
+                                 0L,
+                                 start);
+                return plan;
+            }
+        };
+    }
+
+    /**
+     * Returns the algorithm producing the plan of {@link #linearSimplify()}
+     * by {@link ParallelLinearSimplifier}, with a thread for each processor.
+     *
+     * @return the algorithm.
+     */
+    public static Algorithm parallelLinearSimplify() {
+        return new Algorithm("parallelLinearSimplify",
+                             SearchSpace.PARALLEL_LINEAR) {
+            @Override
+            public List<Node> exec(List<Node> nodeList) {
+                return settle(nodeList).toResultNodeList(nodeList);
+            }
+
+            @Override
+            public SettlementPlan settle(List<Node> nodeList) {
+                final long start = SolverEvents.begin();
+                SettlementPlan plan;
+
+                if (nodeList.size() < PARALLEL_THRESHOLD) {
+                    plan = linearPlan(nodeList);
+                } else {
+                    final int threads =
+                            Runtime.getRuntime().availableProcessors();
+                    ExecutorService executor =
+                            Executors.newFixedThreadPool(threads);
+
+                    try {
+                        plan = ParallelLinearSimplifier.settle(nodeList,
+                                                               executor,
+                                                               threads);
+                    } finally {
+                        executor.shutdown();
+                    }
+                }
+
+                SolverEvents.end(toString(),
+                                 SolverPhase.EXEC,
+                                 nodeList.size(),
+                                 0L,
+                                 start);
+                return plan;
             }
         };
     }
 
     public static Algorithm greedyCombinatorialSimplify() {
-        return new Algorithm("greedyCombinatorialSimplify") {
+        return new Algorithm("greedyCombinatorialSimplify",
+                             SearchSpace.GREEDY) {
+            @Override
+            public List<Node> exec(List<Node> nodeList) {
+                final long start = SolverEvents.begin();
+                List<Node> result = greedyCombinatorialSimplify(nodeList);
+                SolverEvents.end(toString(),
+                                 SolverPhase.EXEC,
+                                 nodeList.size(),
+                                 0L,
+                                 start);
+                return result;
+            }
+        };
+    }
+
+    public static Algorithm sortedGreedyCombinatorialSimplify() {
+        return new Algorithm("sortedGreedyCombinatorialSimplify",
+                             SearchSpace.SORTED_GREEDY) {
+            @Override
+            public List<Node> exec(List<Node> nodeList) {
+                final long start = SolverEvents.begin();
+                List<Node> result =
+                        SortedGreedySimplifier.simplify(nodeList, toString());
+                SolverEvents.end(toString(),
+                                 SolverPhase.EXEC,
+                                 nodeList.size(),
+                                 0L,
+                                 start);
+                return result;
+            }
+        };
+    }
+
+    /**
+     * Returns the greedy search of {@link IncrementalGreedySimplifier}, which
+     * falls back to the sorted greedy search on graphs with more than
+     * {@link IncrementalGreedySimplifier#MAX_SIDE} accounts of a sign.
+     *
+     * @return the algorithm.
+     */
+    public static Algorithm incrementalGreedySimplify() {
+        return new Algorithm("incrementalGreedySimplify",
+                             SearchSpace.INCREMENTAL_GREEDY) {
+            @Override
+            public List<Node> exec(List<Node> nodeList) {
+                final long start = SolverEvents.begin();
+                int positiveAmount = 0;
+                int negativeAmount = 0;
+
+                for (Node node : nodeList) {
+                    if (node.getEquity() > 0L) {
+                        ++positiveAmount;
+                    } else if (node.getEquity() < 0L) {
+                        ++negativeAmount;
+                    }
+                }
+
+                List<Node> result =
+                        IncrementalGreedySimplifier.isApplicable(
+                                positiveAmount,
+                                negativeAmount) ?
+                        IncrementalGreedySimplifier.simplify(nodeList) :
+                        SortedGreedySimplifier.simplify(nodeList,
+                                                        toString());
+                SolverEvents.end(toString(),
+                                 SolverPhase.EXEC,
+                                 nodeList.size(),
+                                 0L,
+                                 start);
+                return result;
+            }
+        };
+    }
+
+    public static Algorithm subsetSumSimplify() {
+        return new Algorithm("subsetSumSimplify",
+                             SearchSpace.SUBSET_SUM) {
             @Override
             public List<Node> exec(List<Node> nodeList) {
-                return greedyCombinatorialSimplify(nodeList);
+                final long start = SolverEvents.begin();
+                List<Node> result = SubsetSumSimplifier.simplify(nodeList);
+                SolverEvents.end(toString(),
+                                 SolverPhase.EXEC,
+                                 nodeList.size(),
+                                 0L,
+                                 start);
+                return result;
             }
         };
     }
 
     public static Algorithm permutationalSimplify() {
-        return new Algorithm("permutationalSimplify") {
+        return new Algorithm("permutationalSimplify",
+                             SearchSpace.PERMUTATIONAL) {
             @Override
             public List<Node> exec(List<Node> nodeList) {
-                return permutationalSimplify(nodeList);
+                final long start = SolverEvents.begin();
+                List<Node> result = permutationalSimplify(nodeList);
+                SolverEvents.end(toString(),
+                                 SolverPhase.EXEC,
+                                 nodeList.size(),
+                                 0L,
+                                 start);
+                return result;
             }
         };
     }
 
     public static Algorithm partitionalSimplify() {
-        return new Algorithm("partitionalSimplify") {
+        return new Algorithm("partitionalSimplify",
+                             SearchSpace.PARTITIONAL) {
             @Override
             public List<Node> exec(List<Node> nodeList) {
-                return partitionalSimplify(nodeList);
+                final long start = SolverEvents.begin();
+                List<Node> result = partitionalSimplify(nodeList);
+                SolverEvents.end(toString(),
+                                 SolverPhase.EXEC,
+                                 nodeList.size(),
+                                 0L,
+                                 start);
+                return result;
             }
         };
     }
 
-    private static final List<Node> linearSimplify(List<Node> nodeList) {
-        final int N = nodeList.size();
-        List<Node> positiveNodes = new ArrayList<Node>(N);
-        List<Node> negativeNodes = new ArrayList<Node>(N);
-        List<Node> resultNodeList = new ArrayList<Node>(N);
+    /**
+     * Returns the algorithm running <code>base</code> and improving its plan
+     * by the local search of {@link PlanImprover}.
+     *
+     * @param base the algorithm producing the initial plan.
+     * @param budgetMillis the time budget of the improvement in milliseconds.
+     * @return the algorithm.
+     */
+    public static Algorithm improved(final Algorithm base,
+                                     final long budgetMillis) {
+        final PlanImprover improver = new PlanImprover(budgetMillis);
 
-        for (Node node : nodeList) {
-            if (node.getEquity() > 0L) {
-                positiveNodes.add(node);
-            } else if (node.getEquity() < 0L) {
-                negativeNodes.add(node);
-            } else {
-                resultNodeList.add(new Node(node));
+        return new Algorithm("improved(" + base + ")") {
+            @Override
+            public List<Node> exec(List<Node> nodeList) {
+                return settle(nodeList).toResultNodeList(nodeList);
             }
-        }
 
-        final int POS_LIMIT = positiveNodes.size();
-        final int NEG_LIMIT = negativeNodes.size();
+            @Override
+            public SettlementPlan settle(List<Node> nodeList) {
+                final long start = SolverEvents.begin();
+                SettlementPlan initial = base.settle(nodeList);
+                final long searchStart = SolverEvents.begin();
+                SettlementPlan plan = improver.improve(initial);
+                SolverEvents.end(toString(),
+                                 SolverPhase.SEARCH,
+                                 nodeList.size(),
+                                 0L,
+                                 searchStart);
+                SolverEvents.end(toString(),
+                                 SolverPhase.EXEC,
+                                 nodeList.size(),
+                                 0L,
+                                 start);
+                return plan;
+            }
+        };
+    }
 
-        long[] positiveNodesEquities = new long[POS_LIMIT];
-        long[] negativeNodesEquities = new long[NEG_LIMIT];
+    /**
+     * Returns the algorithm settling along the loans of the input graph, as
+     * by {@link EdgeRestrictedSettler}.
+     *
+     * @return the algorithm.
+     */
+    public static Algorithm edgeRestrictedSimplify() {
+        return new Algorithm("edgeRestrictedSimplify") {
+            @Override
+            public List<Node> exec(List<Node> nodeList) {
+                return settle(nodeList).toResultNodeList(nodeList);
+            }
 
-        List<Node> newPositiveNodes = new ArrayList<Node>(POS_LIMIT);
-        List<Node> newNegativeNodes = new ArrayList<Node>(NEG_LIMIT);
+            @Override
+            public SettlementPlan settle(List<Node> nodeList) {
+                final long start = SolverEvents.begin();
+                SettlementPlan plan = EdgeRestrictedSettler.settle(nodeList);
+                SolverEvents.end(toString(),
+                                 SolverPhase.EXEC,
+                                 nodeList.size(),
+                                 0L,
+                                 start);
+                return plan;
+            }
+        };
+    }
 
-        int pi = 0;
-        int ni = 0;
+    /**
+     * Runs the linear simplification directly on an equity table: the nodes
+     * of positive equity, in index order, are linked to the nodes of negative
+     * equity, in index order, as by {@link #linearSimplify()}. Only constant
+     * extra memory is used, and the edges go to <code>sink</code> as soon as
+     * they are decided.
+     *
+     * @param table the equities of the input graph.
+     * @param sink the receiver of the edges of the simplified graph.
+     * @throws IllegalStateException if the equities do not sum up to zero,
+     * which may be found only after some edges were passed to the sink.
+     */
+    public static final void linearSimplify(EquityTable table,
+                                            PaymentSink sink) {
+        LinearMerge merge = new LinearMerge(table);
 
-        for (Node node : positiveNodes) {
-            newPositiveNodes.add(new Node(positiveNodes.get(pi)));
-            positiveNodesEquities[pi++] = node.getEquity();
+        while (merge.isDone() == false) {
+            merge.next(sink);
         }
 
-        for (Node node : negativeNodes) {
-            newNegativeNodes.add(new Node(negativeNodes.get(ni)));
-            negativeNodesEquities[ni++] = -node.getEquity();
+        if (merge.isImbalanced()) {
+            throw new IllegalStateException(
+                    "The equities of the input graph do not sum up to zero.");
         }
+    }
 
-        pi = 0;
-        ni = 0;
+    /**
+     * Returns the plan of the linear simplification of a node list, without
+     * reporting events.
+     */
+    static SettlementPlan linearPlan(final List<Node> nodeList) {
+        SettlementPlan plan =
+                new SettlementPlan(SettlementPlan.getNames(nodeList));
+        final int N = nodeList.size();
+        long[] equities = SolverWorkspace.get().getLongs(
+                SolverWorkspace.EQUITIES, N);
+        int i = 0;
 
-        while (pi < POS_LIMIT) {
-            if (positiveNodesEquities[pi] > negativeNodesEquities[ni]) {
-                newPositiveNodes.get(pi).connectTo(newNegativeNodes.get(ni),
-                                                   negativeNodesEquities[ni]);
-                positiveNodesEquities[pi] -= negativeNodesEquities[ni++];
-            } else if (positiveNodesEquities[pi] < negativeNodesEquities[ni]) {
-                newPositiveNodes.get(pi).connectTo(newNegativeNodes.get(ni),
-                                                   positiveNodesEquities[pi]);
-                negativeNodesEquities[ni] -= positiveNodesEquities[pi++];
-            } else {
-                newPositiveNodes.get(pi).connectTo(newNegativeNodes.get(ni),
-                                                   positiveNodesEquities[pi]);
-                ++pi;
-                ++ni;
-            }
+        for (Node node : nodeList) {
+            equities[i++] = node.getEquity();
         }
 
-        resultNodeList.addAll(newPositiveNodes);
-        resultNodeList.addAll(newNegativeNodes);
-        return resultNodeList;
+        linearSimplify(new ArrayEquityTable(equities, N), plan);
+        return plan;
     }
 
     private static final List<Node>
             greedyCombinatorialSimplify(List<Node> nodeList) {
+        final String NAME = "greedyCombinatorialSimplify";
         final int N = nodeList.size();
+        final long partitionStart = SolverEvents.begin();
         List<Node> positiveNodes = new ArrayList<Node>(N);
         List<Node> negativeNodes = new ArrayList<Node>(N);
         List<Node> resultNodeList = new ArrayList<Node>(N);
-        Map<Node, Node> map = new HashMap<Node, Node>(N);
 
         for (Node node : nodeList) {
             if (node.getEquity() > 0L) {
-                positiveNodes.add(node);
-                map.put(node, new Node(node));
+                positiveNodes.add(new Node(node));
             } else if (node.getEquity() < 0L) {
-                negativeNodes.add(node);
-                map.put(node, new Node(node));
+                negativeNodes.add(new Node(node));
             } else {
                 resultNodeList.add(new Node(node));
             }
         }
 
-        IndexSet positiveIndexSet = new IndexSet(positiveNodes.size());
-        IndexSet negativeIndexSet = new IndexSet(negativeNodes.size());
+        int positiveAmount = positiveNodes.size();
+        int negativeAmount = negativeNodes.size();
+
+        Node[] positiveNodeArray = positiveNodes.toArray(new Node[0]);
+        Node[] negativeNodeArray = negativeNodes.toArray(new Node[0]);
+
+        long[] positiveEquities = new long[positiveAmount];
+        long[] negativeEquities = new long[negativeAmount];
+
+        int i = 0;
+
+        for (Node node : nodeList) {
+            if (node.getEquity() > 0L) {
+                positiveEquities[i++] = node.getEquity();
+            }
+        }
+
+        i = 0;
+
+        for (Node node : nodeList) {
+            if (node.getEquity() < 0L) {
+                negativeEquities[i++] = -node.getEquity();
+            }
+        }
+
+        SolverEvents.end(NAME, SolverPhase.PARTITION, N, 0L, partitionStart);
+
+        final long searchStart = SolverEvents.begin();
+        long states = 0L;
+        long links = 0L;
+        long linkNanos = 0L;
+
+        // minimumSums[k] is the least sum of any k remaining negative equities.
+        long[] minimumSums = new long[negativeAmount + 1];
+        long[] sortedNegativeEquities = new long[negativeAmount];
+        loadMinimumSums(negativeEquities,
+                        negativeAmount,
+                        minimumSums,
+                        sortedNegativeEquities);
+
+        // The indices of the current combinations, as EquityGroups takes them.
+        int[] positiveIndices = new int[positiveAmount];
+        int[] negativeIndices = new int[negativeAmount];
+
+        // The sums of all negative groups; positive groups with no equal
+        // negative group skip the inner enumeration. As computing all sums
+        // costs about as much as enumerating the groups once, this is done
+        // only after the inner enumerations since the last match have done
+        // that much work.
+        long[] negativeSums = null;
+        long innerSteps = 0L;
+
+        RevolvingDoorIndexSet positiveIndexSet =
+                new RevolvingDoorIndexSet(positiveEquities);
+        RevolvingDoorIndexSet negativeIndexSet =
+                new RevolvingDoorIndexSet(negativeEquities);
 
         outer:
         while (positiveIndexSet.inc()) {
-            long currentPositive = evaluatePositive(positiveNodes,
-                                                    positiveIndexSet);
+            final long currentPositive = positiveIndexSet.getSum();
+            int size = 0;
+            ++states;
 
-            while (negativeIndexSet.inc()) {
-                long currentNegative = evaluateNegative(negativeNodes,
-                                                        negativeIndexSet);
-
-                if (currentNegative > currentPositive) {
-                    if (negativeIndexSet.hasNoGaps()) {
-                        // Successive negative groups will be no less than the
-                        // current.
-                        negativeIndexSet.reset();
-                        continue outer;
-                    }
-                } else if (currentNegative == currentPositive) {
-                    int[] positiveIndices = positiveIndexSet.getIndices();
-                    int[] negativeIndices = negativeIndexSet.getIndices();
+            if (SubsetSumFilter.isAchievable(negativeSums,
+                                             currentPositive) == false) {
+                continue;
+            }
 
-                    link(positiveIndices,
-                         negativeIndices,
-                         positiveNodes,
-                         negativeNodes,
-                         map);
+            if (negativeSums == null
+                    && innerSteps > (1L << Math.min(negativeAmount, 62))) {
+                negativeSums =
+                        SubsetSumFilter.achievableSums(negativeEquities,
+                                                       negativeAmount);
+                innerSteps = Long.MIN_VALUE;
+            }
 
-                    positiveIndexSet.remove();
-                    negativeIndexSet.remove();
+            negativeIndexSet.reset(negativeAmount);
 
-                    for (int i = positiveIndices.length - 1; i >= 0; --i) {
-                        positiveNodes.remove(positiveIndices[i]);
-                    }
+            while (negativeIndexSet.inc()) {
+                ++innerSteps;
+                ++states;
 
-                    for (int i = negativeIndices.length - 1; i >= 0; --i) {
-                        negativeNodes.remove(negativeIndices[i]);
+                if (negativeIndexSet.getSize() != size) {
+                    size = negativeIndexSet.getSize();
+
+                    if (minimumSums[size] > currentPositive) {
+                        // All larger negative groups exceed the current.
+                        continue outer;
                     }
+                }
 
+                if (negativeIndexSet.getSum() == currentPositive) {
+                    final long linkStart = SolverEvents.begin();
+
+                    final int positiveSize = positiveIndexSet.getSize();
+                    final int negativeSize = negativeIndexSet.getSize();
+                    positiveIndexSet.loadIndices(positiveIndices);
+                    negativeIndexSet.loadIndices(negativeIndices);
+
+                    EquityGroups.link(positiveIndices,
+                                      positiveSize,
+                                      negativeIndices,
+                                      positiveNodeArray,
+                                      negativeNodeArray,
+                                      positiveEquities,
+                                      negativeEquities);
+
+                    positiveAmount = EquityGroups.remove(positiveIndices,
+                                                         positiveSize,
+                                                         positiveNodeArray,
+                                                         positiveEquities,
+                                                         positiveAmount);
+
+                    negativeAmount = EquityGroups.remove(negativeIndices,
+                                                         negativeSize,
+                                                         negativeNodeArray,
+                                                         negativeEquities,
+                                                         negativeAmount);
+
+                    loadMinimumSums(negativeEquities,
+                                    negativeAmount,
+                                    minimumSums,
+                                    sortedNegativeEquities);
+
+                    linkNanos += SolverEvents.since(linkStart);
+                    ++links;
+                    negativeSums = null;
+                    innerSteps = 0L;
+
+                    positiveIndexSet.reset(positiveAmount);
                     continue outer;
                 }
             }
         }
 
-        for (Node node : map.values()) {
-            resultNodeList.add(node);
-        }
-
+        SolverEvents.end(NAME,
+                         SolverPhase.SEARCH,
+                         N,
+                         states,
+                         searchStart,
+                         linkNanos);
+
+        final long resultStart = SolverEvents.begin();
+        resultNodeList.addAll(positiveNodes);
+        resultNodeList.addAll(negativeNodes);
+        SolverEvents.end(NAME, SolverPhase.RESULT, N, 0L, resultStart);
+        SolverEvents.report(NAME, SolverPhase.LINK, N, links, linkNanos);
         return resultNodeList;
     }
 
     private static final List<Node> permutationalSimplify(List<Node> nodeList) {
+        final String NAME = "permutationalSimplify";
         final int N = nodeList.size();
+        final long partitionStart = SolverEvents.begin();
         List<Node> positiveNodes = new ArrayList<Node>(N);
         List<Node> negativeNodes = new ArrayList<Node>(N);
         List<Node> resultNodeList = new ArrayList<Node>(N);
@@ -222,6 +620,19 @@ public class Algorithms {
             negativeNodeArray[i++] = node;
         }
 
+        SolverEvents.end(NAME, SolverPhase.PARTITION, N, 0L, partitionStart);
+
+        if (positiveNodes.isEmpty()) {
+            SolverEvents.skipped(NAME,
+                                 N,
+                                 SolverPhase.SEARCH,
+                                 SolverPhase.RESULT,
+                                 SolverPhase.LINK);
+            return resultNodeList;
+        }
+
+        final long searchStart = SolverEvents.begin();
+        long states = 0L;
         int bestEdgeAmount = Integer.MAX_VALUE;
 
         PermutationIterator<Node> positiveNodesPermuter =
@@ -244,9 +655,11 @@ public class Algorithms {
 
                 int linkageEdges = countLinkageEdges(positiveNodePermutation,
                                                      negativeNodePermutation);
+                ++states;
 
                 if (bestEdgeAmount > linkageEdges) {
                     bestEdgeAmount = linkageEdges;
+                    SolverEvents.improved(NAME, linkageEdges, states);
                     bestPositiveNodeArray =
                             Arrays.copyOf(positiveNodeArray,
                                           positiveNodeArray.length);
@@ -257,12 +670,43 @@ public class Algorithms {
             }
         }
 
-        resultNodeList.addAll(link(Arrays.asList(bestPositiveNodeArray),
-                                   Arrays.asList(bestNegativeNodeArray)));
+        SolverEvents.end(NAME, SolverPhase.SEARCH, N, states, searchStart);
+
+        final long resultStart = SolverEvents.begin();
+        SolverWorkspace workspace = SolverWorkspace.get();
+        int[] positiveMembers = workspace.getInts(
+                SolverWorkspace.POSITIVE_MEMBERS, bestPositiveNodeArray.length);
+        int[] negativeMembers = workspace.getInts(
+                SolverWorkspace.NEGATIVE_MEMBERS, bestNegativeNodeArray.length);
+
+        for (i = 0; i < bestPositiveNodeArray.length; ++i) {
+            positiveMembers[i] = i;
+        }
+
+        for (i = 0; i < bestNegativeNodeArray.length; ++i) {
+            negativeMembers[i] = i;
+        }
+
+        SolverEvents.end(NAME, SolverPhase.RESULT, N, 0L, resultStart);
+
+        final long linkStart = SolverEvents.begin();
+        link(bestPositiveNodeArray,
+             positiveMembers,
+             0,
+             bestPositiveNodeArray.length,
+             bestNegativeNodeArray,
+             negativeMembers,
+             0,
+             bestNegativeNodeArray.length,
+             resultNodeList);
+        SolverEvents.end(NAME, SolverPhase.LINK, N, 0L, linkStart);
         return resultNodeList;
     }
 
     private static final List<Node> partitionalSimplify(List<Node> nodeList) {
+        final String NAME = "partitionalSimplify";
+        final int N = nodeList.size();
+        final long partitionStart = SolverEvents.begin();
         List<Node> positiveNodes = new ArrayList<Node>(nodeList.size());
         List<Node> negativeNodes = new ArrayList<Node>(nodeList.size());
         List<Node> resultNodeList = new ArrayList<Node>(nodeList.size());
@@ -277,168 +721,282 @@ public class Algorithms {
             }
         }
 
-        int jj = 3;
+        final int POS_LIMIT = positiveNodes.size();
+        final int NEG_LIMIT = negativeNodes.size();
 
-        int bestEdgeAmount = Integer.MAX_VALUE;
-        List<Integer>[] bestPositivePartition = null;
-        List<Integer>[] bestNegativePartition = null;
+        long[] positiveEquities = new long[POS_LIMIT];
+        long[] negativeEquities = new long[NEG_LIMIT];
 
-        PartitionGenerator pospg = new PartitionGenerator(positiveNodes.size());
+        for (int i = 0; i < POS_LIMIT; ++i) {
+            positiveEquities[i] = positiveNodes.get(i).getEquity();
+        }
 
-        do {
-            PartitionGenerator negpg =
-                    new PartitionGenerator(negativeNodes.size());
+        for (int i = 0; i < NEG_LIMIT; ++i) {
+            negativeEquities[i] = -negativeNodes.get(i).getEquity();
+        }
 
-            int[] positiveIndices = pospg.getIndices();
-            List<Integer>[] positivePartition = loadPartition(positiveIndices);
+        SolverEvents.end(NAME, SolverPhase.PARTITION, N, 0L, partitionStart);
 
-            do {
-                int[] negativeIndices = negpg.getIndices();
-                List<Integer>[] negativePartition =
-                        loadPartition(negativeIndices);
-
-                int edges = countEdgesFromPartitions(positiveNodes,
-                                                     negativeNodes,
-                                                     positivePartition,
-                                                     negativePartition);
-
-                if (bestEdgeAmount > edges) {
-                    bestEdgeAmount = edges;
-                    bestPositivePartition = copyPartitions(positivePartition);
-                    bestNegativePartition = copyPartitions(negativePartition);
-                }
+        if (POS_LIMIT == 0) {
+            SolverEvents.skipped(NAME,
+                                 N,
+                                 SolverPhase.SEARCH,
+                                 SolverPhase.RESULT,
+                                 SolverPhase.LINK);
+            return resultNodeList;
+        }
 
-            } while (negpg.inc());
-        } while (pospg.inc());
+        final long searchStart = SolverEvents.begin();
+        long states = 0L;
+
+        // The amount of edges is 'POS_LIMIT + NEG_LIMIT - blocks', so we look
+        // for the pair of partitions with most blocks of matching sums.
+        int bestBlockAmount = 0;
+        SolverWorkspace workspace = SolverWorkspace.get();
+        int[] bestPositiveIndices = workspace.getInts(
+                SolverWorkspace.POSITIVE_BLOCKS, POS_LIMIT);
+        int[] bestNegativeIndices = workspace.getInts(
+                SolverWorkspace.NEGATIVE_BLOCKS, NEG_LIMIT);
+        Arrays.fill(bestPositiveIndices, 0, POS_LIMIT, 0);
+        Arrays.fill(bestNegativeIndices, 0, NEG_LIMIT, 0);
+
+        long[] positiveBlockSums = workspace.getLongs(
+                SolverWorkspace.POSITIVE_SUMS, POS_LIMIT);
+        long[] negativeBlockSums = workspace.getLongs(
+                SolverWorkspace.NEGATIVE_SUMS, NEG_LIMIT);
+
+        GrayPartitionGenerator pospg =
+                new GrayPartitionGenerator(positiveEquities);
+        GrayPartitionGenerator negpg =
+                new GrayPartitionGenerator(negativeEquities);
+
+        // Each positive block needs a negative block of the same sum, so the
+        // sums of all negative subsets filter out positive partitions before
+        // the inner enumeration.
+        long[] negativeSums =
+                SubsetSumFilter.achievableSums(negativeEquities, NEG_LIMIT);
 
-        List<List<Node>> positivePartitions =
-                loadNodePartition(positiveNodes, bestPositivePartition);
+        do {
+            final int blocks = pospg.getBlockAmount();
+            ++states;
 
-        List<List<Node>> negativePartitions =
-                loadNodePartition(negativeNodes, bestNegativePartition);
+            if (blocks <= bestBlockAmount || blocks > NEG_LIMIT) {
+                continue;
+            }
 
-        for (int i = 0; i < positivePartitions.size(); ++i) {
-            resultNodeList.addAll(link(positivePartitions.get(i),
-                                       negativePartitions.get(i)));
-        }
+            loadBlockSums(pospg, positiveBlockSums);
 
-        return resultNodeList;
-    }
+            if (blockSumsAchievable(positiveBlockSums,
+                                    blocks,
+                                    negativeSums) == false) {
+                continue;
+            }
 
-    private static final List<List<Node>>
-            loadNodePartition(List<Node> nodeList, List<Integer>[] indexList) {
-        List<List<Node>> list = new ArrayList<List<Node>>(indexList.length);
+            negpg.reset();
 
-        for (List<Integer> indices : indexList) {
-            List<Node> tmp = new ArrayList<Node>(indices.size());
+            do {
+                ++states;
 
-            for (Integer i : indices) {
-                tmp.add(nodeList.get(i));
-            }
+                if (negpg.getBlockAmount() != blocks) {
+                    continue;
+                }
 
-            list.add(tmp);
+                loadBlockSums(negpg, negativeBlockSums);
+
+                if (blockSumsEqual(positiveBlockSums,
+                                   negativeBlockSums,
+                                   blocks)) {
+                    bestBlockAmount = blocks;
+                    SolverEvents.improved(NAME,
+                                          POS_LIMIT + NEG_LIMIT - blocks,
+                                          states);
+                    System.arraycopy(pospg.getIndices(), 0,
+                                     bestPositiveIndices, 0, POS_LIMIT);
+                    System.arraycopy(negpg.getIndices(), 0,
+                                     bestNegativeIndices, 0, NEG_LIMIT);
+                    break;
+                }
+            } while (negpg.inc());
+        } while (pospg.inc());
+
+        SolverEvents.end(NAME, SolverPhase.SEARCH, N, states, searchStart);
+
+        final long resultStart = SolverEvents.begin();
+        Node[] positiveNodeArray = positiveNodes.toArray(new Node[POS_LIMIT]);
+        Node[] negativeNodeArray = negativeNodes.toArray(new Node[NEG_LIMIT]);
+        int[] positiveMembers = workspace.getInts(
+                SolverWorkspace.POSITIVE_MEMBERS, POS_LIMIT);
+        int[] negativeMembers = workspace.getInts(
+                SolverWorkspace.NEGATIVE_MEMBERS, NEG_LIMIT);
+        int[] positiveStarts = workspace.getInts(
+                SolverWorkspace.POSITIVE_STARTS, POS_LIMIT + 1);
+        int[] negativeStarts = workspace.getInts(
+                SolverWorkspace.NEGATIVE_STARTS, NEG_LIMIT + 1);
+        int[] positiveOrder = workspace.getInts(
+                SolverWorkspace.POSITIVE_ORDER, POS_LIMIT);
+        int[] negativeOrder = workspace.getInts(
+                SolverWorkspace.NEGATIVE_ORDER, NEG_LIMIT);
+
+        final int blocks = loadPartition(bestPositiveIndices,
+                                         POS_LIMIT,
+                                         positiveMembers,
+                                         positiveStarts);
+        loadPartition(bestNegativeIndices,
+                      NEG_LIMIT,
+                      negativeMembers,
+                      negativeStarts);
+
+        // Blocks of equal sums are matched by sorting both sides by sum.
+        sortBlocks(positiveNodeArray,
+                   positiveMembers,
+                   positiveStarts,
+                   blocks,
+                   positiveBlockSums,
+                   positiveOrder);
+        sortBlocks(negativeNodeArray,
+                   negativeMembers,
+                   negativeStarts,
+                   blocks,
+                   negativeBlockSums,
+                   negativeOrder);
+
+        SolverEvents.end(NAME, SolverPhase.RESULT, N, 0L, resultStart);
+
+        final long linkStart = SolverEvents.begin();
+
+        for (int i = 0; i < blocks; ++i) {
+            final int positiveBlock = positiveOrder[i];
+            final int negativeBlock = negativeOrder[i];
+
+            link(positiveNodeArray,
+                 positiveMembers,
+                 positiveStarts[positiveBlock],
+                 positiveStarts[positiveBlock + 1],
+                 negativeNodeArray,
+                 negativeMembers,
+                 negativeStarts[negativeBlock],
+                 negativeStarts[negativeBlock + 1],
+                 resultNodeList);
         }
 
-        return list;
+        SolverEvents.end(NAME, SolverPhase.LINK, N, blocks, linkStart);
+        return resultNodeList;
     }
 
-    private static final List<Integer>[]
-            copyPartitions(List<Integer>[] partition) {
-        List<Integer>[] ret = new List[partition.length];
-        int i = 0;
+    /**
+     * Copies the block sums of the current partition of <code>generator</code>
+     * into <code>sums</code> in ascending order.
+     *
+     * @param generator the partition generator.
+     * @param sums the array to load the block sums into.
+     */
+    private static final void loadBlockSums(GrayPartitionGenerator generator,
+                                            long[] sums) {
+        final int blocks = generator.getBlockAmount();
 
-        for (List<Integer> list : partition) {
-            ret[i++] = new ArrayList<Integer>(list);
+        for (int i = 0; i < blocks; ++i) {
+            sums[i] = generator.getBlockSum(i);
         }
 
-        return ret;
+        Arrays.sort(sums, 0, blocks);
     }
 
-    private static final int countEdgesFromPartitions(
-            List<Node> positiveNodes,
-            List<Node> negativeNodes,
-            List<Integer>[] positivePartition,
-            List<Integer>[] negativePartition) {
-        if (positivePartition.length != negativePartition.length) {
-            return Integer.MAX_VALUE;
-        }
-
-        Arrays.sort(positivePartition, new BlockComparator(positiveNodes));
-        Arrays.sort(negativePartition, new BlockComparator(negativeNodes));
-
-        for (int i = 0; i < positivePartition.length; ++i) {
-            if (sumEquities(positiveNodes, positivePartition[i])
-                    != -sumEquities(negativeNodes, negativePartition[i])) {
-                return Integer.MAX_VALUE;
+    private static final boolean blockSumsAchievable(long[] sums,
+                                                     int blocks,
+                                                     long[] achievableSums) {
+        for (int i = 0; i < blocks; ++i) {
+            if (SubsetSumFilter.isAchievable(achievableSums, sums[i])
+                    == false) {
+                return false;
             }
         }
 
-        return positiveNodes.size() +
-               negativeNodes.size() -
-               positivePartition.length;
+        return true;
     }
 
-    private static final long sumEquities(List<Node> nodeList,
-                                          List<Integer> indices) {
-        long sum = 0L;
-
-        for (Integer i : indices) {
-            sum += nodeList.get(i).getEquity();
+    private static final boolean blockSumsEqual(long[] sums1,
+                                                long[] sums2,
+                                                int blocks) {
+        for (int i = 0; i < blocks; ++i) {
+            if (sums1[i] != sums2[i]) {
+                return false;
+            }
         }
 
-        return sum;
+        return true;
     }
 
-    private static final class BlockComparator
-    implements Comparator<List<Integer>> {
-        private Node[] nodes;
-
-        public BlockComparator(List<Node> nodes) {
-            this.nodes = new Node[nodes.size()];
-
-            int index = 0;
-
-            for (Node node : nodes) {
-                this.nodes[index++] = node;
-            }
+    /**
+     * Groups the nodes by their blocks, in ascending order within each block.
+     *
+     * @param blockIndices the block of each node, the blocks being numbered
+     * from zero on.
+     * @param amount the amount of nodes.
+     * @param members receives the nodes grouped by block.
+     * @param starts receives the start of each block in
+     * <code>members</code>, followed by <code>amount</code>.
+     * @return the amount of blocks.
+     */
+    private static final int loadPartition(int[] blockIndices,
+                                           int amount,
+                                           int[] members,
+                                           int[] starts) {
+        int blocks = 0;
+
+        for (int i = 0; i < amount; ++i) {
+            blocks = Math.max(blocks, blockIndices[i] + 1);
         }
 
-        public int compare(List<Integer> o1, List<Integer> o2) {
-            long e1 = 0L;
-            long e2 = 0L;
+        Arrays.fill(starts, 0, blocks + 1, 0);
 
-            for (Integer i : o1) {
-                e1 += Math.abs(nodes[i].getEquity());
-            }
-
-            for (Integer i : o2) {
-                e2 += Math.abs(nodes[i].getEquity());
-            }
+        for (int i = 0; i < amount; ++i) {
+            ++starts[blockIndices[i] + 1];
+        }
 
-            return e1 < e2 ? -1 : (e1 > e2 ? 1 : 0);
+        for (int i = 0; i < blocks; ++i) {
+            starts[i + 1] += starts[i];
         }
-    }
 
-    private static final List<Integer>[] loadPartition(int[] indices) {
-        Set<Integer> set = new HashSet<Integer>(indices.length);
+        for (int i = 0; i < amount; ++i) {
+            members[starts[blockIndices[i]]++] = i;
+        }
 
-        for (int index : indices) {
-            set.add(index);
+        // Each start was advanced to the next one; shift them back.
+        for (int i = blocks; i > 0; --i) {
+            starts[i] = starts[i - 1];
         }
 
-        List<Integer>[] ret = new List[set.size()];
+        starts[0] = 0;
+        return blocks;
+    }
 
-        for (int i = 0; i < set.size(); ++i) {
-            ret[i] = new ArrayList<Integer>();
-        }
+    /**
+     * Loads into <code>order</code> the blocks sorted stably by the sum of
+     * the absolute equities of their nodes.
+     */
+    private static final void sortBlocks(Node[] nodes,
+                                         int[] members,
+                                         int[] starts,
+                                         int blocks,
+                                         long[] sums,
+                                         int[] order) {
+        for (int block = 0; block < blocks; ++block) {
+            long sum = 0L;
+
+            for (int i = starts[block]; i < starts[block + 1]; ++i) {
+                sum += Math.abs(nodes[members[i]].getEquity());
+            }
 
-        int i = 0;
+            sums[block] = sum;
+            int i = block;
 
-        for (int index : indices) {
-            ret[index].add(i++);
-        }
+            while (i > 0 && sums[order[i - 1]] > sum) {
+                order[i] = order[i - 1];
+                --i;
+            }
 
-        return ret;
+            order[i] = block;
+        }
     }
 
     private static final int countLinkageEdges(Node[] positiveNodes,
@@ -450,8 +1008,11 @@ public class Algorithms {
         final int POS_LIMIT = positiveNodes.length;
         final int NEG_LIMIT = negativeNodes.length;
 
-        long[] positiveEquities = new long[POS_LIMIT];
-        long[] negativeEquities = new long[NEG_LIMIT];
+        SolverWorkspace workspace = SolverWorkspace.get();
+        long[] positiveEquities = workspace.getLongs(
+                SolverWorkspace.POSITIVE_EQUITIES, POS_LIMIT);
+        long[] negativeEquities = workspace.getLongs(
+                SolverWorkspace.NEGATIVE_EQUITIES, NEG_LIMIT);
 
         for (Node node : positiveNodes) {
             positiveEquities[pi++] = node.getEquity();
@@ -480,188 +1041,90 @@ public class Algorithms {
         return edgeAmount;
     }
 
-    private static final List<Node> link(List<Node> positiveNodes,
-                                         List<Node> negativeNodes) {
-        final int POS_LIMIT = positiveNodes.size();
-        final int NEG_LIMIT = negativeNodes.size();
-
-        long[] positiveEquities = new long[POS_LIMIT];
-        long[] negativeEquities = new long[NEG_LIMIT];
-
-        int pi = 0;
-        int ni = 0;
-
-        List<Node> resultPositiveNodes = new ArrayList<Node>(POS_LIMIT);
-        List<Node> resultNegativeNodes = new ArrayList<Node>(NEG_LIMIT);
-        List<Node> resultNodeList = new ArrayList<Node>(POS_LIMIT + NEG_LIMIT);
-
-        for (Node node : positiveNodes) {
-            resultPositiveNodes.add(new Node(node));
-            positiveEquities[pi++] = node.getEquity();
-        }
-
-        for (Node node : negativeNodes) {
-            resultNegativeNodes.add(new Node(node));
-            negativeEquities[ni++] = -node.getEquity();
-        }
-
-        pi = 0;
-        ni = 0;
-
-        while (pi < POS_LIMIT) {
-            if (positiveEquities[pi] > negativeEquities[ni]) {
-                resultPositiveNodes
-                        .get(pi)
-                        .connectTo(resultNegativeNodes.get(ni),
-                            negativeEquities[ni]);
-                positiveEquities[pi] -= negativeEquities[ni++];
-            } else if (positiveEquities[pi] < negativeEquities[ni]) {
-                resultPositiveNodes
-                        .get(pi)
-                        .connectTo(resultNegativeNodes.get(ni),
-                            positiveEquities[pi]);
-                negativeEquities[ni] -= positiveEquities[pi++];
-            } else {
-                resultPositiveNodes
-                        .get(pi)
-                        .connectTo(resultNegativeNodes.get(ni),
-                            positiveEquities[pi]);
-                ++pi;
-                ++ni;
-            }
-        }
-
-        resultNodeList.addAll(resultPositiveNodes);
-        resultNodeList.addAll(resultNegativeNodes);
-        return resultNodeList;
-    }
-
     /**
-     * Links a group. Only indexed nodes get linked.
+     * Links a group by the two-pointer pass, appending new copies of its
+     * positive nodes and then of its negative nodes to
+     * <code>resultNodeList</code>.
      *
-     * @param positiveIndices the indices into positive-equity nodes.
-     * @param negativeIndices the indices into negative-equity nodes.
-     * @param positiveNodes the list of positive nodes.
-     * @param negativeNodes the list of negative nodes.
-     * @param map the map from input nodes to output nodes.
+     * @param positiveNodes the positive nodes.
+     * @param positiveMembers the indices of the positive nodes.
+     * @param positiveFrom the start of the group in
+     * <code>positiveMembers</code>.
+     * @param positiveTo the end of the group in <code>positiveMembers</code>.
+     * @param negativeNodes the negative nodes.
+     * @param negativeMembers the indices of the negative nodes.
+     * @param negativeFrom the start of the group in
+     * <code>negativeMembers</code>.
+     * @param negativeTo the end of the group in <code>negativeMembers</code>.
+     * @param resultNodeList the result graph.
      */
-    private static final void link(int[] positiveIndices,
-                                   int[] negativeIndices,
-                                   List<Node> positiveNodes,
-                                   List<Node> negativeNodes,
-                                   Map<Node, Node> map) {
-        final int POS_LIMIT = positiveIndices.length;
-        final int NEG_LIMIT = negativeIndices.length;
-
-        long[] positiveEquities = new long[POS_LIMIT];
-        long[] negativeEquities = new long[NEG_LIMIT];
-
-        int pi = 0;
-        int ni = 0;
-
-        for (int i : positiveIndices) {
-            positiveEquities[pi++] = positiveNodes.get(i).getEquity();
+    private static final void link(Node[] positiveNodes,
+                                   int[] positiveMembers,
+                                   int positiveFrom,
+                                   int positiveTo,
+                                   Node[] negativeNodes,
+                                   int[] negativeMembers,
+                                   int negativeFrom,
+                                   int negativeTo,
+                                   List<Node> resultNodeList) {
+        final int POS_LIMIT = positiveTo - positiveFrom;
+        final int NEG_LIMIT = negativeTo - negativeFrom;
+        final int BASE = resultNodeList.size();
+
+        SolverWorkspace workspace = SolverWorkspace.get();
+        long[] positiveEquities = workspace.getLongs(
+                SolverWorkspace.POSITIVE_EQUITIES, POS_LIMIT);
+        long[] negativeEquities = workspace.getLongs(
+                SolverWorkspace.NEGATIVE_EQUITIES, NEG_LIMIT);
+
+        for (int i = 0; i < POS_LIMIT; ++i) {
+            Node node = positiveNodes[positiveMembers[positiveFrom + i]];
+            resultNodeList.add(new Node(node));
+            positiveEquities[i] = node.getEquity();
         }
 
-        for (int i : negativeIndices) {
-            negativeEquities[ni++] = -negativeNodes.get(i).getEquity();
+        for (int i = 0; i < NEG_LIMIT; ++i) {
+            Node node = negativeNodes[negativeMembers[negativeFrom + i]];
+            resultNodeList.add(new Node(node));
+            negativeEquities[i] = -node.getEquity();
         }
 
-        pi = 0;
-        ni = 0;
-
-        Node p = map.get(positiveNodes.get(positiveIndices[0]));
-        Node n = map.get(negativeNodes.get(negativeIndices[0]));
+        int pi = 0;
+        int ni = 0;
 
         while (pi < POS_LIMIT) {
+            Node lender = resultNodeList.get(BASE + pi);
+            Node borrower = resultNodeList.get(BASE + POS_LIMIT + ni);
+
             if (positiveEquities[pi] > negativeEquities[ni]) {
-                p.connectTo(n, negativeEquities[ni]);
-                positiveEquities[pi] -= negativeEquities[ni];
-                n = map.get(negativeNodes.get(negativeIndices[++ni]));
+                lender.connectTo(borrower, negativeEquities[ni]);
+                positiveEquities[pi] -= negativeEquities[ni++];
             } else if (positiveEquities[pi] < negativeEquities[ni]) {
-                p.connectTo(n, positiveEquities[pi]);
-                negativeEquities[ni] -= positiveEquities[pi];
-                p = map.get(positiveNodes.get(positiveIndices[++pi]));
+                lender.connectTo(borrower, positiveEquities[pi]);
+                negativeEquities[ni] -= positiveEquities[pi++];
             } else {
-                p.connectTo(n, positiveEquities[pi]);
+                lender.connectTo(borrower, positiveEquities[pi]);
                 ++pi;
                 ++ni;
-
-                if (pi < POS_LIMIT) {
-                    p = map.get(positiveNodes.get(positiveIndices[pi]));
-                    n = map.get(negativeNodes.get(negativeIndices[ni]));
-                }
             }
         }
     }
 
     /**
-     * Assumes that all of the nodes in the input list have positive equities.
-     *
-     * @param nodeList the list to get the nodes from.
-     * @param indexSet the index set.
-     *
-     * @return the sum of equities from list indexed by <code>indexSet</code>.
+     * Loads into <code>minimumSums[k]</code> the sum of <code>k</code> least
+     * values among the first <code>amount</code> equities.
      */
-    private static final long evaluatePositive(
-            List<Node> nodeList,
-            IndexSet indexSet) {
-        long sum = 0L;
+    private static final void loadMinimumSums(long[] equities,
+                                              int amount,
+                                              long[] minimumSums,
+                                              long[] sorted) {
+        System.arraycopy(equities, 0, sorted, 0, amount);
+        Arrays.sort(sorted, 0, amount);
 
-        for (int index : indexSet.getIndices()) {
-            sum += nodeList.get(index).getEquity();
-        }
-
-        return sum;
-    }
+        minimumSums[0] = 0L;
 
-    /**
-     * Assumes that all of the nodes in the input list have negative equities.
-     *
-     * @param nodeList the list to get the nodes from.
-     * @param indexSet the index set.
-     *
-     * @return the sum of equities from list indexed by <code>indexSet</code>.
-     */
-    private static final long evaluateNegative(
-            List<Node> nodeList,
-            IndexSet indexSet) {
-        long sum = 0L;
-
-        for (int index : indexSet.getIndices()) {
-            sum += nodeList.get(index).getEquity();
-        }
-
-        return -sum;
-    }
-
-    public static final void testS() {
-        long sum = 0L;
-
-        for (long l = 1; l <= 6; ++l) {
-            sum += S(10, l);
+        for (int i = 0; i < amount; ++i) {
+            minimumSums[i + 1] = minimumSums[i] + sorted[i];
         }
-
-        System.out.println(sum);
-
-        sum = 0L;
-
-        for (long l = 1; l <= 6; ++l) {
-            sum += S(6, l);
-        }
-
-        System.out.println(sum);
-    }
-
-    private static final long S(long n, long k) {
-        if (k == 1L) {
-            return 1L;
-        }
-
-        if (k == n) {
-            return 1L;
-        }
-
-        return S(n - 1, k - 1) + k * S(n - 1, k);
     }
 }
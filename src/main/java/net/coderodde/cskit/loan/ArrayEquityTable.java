@@ -0,0 +1,62 @@
+package net.coderodde.cskit.loan;
+
+import java.util.List;
+
+/**
+ * This class implements an equity table over a primitive array.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+final class ArrayEquityTable implements EquityTable {
+
+    private final long[] equities;
+    private final int size;
+
+    ArrayEquityTable(final long[] equities) {
+        this(equities, equities.length);
+    }
+
+    /**
+     * Constructs a table over a prefix of an array.
+     *
+     * @param equities the array.
+     * @param size the amount of accounts.
+     */
+    ArrayEquityTable(final long[] equities, final int size) {
+        if (size < 0 || size > equities.length) {
+            throw new IllegalArgumentException("Illegal size: " + size);
+        }
+
+        this.equities = equities;
+        this.size = size;
+    }
+
+    /**
+     * Returns the equities of a node list, indexed by the positions of the
+     * nodes.
+     *
+     * @param nodeList the node list.
+     * @return the equity table.
+     */
+    static ArrayEquityTable of(final List<Node> nodeList) {
+        long[] equities = new long[nodeList.size()];
+        int i = 0;
+
+        for (Node node : nodeList) {
+            equities[i++] = node.getEquity();
+        }
+
+        return new ArrayEquityTable(equities);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public long getEquity(final int index) {
+        return equities[index];
+    }
+}
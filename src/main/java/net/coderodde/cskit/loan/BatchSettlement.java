@@ -0,0 +1,461 @@
+package net.coderodde.cskit.loan;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class settles many loan logs in a pipeline of three stages joined by
+ * bounded queues: reader threads net the logs, solver threads simplify and
+ * verify the graphs, and a writer thread writes the plans. Reading and
+ * writing thus overlap with solving, and the queues bound the graphs held in
+ * memory. A log failing to read or to verify is reported and skipped.
+ * <p>
+ * Usage: <tt>BatchSettlement [OPTION VALUE]... --output DIR FILE...</tt>,
+ * where a directory among the files stands for the files in it, with the
+ * options
+ * <ul>
+ * <li><tt>--algorithm</tt> the name of the algorithm, <tt>auto</tt> by
+ * default,</li>
+ * <li><tt>--budget</tt> the time budget of <tt>auto</tt> in milliseconds,</li>
+ * <li><tt>--readers</tt> and <tt>--solvers</tt> the amounts of threads of the
+ * stages, and</li>
+ * <li><tt>--queue</tt> the capacity of the queues between the stages.</li>
+ * </ul>
+ * The plan of <tt>FILE</tt> is written to <tt>DIR/NAME.plan</tt>, as by
+ * {@link SettlementPlan#writeTo(OutputStream)}, <tt>NAME</tt> being the name
+ * of the file without its directory. Of several logs with the same name, such
+ * as logs of different directories, only the first one is settled; the others
+ * fail rather than overwrite its plan. A log failing in any way, even by an
+ * error such as running out of memory, fails alone. The program exits with
+ * status 1 if any log failed.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public class BatchSettlement {
+
+    private final Algorithm algorithm;
+    private final File outputDirectory;
+    private final int readerAmount;
+    private final int solverAmount;
+    private final BlockingQueue<Job> readQueue;
+    private final BlockingQueue<Job> writeQueue;
+
+    private List<File> files;
+
+    /**
+     * For each log, the earlier log of the same name, or <code>null</code>.
+     */
+    private File[] namesakes;
+
+    private final AtomicInteger nextFile = new AtomicInteger();
+    private final AtomicInteger runningReaders = new AtomicInteger();
+    private final AtomicInteger runningSolvers = new AtomicInteger();
+
+    private final AtomicLong readNanos = new AtomicLong();
+    private final AtomicLong solveNanos = new AtomicLong();
+    private long writeNanos;
+    private long bytes;
+    private long accounts;
+    private long edges;
+    private int settled;
+    private final List<String> failures = new ArrayList<String>();
+
+    /**
+     * The job marking the end of the input of a stage.
+     */
+    private static final Job END = new Job(null);
+
+    public static void main(String... args) throws Exception {
+        final int status = execute(args);
+
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+
+    /**
+     * Runs the program on the command line arguments.
+     *
+     * @return the exit status, 1 if any log failed.
+     */
+    static int execute(final String... args) throws Exception {
+        String algorithm = "auto";
+        long budget = Algorithms.DEFAULT_BUDGET_MILLIS;
+        int readers = 2;
+        int solvers = Runtime.getRuntime().availableProcessors();
+        int queue = 64;
+        String output = null;
+        int i = 0;
+
+        while (i + 1 < args.length && args[i].startsWith("--")) {
+            final String option = args[i];
+            final String value = args[i + 1];
+
+            if (option.equals("--algorithm")) {
+                algorithm = value;
+            } else if (option.equals("--budget")) {
+                budget = Long.parseLong(value);
+            } else if (option.equals("--readers")) {
+                readers = Integer.parseInt(value);
+            } else if (option.equals("--solvers")) {
+                solvers = Integer.parseInt(value);
+            } else if (option.equals("--queue")) {
+                queue = Integer.parseInt(value);
+            } else if (option.equals("--output")) {
+                output = value;
+            } else {
+                usage();
+            }
+
+            i += 2;
+        }
+
+        if (output == null || i == args.length) {
+            usage();
+        }
+
+        List<File> files = new ArrayList<File>();
+
+        for (; i < args.length; ++i) {
+            File file = new File(args[i]);
+
+            if (file.isDirectory()) {
+                File[] children = file.listFiles();
+                Arrays.sort(children);
+
+                for (File child : children) {
+                    if (child.isFile()) {
+                        files.add(child);
+                    }
+                }
+            } else {
+                files.add(file);
+            }
+        }
+
+        File outputDirectory = new File(output);
+
+        if (outputDirectory.isDirectory() == false
+                && outputDirectory.mkdirs() == false) {
+            throw new IOException("Cannot create " + outputDirectory);
+        }
+
+        BatchSettlement batch =
+                new BatchSettlement(algorithm.equals("auto")
+                                    ? Algorithms.auto(budget)
+                                    : Algorithms.forName(algorithm),
+                                    outputDirectory,
+                                    readers,
+                                    solvers,
+                                    queue);
+        long ta = System.nanoTime();
+        batch.run(files);
+        long tb = System.nanoTime();
+
+        batch.printSummary(tb - ta);
+        return batch.failures.isEmpty() ? 0 : 1;
+    }
+
+    /**
+     * Constructs a pipeline.
+     *
+     * @param algorithm the algorithm to settle with.
+     * @param outputDirectory the directory of the plans.
+     * @param readerAmount the amount of reader threads.
+     * @param solverAmount the amount of solver threads.
+     * @param queueCapacity the capacity of the queues between the stages.
+     */
+    public BatchSettlement(final Algorithm algorithm,
+                           final File outputDirectory,
+                           final int readerAmount,
+                           final int solverAmount,
+                           final int queueCapacity) {
+        if (readerAmount < 1 || solverAmount < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException(
+                    "Bad thread amount or queue capacity.");
+        }
+
+        this.algorithm = algorithm;
+        this.outputDirectory = outputDirectory;
+        this.readerAmount = readerAmount;
+        this.solverAmount = solverAmount;
+        this.readQueue = new ArrayBlockingQueue<Job>(queueCapacity);
+        this.writeQueue = new ArrayBlockingQueue<Job>(queueCapacity);
+    }
+
+    /**
+     * Settles the logs, returning when all plans are written. A pipeline
+     * runs once.
+     *
+     * @param files the loan logs.
+     */
+    public void run(final List<File> files) throws InterruptedException {
+        if (this.files != null) {
+            throw new IllegalStateException("The pipeline has already run.");
+        }
+
+        this.files = files;
+        this.namesakes = new File[files.size()];
+        Map<String, File> owners = new HashMap<String, File>();
+
+        for (int i = 0; i < files.size(); ++i) {
+            final String name = getPlanName(files.get(i));
+            final File owner = owners.get(name);
+
+            if (owner == null) {
+                owners.put(name, files.get(i));
+            } else {
+                namesakes[i] = owner;
+            }
+        }
+
+        runningReaders.set(readerAmount);
+        runningSolvers.set(solverAmount);
+
+        List<Thread> threads = new ArrayList<Thread>();
+
+        for (int i = 0; i < readerAmount; ++i) {
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    read();
+                }
+            }, "reader-" + i));
+        }
+
+        for (int i = 0; i < solverAmount; ++i) {
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    solve();
+                }
+            }, "solver-" + i));
+        }
+
+        for (Thread thread : threads) {
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        write();
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    public int getSettledAmount() {
+        return settled;
+    }
+
+    /**
+     * Returns the descriptions of the logs that failed.
+     *
+     * @return the failures.
+     */
+    public List<String> getFailures() {
+        return failures;
+    }
+
+    private void read() {
+        try {
+            int index;
+
+            while ((index = nextFile.getAndIncrement()) < files.size()) {
+                Job job = new Job(files.get(index));
+                final long start = System.nanoTime();
+
+                if (namesakes[index] != null) {
+                    job.error = "write: " + getPlanName(job.file) +
+                                " is the plan of " + namesakes[index];
+                    readQueue.put(job);
+                    continue;
+                }
+
+                try {
+                    job.input = EquityAggregate.readLoanLog(job.file,
+                                                            0L,
+                                                            Long.MAX_VALUE)
+                                               .toNodeList();
+                    job.bytes = job.file.length();
+                } catch (Throwable ex) {
+                    job.input = null;
+                    job.error = "read: " + ex;
+                }
+
+                readNanos.addAndGet(System.nanoTime() - start);
+                readQueue.put(job);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (runningReaders.decrementAndGet() == 0) {
+                for (int i = 0; i < solverAmount; ++i) {
+                    putUninterruptibly(readQueue, END);
+                }
+            }
+        }
+    }
+
+    private void solve() {
+        try {
+            Job job;
+
+            while ((job = readQueue.take()) != END) {
+                if (job.error == null) {
+                    final long start = System.nanoTime();
+
+                    try {
+                        List<Node> result = algorithm.exec(job.input);
+
+                        if (Utilities.loanGraphsAreEquivalent(job.input,
+                                                              result)) {
+                            job.plan = SettlementPlan.of(job.input, result);
+                        } else {
+                            job.error = "verify: the result of " +
+                                        algorithm + " is not equivalent.";
+                        }
+                    } catch (Throwable ex) {
+                        job.error = "solve: " + ex;
+                    }
+
+                    solveNanos.addAndGet(System.nanoTime() - start);
+                }
+
+                job.input = null;
+                writeQueue.put(job);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (runningSolvers.decrementAndGet() == 0) {
+                putUninterruptibly(writeQueue, END);
+            }
+        }
+    }
+
+    private void write() throws InterruptedException {
+        Job job;
+
+        while ((job = writeQueue.take()) != END) {
+            if (job.error == null) {
+                final long start = System.nanoTime();
+                File file = new File(outputDirectory, getPlanName(job.file));
+
+                try {
+                    OutputStream out = new BufferedOutputStream(
+                            new FileOutputStream(file), 1 << 16);
+
+                    try {
+                        job.plan.writeTo(out);
+                    } finally {
+                        out.close();
+                    }
+
+                    ++settled;
+                    bytes += job.bytes;
+                    accounts += job.plan.getAccountAmount();
+                    edges += job.plan.size();
+                } catch (IOException ex) {
+                    job.error = "write: " + ex;
+                }
+
+                writeNanos += System.nanoTime() - start;
+            }
+
+            if (job.error != null) {
+                failures.add(job.file + ": " + job.error);
+                System.err.println(job.file + ": " + job.error);
+            }
+        }
+    }
+
+    /**
+     * Puts a job into a queue even if interrupted, so that the stage waiting
+     * for it is not left blocked. The interruption is restored.
+     */
+    private static void putUninterruptibly(final BlockingQueue<Job> queue,
+                                           final Job job) {
+        boolean interrupted = false;
+
+        while (true) {
+            try {
+                queue.put(job);
+                break;
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void printSummary(final long nanos) {
+        final double seconds = nanos / 1e9;
+
+        System.out.println("Algorithm: " + algorithm);
+        System.out.println("Logs settled: " + settled + ", failed: " +
+                           failures.size());
+        System.out.println("Accounts: " + accounts + ", edges: " + edges);
+        System.out.println(String.format(
+                Locale.ROOT,
+                "Time: %.3f s, %.1f logs/s, %.2f MB/s, %.0f accounts/s",
+                seconds,
+                settled / seconds,
+                bytes / seconds / (1 << 20),
+                accounts / seconds));
+        System.out.println(String.format(
+                Locale.ROOT,
+                "Busy time: read %.3f s in %d threads, " +
+                "solve %.3f s in %d threads, write %.3f s",
+                readNanos.get() / 1e9,
+                readerAmount,
+                solveNanos.get() / 1e9,
+                solverAmount,
+                writeNanos / 1e9));
+    }
+
+    private static String getPlanName(final File file) {
+        return file.getName() + ".plan";
+    }
+
+    private static void usage() {
+        System.err.println(
+                "Usage: BatchSettlement [--algorithm NAME] [--budget MS] " +
+                "[--readers K] [--solvers K] [--queue K] --output DIR " +
+                "FILE...");
+        System.exit(1);
+    }
+
+    /**
+     * A log passing through the pipeline.
+     */
+    private static final class Job {
+
+        final File file;
+        List<Node> input;
+        SettlementPlan plan;
+        long bytes;
+        String error;
+
+        Job(final File file) {
+            this.file = file;
+        }
+    }
+}
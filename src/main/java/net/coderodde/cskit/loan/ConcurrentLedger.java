@@ -0,0 +1,478 @@
+package net.coderodde.cskit.loan;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * This class implements a ledger recording loans from many threads at once.
+ * Accounts are registered by name and identified by indices
+ * <tt>0, 1, ..., size() - 1</tt>. Equities are kept in pages of atomic
+ * counters, so that a loan costs two atomic additions, and loans are appended
+ * to a lock-free queue if the ledger keeps them.
+ * <p>
+ * A loan changes two equities, so a reader could see one change without the
+ * other. To read a consistent state, recorders hold the read lock of one of
+ * several lock stripes, chosen by the recording thread, and the consistent
+ * views are taken holding all the write locks. Recorders thus only contend
+ * with readers and with threads sharing their stripe.
+ * <p>
+ * A {@link Snapshot} freezes the equities without copying them, so that a
+ * simplification may run on it while loans keep arriving. Taking a snapshot
+ * starts a new epoch. Pages and the page table carry the epoch they were made
+ * in, and a recorder copies a page of an earlier epoch on its first write to
+ * it, leaving the original to the snapshots. A snapshot thus costs the lock
+ * round-trip, and the copying is proportional to the pages written to after
+ * it.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public class ConcurrentLedger {
+
+    private static final int STRIPES = 16;
+
+    private static final int PAGE_BITS = 10;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+    private final ReentrantReadWriteLock[] stripes;
+    private final ConcurrentHashMap<String, Integer> accounts;
+    private final Queue<Loan> loans;
+
+    /**
+     * Guards the registration of accounts.
+     */
+    private final Object registrationLock = new Object();
+
+    /**
+     * Guards the copying of the page table into a new epoch.
+     */
+    private final Object tableLock = new Object();
+
+    private volatile long epoch;
+    private volatile Table table;
+    private volatile String[] names;
+    private volatile int accountAmount;
+
+    /**
+     * Constructs a ledger keeping only the equities.
+     */
+    public ConcurrentLedger() {
+        this(false);
+    }
+
+    /**
+     * Constructs a ledger.
+     *
+     * @param keepLoans whether to keep the recorded loans, so that
+     * {@link #toLoanGraph()} may replay them.
+     */
+    public ConcurrentLedger(final boolean keepLoans) {
+        this.stripes = new ReentrantReadWriteLock[STRIPES];
+        this.accounts = new ConcurrentHashMap<String, Integer>();
+        this.loans = keepLoans ? new ConcurrentLinkedQueue<Loan>() : null;
+        this.table = new Table(0L, 0);
+        this.names = new String[PAGE_SIZE];
+
+        for (int i = 0; i < STRIPES; ++i) {
+            stripes[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    /**
+     * Returns the index of the named account, registering it if needed.
+     *
+     * @param name the name of the account.
+     * @return the index of the account.
+     */
+    public int getAccount(final String name) {
+        Integer account = accounts.get(name);
+
+        if (account != null) {
+            return account;
+        }
+
+        if (name == null) {
+            throw new NullPointerException("Account name is null.");
+        }
+
+        synchronized (registrationLock) {
+            account = accounts.get(name);
+
+            if (account != null) {
+                return account;
+            }
+
+            final int index = accountAmount;
+
+            if (index == names.length) {
+                String[] newNames = new String[index << 1];
+                System.arraycopy(names, 0, newNames, 0, index);
+                names = newNames;
+            }
+
+            if ((index >>> PAGE_BITS) == table.pages.length()) {
+                addPage();
+            }
+
+            names[index] = name;
+            accountAmount = index + 1;
+            accounts.put(name, index);
+            return index;
+        }
+    }
+
+    /**
+     * Records a loan, as in {@link Node#connectTo(Node, long)}.
+     *
+     * @param lender the name of the lender.
+     * @param borrower the name of the borrower.
+     * @param amount the positive amount lent.
+     */
+    public void recordLoan(final String lender,
+                           final String borrower,
+                           final long amount) {
+        recordLoan(getAccount(lender), getAccount(borrower), amount);
+    }
+
+    /**
+     * Records a loan between registered accounts.
+     *
+     * @param lender the index of the lender.
+     * @param borrower the index of the borrower.
+     * @param amount the positive amount lent.
+     */
+    public void recordLoan(final int lender,
+                           final int borrower,
+                           final long amount) {
+        checkAccount(lender);
+        checkAccount(borrower);
+
+        if (amount <= 0) {
+            throw new IllegalArgumentException(
+                    "Illegal amount given: " + amount);
+        }
+
+        if (lender == borrower) {
+            throw new IllegalArgumentException("Requesting a self-loop.");
+        }
+
+        ReentrantReadWriteLock.ReadLock lock = getStripe().readLock();
+        lock.lock();
+
+        try {
+            add(lender, amount);
+            add(borrower, -amount);
+
+            if (loans != null) {
+                loans.add(new Loan(lender, borrower, amount));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        return accountAmount;
+    }
+
+    public String getName(final int account) {
+        checkAccount(account);
+        return names[account];
+    }
+
+    /**
+     * Returns the current equity of an account. Loans in progress may be
+     * seen in part when reading several equities.
+     *
+     * @param account the index of the account.
+     * @return the equity.
+     */
+    public long getEquity(final int account) {
+        checkAccount(account);
+        return table.getEquity(account);
+    }
+
+    /**
+     * Takes a consistent snapshot of the equities and starts a new epoch.
+     *
+     * @return the snapshot.
+     */
+    public Snapshot snapshot() {
+        lockAll();
+
+        try {
+            final int size = accountAmount;
+            Snapshot snapshot = new Snapshot(epoch, table, names, size);
+            ++epoch;
+            return snapshot;
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Returns a consistent view of the ledger as nodes carrying their net
+     * equities, one for each account in the order of indices.
+     *
+     * @return the input graph for the simplifiers.
+     */
+    public List<Node> toNodeList() {
+        return snapshot().toNodeList();
+    }
+
+    /**
+     * Returns a consistent view of the ledger as the graph of the recorded
+     * loans, one node for each account in the order of indices.
+     *
+     * @return the loan graph.
+     * @throws IllegalStateException if this ledger does not keep loans.
+     */
+    public List<Node> toLoanGraph() {
+        if (loans == null) {
+            throw new IllegalStateException("The ledger keeps no loans.");
+        }
+
+        lockAll();
+
+        try {
+            final int size = accountAmount;
+            Node[] nodes = new Node[size];
+
+            for (int i = 0; i < size; ++i) {
+                nodes[i] = new Node(names[i]);
+            }
+
+            for (Loan loan : loans) {
+                nodes[loan.lender].connectTo(nodes[loan.borrower],
+                                             loan.amount);
+            }
+
+            List<Node> nodeList = new ArrayList<Node>(size);
+
+            for (Node node : nodes) {
+                nodeList.add(node);
+            }
+
+            return nodeList;
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Adds to an equity, copying its page first if the page belongs to an
+     * earlier epoch. Called holding a stripe read lock, so that the epoch
+     * does not change meanwhile.
+     */
+    private void add(final int account, final long amount) {
+        final long current = epoch;
+        Table t = table;
+
+        if (t.epoch != current) {
+            synchronized (tableLock) {
+                if (table.epoch != current) {
+                    table = new Table(current, table, table.pages.length());
+                }
+
+                t = table;
+            }
+        }
+
+        final int index = account >>> PAGE_BITS;
+        Page page = t.pages.get(index);
+
+        while (page.epoch != current) {
+            Page copy = new Page(current, page);
+
+            if (t.pages.compareAndSet(index, page, copy)) {
+                page = copy;
+            } else {
+                page = t.pages.get(index);
+            }
+        }
+
+        page.equities.addAndGet(account & (PAGE_SIZE - 1), amount);
+    }
+
+    /**
+     * Appends a page of equities. The page table is replaced holding all the
+     * write locks, so that no recorder installs a page into the old table.
+     */
+    private void addPage() {
+        lockAll();
+
+        try {
+            synchronized (tableLock) {
+                table = new Table(epoch, table, table.pages.length() + 1);
+            }
+        } finally {
+            unlockAll();
+        }
+    }
+
+    private ReentrantReadWriteLock getStripe() {
+        return stripes[(int)(Thread.currentThread().getId() & (STRIPES - 1))];
+    }
+
+    private void lockAll() {
+        for (ReentrantReadWriteLock stripe : stripes) {
+            stripe.writeLock().lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = STRIPES - 1; i >= 0; --i) {
+            stripes[i].writeLock().unlock();
+        }
+    }
+
+    private void checkAccount(final int account) {
+        if (account < 0 || account >= accountAmount) {
+            throw new IndexOutOfBoundsException(
+                    "Account out of range: " + account);
+        }
+    }
+
+    /**
+     * An immutable view of the equities at the time a snapshot was taken.
+     */
+    public static final class Snapshot implements EquityTable {
+
+        private final long epoch;
+        private final Table table;
+        private final String[] names;
+        private final int size;
+
+        Snapshot(final long epoch,
+                 final Table table,
+                 final String[] names,
+                 final int size) {
+            this.epoch = epoch;
+            this.table = table;
+            this.names = names;
+            this.size = size;
+        }
+
+        public long getEpoch() {
+            return epoch;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public long getEquity(final int account) {
+            checkAccount(account);
+            return table.getEquity(account);
+        }
+
+        public String getName(final int account) {
+            checkAccount(account);
+            return names[account];
+        }
+
+        /**
+         * Returns the snapshot as nodes carrying their net equities, one for
+         * each account in the order of indices.
+         *
+         * @return the input graph for the simplifiers.
+         */
+        public List<Node> toNodeList() {
+            List<Node> nodeList = new ArrayList<Node>(size);
+
+            for (int i = 0; i < size; ++i) {
+                nodeList.add(new Node(names[i], table.getEquity(i)));
+            }
+
+            return nodeList;
+        }
+
+        private void checkAccount(final int account) {
+            if (account < 0 || account >= size) {
+                throw new IndexOutOfBoundsException(
+                        "Account out of range: " + account);
+            }
+        }
+    }
+
+    /**
+     * A table of equity pages, written only in its epoch.
+     */
+    private static final class Table {
+
+        final long epoch;
+        final AtomicReferenceArray<Page> pages;
+
+        Table(final long epoch, final int pageAmount) {
+            this.epoch = epoch;
+            this.pages = new AtomicReferenceArray<Page>(pageAmount);
+
+            for (int i = 0; i < pageAmount; ++i) {
+                pages.set(i, new Page(epoch, null));
+            }
+        }
+
+        /**
+         * Constructs a table sharing the pages of <code>copy</code>, with
+         * new pages appended up to <code>pageAmount</code>.
+         */
+        Table(final long epoch, final Table copy, final int pageAmount) {
+            this.epoch = epoch;
+            this.pages = new AtomicReferenceArray<Page>(pageAmount);
+
+            for (int i = 0; i < pageAmount; ++i) {
+                pages.set(i, i < copy.pages.length() ? copy.pages.get(i)
+                                                     : new Page(epoch, null));
+            }
+        }
+
+        long getEquity(final int account) {
+            return pages.get(account >>> PAGE_BITS)
+                        .equities.get(account & (PAGE_SIZE - 1));
+        }
+    }
+
+    /**
+     * A page of equities, written only in its epoch.
+     */
+    private static final class Page {
+
+        final long epoch;
+        final AtomicLongArray equities;
+
+        Page(final long epoch, final Page copy) {
+            this.epoch = epoch;
+            this.equities = new AtomicLongArray(PAGE_SIZE);
+
+            if (copy != null) {
+                for (int i = 0; i < PAGE_SIZE; ++i) {
+                    equities.set(i, copy.equities.get(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * A recorded loan.
+     */
+    private static final class Loan {
+
+        final int lender;
+        final int borrower;
+        final long amount;
+
+        Loan(final int lender, final int borrower, final long amount) {
+            this.lender = lender;
+            this.borrower = borrower;
+            this.amount = amount;
+        }
+    }
+}
@@ -0,0 +1,817 @@
+package net.coderodde.cskit.loan;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class keeps a settlement plan up to date as the equities change, and
+ * reports each update as a {@link SettlementDelta} against the previous plan.
+ * <p>
+ * Equity changes are announced with {@link #adjust(int, long)} and settled by
+ * {@link #commit()}. The residual of an account is the difference between its
+ * new equity and the equity implied by the current payments. A commit first
+ * moves the residuals over existing payments between changed accounts,
+ * raising a payment from an account of positive residual to one of negative
+ * residual, or lowering one running the other way. The residuals left are
+ * then paired by the two-pointer pass of the linear simplification, adding
+ * new payments. The work and the size of the delta thus depend on the changed
+ * accounts and their payments, not on the size of the ledger.
+ * <p>
+ * The payments added this way are never merged again, so that over many
+ * commits the plan would drift away from the linear one. Whenever a commit
+ * leaves more than {@link #RESETTLE_FACTOR} times as many payments as a
+ * linear plan of the accounts of non-zero equity has at most, the commit
+ * also trims the plan while keeping its pairing where it can. Each account
+ * of zero equity still paying and being paid is bypassed, its lenders paying
+ * its borrowers directly, and each cycle of payments, regardless of their
+ * directions, is cancelled by shifting the least amount around it, which
+ * drops a payment. The payments left form a forest over the accounts of
+ * non-zero equity, and so are no more than those of a linear plan. Only the
+ * accounts having payments, kept in an indexed set, and their payments are
+ * visited, so that such a commit costs time in the size of the plan rather
+ * than of the ledger, and, as the plan has to grow by about as many payments
+ * again before the next one, the cost per added payment stays low.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public class DeltaSettler {
+
+    /**
+     * The most payments a commit may leave for each payment of a linear plan
+     * before the ledger is settled anew.
+     */
+    public static final int RESETTLE_FACTOR = 2;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private String[] names;
+    private int accountAmount;
+
+    /**
+     * The equities implied by the current payments.
+     */
+    private long[] implied;
+
+    /**
+     * The equities the payments should imply after the next commit.
+     */
+    private long[] target;
+
+    /**
+     * The payments incident to each account, and the amount of them.
+     */
+    private int[][] incident;
+    private int[] degree;
+
+    private boolean[] dirty;
+    private int[] dirtyAccounts;
+    private int dirtyAmount;
+
+    /**
+     * The accounts having payments, and the position of each account in
+     * that list, or -1. These include all accounts of non-zero equity.
+     */
+    private int[] activeAccounts;
+    private int[] activePosition;
+    private int activeAmount;
+
+    /**
+     * The scratch space of trimming the plan: the sets of the union-find
+     * structure, the payment leading to each account on a searched path, the
+     * search marks, the accounts searched, and lists of payments and their
+     * amounts.
+     */
+    private int[] sets;
+    private int[] pathEdge;
+    private int[] marks;
+    private int mark;
+    private int[] queue;
+    private int[] work;
+    private long[] workAmounts;
+
+    // The payments; a payment of amount 0 is free and listed in 'free'.
+    private int[] from;
+    private int[] to;
+    private long[] amount;
+    private int[] fromPosition;
+    private int[] toPosition;
+    private long[] previousAmount;
+    private int[] touched;
+    private int touchedAmount;
+    private boolean[] inForest;
+    private int[] free;
+    private int freeAmount;
+    private int edgeCapacity;
+    private int edgeAmount;
+
+    /**
+     * The amount of payments of non-zero amount, and the amount of accounts
+     * of non-zero equity as of the last commit.
+     */
+    private int paymentAmount;
+    private int nonZeroAmount;
+
+    private final Map<Long, Integer> edgeIndex;
+
+    /**
+     * Constructs a settler continuing from a plan. The equities implied by
+     * the plan are the current ones; parallel payments of the plan are
+     * merged.
+     *
+     * @param plan the previous plan.
+     */
+    public DeltaSettler(final SettlementPlan plan) {
+        final int N = plan.getAccountAmount();
+        final int capacity = Math.max(N, INITIAL_CAPACITY);
+
+        this.names = new String[capacity];
+        this.implied = new long[capacity];
+        this.target = new long[capacity];
+        this.incident = new int[capacity][];
+        this.degree = new int[capacity];
+        this.dirty = new boolean[capacity];
+        this.dirtyAccounts = new int[capacity];
+        this.activeAccounts = new int[capacity];
+        this.activePosition = new int[capacity];
+        this.sets = new int[capacity];
+        this.pathEdge = new int[capacity];
+        this.marks = new int[capacity];
+        this.queue = new int[capacity];
+        this.work = new int[INITIAL_CAPACITY];
+        this.workAmounts = new long[INITIAL_CAPACITY];
+        this.edgeIndex = new HashMap<Long, Integer>();
+        Arrays.fill(activePosition, -1);
+        this.accountAmount = N;
+
+        for (int i = 0; i < N; ++i) {
+            names[i] = plan.getName(i);
+        }
+
+        allocateEdges(Math.max(plan.size(), INITIAL_CAPACITY));
+
+        for (int i = 0; i < plan.size(); ++i) {
+            final int lender = plan.getFrom(i);
+            final int borrower = plan.getTo(i);
+            final long value = plan.getAmount(i);
+            final int edge = getOrCreateEdge(lender, borrower);
+
+            setAmount(edge, amount[edge] + value);
+        }
+
+        for (int i = 0; i < touchedAmount; ++i) {
+            previousAmount[touched[i]] = -1L;
+        }
+
+        System.arraycopy(implied, 0, target, 0, N);
+        touchedAmount = 0;
+
+        for (int i = 0; i < N; ++i) {
+            if (implied[i] != 0L) {
+                ++nonZeroAmount;
+            }
+        }
+    }
+
+    /**
+     * Adds an account of zero equity.
+     *
+     * @param name the name of the account.
+     * @return the index of the account.
+     */
+    public int addAccount(final String name) {
+        if (accountAmount == names.length) {
+            final int capacity = accountAmount << 1;
+            names = Arrays.copyOf(names, capacity);
+            implied = Arrays.copyOf(implied, capacity);
+            target = Arrays.copyOf(target, capacity);
+            incident = Arrays.copyOf(incident, capacity);
+            degree = Arrays.copyOf(degree, capacity);
+            dirty = Arrays.copyOf(dirty, capacity);
+            dirtyAccounts = Arrays.copyOf(dirtyAccounts, capacity);
+            activeAccounts = Arrays.copyOf(activeAccounts, capacity);
+            activePosition = Arrays.copyOf(activePosition, capacity);
+            Arrays.fill(activePosition, accountAmount, capacity, -1);
+            sets = Arrays.copyOf(sets, capacity);
+            pathEdge = Arrays.copyOf(pathEdge, capacity);
+            marks = Arrays.copyOf(marks, capacity);
+            queue = Arrays.copyOf(queue, capacity);
+        }
+
+        names[accountAmount] = name;
+        return accountAmount++;
+    }
+
+    public int getAccountAmount() {
+        return accountAmount;
+    }
+
+    /**
+     * Returns the amount of payments of the current plan.
+     *
+     * @return the amount of payments.
+     */
+    public int getPaymentAmount() {
+        return paymentAmount;
+    }
+
+    /**
+     * Returns the equity of an account, including the adjustments not yet
+     * committed.
+     *
+     * @param account the account.
+     * @return the equity.
+     */
+    public long getEquity(final int account) {
+        checkAccount(account);
+        return target[account];
+    }
+
+    /**
+     * Changes the equity of an account.
+     *
+     * @param account the account.
+     * @param delta the change of the equity.
+     */
+    public void adjust(final int account, final long delta) {
+        checkAccount(account);
+
+        if (delta == 0L) {
+            return;
+        }
+
+        target[account] += delta;
+
+        if (dirty[account] == false) {
+            dirty[account] = true;
+            dirtyAccounts[dirtyAmount++] = account;
+        }
+    }
+
+    /**
+     * Sets the equities of all accounts, adjusting those that differ. This
+     * costs time linear in the amount of accounts; the commit after it
+     * depends only on the accounts that changed.
+     *
+     * @param equities the new equities, one for each account.
+     */
+    public void update(final EquityTable equities) {
+        if (equities.size() != accountAmount) {
+            throw new IllegalArgumentException(
+                    "Expected " + accountAmount + " equities, got " +
+                    equities.size() + ".");
+        }
+
+        for (int i = 0; i < accountAmount; ++i) {
+            adjust(i, equities.getEquity(i) - target[i]);
+        }
+    }
+
+    /**
+     * Settles the adjustments since the last commit.
+     *
+     * @return the changes to the payments.
+     * @throws IllegalStateException if the adjustments do not sum up to zero;
+     * the adjustments are kept.
+     */
+    public SettlementDelta commit() {
+        long sum = 0L;
+
+        for (int i = 0; i < dirtyAmount; ++i) {
+            final int account = dirtyAccounts[i];
+            sum += target[account] - implied[account];
+        }
+
+        if (sum != 0L) {
+            throw new IllegalStateException(
+                    "The adjustments do not sum up to zero: " + sum);
+        }
+
+        touchedAmount = 0;
+
+        for (int i = 0; i < dirtyAmount; ++i) {
+            final int account = dirtyAccounts[i];
+
+            // The implied equity is the one of the previous commit.
+            if (implied[account] != 0L) {
+                --nonZeroAmount;
+            }
+
+            if (target[account] != 0L) {
+                ++nonZeroAmount;
+            }
+        }
+
+        // Move the residuals over the payments between changed accounts.
+        for (int i = 0; i < dirtyAmount; ++i) {
+            final int account = dirtyAccounts[i];
+
+            for (int k = 0;
+                    k < degree[account] && getResidual(account) != 0L;) {
+                final int edge = incident[account][k];
+                final int lender = from[edge];
+                final int borrower = to[edge];
+                final long lenderResidual = getResidual(lender);
+                final long borrowerResidual = getResidual(borrower);
+
+                if (lenderResidual > 0L && borrowerResidual < 0L) {
+                    setAmount(edge,
+                              amount[edge]
+                              + Math.min(lenderResidual, -borrowerResidual));
+                } else if (lenderResidual < 0L && borrowerResidual > 0L) {
+                    final long decrease =
+                            Math.min(amount[edge],
+                                     Math.min(-lenderResidual,
+                                              borrowerResidual));
+                    setAmount(edge, amount[edge] - decrease);
+
+                    if (amount[edge] == 0L) {
+                        // The payment left the list; 'k' is the next one.
+                        continue;
+                    }
+                }
+
+                ++k;
+            }
+        }
+
+        // Pair the residuals left, as in the linear simplification.
+        int pi = nextDirty(-1, true);
+        int ni = nextDirty(-1, false);
+
+        while (pi < dirtyAmount && ni < dirtyAmount) {
+            final int lender = dirtyAccounts[pi];
+            final int borrower = dirtyAccounts[ni];
+            final long value = Math.min(getResidual(lender),
+                                        -getResidual(borrower));
+            final int edge = getOrCreateEdge(lender, borrower);
+
+            setAmount(edge, amount[edge] + value);
+
+            if (getResidual(lender) == 0L) {
+                pi = nextDirty(pi, true);
+            }
+
+            if (getResidual(borrower) == 0L) {
+                ni = nextDirty(ni, false);
+            }
+        }
+
+        if (paymentAmount > RESETTLE_FACTOR
+                            * Math.max(nonZeroAmount - 1, 0)) {
+            bypassZeroAccounts();
+            cancelCycles();
+        }
+
+        SettlementDelta delta = new SettlementDelta();
+
+        for (int i = 0; i < touchedAmount; ++i) {
+            final int edge = touched[i];
+            delta.add(from[edge],
+                      to[edge],
+                      previousAmount[edge],
+                      amount[edge]);
+            previousAmount[edge] = -1L;
+
+            if (amount[edge] == 0L) {
+                edgeIndex.remove(SettlementDelta.getKey(from[edge], to[edge]));
+                free[freeAmount++] = edge;
+            }
+        }
+
+        for (int i = 0; i < dirtyAmount; ++i) {
+            dirty[dirtyAccounts[i]] = false;
+        }
+
+        dirtyAmount = 0;
+        touchedAmount = 0;
+        return delta;
+    }
+
+    /**
+     * Returns the current payments as a plan. This costs time linear in the
+     * amount of payments.
+     *
+     * @return the current plan.
+     */
+    public SettlementPlan toPlan() {
+        SettlementPlan plan =
+                new SettlementPlan(Arrays.copyOf(names, accountAmount));
+
+        for (int edge = 0; edge < edgeAmount; ++edge) {
+            if (amount[edge] > 0L) {
+                plan.pay(from[edge], to[edge], amount[edge]);
+            }
+        }
+
+        return plan;
+    }
+
+    /**
+     * Bypasses the accounts of zero equity having payments: the payments to
+     * such an account are paired with the payments from it by the two-pointer
+     * pass, and each pair becomes a payment from the lender to the borrower.
+     * An account paying and being paid by the same account nets that out.
+     * This drops at least one payment for each account bypassed, and adds
+     * payments only between accounts already paying each other through the
+     * bypassed one.
+     */
+    private void bypassZeroAccounts() {
+        int zeroAmount = 0;
+
+        for (int i = 0; i < activeAmount; ++i) {
+            final int account = activeAccounts[i];
+
+            if (target[account] == 0L) {
+                queue[zeroAmount++] = account;
+            }
+        }
+
+        // A bypassed account gets no payments again, as the new ones join
+        // only its former counterparties.
+        for (int i = 0; i < zeroAmount; ++i) {
+            final int account = queue[i];
+            final int d = degree[account];
+
+            if (d == 0) {
+                continue;
+            }
+
+            ensureWork(d);
+
+            for (int k = 0; k < d; ++k) {
+                work[k] = incident[account][k];
+                workAmounts[k] = amount[work[k]];
+            }
+
+            for (int k = 0; k < d; ++k) {
+                setAmount(work[k], 0L);
+            }
+
+            int in = nextIncident(-1, d, account, true);
+            int out = nextIncident(-1, d, account, false);
+
+            while (in < d && out < d) {
+                final int lender = from[work[in]];
+                final int borrower = to[work[out]];
+                final long value = Math.min(workAmounts[in],
+                                            workAmounts[out]);
+
+                if (lender != borrower) {
+                    final int edge = getOrCreateEdge(lender, borrower);
+                    setAmount(edge, amount[edge] + value);
+                }
+
+                workAmounts[in] -= value;
+                workAmounts[out] -= value;
+
+                if (workAmounts[in] == 0L) {
+                    in = nextIncident(in, d, account, true);
+                }
+
+                if (workAmounts[out] == 0L) {
+                    out = nextIncident(out, d, account, false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the position after <code>index</code> in the work list of the
+     * next payment to (or from) <code>account</code>, or <code>d</code> if
+     * there is none.
+     */
+    private int nextIncident(int index,
+                             final int d,
+                             final int account,
+                             final boolean incoming) {
+        while (++index < d) {
+            if ((incoming ? to[work[index]] : from[work[index]]) == account) {
+                break;
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * Cancels the cycles of payments, taken regardless of their directions,
+     * keeping the equities. The payments are added one by one to a forest,
+     * tracked by a union-find structure over the accounts; a payment joining
+     * two accounts the forest connects closes a cycle with the path between
+     * them, and the cycle is cancelled. A payment of the forest dropped this
+     * way is replaced by the closing one, which keeps the forest spanning the
+     * same accounts.
+     */
+    private void cancelCycles() {
+        for (int i = 0; i < activeAmount; ++i) {
+            sets[activeAccounts[i]] = activeAccounts[i];
+        }
+
+        // Take the payments first, as cancelling reorders the lists.
+        int payments = 0;
+        ensureWork(paymentAmount);
+
+        for (int i = 0; i < activeAmount; ++i) {
+            final int account = activeAccounts[i];
+
+            for (int k = 0; k < degree[account]; ++k) {
+                final int edge = incident[account][k];
+
+                if (from[edge] == account) {
+                    work[payments++] = edge;
+                }
+            }
+        }
+
+        for (int i = 0; i < payments; ++i) {
+            final int edge = work[i];
+
+            if (amount[edge] == 0L) {
+                continue;
+            }
+
+            final int lenderSet = find(from[edge]);
+            final int borrowerSet = find(to[edge]);
+
+            if (lenderSet != borrowerSet) {
+                sets[lenderSet] = borrowerSet;
+                inForest[edge] = true;
+            } else if (findPath(from[edge], to[edge])) {
+                cancelCycle(edge);
+                inForest[edge] = amount[edge] > 0L;
+            } else {
+                // Two payments of a path were dropped at once, splitting it.
+                inForest[edge] = true;
+            }
+        }
+
+        for (int i = 0; i < payments; ++i) {
+            inForest[work[i]] = false;
+        }
+    }
+
+    /**
+     * Searches the forest breadth-first from <code>source</code> for
+     * <code>target</code>, leaving in <code>pathEdge</code> the payment
+     * leading to each account reached.
+     *
+     * @return <code>true</code> if the target is reached.
+     */
+    private boolean findPath(final int source, final int target) {
+        ++mark;
+        marks[source] = mark;
+        queue[0] = source;
+        int head = 0;
+        int tail = 1;
+
+        while (head < tail) {
+            final int account = queue[head++];
+
+            for (int k = 0; k < degree[account]; ++k) {
+                final int edge = incident[account][k];
+
+                if (inForest[edge] == false) {
+                    continue;
+                }
+
+                final int next = from[edge] == account ? to[edge]
+                                                       : from[edge];
+
+                if (marks[next] != mark) {
+                    marks[next] = mark;
+                    pathEdge[next] = edge;
+
+                    if (next == target) {
+                        return true;
+                    }
+
+                    queue[tail++] = next;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Cancels the cycle closed by <code>closing</code> with the path found
+     * from its lender to its borrower. The cycle is traversed along the
+     * closing payment; shifting an amount along the traversal raises the
+     * payments running with it and lowers those running against it, which
+     * keeps the equities. The shift is either way by the least amount of the
+     * payments it lowers, whichever is less, so that at least one is dropped.
+     * Dropped payments leave the forest.
+     */
+    private void cancelCycle(final int closing) {
+        final int lender = from[closing];
+        long withMinimum = amount[closing];
+        long againstMinimum = Long.MAX_VALUE;
+
+        // The path is walked from the borrower back to the lender, which
+        // runs along the traversal.
+        for (int account = to[closing]; account != lender;) {
+            final int edge = pathEdge[account];
+            final boolean with = from[edge] == account;
+
+            if (with) {
+                withMinimum = Math.min(withMinimum, amount[edge]);
+            } else {
+                againstMinimum = Math.min(againstMinimum, amount[edge]);
+            }
+
+            account = with ? to[edge] : from[edge];
+        }
+
+        final long shift = againstMinimum < withMinimum ? againstMinimum
+                                                        : -withMinimum;
+
+        setAmount(closing, amount[closing] + shift);
+
+        for (int account = to[closing]; account != lender;) {
+            final int edge = pathEdge[account];
+            final boolean with = from[edge] == account;
+
+            account = with ? to[edge] : from[edge];
+            setAmount(edge, amount[edge] + (with ? shift : -shift));
+
+            if (amount[edge] == 0L) {
+                inForest[edge] = false;
+            }
+        }
+    }
+
+    private int find(int account) {
+        while (sets[account] != account) {
+            sets[account] = sets[sets[account]];
+            account = sets[account];
+        }
+
+        return account;
+    }
+
+    private void ensureWork(final int length) {
+        if (work.length < length) {
+            final int capacity = Math.max(length, work.length << 1);
+            work = new int[capacity];
+            workAmounts = new long[capacity];
+        }
+    }
+
+    private long getResidual(final int account) {
+        return target[account] - implied[account];
+    }
+
+    /**
+     * Returns the position in the dirty list of the next account after
+     * <code>index</code> of positive (or negative) residual, or
+     * <code>dirtyAmount</code> if there is none.
+     */
+    private int nextDirty(int index, final boolean positive) {
+        while (++index < dirtyAmount) {
+            final long residual = getResidual(dirtyAccounts[index]);
+
+            if (positive ? residual > 0L : residual < 0L) {
+                break;
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * Sets the amount of a payment, updating the implied equities and the
+     * incidence lists, and remembering its amount before the commit. A
+     * payment dropped keeps its index entry until the end of the commit, so
+     * that raising it again within the commit reports a single change.
+     */
+    private void setAmount(final int edge, final long value) {
+        final long change = value - amount[edge];
+
+        if (change == 0L) {
+            return;
+        }
+
+        if (previousAmount[edge] < 0L) {
+            previousAmount[edge] = amount[edge];
+            touched[touchedAmount++] = edge;
+        }
+
+        implied[from[edge]] += change;
+        implied[to[edge]] -= change;
+
+        if (amount[edge] == 0L) {
+            fromPosition[edge] = attach(from[edge], edge);
+            toPosition[edge] = attach(to[edge], edge);
+            ++paymentAmount;
+        } else if (value == 0L) {
+            detach(from[edge], fromPosition[edge]);
+            detach(to[edge], toPosition[edge]);
+            --paymentAmount;
+        }
+
+        amount[edge] = value;
+    }
+
+    private int getOrCreateEdge(final int lender, final int borrower) {
+        final Long key = SettlementDelta.getKey(lender, borrower);
+        Integer edge = edgeIndex.get(key);
+
+        if (edge != null) {
+            return edge;
+        }
+
+        int e;
+
+        if (freeAmount > 0) {
+            e = free[--freeAmount];
+        } else {
+            if (edgeAmount == edgeCapacity) {
+                allocateEdges(edgeCapacity << 1);
+            }
+
+            e = edgeAmount++;
+        }
+
+        from[e] = lender;
+        to[e] = borrower;
+        amount[e] = 0L;
+        previousAmount[e] = -1L;
+        edgeIndex.put(key, e);
+        return e;
+    }
+
+    private int attach(final int account, final int edge) {
+        if (degree[account] == 0) {
+            activePosition[account] = activeAmount;
+            activeAccounts[activeAmount++] = account;
+        }
+
+        if (incident[account] == null) {
+            incident[account] = new int[4];
+        } else if (degree[account] == incident[account].length) {
+            incident[account] = Arrays.copyOf(incident[account],
+                                              degree[account] << 1);
+        }
+
+        incident[account][degree[account]] = edge;
+        return degree[account]++;
+    }
+
+    /**
+     * Removes the payment at <code>position</code> of the incidence list of
+     * <code>account</code>, moving the last payment of the list in its place.
+     */
+    private void detach(final int account, final int position) {
+        final int last = incident[account][--degree[account]];
+        incident[account][position] = last;
+
+        if (from[last] == account) {
+            fromPosition[last] = position;
+        } else {
+            toPosition[last] = position;
+        }
+
+        if (degree[account] == 0) {
+            final int moved = activeAccounts[--activeAmount];
+            activeAccounts[activePosition[account]] = moved;
+            activePosition[moved] = activePosition[account];
+            activePosition[account] = -1;
+        }
+    }
+
+    private void allocateEdges(final int capacity) {
+        if (from == null) {
+            from = new int[capacity];
+            to = new int[capacity];
+            amount = new long[capacity];
+            fromPosition = new int[capacity];
+            toPosition = new int[capacity];
+            previousAmount = new long[capacity];
+            touched = new int[capacity];
+            free = new int[capacity];
+            inForest = new boolean[capacity];
+        } else {
+            from = Arrays.copyOf(from, capacity);
+            to = Arrays.copyOf(to, capacity);
+            amount = Arrays.copyOf(amount, capacity);
+            fromPosition = Arrays.copyOf(fromPosition, capacity);
+            toPosition = Arrays.copyOf(toPosition, capacity);
+            previousAmount = Arrays.copyOf(previousAmount, capacity);
+            touched = Arrays.copyOf(touched, capacity);
+            free = Arrays.copyOf(free, capacity);
+            inForest = Arrays.copyOf(inForest, capacity);
+        }
+
+        Arrays.fill(previousAmount, edgeCapacity, capacity, -1L);
+        edgeCapacity = capacity;
+    }
+
+    private void checkAccount(final int account) {
+        if (account < 0 || account >= accountAmount) {
+            throw new IndexOutOfBoundsException(
+                    "Account out of range: " + account);
+        }
+    }
+}
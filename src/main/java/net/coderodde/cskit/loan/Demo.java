@@ -13,7 +13,6 @@ import java.util.Random;
 public class Demo {
 
     public static void main(String... args) {
-        Algorithms.testS();
         final long SEED = System.currentTimeMillis(); //1392045592989L; //System.currentTimeMillis();
         final int N = 14;
 
@@ -25,8 +24,11 @@ public class Demo {
 
         profile(Algorithms.linearSimplify(), nodeList);
         profile(Algorithms.greedyCombinatorialSimplify(), nodeList);
+        profile(Algorithms.sortedGreedyCombinatorialSimplify(), nodeList);
+        profile(Algorithms.subsetSumSimplify(), nodeList);
         profile(Algorithms.partitionalSimplify(), nodeList);
         profile(Algorithms.permutationalSimplify(), nodeList);
+        profile(Algorithms.auto(), nodeList);
     }
 
     private static final void profile(final Algorithm algorithm,
@@ -0,0 +1,587 @@
+package net.coderodde.cskit.loan;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class settles a loan graph using only its existing loans: every payment
+ * of the result runs along a loan of the input, from the lender to the
+ * borrower. Parallel loans are merged, and directed cycles of loans are
+ * cancelled by subtracting the least amount on the cycle from each of its
+ * loans, which drops at least one loan and lowers the total flow while keeping
+ * the equities. The loans left form an acyclic graph.
+ * <p>
+ * The loans are held in a compressed adjacency array and scanned once each in
+ * a depth-first manner, with the current search paths kept in a link-cut
+ * forest, as in the acyclic flow decomposition of Sleator and Tarjan. Finding
+ * and cancelling a cycle then costs logarithmic amortized time instead of the
+ * length of the cycle, and the whole pass runs in <i>O(m log n)</i> time for
+ * <i>m</i> loans and <i>n</i> nodes.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public final class EdgeRestrictedSettler {
+
+    private EdgeRestrictedSettler() {}
+
+    /**
+     * Settles a loan graph along its loans.
+     *
+     * @param nodeList the input graph.
+     * @return the settlement plan over the indices of <code>nodeList</code>.
+     * @throws IllegalArgumentException if the equity of a node is not that of
+     * its loans, as for nodes built from netted equities.
+     */
+    public static SettlementPlan settle(final List<Node> nodeList) {
+        final int N = nodeList.size();
+        Map<Node, Integer> indices = new HashMap<Node, Integer>(2 * N);
+        long[] equities = new long[N];
+        int edgeAmount = 0;
+        int i = 0;
+
+        for (Node node : nodeList) {
+            indices.put(node, i++);
+            edgeAmount += node.getBorrowerAmount();
+        }
+
+        int[] lenders = new int[edgeAmount];
+        int[] borrowers = new int[edgeAmount];
+        long[] amounts = new long[edgeAmount];
+        int e = 0;
+        i = 0;
+
+        for (Node node : nodeList) {
+            for (Node borrower : node) {
+                final int j = indices.get(borrower);
+                final long amount = node.getLoanTo(borrower);
+                lenders[e] = i;
+                borrowers[e] = j;
+                amounts[e++] = amount;
+                equities[i] += amount;
+                equities[j] -= amount;
+            }
+
+            ++i;
+        }
+
+        i = 0;
+
+        for (Node node : nodeList) {
+            if (node.getEquity() != equities[i++]) {
+                throw new IllegalArgumentException(
+                        "The equity of " + node.getName() +
+                        " is not backed by its loans.");
+            }
+        }
+
+        SettlementPlan plan =
+                new SettlementPlan(SettlementPlan.getNames(nodeList));
+        settle(N, lenders, borrowers, amounts, edgeAmount, plan);
+        return plan;
+    }
+
+    /**
+     * Settles a loan graph given as arrays of loans along its loans. The
+     * arrays are not modified.
+     *
+     * @param nodeAmount the amount of nodes.
+     * @param lenders the lender of each loan.
+     * @param borrowers the borrower of each loan.
+     * @param amounts the positive amount of each loan.
+     * @param edgeAmount the amount of loans in the arrays.
+     * @param sink the receiver of the payments.
+     */
+    public static void settle(final int nodeAmount,
+                              final int[] lenders,
+                              final int[] borrowers,
+                              final long[] amounts,
+                              final int edgeAmount,
+                              final PaymentSink sink) {
+        final int[] offsets = new int[nodeAmount + 1];
+        final int[] heads = new int[edgeAmount];
+        final long[] flows = new long[edgeAmount];
+
+        buildAdjacency(nodeAmount,
+                       lenders,
+                       borrowers,
+                       amounts,
+                       edgeAmount,
+                       offsets,
+                       heads,
+                       flows);
+
+        cancelCycles(nodeAmount, offsets, heads, flows);
+
+        for (int u = 0; u < nodeAmount; ++u) {
+            for (int e = offsets[u]; e < offsets[u + 1]; ++e) {
+                if (flows[e] > 0L) {
+                    sink.pay(u, heads[e], flows[e]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the adjacency array sorted by the lender and then by the
+     * borrower through two counting sorts, merging parallel loans.
+     */
+    private static void buildAdjacency(final int nodeAmount,
+                                       final int[] lenders,
+                                       final int[] borrowers,
+                                       final long[] amounts,
+                                       final int edgeAmount,
+                                       final int[] offsets,
+                                       final int[] heads,
+                                       final long[] flows) {
+        final int[] count = new int[nodeAmount + 1];
+        final int[] byBorrower = new int[edgeAmount];
+        final int[] order = new int[edgeAmount];
+
+        for (int e = 0; e < edgeAmount; ++e) {
+            checkLoan(nodeAmount, lenders[e], borrowers[e], amounts[e]);
+            ++count[borrowers[e] + 1];
+        }
+
+        for (int u = 0; u < nodeAmount; ++u) {
+            count[u + 1] += count[u];
+        }
+
+        for (int e = 0; e < edgeAmount; ++e) {
+            byBorrower[count[borrowers[e]]++] = e;
+        }
+
+        for (int e = 0; e < edgeAmount; ++e) {
+            ++offsets[lenders[e] + 1];
+        }
+
+        for (int u = 0; u < nodeAmount; ++u) {
+            offsets[u + 1] += offsets[u];
+        }
+
+        System.arraycopy(offsets, 0, count, 0, nodeAmount + 1);
+
+        for (int k = 0; k < edgeAmount; ++k) {
+            final int e = byBorrower[k];
+            order[count[lenders[e]]++] = e;
+        }
+
+        // Merge the runs of parallel loans, compacting the adjacency lists.
+        int m = 0;
+
+        for (int u = 0; u < nodeAmount; ++u) {
+            final int start = offsets[u];
+            final int end = offsets[u + 1];
+            offsets[u] = m;
+
+            for (int k = start; k < end; ++k) {
+                final int e = order[k];
+
+                if (m > offsets[u] && heads[m - 1] == borrowers[e]) {
+                    flows[m - 1] += amounts[e];
+                } else {
+                    heads[m] = borrowers[e];
+                    flows[m++] = amounts[e];
+                }
+            }
+        }
+
+        offsets[nodeAmount] = m;
+    }
+
+    /**
+     * Cancels the directed cycles of positive flow. Each node not yet
+     * finished hangs in a forest by the loan it is currently scanning; a
+     * root scans its loans, linking itself below the borrower, and a loan
+     * leading back into the tree of the root closes a cycle along the tree
+     * path, which is cancelled on the dynamic tree. A root out of loans is
+     * finished, and its children become roots again.
+     */
+    private static void cancelCycles(final int nodeAmount,
+                                     final int[] offsets,
+                                     final int[] heads,
+                                     final long[] flows) {
+        final Forest forest = new Forest(nodeAmount);
+        final boolean[] finished = new boolean[nodeAmount];
+        final int[] next = new int[nodeAmount];
+        final int[] parentEdges = new int[nodeAmount];
+        final int[] firstChildren = new int[nodeAmount];
+        final int[] nextSiblings = new int[nodeAmount];
+        final int[] previousSiblings = new int[nodeAmount];
+        int[] roots = new int[Math.max(nodeAmount, 1)];
+        int size = 0;
+
+        System.arraycopy(offsets, 0, next, 0, nodeAmount);
+        Arrays.fill(parentEdges, -1);
+        Arrays.fill(firstChildren, -1);
+        Arrays.fill(nextSiblings, -1);
+        Arrays.fill(previousSiblings, -1);
+
+        for (int source = 0; source < nodeAmount; ++source) {
+            if (finished[source]) {
+                continue;
+            }
+
+            roots[size++] = source;
+
+            while (size > 0) {
+                final int r = roots[size - 1];
+
+                if (finished[r] || parentEdges[r] >= 0) {
+                    --size;
+                    continue;
+                }
+
+                if (next[r] == offsets[r + 1]) {
+                    finished[r] = true;
+                    --size;
+
+                    for (int c = firstChildren[r]; c >= 0;) {
+                        final int sibling = nextSiblings[c];
+                        flows[parentEdges[c]] = forest.cut(c);
+                        parentEdges[c] = -1;
+                        nextSiblings[c] = -1;
+                        previousSiblings[c] = -1;
+
+                        if (size == roots.length) {
+                            roots = Arrays.copyOf(roots, size << 1);
+                        }
+
+                        roots[size++] = c;
+                        c = sibling;
+                    }
+
+                    firstChildren[r] = -1;
+                    continue;
+                }
+
+                final int e = next[r];
+                final int v = heads[e];
+
+                if (flows[e] == 0L || finished[v]) {
+                    ++next[r];
+                } else if (forest.findRoot(v) == r) {
+                    // Cancel the cycle r -> v -> ... -> r.
+                    final long minimum =
+                            Math.min(flows[e], forest.pathMinimum(v));
+
+                    forest.pathAdd(v, -minimum);
+                    forest.resetRoot(r);
+                    flows[e] -= minimum;
+
+                    while (forest.pathMinimum(v) == 0L) {
+                        final int x = forest.findZero(v);
+                        forest.cut(x);
+                        flows[parentEdges[x]] = 0L;
+
+                        // Unlink 'x' from the children of its parent.
+                        if (previousSiblings[x] >= 0) {
+                            nextSiblings[previousSiblings[x]] =
+                                    nextSiblings[x];
+                        } else {
+                            firstChildren[heads[parentEdges[x]]] =
+                                    nextSiblings[x];
+                        }
+
+                        if (nextSiblings[x] >= 0) {
+                            previousSiblings[nextSiblings[x]] =
+                                    previousSiblings[x];
+                        }
+
+                        parentEdges[x] = -1;
+                        nextSiblings[x] = -1;
+                        previousSiblings[x] = -1;
+
+                        if (size == roots.length) {
+                            roots = Arrays.copyOf(roots, size << 1);
+                        }
+
+                        roots[size++] = x;
+                    }
+
+                    if (flows[e] == 0L) {
+                        ++next[r];
+                    }
+                } else {
+                    forest.link(r, v, flows[e]);
+                    parentEdges[r] = e;
+                    nextSiblings[r] = firstChildren[v];
+
+                    if (firstChildren[v] >= 0) {
+                        previousSiblings[firstChildren[v]] = r;
+                    }
+
+                    firstChildren[v] = r;
+                    roots[size - 1] = forest.findRoot(v);
+                }
+            }
+        }
+    }
+
+    private static void checkLoan(final int nodeAmount,
+                                  final int lender,
+                                  final int borrower,
+                                  final long amount) {
+        if (lender < 0 || lender >= nodeAmount
+                || borrower < 0 || borrower >= nodeAmount) {
+            throw new IndexOutOfBoundsException(
+                    "Loan between " + lender + " and " + borrower +
+                    " out of range.");
+        }
+
+        if (lender == borrower) {
+            throw new IllegalArgumentException("Requesting a self-loop.");
+        }
+
+        if (amount <= 0) {
+            throw new IllegalArgumentException(
+                    "Illegal amount given: " + amount);
+        }
+    }
+
+    /**
+     * A link-cut forest over the nodes. The value of a node is the flow of
+     * the loan to its parent, or {@link #INFINITY} at a root. The nodes are
+     * held in splay trees of preferred paths, ordered from the root, with
+     * lazily propagated additions and subtree minima.
+     */
+    private static final class Forest {
+
+        private static final long INFINITY = Long.MAX_VALUE >> 2;
+
+        private final int[] left;
+        private final int[] right;
+        private final int[] parent;
+        private final long[] value;
+        private final long[] minimum;
+        private final long[] pending;
+        private final int[] path;
+
+        Forest(final int nodeAmount) {
+            this.left = new int[nodeAmount];
+            this.right = new int[nodeAmount];
+            this.parent = new int[nodeAmount];
+            this.value = new long[nodeAmount];
+            this.minimum = new long[nodeAmount];
+            this.pending = new long[nodeAmount];
+            this.path = new int[nodeAmount];
+
+            Arrays.fill(left, -1);
+            Arrays.fill(right, -1);
+            Arrays.fill(parent, -1);
+            Arrays.fill(value, INFINITY);
+            Arrays.fill(minimum, INFINITY);
+        }
+
+        /**
+         * Makes <code>x</code>, a root, a child of <code>y</code> over a loan
+         * of the given flow.
+         */
+        void link(final int x, final int y, final long flow) {
+            access(x);
+            value[x] = flow;
+            pull(x);
+            parent[x] = y;
+        }
+
+        /**
+         * Cuts <code>x</code> from its parent.
+         *
+         * @return the flow of the loan to the parent.
+         */
+        long cut(final int x) {
+            access(x);
+            final long flow = value[x];
+
+            if (left[x] >= 0) {
+                parent[left[x]] = -1;
+                left[x] = -1;
+            }
+
+            value[x] = INFINITY;
+            pull(x);
+            return flow;
+        }
+
+        int findRoot(final int x) {
+            access(x);
+            int y = x;
+
+            while (true) {
+                push(y);
+
+                if (left[y] < 0) {
+                    break;
+                }
+
+                y = left[y];
+            }
+
+            splay(y);
+            return y;
+        }
+
+        /**
+         * Returns the least flow on the path from <code>x</code> to its root.
+         */
+        long pathMinimum(final int x) {
+            access(x);
+            return minimum[x];
+        }
+
+        /**
+         * Adds to the flows on the path from <code>x</code> to its root.
+         */
+        void pathAdd(final int x, final long delta) {
+            access(x);
+            apply(x, delta);
+        }
+
+        void resetRoot(final int x) {
+            access(x);
+            value[x] = INFINITY;
+            pull(x);
+        }
+
+        /**
+         * Returns the node closest to the root of <code>x</code> whose loan
+         * to its parent has no flow left.
+         */
+        int findZero(final int x) {
+            access(x);
+            int y = x;
+
+            while (true) {
+                push(y);
+
+                if (left[y] >= 0 && minimum[left[y]] == 0L) {
+                    y = left[y];
+                } else if (value[y] == 0L) {
+                    break;
+                } else {
+                    y = right[y];
+                }
+            }
+
+            splay(y);
+            return y;
+        }
+
+        private void access(final int x) {
+            int last = -1;
+
+            for (int y = x; y >= 0; y = parent[y]) {
+                splay(y);
+                right[y] = last;
+                pull(y);
+                last = y;
+            }
+
+            splay(x);
+        }
+
+        private boolean isSplayRoot(final int x) {
+            final int p = parent[x];
+            return p < 0 || (left[p] != x && right[p] != x);
+        }
+
+        private void apply(final int x, final long delta) {
+            if (x >= 0) {
+                value[x] += delta;
+                minimum[x] += delta;
+                pending[x] += delta;
+            }
+        }
+
+        private void push(final int x) {
+            if (pending[x] != 0L) {
+                apply(left[x], pending[x]);
+                apply(right[x], pending[x]);
+                pending[x] = 0L;
+            }
+        }
+
+        private void pull(final int x) {
+            long m = value[x];
+
+            if (left[x] >= 0) {
+                m = Math.min(m, minimum[left[x]]);
+            }
+
+            if (right[x] >= 0) {
+                m = Math.min(m, minimum[right[x]]);
+            }
+
+            minimum[x] = m;
+        }
+
+        private void rotate(final int x) {
+            final int p = parent[x];
+            final int g = parent[p];
+            final boolean pIsSplayRoot = isSplayRoot(p);
+
+            if (left[p] == x) {
+                left[p] = right[x];
+
+                if (right[x] >= 0) {
+                    parent[right[x]] = p;
+                }
+
+                right[x] = p;
+            } else {
+                right[p] = left[x];
+
+                if (left[x] >= 0) {
+                    parent[left[x]] = p;
+                }
+
+                left[x] = p;
+            }
+
+            parent[p] = x;
+            parent[x] = g;
+
+            if (pIsSplayRoot == false) {
+                if (left[g] == p) {
+                    left[g] = x;
+                } else {
+                    right[g] = x;
+                }
+            }
+
+            pull(p);
+            pull(x);
+        }
+
+        private void splay(final int x) {
+            int top = 0;
+            path[top++] = x;
+
+            for (int y = x; isSplayRoot(y) == false; y = parent[y]) {
+                path[top++] = parent[y];
+            }
+
+            while (top > 0) {
+                push(path[--top]);
+            }
+
+            while (isSplayRoot(x) == false) {
+                final int p = parent[x];
+
+                if (isSplayRoot(p) == false) {
+                    final int g = parent[p];
+
+                    if ((left[g] == p) == (left[p] == x)) {
+                        rotate(p);
+                    } else {
+                        rotate(x);
+                    }
+                }
+
+                rotate(x);
+            }
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package net.coderodde.cskit.loan;
+
+import java.io.BufferedInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class implements a partial aggregate of net equities: a sparse map from
+ * account names to equities. As netting is a commutative sum, aggregates of
+ * disjoint parts of a loan log may be computed independently and merged.
+ * <p>
+ * A loan log is a text file with one loan per line, consisting of the lender,
+ * the borrower and the amount separated by white space. Account names are
+ * read byte by byte, and so should be ASCII.
+ * <p>
+ * The serialized form is the magic number {@link #MAGIC}, the amount of
+ * accounts as a variable-length integer, and for each account, in the order of
+ * names, the name in modified UTF-8 followed by the zigzag-encoded
+ * variable-length equity.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public class EquityAggregate {
+
+    static final int MAGIC = 0x4C514147;
+
+    private final Map<String, long[]> equities;
+
+    public EquityAggregate() {
+        this.equities = new HashMap<String, long[]>();
+    }
+
+    public void add(final String account, final long amount) {
+        long[] equity = equities.get(account);
+
+        if (equity == null) {
+            equities.put(account, new long[]{ amount });
+        } else {
+            equity[0] += amount;
+        }
+    }
+
+    /**
+     * Accounts a loan, as in {@link Node#connectTo(Node, long)}.
+     *
+     * @param lender the name of the lender.
+     * @param borrower the name of the borrower.
+     * @param amount the positive amount lent.
+     */
+    public void addLoan(final String lender,
+                        final String borrower,
+                        final long amount) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException(
+                    "Illegal amount given: " + amount);
+        }
+
+        if (lender.equals(borrower)) {
+            throw new IllegalArgumentException("Requesting a self-loop.");
+        }
+
+        add(lender, amount);
+        add(borrower, -amount);
+    }
+
+    /**
+     * Adds the equities of <code>other</code> to this aggregate.
+     *
+     * @param other the aggregate to merge.
+     */
+    public void merge(final EquityAggregate other) {
+        for (Map.Entry<String, long[]> entry : other.equities.entrySet()) {
+            add(entry.getKey(), entry.getValue()[0]);
+        }
+    }
+
+    public int size() {
+        return equities.size();
+    }
+
+    public long getEquity(final String account) {
+        long[] equity = equities.get(account);
+        return equity == null ? 0L : equity[0];
+    }
+
+    /**
+     * Returns the accounts of non-zero equity as nodes carrying their net
+     * equity, in the order of names.
+     *
+     * @return the input graph for the simplifiers.
+     */
+    public List<Node> toNodeList() {
+        String[] names = getSortedNames();
+        List<Node> nodeList = new ArrayList<Node>(names.length);
+
+        for (String name : names) {
+            final long equity = equities.get(name)[0];
+
+            if (equity != 0L) {
+                nodeList.add(new Node(name, equity));
+            }
+        }
+
+        return nodeList;
+    }
+
+    public void writeTo(final OutputStream out) throws IOException {
+        DataOutputStream dos = new DataOutputStream(out);
+        write(dos);
+        dos.flush();
+    }
+
+    public static EquityAggregate readFrom(final InputStream in)
+    throws IOException {
+        return read(new DataInputStream(in));
+    }
+
+    /**
+     * Aggregates the loans of a loan log whose lines start at a byte offset
+     * within <code>[start, end)</code>. Splitting a log at any offsets thus
+     * assigns each line to exactly one part.
+     *
+     * @param file the loan log.
+     * @param start the first byte offset.
+     * @param end the byte offset past the part.
+     *
+     * @return the aggregate of the part.
+     */
+    public static EquityAggregate readLoanLog(final File file,
+                                              final long start,
+                                              final long end)
+    throws IOException {
+        EquityAggregate aggregate = new EquityAggregate();
+        FileInputStream fis = new FileInputStream(file);
+
+        try {
+            long position = Math.max(start - 1L, 0L);
+            fis.getChannel().position(position);
+            InputStream in = new BufferedInputStream(fis, 1 << 16);
+
+            if (start > 0L) {
+                // Skip the line containing the byte before 'start'.
+                int b;
+
+                do {
+                    b = in.read();
+                    ++position;
+                } while (b != -1 && b != '\n');
+            }
+
+            LineParser parser = new LineParser(in);
+
+            while (position < end && parser.next()) {
+                position += parser.getLineLength();
+
+                if (parser.isBlank() == false) {
+                    aggregate.addLoan(parser.getLender(),
+                                      parser.getBorrower(),
+                                      parser.getAmount());
+                }
+            }
+        } finally {
+            fis.close();
+        }
+
+        return aggregate;
+    }
+
+    private String[] getSortedNames() {
+        String[] names = equities.keySet().toArray(new String[0]);
+        Arrays.sort(names);
+        return names;
+    }
+
+    private void write(final DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        VarInts.writeUnsigned(out, equities.size());
+
+        for (String name : getSortedNames()) {
+            out.writeUTF(name);
+            VarInts.writeSigned(out, equities.get(name)[0]);
+        }
+    }
+
+    private static EquityAggregate read(final DataInput in)
+    throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not an equity aggregate.");
+        }
+
+        EquityAggregate aggregate = new EquityAggregate();
+        final long size = VarInts.readUnsigned(in);
+
+        for (long i = 0L; i < size; ++i) {
+            String name = in.readUTF();
+            aggregate.add(name, VarInts.readSigned(in));
+        }
+
+        return aggregate;
+    }
+
+    /**
+     * Parses a loan log line by line.
+     */
+    static final class LineParser {
+
+        private final InputStream in;
+        private final StringBuilder[] fields;
+        private int fieldAmount;
+        private long lineLength;
+        private long lineNumber;
+
+        LineParser(final InputStream in) {
+            this.in = in;
+            this.fields = new StringBuilder[]{ new StringBuilder(),
+                                               new StringBuilder(),
+                                               new StringBuilder() };
+        }
+
+        /**
+         * Reads the next line.
+         *
+         * @return <code>false</code> at the end of the input.
+         */
+        boolean next() throws IOException {
+            for (StringBuilder field : fields) {
+                field.setLength(0);
+            }
+
+            fieldAmount = 0;
+            lineLength = 0L;
+            ++lineNumber;
+
+            boolean inField = false;
+            int b;
+
+            while ((b = in.read()) != -1) {
+                ++lineLength;
+
+                if (b == '\n') {
+                    break;
+                }
+
+                if (b == ' ' || b == '\t' || b == '\r') {
+                    inField = false;
+                    continue;
+                }
+
+                if (inField == false) {
+                    if (fieldAmount == fields.length) {
+                        throw malformed();
+                    }
+
+                    ++fieldAmount;
+                    inField = true;
+                }
+
+                fields[fieldAmount - 1].append((char) b);
+            }
+
+            if (fieldAmount != 0 && fieldAmount != fields.length) {
+                throw malformed();
+            }
+
+            return lineLength > 0L;
+        }
+
+        long getLineLength() {
+            return lineLength;
+        }
+
+        boolean isBlank() {
+            return fieldAmount == 0;
+        }
+
+        String getLender() {
+            return fields[0].toString();
+        }
+
+        String getBorrower() {
+            return fields[1].toString();
+        }
+
+        long getAmount() throws IOException {
+            try {
+                return Long.parseLong(fields[2].toString());
+            } catch (NumberFormatException ex) {
+                throw malformed();
+            }
+        }
+
+        private IOException malformed() {
+            return new IOException("Malformed loan in line " + lineNumber);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package net.coderodde.cskit.loan;
+
+/**
+ * This class implements operations on zero-sum groups of nodes kept in
+ * parallel arrays of output nodes and absolute equities, as used by the
+ * group-finding simplifiers.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+final class EquityGroups {
+
+    private EquityGroups() {}
+
+    /**
+     * Links a zero-sum group. Only indexed nodes get linked, and their
+     * equities are consumed.
+     *
+     * @param positiveIndices the ascending indices of positive nodes.
+     * @param positiveSize the amount of positive indices.
+     * @param negativeIndices the ascending indices of negative nodes.
+     * @param positiveNodes the output nodes with positive equity.
+     * @param negativeNodes the output nodes with negative equity.
+     * @param positiveEquities the equities of positive nodes.
+     * @param negativeEquities the negated equities of negative nodes.
+     */
+    static void link(int[] positiveIndices,
+                     int positiveSize,
+                     int[] negativeIndices,
+                     Node[] positiveNodes,
+                     Node[] negativeNodes,
+                     long[] positiveEquities,
+                     long[] negativeEquities) {
+        int pi = 0;
+        int ni = 0;
+        int p = positiveIndices[0];
+        int n = negativeIndices[0];
+
+        while (pi < positiveSize) {
+            if (positiveEquities[p] > negativeEquities[n]) {
+                positiveNodes[p].connectTo(negativeNodes[n],
+                                           negativeEquities[n]);
+                positiveEquities[p] -= negativeEquities[n];
+                n = negativeIndices[++ni];
+            } else if (positiveEquities[p] < negativeEquities[n]) {
+                positiveNodes[p].connectTo(negativeNodes[n],
+                                           positiveEquities[p]);
+                negativeEquities[n] -= positiveEquities[p];
+                p = positiveIndices[++pi];
+            } else {
+                positiveNodes[p].connectTo(negativeNodes[n],
+                                           positiveEquities[p]);
+                ++pi;
+                ++ni;
+
+                if (pi < positiveSize) {
+                    p = positiveIndices[pi];
+                    n = negativeIndices[ni];
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the indexed entries by shifting the rest towards the beginning
+     * of the arrays, keeping their relative order.
+     *
+     * @param indices the ascending indices to remove.
+     * @param size the amount of indices.
+     * @param nodes the node array.
+     * @param equities the equity array.
+     * @param amount the amount of entries in the arrays.
+     *
+     * @return the amount of entries after the removal.
+     */
+    static int remove(int[] indices,
+                      int size,
+                      Node[] nodes,
+                      long[] equities,
+                      int amount) {
+        int target = indices[0];
+
+        for (int i = 0; i < size; ++i) {
+            final int from = indices[i] + 1;
+            final int to = i + 1 < size ? indices[i + 1] : amount;
+
+            System.arraycopy(nodes, from, nodes, target, to - from);
+            System.arraycopy(equities, from, equities, target, to - from);
+            target += to - from;
+        }
+
+        return amount - size;
+    }
+}
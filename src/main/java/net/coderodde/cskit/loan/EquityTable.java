@@ -0,0 +1,16 @@
+package net.coderodde.cskit.loan;
+
+/**
+ * This interface defines the read access the simplification algorithms need
+ * from a loan graph: the amount of nodes and the equity of each node, nodes
+ * being identified by indices <tt>0, 1, ..., size() - 1</tt>.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public interface EquityTable {
+
+    int size();
+
+    long getEquity(int index);
+}
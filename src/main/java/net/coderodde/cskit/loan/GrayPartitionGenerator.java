@@ -0,0 +1,162 @@
+package net.coderodde.cskit.loan;
+
+/**
+ * This class generates all partitions of a set 0, 1, ..., N - 1 in a Gray code
+ * order: each call to {@link #inc()} moves exactly one element into another
+ * block.
+ * <p>
+ * A partition is encoded as a restricted growth string <tt>s</tt>, where
+ * <tt>s[i]</tt> is the block of element <tt>i</tt>. Following Ehrlich and
+ * Ruskey, each position <tt>i > 0</tt> runs through either
+ * <tt>0, m + 1, m, ..., 1</tt> or <tt>1, 2, ..., m + 1, 0</tt>, where
+ * <tt>m</tt> is the maximum of the preceding positions, and switches between
+ * the two sequences every time its prefix changes. As the sequences end at the
+ * value the other one starts from, only one position changes per step.
+ * <p>
+ * Each element carries a weight. The generator maintains the sum of weights
+ * and the amount of elements in each block, both updated in constant time per
+ * step, so that evaluating a partition requires no allocation.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public class GrayPartitionGenerator {
+
+    private final int n;
+    private final long[] weights;
+    private final int[] s;
+    private final int[] m;
+    private final boolean[] ascending;
+    private final long[] blockSums;
+    private final int[] blockSizes;
+    private int blocks;
+
+    public GrayPartitionGenerator(final long[] weights) {
+        check(weights.length);
+
+        this.n = weights.length;
+        this.weights = weights;
+        this.s = new int[n];
+        this.m = new int[n];
+        this.ascending = new boolean[n];
+        this.blockSums = new long[n];
+        this.blockSizes = new int[n];
+        reset();
+    }
+
+    /**
+     * Moves one element to another block.
+     *
+     * @return <code>true</code> if a new partition was generated;
+     * <code>false</code> if all partitions were already generated.
+     */
+    public boolean inc() {
+        for (int j = n - 1; j > 0; --j) {
+            final int next = nextBlock(j);
+
+            if (next < 0) {
+                continue;
+            }
+
+            move(j, next);
+
+            for (int i = j + 1; i < n; ++i) {
+                ascending[i] = !ascending[i];
+                m[i] = Math.max(m[i - 1], s[i - 1]);
+            }
+
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Rewinds this generator to the partition with a single block.
+     */
+    public void reset() {
+        long sum = 0L;
+
+        for (int i = 0; i < n; ++i) {
+            s[i] = 0;
+            m[i] = 0;
+            ascending[i] = false;
+            blockSums[i] = 0L;
+            blockSizes[i] = 0;
+            sum += weights[i];
+        }
+
+        blockSums[0] = sum;
+        blockSizes[0] = n;
+        blocks = 1;
+    }
+
+    /**
+     * Returns the restricted growth string of the current partition. The
+     * returned array is updated in place by {@link #inc()}.
+     *
+     * @return the block of each element.
+     */
+    public int[] getIndices() {
+        return s;
+    }
+
+    public int getBlockAmount() {
+        return blocks;
+    }
+
+    public long getBlockSum(final int block) {
+        return blockSums[block];
+    }
+
+    public int getBlockSize(final int block) {
+        return blockSizes[block];
+    }
+
+    /**
+     * Computes the block element <code>j</code> goes to next, or -1 if
+     * <code>j</code> has run through its sequence under the current prefix.
+     */
+    private int nextBlock(final int j) {
+        final int value = s[j];
+
+        if (ascending[j]) {
+            if (value == 0) {
+                return -1;
+            }
+
+            return value <= m[j] ? value + 1 : 0;
+        }
+
+        if (value == 0) {
+            return m[j] + 1;
+        }
+
+        return value > 1 ? value - 1 : -1;
+    }
+
+    private void move(final int element, final int block) {
+        final int from = s[element];
+        final long weight = weights[element];
+
+        blockSums[from] -= weight;
+
+        if (--blockSizes[from] == 0) {
+            --blocks;
+        }
+
+        blockSums[block] += weight;
+
+        if (blockSizes[block]++ == 0) {
+            ++blocks;
+        }
+
+        s[element] = block;
+    }
+
+    private void check(final int n) {
+        if (n < 1) {
+            throw new IllegalArgumentException("'n' < 1.");
+        }
+    }
+}
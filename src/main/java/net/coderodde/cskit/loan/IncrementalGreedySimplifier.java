@@ -0,0 +1,397 @@
+package net.coderodde.cskit.loan;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class implements a greedy combinatorial simplification that never
+ * restarts its enumeration. Zero-sum groups are searched in ascending order
+ * of their total size <tt>s</tt>, and for each size by the amount
+ * <tt>p</tt> of positive members, so that the groups found are smallest
+ * first. Each stage <tt>(p, s - p)</tt> puts the subsets of the side with
+ * fewer combinations into a hash index by sum, and looks up every subset of
+ * the other side.
+ * <p>
+ * Subsets are bit masks over the accounts, and settling a group only adds
+ * its members to the masks of removed accounts: index entries containing a
+ * removed account are dropped once a lookup meets them, and the enumeration
+ * skips such subsets and goes on. No match is missed this way, as removing
+ * accounts never creates a match among the subsets already passed. The
+ * work thus is one enumeration per stage, however many groups are found.
+ * <p>
+ * The masks limit both sides to {@link #MAX_SIDE} accounts.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+final class IncrementalGreedySimplifier {
+
+    /**
+     * The most accounts of either sign.
+     */
+    static final int MAX_SIDE = 63;
+
+    /**
+     * The most entries of an index. Larger stages are indexed in chunks,
+     * each chunk being looked up by a full enumeration of the other side.
+     */
+    static final int MAX_INDEX_ENTRIES = 1 << 22;
+
+    private static final int POSITIVE = 0;
+    private static final int NEGATIVE = 1;
+
+    private final Node[][] nodes = new Node[2][];
+    private final long[][] equities = new long[2][];
+    private final long[] removed = new long[2];
+    private final int[] alive = new int[2];
+    private long states;
+    private long links;
+    private long linkNanos;
+
+    // The hash index: chains of entries by sum, -1 ending a chain.
+    private int[] table = new int[0];
+    private int[] next = new int[0];
+    private long[] sums = new long[0];
+    private long[] masks = new long[0];
+
+    private IncrementalGreedySimplifier(List<Node> positiveNodes,
+                                        List<Node> negativeNodes) {
+        load(POSITIVE, positiveNodes, 1L);
+        load(NEGATIVE, negativeNodes, -1L);
+    }
+
+    /**
+     * Tells whether both sides fit in the bit masks.
+     *
+     * @param positiveAmount the amount of positive accounts.
+     * @param negativeAmount the amount of negative accounts.
+     * @return <code>true</code> if the simplifier applies.
+     */
+    static boolean isApplicable(int positiveAmount, int negativeAmount) {
+        return positiveAmount <= MAX_SIDE && negativeAmount <= MAX_SIDE;
+    }
+
+    /**
+     * Simplifies a graph.
+     *
+     * @param nodeList the input graph.
+     * @return the simplified graph.
+     * @throws IllegalArgumentException if either side has more than
+     * {@link #MAX_SIDE} accounts.
+     */
+    static List<Node> simplify(List<Node> nodeList) {
+        final String NAME = "incrementalGreedySimplify";
+        final int N = nodeList.size();
+        final long partitionStart = SolverEvents.begin();
+        List<Node> positiveNodes = new ArrayList<Node>(N);
+        List<Node> negativeNodes = new ArrayList<Node>(N);
+        List<Node> resultNodeList = new ArrayList<Node>(N);
+
+        for (Node node : nodeList) {
+            if (node.getEquity() > 0L) {
+                positiveNodes.add(node);
+            } else if (node.getEquity() < 0L) {
+                negativeNodes.add(node);
+            } else {
+                resultNodeList.add(new Node(node));
+            }
+        }
+
+        if (isApplicable(positiveNodes.size(), negativeNodes.size())
+                == false) {
+            throw new IllegalArgumentException(
+                    "More than " + MAX_SIDE + " accounts of a sign.");
+        }
+
+        IncrementalGreedySimplifier simplifier =
+                new IncrementalGreedySimplifier(positiveNodes, negativeNodes);
+        SolverEvents.end(NAME, SolverPhase.PARTITION, N, 0L, partitionStart);
+
+        final long searchStart = SolverEvents.begin();
+        simplifier.run();
+        SolverEvents.end(NAME,
+                         SolverPhase.SEARCH,
+                         N,
+                         simplifier.states,
+                         searchStart,
+                         simplifier.linkNanos);
+
+        final long resultStart = SolverEvents.begin();
+        resultNodeList.addAll(Arrays.asList(simplifier.nodes[POSITIVE]));
+        resultNodeList.addAll(Arrays.asList(simplifier.nodes[NEGATIVE]));
+        SolverEvents.end(NAME, SolverPhase.RESULT, N, 0L, resultStart);
+        SolverEvents.report(NAME,
+                            SolverPhase.LINK,
+                            N,
+                            simplifier.links,
+                            simplifier.linkNanos);
+        return resultNodeList;
+    }
+
+    private void load(final int side,
+                      final List<Node> nodeList,
+                      final long sign) {
+        nodes[side] = new Node[nodeList.size()];
+        equities[side] = new long[nodeList.size()];
+        alive[side] = nodeList.size();
+
+        for (int i = 0; i < nodeList.size(); ++i) {
+            Node node = nodeList.get(i);
+            nodes[side][i] = new Node(node);
+            equities[side][i] = sign * node.getEquity();
+        }
+    }
+
+    private void run() {
+        for (int s = 2; alive[POSITIVE] > 0; ++s) {
+            if (s >= alive[POSITIVE] + alive[NEGATIVE]) {
+                // No smaller group is left; the rest is the last one.
+                settle(~removed[POSITIVE] & getAll(POSITIVE),
+                       ~removed[NEGATIVE] & getAll(NEGATIVE));
+                break;
+            }
+
+            for (int p = 1; p < s && p <= alive[POSITIVE]; ++p) {
+                if (s - p <= alive[NEGATIVE]) {
+                    runStage(p, s - p);
+                }
+            }
+        }
+    }
+
+    /**
+     * Settles every group of <code>positiveSize</code> positive and
+     * <code>negativeSize</code> negative accounts found.
+     */
+    private void runStage(final int positiveSize, final int negativeSize) {
+        final int[] sizes = { positiveSize, negativeSize };
+        final double positiveCombinations =
+                choose(alive[POSITIVE], positiveSize);
+        final double negativeCombinations =
+                choose(alive[NEGATIVE], negativeSize);
+        final int indexed = positiveCombinations < negativeCombinations ?
+                            POSITIVE :
+                            NEGATIVE;
+        final int probed = 1 - indexed;
+        final int[] indexedMembers = getAliveMembers(indexed);
+        final int[] probedMembers = getAliveMembers(probed);
+        final int capacity = (int) Math.min(
+                MAX_INDEX_ENTRIES,
+                Math.min(positiveCombinations, negativeCombinations));
+        ensureCapacity(capacity);
+
+        // The next combination to index, over the alive members at start.
+        long chunkStart = (1L << sizes[indexed]) - 1L;
+
+        while (chunkStart != 0L && alive[indexed] >= sizes[indexed]
+                                 && alive[probed] >= sizes[probed]) {
+            chunkStart = buildIndex(indexed,
+                                    indexedMembers,
+                                    chunkStart,
+                                    capacity);
+
+            long combination = (1L << sizes[probed]) - 1L;
+
+            while (combination != 0L && alive[probed] >= sizes[probed]) {
+                final long mask = expand(probedMembers, combination);
+                ++states;
+
+                if ((mask & removed[probed]) == 0L) {
+                    final long match =
+                            find(indexed, getSum(probed, mask));
+
+                    if (match != 0L) {
+                        if (indexed == POSITIVE) {
+                            settle(match, mask);
+                        } else {
+                            settle(mask, match);
+                        }
+                    }
+                }
+
+                combination = nextCombination(combination,
+                                              probedMembers.length);
+            }
+        }
+    }
+
+    /**
+     * Indexes up to <code>capacity</code> combinations of alive accounts
+     * starting from <code>combination</code>.
+     *
+     * @return the combination to start the next chunk from, or zero.
+     */
+    private long buildIndex(final int side,
+                            final int[] members,
+                            long combination,
+                            final int capacity) {
+        Arrays.fill(table, -1);
+        int size = 0;
+
+        while (combination != 0L && size < capacity) {
+            final long mask = expand(members, combination);
+            ++states;
+
+            if ((mask & removed[side]) == 0L) {
+                final long sum = getSum(side, mask);
+                final int bucket = getBucket(sum);
+
+                sums[size] = sum;
+                masks[size] = mask;
+                next[size] = table[bucket];
+                table[bucket] = size++;
+            }
+
+            combination = nextCombination(combination, members.length);
+        }
+
+        return combination;
+    }
+
+    /**
+     * Returns an indexed subset of alive accounts summing to
+     * <code>sum</code>, or zero if there is none. Entries with removed
+     * accounts are unlinked on the way.
+     */
+    private long find(final int side, final long sum) {
+        final int bucket = getBucket(sum);
+        int previous = -1;
+
+        for (int entry = table[bucket]; entry != -1; entry = next[entry]) {
+            if ((masks[entry] & removed[side]) != 0L) {
+                if (previous == -1) {
+                    table[bucket] = next[entry];
+                } else {
+                    next[previous] = next[entry];
+                }
+            } else if (sums[entry] == sum) {
+                return masks[entry];
+            } else {
+                previous = entry;
+            }
+        }
+
+        return 0L;
+    }
+
+    private void settle(final long positiveMask, final long negativeMask) {
+        final long linkStart = SolverEvents.begin();
+        final int[] positiveIndices = toIndices(positiveMask);
+        final int[] negativeIndices = toIndices(negativeMask);
+
+        EquityGroups.link(positiveIndices,
+                          positiveIndices.length,
+                          negativeIndices,
+                          nodes[POSITIVE],
+                          nodes[NEGATIVE],
+                          equities[POSITIVE],
+                          equities[NEGATIVE]);
+
+        removed[POSITIVE] |= positiveMask;
+        removed[NEGATIVE] |= negativeMask;
+        alive[POSITIVE] -= positiveIndices.length;
+        alive[NEGATIVE] -= negativeIndices.length;
+        linkNanos += SolverEvents.since(linkStart);
+        ++links;
+    }
+
+    private long getSum(final int side, long mask) {
+        final long[] values = equities[side];
+        long sum = 0L;
+
+        while (mask != 0L) {
+            sum += values[Long.numberOfTrailingZeros(mask)];
+            mask &= mask - 1L;
+        }
+
+        return sum;
+    }
+
+    private long getAll(final int side) {
+        return (1L << nodes[side].length) - 1L;
+    }
+
+    private int[] getAliveMembers(final int side) {
+        final int[] members = new int[alive[side]];
+        long mask = ~removed[side] & getAll(side);
+
+        for (int i = 0; mask != 0L; ++i) {
+            members[i] = Long.numberOfTrailingZeros(mask);
+            mask &= mask - 1L;
+        }
+
+        return members;
+    }
+
+    private void ensureCapacity(final int capacity) {
+        if (next.length < capacity) {
+            next = new int[capacity];
+            sums = new long[capacity];
+            masks = new long[capacity];
+        }
+
+        final int tableLength =
+                Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+
+        if (table.length != tableLength) {
+            table = new int[tableLength];
+        }
+    }
+
+    private int getBucket(final long sum) {
+        long hash = sum * 0x9E3779B97F4A7C15L;
+        return (int)(hash ^ (hash >>> 32)) & (table.length - 1);
+    }
+
+    /**
+     * Maps a combination over the positions of <code>members</code> to the
+     * mask of the members.
+     */
+    private static long expand(final int[] members, long combination) {
+        long mask = 0L;
+
+        while (combination != 0L) {
+            mask |= 1L << members[Long.numberOfTrailingZeros(combination)];
+            combination &= combination - 1L;
+        }
+
+        return mask;
+    }
+
+    /**
+     * Returns the next combination of as many of <code>n</code> bits, or zero
+     * after the last one.
+     */
+    private static long nextCombination(final long combination,
+                                        final int n) {
+        final long lowest = combination & -combination;
+        final long ripple = combination + lowest;
+        final long result =
+                ripple | (((ripple ^ combination) >>> 2)
+                          >>> Long.numberOfTrailingZeros(combination));
+
+        return ripple == 0L || (result >>> n) != 0L ? 0L : result;
+    }
+
+    private static int[] toIndices(long mask) {
+        final int[] indices = new int[Long.bitCount(mask)];
+
+        for (int i = 0; mask != 0L; ++i) {
+            indices[i] = Long.numberOfTrailingZeros(mask);
+            mask &= mask - 1L;
+        }
+
+        return indices;
+    }
+
+    private static double choose(final int n, final int k) {
+        double result = 1.0;
+
+        for (int i = 0; i < k; ++i) {
+            result = result * (n - i) / (i + 1);
+        }
+
+        return result;
+    }
+}
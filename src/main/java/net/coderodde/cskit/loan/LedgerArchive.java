@@ -0,0 +1,380 @@
+package net.coderodde.cskit.loan;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+/**
+ * This class implements a read-only archive of loans over accounts
+ * <tt>0, 1, ..., getAccountAmount() - 1</tt>, as written by
+ * {@link LedgerArchiveWriter}. The loans are sorted by lender and borrower
+ * and split into blocks, each of which decodes on its own, so that blocks may
+ * be read in parallel.
+ * <p>
+ * The format is the magic number {@link #MAGIC}, the amount of accounts, the
+ * amount of blocks, for each block the amount of its loans, its length in
+ * bytes and its CRC-32, and then the blocks. A loan is three variable-length
+ * integers: the lender less the previous lender, the borrower less the
+ * previous borrower if the lender is the same and the borrower itself
+ * otherwise, and the amount. Both previous accounts are zero at the start of
+ * a block.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public class LedgerArchive implements Closeable {
+
+    static final int MAGIC = 0x4C514C41;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final int accountAmount;
+    private final int[] blockLoans;
+    private final int[] blockLengths;
+    private final int[] checksums;
+    private final long[] blockOffsets;
+    private final long loanAmount;
+    private final int maxBlockLength;
+
+    /**
+     * Opens an archive and reads its block index.
+     *
+     * @param archiveFile the archive.
+     * @throws IOException if the file is not an archive.
+     */
+    public LedgerArchive(final File archiveFile) throws IOException {
+        DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(archiveFile)));
+
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a ledger archive.");
+            }
+
+            long headerLength = 4L;
+            accountAmount = (int) readBounded(in, Integer.MAX_VALUE);
+            final int blocks = (int) readBounded(in, Integer.MAX_VALUE);
+            headerLength += getLength(accountAmount) + getLength(blocks);
+
+            blockLoans = new int[blocks];
+            blockLengths = new int[blocks];
+            checksums = new int[blocks];
+            blockOffsets = new long[blocks];
+            long loans = 0L;
+            int maxLength = 0;
+
+            for (int b = 0; b < blocks; ++b) {
+                blockLoans[b] = (int) readBounded(in, Integer.MAX_VALUE);
+                blockLengths[b] = (int) readBounded(in, Integer.MAX_VALUE);
+                checksums[b] = in.readInt();
+                headerLength += getLength(blockLoans[b]) +
+                                getLength(blockLengths[b]) + 4;
+                loans += blockLoans[b];
+                maxLength = Math.max(maxLength, blockLengths[b]);
+            }
+
+            loanAmount = loans;
+            maxBlockLength = maxLength;
+
+            for (int b = 0; b < blocks; ++b) {
+                blockOffsets[b] = headerLength;
+                headerLength += blockLengths[b];
+            }
+
+            if (headerLength != archiveFile.length()) {
+                throw new IOException("The archive is truncated.");
+            }
+        } catch (EOFException ex) {
+            throw new IOException("The archive is truncated.", ex);
+        } finally {
+            in.close();
+        }
+
+        this.file = new RandomAccessFile(archiveFile, "r");
+        this.channel = file.getChannel();
+    }
+
+    public int getAccountAmount() {
+        return accountAmount;
+    }
+
+    public long getLoanAmount() {
+        return loanAmount;
+    }
+
+    public int getBlockAmount() {
+        return blockLoans.length;
+    }
+
+    public int getBlockLoanAmount(final int block) {
+        checkBlock(block);
+        return blockLoans[block];
+    }
+
+    /**
+     * Decodes the loans of a block.
+     *
+     * @param block the index of the block.
+     * @param sink the receiver of the loans.
+     * @throws IOException if the block is corrupt.
+     */
+    public void readBlock(final int block, final PaymentSink sink)
+    throws IOException {
+        checkBlock(block);
+        new BlockDecoder(maxBlockLength).decode(block, sink, null);
+    }
+
+    /**
+     * Decodes all loans in order.
+     *
+     * @param sink the receiver of the loans.
+     * @throws IOException if a block is corrupt.
+     */
+    public void readAll(final PaymentSink sink) throws IOException {
+        BlockDecoder decoder = new BlockDecoder(maxBlockLength);
+
+        for (int b = 0; b < blockLoans.length; ++b) {
+            decoder.decode(b, sink, null);
+        }
+    }
+
+    /**
+     * Nets the loans into the equities of the accounts without building a
+     * graph.
+     *
+     * @return the equities.
+     * @throws IOException if a block is corrupt.
+     */
+    public EquityTable readEquities() throws IOException {
+        long[] equities = new long[accountAmount];
+        BlockDecoder decoder = new BlockDecoder(maxBlockLength);
+
+        for (int b = 0; b < blockLoans.length; ++b) {
+            decoder.decode(b, null, equities);
+        }
+
+        return new ArrayEquityTable(equities);
+    }
+
+    /**
+     * Nets the loans into the equities of the accounts, each of
+     * <code>parts</code> tasks decoding a range of the blocks into an array
+     * of its own. The arrays are summed at the end.
+     *
+     * @param executor the executor running the tasks.
+     * @param parts the amount of tasks.
+     * @return the equities.
+     * @throws IOException if a block is corrupt.
+     */
+    public EquityTable readEquities(final ExecutorService executor,
+                                    final int parts) throws IOException {
+        if (parts < 1) {
+            throw new IllegalArgumentException("Bad part amount: " + parts);
+        }
+
+        final int blocks = blockLoans.length;
+        final int taskAmount = Math.max(1, Math.min(parts, blocks));
+        final long[][] partials = new long[taskAmount][];
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(taskAmount);
+
+        for (int t = 0; t < taskAmount; ++t) {
+            final int task = t;
+
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException {
+                    final int from = (int)((long) blocks * task / taskAmount);
+                    final int to =
+                            (int)((long) blocks * (task + 1) / taskAmount);
+                    long[] equities = new long[accountAmount];
+                    BlockDecoder decoder = new BlockDecoder(maxBlockLength);
+
+                    for (int b = from; b < to; ++b) {
+                        decoder.decode(b, null, equities);
+                    }
+
+                    partials[task] = equities;
+                    return null;
+                }
+            });
+        }
+
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted.", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            } else if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+
+            throw new IllegalStateException(ex.getCause());
+        }
+
+        final long[] equities = partials[0];
+
+        for (int t = 1; t < taskAmount; ++t) {
+            final long[] partial = partials[t];
+            partials[t] = null;
+
+            for (int i = 0; i < accountAmount; ++i) {
+                equities[i] += partial[i];
+            }
+        }
+
+        return new ArrayEquityTable(equities);
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    private void checkBlock(final int block) {
+        if (block < 0 || block >= blockLoans.length) {
+            throw new IndexOutOfBoundsException(
+                    "Block index out of range: " + block);
+        }
+    }
+
+    private static long readBounded(final DataInputStream in, final long max)
+    throws IOException {
+        final long value = VarInts.readUnsigned(in);
+
+        if (value < 0L || value > max) {
+            throw new IOException("Value out of range: " + value);
+        }
+
+        return value;
+    }
+
+    /**
+     * Returns the amount of bytes a non-negative value takes as a
+     * variable-length integer.
+     */
+    private static int getLength(long value) {
+        int length = 1;
+
+        while ((value & ~0x7FL) != 0L) {
+            value >>>= 7;
+            ++length;
+        }
+
+        return length;
+    }
+
+    /**
+     * Reads and decodes blocks into a buffer of its own, so that a decoder
+     * may run in each thread.
+     */
+    private final class BlockDecoder {
+
+        private final byte[] buffer;
+        private final CRC32 crc = new CRC32();
+        private int position;
+
+        BlockDecoder(final int capacity) {
+            this.buffer = new byte[capacity];
+        }
+
+        /**
+         * Decodes a block, passing the loans to <code>sink</code> or, if it
+         * is <code>null</code>, adding them to <code>equities</code>.
+         */
+        void decode(final int block,
+                    final PaymentSink sink,
+                    final long[] equities) throws IOException {
+            final int length = blockLengths[block];
+            ByteBuffer target = ByteBuffer.wrap(buffer, 0, length);
+            long offset = blockOffsets[block];
+
+            while (target.hasRemaining()) {
+                final int read = channel.read(target, offset);
+
+                if (read < 0) {
+                    throw new IOException("The archive is truncated.");
+                }
+
+                offset += read;
+            }
+
+            crc.reset();
+            crc.update(buffer, 0, length);
+
+            if ((int) crc.getValue() != checksums[block]) {
+                throw new IOException("Block " + block + " is corrupt.");
+            }
+
+            position = 0;
+            long lender = 0L;
+            long borrower = 0L;
+
+            for (int i = blockLoans[block]; i > 0; --i) {
+                final long lenderDelta = next(length);
+                final long borrowerValue = next(length);
+                final long amount = next(length);
+
+                lender += lenderDelta;
+                borrower = lenderDelta == 0L ?
+                           borrower + borrowerValue :
+                           borrowerValue;
+
+                if (lender < 0L || lender >= accountAmount
+                        || borrower < 0L || borrower >= accountAmount
+                        || amount <= 0L) {
+                    throw new IOException("Block " + block +
+                                          " has a malformed loan.");
+                }
+
+                if (sink == null) {
+                    equities[(int) lender] += amount;
+                    equities[(int) borrower] -= amount;
+                } else {
+                    sink.pay((int) lender, (int) borrower, amount);
+                }
+            }
+
+            if (position != length) {
+                throw new IOException("Block " + block +
+                                      " has trailing bytes.");
+            }
+        }
+
+        /**
+         * Reads a variable-length integer as {@link VarInts} does.
+         */
+        private long next(final int length) throws IOException {
+            long value = 0L;
+
+            for (int shift = 0; shift < 64 && position < length; shift += 7) {
+                final int b = buffer[position++];
+                value |= (long)(b & 0x7F) << shift;
+
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+
+            throw new IOException("Malformed variable-length integer.");
+        }
+    }
+}
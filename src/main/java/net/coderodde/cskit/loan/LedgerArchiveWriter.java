@@ -0,0 +1,275 @@
+package net.coderodde.cskit.loan;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * This class collects loans and writes them in the format of
+ * {@link LedgerArchive}. As it is a {@link PaymentSink}, the edges of a plan
+ * or of a simplification may be archived directly. The loans are kept in
+ * memory until written, and are written sorted by lender and borrower, so
+ * that their order is not preserved.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public class LedgerArchiveWriter implements PaymentSink {
+
+    /**
+     * The default amount of loans in a block.
+     */
+    public static final int DEFAULT_BLOCK_LOANS = 1 << 16;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The most bytes a loan takes: two integers and a long as
+     * variable-length integers.
+     */
+    private static final int MAX_LOAN_BYTES = 5 + 5 + 10;
+
+    private final int accountAmount;
+    private int[] lenders;
+    private int[] borrowers;
+    private long[] amounts;
+    private int size;
+
+    /**
+     * Constructs an empty writer over the given amount of accounts.
+     *
+     * @param accountAmount the amount of accounts.
+     */
+    public LedgerArchiveWriter(final int accountAmount) {
+        if (accountAmount < 0) {
+            throw new IllegalArgumentException(
+                    "Illegal account amount: " + accountAmount);
+        }
+
+        this.accountAmount = accountAmount;
+        this.lenders = new int[INITIAL_CAPACITY];
+        this.borrowers = new int[INITIAL_CAPACITY];
+        this.amounts = new long[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Collects the edges of a plan.
+     *
+     * @param plan the plan.
+     * @return the writer.
+     */
+    public static LedgerArchiveWriter of(final SettlementPlan plan) {
+        LedgerArchiveWriter writer =
+                new LedgerArchiveWriter(plan.getAccountAmount());
+
+        for (int i = 0; i < plan.size(); ++i) {
+            writer.pay(plan.getFrom(i), plan.getTo(i), plan.getAmount(i));
+        }
+
+        return writer;
+    }
+
+    /**
+     * Collects the loans of an off-heap graph.
+     *
+     * @param graph the graph.
+     * @return the writer.
+     */
+    public static LedgerArchiveWriter of(final OffHeapLoanGraph graph) {
+        LedgerArchiveWriter writer = new LedgerArchiveWriter(graph.size());
+
+        for (long i = 0L; i < graph.getEdgeAmount(); ++i) {
+            writer.pay(graph.getLender(i),
+                       graph.getBorrower(i),
+                       graph.getAmount(i));
+        }
+
+        return writer;
+    }
+
+    @Override
+    public void pay(final int lender, final int borrower, final long amount) {
+        checkAccount(lender);
+        checkAccount(borrower);
+
+        if (amount <= 0) {
+            throw new IllegalArgumentException(
+                    "Illegal amount given: " + amount);
+        }
+
+        if (size == lenders.length) {
+            final int capacity = size << 1;
+            lenders = Arrays.copyOf(lenders, capacity);
+            borrowers = Arrays.copyOf(borrowers, capacity);
+            amounts = Arrays.copyOf(amounts, capacity);
+        }
+
+        lenders[size] = lender;
+        borrowers[size] = borrower;
+        amounts[size++] = amount;
+    }
+
+    /**
+     * Returns the amount of loans collected.
+     *
+     * @return the amount of loans.
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getAccountAmount() {
+        return accountAmount;
+    }
+
+    public void writeTo(final OutputStream out) throws IOException {
+        writeTo(out, DEFAULT_BLOCK_LOANS);
+    }
+
+    /**
+     * Writes the archive.
+     *
+     * @param out the output stream.
+     * @param blockLoans the most loans in a block.
+     */
+    public void writeTo(final OutputStream out, final int blockLoans)
+    throws IOException {
+        if (blockLoans < 1) {
+            throw new IllegalArgumentException(
+                    "Bad block size: " + blockLoans);
+        }
+
+        final int[] order = sort();
+        final int blocks = (int)(((long) size + blockLoans - 1) / blockLoans);
+        final byte[][] payloads = new byte[blocks][];
+        final int[] checksums = new int[blocks];
+        final byte[] buffer =
+                new byte[Math.min(size, blockLoans) * MAX_LOAN_BYTES];
+        CRC32 crc = new CRC32();
+
+        for (int b = 0; b < blocks; ++b) {
+            final int from = b * blockLoans;
+            final int to = (int) Math.min(size, (long) from + blockLoans);
+            final int length = encode(order, from, to, buffer);
+
+            payloads[b] = Arrays.copyOf(buffer, length);
+            crc.reset();
+            crc.update(buffer, 0, length);
+            checksums[b] = (int) crc.getValue();
+        }
+
+        DataOutputStream dos = new DataOutputStream(out);
+
+        dos.writeInt(LedgerArchive.MAGIC);
+        VarInts.writeUnsigned(dos, accountAmount);
+        VarInts.writeUnsigned(dos, blocks);
+
+        for (int b = 0; b < blocks; ++b) {
+            final int from = b * blockLoans;
+            final int to = (int) Math.min(size, (long) from + blockLoans);
+
+            VarInts.writeUnsigned(dos, to - from);
+            VarInts.writeUnsigned(dos, payloads[b].length);
+            dos.writeInt(checksums[b]);
+        }
+
+        for (byte[] payload : payloads) {
+            dos.write(payload);
+        }
+
+        dos.flush();
+    }
+
+    /**
+     * Returns the indices of the loans sorted by lender and borrower, by
+     * two passes of the stable counting sort.
+     */
+    private int[] sort() {
+        int[] order = new int[size];
+        int[] sorted = new int[size];
+        int[] starts = new int[accountAmount + 1];
+
+        for (int i = 0; i < size; ++i) {
+            order[i] = i;
+        }
+
+        for (int pass = 0; pass < 2; ++pass) {
+            final int[] keys = pass == 0 ? borrowers : lenders;
+            Arrays.fill(starts, 0);
+
+            for (int i = 0; i < size; ++i) {
+                ++starts[keys[i] + 1];
+            }
+
+            for (int i = 0; i < accountAmount; ++i) {
+                starts[i + 1] += starts[i];
+            }
+
+            for (int i = 0; i < size; ++i) {
+                final int loan = order[i];
+                sorted[starts[keys[loan]]++] = loan;
+            }
+
+            final int[] tmp = order;
+            order = sorted;
+            sorted = tmp;
+        }
+
+        return order;
+    }
+
+    /**
+     * Encodes the loans <code>order[from], ..., order[to - 1]</code> into
+     * <code>buffer</code>.
+     *
+     * @return the amount of bytes written.
+     */
+    private int encode(final int[] order,
+                       final int from,
+                       final int to,
+                       final byte[] buffer) {
+        int position = 0;
+        int previousLender = 0;
+        int previousBorrower = 0;
+
+        for (int i = from; i < to; ++i) {
+            final int loan = order[i];
+            final int lender = lenders[loan];
+            final int borrower = borrowers[loan];
+
+            position = put(buffer, position, lender - previousLender);
+            position = put(buffer,
+                           position,
+                           lender == previousLender ?
+                                   borrower - previousBorrower :
+                                   borrower);
+            position = put(buffer, position, amounts[loan]);
+            previousLender = lender;
+            previousBorrower = borrower;
+        }
+
+        return position;
+    }
+
+    /**
+     * Writes a variable-length integer as {@link VarInts} does.
+     */
+    private static int put(final byte[] buffer, int position, long value) {
+        while ((value & ~0x7FL) != 0L) {
+            buffer[position++] = (byte)((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    private void checkAccount(final int account) {
+        if (account < 0 || account >= accountAmount) {
+            throw new IndexOutOfBoundsException(
+                    "Account out of range: " + account);
+        }
+    }
+}
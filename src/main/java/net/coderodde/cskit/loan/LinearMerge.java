@@ -0,0 +1,114 @@
+package net.coderodde.cskit.loan;
+
+/**
+ * This class implements the two-pointer pass of the linear simplification as
+ * a state machine deciding one edge per step, so that the pass may be
+ * suspended between edges. The nodes of positive equity, in index order, are
+ * linked to the nodes of negative equity, in index order.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+final class LinearMerge {
+
+    private final EquityTable table;
+    private final int size;
+    private int positiveIndex;
+    private int negativeIndex;
+    private long positiveEquity;
+    private long negativeEquity;
+
+    LinearMerge(final EquityTable table) {
+        this.table = table;
+        this.size = table.size();
+        this.positiveIndex = nextIndex(-1, true);
+        this.negativeIndex = nextIndex(-1, false);
+        this.positiveEquity =
+                positiveIndex < size ? table.getEquity(positiveIndex) : 0L;
+        this.negativeEquity =
+                negativeIndex < size ? -table.getEquity(negativeIndex) : 0L;
+    }
+
+    /**
+     * Tells whether all edges have been decided.
+     *
+     * @return <code>true</code> if the pass is over.
+     */
+    boolean isDone() {
+        return positiveIndex == size;
+    }
+
+    /**
+     * Tells whether the equities do not sum up to zero, as seen so far: the
+     * negative equities ran out before the positive ones, or a negative
+     * equity is left over once the positive ones ran out.
+     *
+     * @return <code>true</code> if the pass cannot go on, or ended with a
+     * debtor left over.
+     */
+    boolean isImbalanced() {
+        return positiveIndex < size ?
+               negativeIndex == size :
+               negativeIndex < size;
+    }
+
+    /**
+     * Decides the next edge and passes it to <code>sink</code>.
+     *
+     * @param sink the receiver of the edge.
+     * @return <code>false</code> if the pass was already over.
+     * @throws IllegalStateException if the equities do not sum up to zero.
+     */
+    boolean next(final PaymentSink sink) {
+        if (positiveIndex == size) {
+            return false;
+        }
+
+        if (isImbalanced()) {
+            throw new IllegalStateException(
+                    "The equities of the input graph do not sum up to zero.");
+        }
+
+        if (positiveEquity > negativeEquity) {
+            sink.pay(positiveIndex, negativeIndex, negativeEquity);
+            positiveEquity -= negativeEquity;
+            advanceNegative();
+        } else {
+            sink.pay(positiveIndex, negativeIndex, positiveEquity);
+
+            if (positiveEquity < negativeEquity) {
+                negativeEquity -= positiveEquity;
+            } else {
+                advanceNegative();
+            }
+
+            positiveIndex = nextIndex(positiveIndex, true);
+            positiveEquity =
+                    positiveIndex < size ? table.getEquity(positiveIndex) : 0L;
+        }
+
+        return true;
+    }
+
+    private void advanceNegative() {
+        negativeIndex = nextIndex(negativeIndex, false);
+        negativeEquity =
+                negativeIndex < size ? -table.getEquity(negativeIndex) : 0L;
+    }
+
+    /**
+     * Returns the least index above <code>index</code> of a node with
+     * positive (or negative) equity, or <code>size</code> if there is none.
+     */
+    private int nextIndex(int index, final boolean positive) {
+        while (++index < size) {
+            final long equity = table.getEquity(index);
+
+            if (positive ? equity > 0L : equity < 0L) {
+                break;
+            }
+        }
+
+        return index;
+    }
+}
@@ -31,6 +31,18 @@ public class Node implements Iterable<Node> {
         this(copy.name);
     }
 
+    /**
+     * Constructs a node with no loans carrying the given equity, as when the
+     * loans of a ledger were netted elsewhere.
+     *
+     * @param name the name of the node.
+     * @param equity the net equity of the node.
+     */
+    Node(final String name, final long equity) {
+        this(name);
+        this.equity = equity;
+    }
+
     public String getName() {
         return name;
     }
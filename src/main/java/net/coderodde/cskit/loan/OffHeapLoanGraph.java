@@ -0,0 +1,190 @@
+package net.coderodde.cskit.loan;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * This class implements a loan graph whose node equities and loan records are
+ * held in direct byte buffers outside of the Java heap. Nodes are identified
+ * by indices <tt>0, 1, ..., size() - 1</tt>, and loans are appended to a log of
+ * fixed-size records split into chunks, so that the graph may hold more loans
+ * than a single buffer can address.
+ * <p>
+ * The graph implements {@link EquityTable}, so that the simplifiers may run on
+ * it without copying it into {@link Node} objects. After {@link #close()}, the
+ * buffers are dropped and any access throws {@link IllegalStateException}.
+ * Their memory is given back once they are collected; freeing them at once
+ * would let a reader still holding one touch freed memory.
+ * <p>
+ * A graph is not thread-safe. It should be confined to one thread at a time
+ * and handed over with a happens-before edge, such as submitting a task to an
+ * executor.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public class OffHeapLoanGraph implements EquityTable, Closeable {
+
+    private static final int NODE_CHUNK_BITS = 24;
+    private static final int NODES_PER_CHUNK = 1 << NODE_CHUNK_BITS;
+
+    private static final int EDGE_CHUNK_BITS = 20;
+    private static final int EDGES_PER_CHUNK = 1 << EDGE_CHUNK_BITS;
+
+    /**
+     * An edge record holds the lender and the borrower as <code>int</code>s
+     * and the amount as a <code>long</code>.
+     */
+    private static final int EDGE_BYTES = 16;
+
+    private final int nodeAmount;
+    private ByteBuffer[] equityChunks;
+    private ByteBuffer[] edgeChunks;
+    private long edgeAmount;
+
+    public OffHeapLoanGraph(final int nodeAmount) {
+        if (nodeAmount < 0) {
+            throw new IllegalArgumentException(
+                    "Illegal node amount: " + nodeAmount);
+        }
+
+        this.nodeAmount = nodeAmount;
+        this.equityChunks =
+                new ByteBuffer[(nodeAmount + NODES_PER_CHUNK - 1)
+                               >>> NODE_CHUNK_BITS];
+        this.edgeChunks = new ByteBuffer[1];
+
+        for (int i = 0; i < equityChunks.length; ++i) {
+            final int nodes = Math.min(NODES_PER_CHUNK,
+                                       nodeAmount - (i << NODE_CHUNK_BITS));
+            equityChunks[i] = allocate(nodes * 8);
+        }
+    }
+
+    /**
+     * Records a loan, as in {@link Node#connectTo(Node, long)}.
+     *
+     * @param lender the index of the lending node.
+     * @param borrower the index of the borrowing node.
+     * @param amount the positive amount lent.
+     */
+    public void connect(final int lender,
+                        final int borrower,
+                        final long amount) {
+        checkOpen();
+        checkIndex(lender);
+        checkIndex(borrower);
+
+        if (amount <= 0) {
+            throw new IllegalArgumentException(
+                    "Illegal amount given: " + amount);
+        }
+
+        if (lender == borrower) {
+            throw new IllegalArgumentException("Requesting a self-loop.");
+        }
+
+        final int chunk = (int)(edgeAmount >>> EDGE_CHUNK_BITS);
+
+        if (chunk == edgeChunks.length) {
+            ByteBuffer[] newEdgeChunks = new ByteBuffer[chunk << 1];
+            System.arraycopy(edgeChunks, 0, newEdgeChunks, 0, chunk);
+            edgeChunks = newEdgeChunks;
+        }
+
+        if (edgeChunks[chunk] == null) {
+            edgeChunks[chunk] = allocate(EDGES_PER_CHUNK * EDGE_BYTES);
+        }
+
+        final int offset =
+                (int)(edgeAmount & (EDGES_PER_CHUNK - 1)) * EDGE_BYTES;
+
+        edgeChunks[chunk].putInt(offset, lender)
+                         .putInt(offset + 4, borrower)
+                         .putLong(offset + 8, amount);
+        ++edgeAmount;
+
+        addEquity(lender, amount);
+        addEquity(borrower, -amount);
+    }
+
+    @Override
+    public int size() {
+        checkOpen();
+        return nodeAmount;
+    }
+
+    @Override
+    public long getEquity(final int index) {
+        checkOpen();
+        checkIndex(index);
+        return equityChunks[index >>> NODE_CHUNK_BITS]
+                .getLong((index & (NODES_PER_CHUNK - 1)) << 3);
+    }
+
+    public long getEdgeAmount() {
+        checkOpen();
+        return edgeAmount;
+    }
+
+    public int getLender(final long edge) {
+        return edgeChunk(edge).getInt(edgeOffset(edge));
+    }
+
+    public int getBorrower(final long edge) {
+        return edgeChunk(edge).getInt(edgeOffset(edge) + 4);
+    }
+
+    public long getAmount(final long edge) {
+        return edgeChunk(edge).getLong(edgeOffset(edge) + 8);
+    }
+
+    /**
+     * Drops the buffers of this graph. The memory is given back once the
+     * buffers are collected. Closing a closed graph does nothing.
+     */
+    @Override
+    public void close() {
+        equityChunks = null;
+        edgeChunks = null;
+    }
+
+    private void addEquity(final int index, final long amount) {
+        ByteBuffer chunk = equityChunks[index >>> NODE_CHUNK_BITS];
+        final int offset = (index & (NODES_PER_CHUNK - 1)) << 3;
+        chunk.putLong(offset, chunk.getLong(offset) + amount);
+    }
+
+    private ByteBuffer edgeChunk(final long edge) {
+        checkOpen();
+
+        if (edge < 0L || edge >= edgeAmount) {
+            throw new IndexOutOfBoundsException(
+                    "Edge index out of range: " + edge);
+        }
+
+        return edgeChunks[(int)(edge >>> EDGE_CHUNK_BITS)];
+    }
+
+    private static int edgeOffset(final long edge) {
+        return (int)(edge & (EDGES_PER_CHUNK - 1)) * EDGE_BYTES;
+    }
+
+    private static ByteBuffer allocate(final int bytes) {
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+
+    private void checkIndex(final int index) {
+        if (index < 0 || index >= nodeAmount) {
+            throw new IndexOutOfBoundsException(
+                    "Node index out of range: " + index);
+        }
+    }
+
+    private void checkOpen() {
+        if (equityChunks == null) {
+            throw new IllegalStateException("The graph is closed.");
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package net.coderodde.cskit.loan;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * This class runs the linear simplification in parallel. The two-pointer
+ * loop of {@link Algorithms#linearSimplify(EquityTable, PaymentSink)} merges
+ * the prefix sums of the positive equities with those of the negated
+ * negative equities: each step ends at the next prefix sum of either
+ * sequence, equal sums ending one step, and pays the difference to the
+ * previous one from the current creditor to the current debtor.
+ * <p>
+ * The prefix sums are computed by a parallel scan over blocks of accounts.
+ * The merge is then cut into parts of equal length along its diagonals,
+ * the state at each cut being found by the binary search of merge path, and
+ * each part is merged by a task of its own. The parts are concatenated in
+ * order, so that the plan equals that of the sequential pass.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public final class ParallelLinearSimplifier {
+
+    private ParallelLinearSimplifier() {}
+
+    /**
+     * Simplifies a graph.
+     *
+     * @param nodeList the input graph.
+     * @param executor the executor running the tasks.
+     * @param parts the amount of tasks of each stage.
+     * @return the plan over the indices of <code>nodeList</code>.
+     */
+    public static SettlementPlan settle(final List<Node> nodeList,
+                                        final ExecutorService executor,
+                                        final int parts) {
+        SettlementPlan plan =
+                new SettlementPlan(SettlementPlan.getNames(nodeList));
+        settle(ArrayEquityTable.of(nodeList), plan, executor, parts);
+        return plan;
+    }
+
+    /**
+     * Simplifies an equity table into a plan over its indices.
+     *
+     * @param table the equities of the input graph.
+     * @param plan the empty plan receiving the payments.
+     * @param executor the executor running the tasks.
+     * @param parts the amount of tasks of each stage.
+     * @throws IllegalStateException if the equities do not sum up to zero.
+     */
+    public static void settle(final EquityTable table,
+                              final SettlementPlan plan,
+                              final ExecutorService executor,
+                              final int parts) {
+        if (parts < 1) {
+            throw new IllegalArgumentException("Bad part amount: " + parts);
+        }
+
+        if (plan.getAccountAmount() != table.size()) {
+            throw new IllegalArgumentException(
+                    "The plan has " + plan.getAccountAmount() +
+                    " accounts, the table " + table.size() + ".");
+        }
+
+        final int N = table.size();
+        final int blocks = Math.max(1, Math.min(parts, N));
+
+        // Count and sum the positive and negative equities of each block.
+        final int[] positiveCounts = new int[blocks + 1];
+        final int[] negativeCounts = new int[blocks + 1];
+        final long[] positiveSums = new long[blocks + 1];
+        final long[] negativeSums = new long[blocks + 1];
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(blocks);
+
+        for (int b = 0; b < blocks; ++b) {
+            final int block = b;
+
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    final int end = getBlockStart(block + 1, blocks, N);
+
+                    for (int i = getBlockStart(block, blocks, N);
+                            i < end;
+                            ++i) {
+                        final long equity = table.getEquity(i);
+
+                        if (equity > 0L) {
+                            ++positiveCounts[block + 1];
+                            positiveSums[block + 1] += equity;
+                        } else if (equity < 0L) {
+                            ++negativeCounts[block + 1];
+                            negativeSums[block + 1] -= equity;
+                        }
+                    }
+
+                    return null;
+                }
+            });
+        }
+
+        runAll(executor, tasks);
+
+        for (int b = 0; b < blocks; ++b) {
+            positiveCounts[b + 1] += positiveCounts[b];
+            negativeCounts[b + 1] += negativeCounts[b];
+            positiveSums[b + 1] += positiveSums[b];
+            negativeSums[b + 1] += negativeSums[b];
+        }
+
+        if (positiveSums[blocks] != negativeSums[blocks]) {
+            throw new IllegalStateException(
+                    "The equities of the input graph do not sum up to zero.");
+        }
+
+        // Write the accounts and the prefix sums of each block.
+        final int P = positiveCounts[blocks];
+        final int M = negativeCounts[blocks];
+        final int[] creditors = new int[P];
+        final int[] debtors = new int[M];
+        final long[] credits = new long[P];
+        final long[] debts = new long[M];
+        tasks.clear();
+
+        for (int b = 0; b < blocks; ++b) {
+            final int block = b;
+
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    final int end = getBlockStart(block + 1, blocks, N);
+                    int p = positiveCounts[block];
+                    int m = negativeCounts[block];
+                    long credit = positiveSums[block];
+                    long debt = negativeSums[block];
+
+                    for (int i = getBlockStart(block, blocks, N);
+                            i < end;
+                            ++i) {
+                        final long equity = table.getEquity(i);
+
+                        if (equity > 0L) {
+                            credit += equity;
+                            creditors[p] = i;
+                            credits[p++] = credit;
+                        } else if (equity < 0L) {
+                            debt -= equity;
+                            debtors[m] = i;
+                            debts[m++] = debt;
+                        }
+                    }
+
+                    return null;
+                }
+            });
+        }
+
+        runAll(executor, tasks);
+
+        // Merge the prefix sums, each part from diagonal to diagonal.
+        final int length = P + M;
+        final int partAmount = Math.max(1, Math.min(parts, length));
+        final Slice[] slices = new Slice[partAmount];
+        tasks.clear();
+
+        for (int s = 0; s < partAmount; ++s) {
+            final int part = s;
+
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    slices[part] = merge(creditors,
+                                         credits,
+                                         debtors,
+                                         debts,
+                                         getBlockStart(part,
+                                                       partAmount,
+                                                       length),
+                                         getBlockStart(part + 1,
+                                                       partAmount,
+                                                       length));
+                    return null;
+                }
+            });
+        }
+
+        runAll(executor, tasks);
+
+        for (Slice slice : slices) {
+            plan.payAll(slice.from, slice.to, slice.amount, slice.size);
+        }
+    }
+
+    /**
+     * Merges the steps from the cut at <code>startDiagonal</code> to the cut
+     * at <code>endDiagonal</code>.
+     */
+    private static Slice merge(final int[] creditors,
+                               final long[] credits,
+                               final int[] debtors,
+                               final long[] debts,
+                               final int startDiagonal,
+                               final int endDiagonal) {
+        final long start = getCut(credits, debts, startDiagonal);
+        final long end = getCut(credits, debts, endDiagonal);
+        int i = upperBound(credits, start);
+        int j = upperBound(debts, start);
+        final int iEnd = upperBound(credits, end);
+        final int jEnd = upperBound(debts, end);
+        Slice slice = new Slice(Math.max(iEnd - i + jEnd - j, 1));
+        long previous = start;
+
+        while (i < iEnd || j < jEnd) {
+            final long next = Math.min(credits[i], debts[j]);
+            slice.add(creditors[i], debtors[j], next - previous);
+            previous = next;
+
+            if (credits[i] == next) {
+                ++i;
+            }
+
+            if (debts[j] == next) {
+                ++j;
+            }
+        }
+
+        return slice;
+    }
+
+    /**
+     * Returns the prefix sum the merge has reached after consuming
+     * <code>diagonal</code> elements of both sequences, or rather after the
+     * step consuming the last of them. The binary search of merge path
+     * finds how many of the elements are credits.
+     */
+    private static long getCut(final long[] credits,
+                               final long[] debts,
+                               final int diagonal) {
+        int low = Math.max(0, diagonal - debts.length);
+        int high = Math.min(diagonal, credits.length);
+
+        // Find the least 'i' with credits[i] > debts[diagonal - i - 1].
+        while (low < high) {
+            final int i = (low + high) >>> 1;
+
+            if (credits[i] <= debts[diagonal - i - 1]) {
+                low = i + 1;
+            } else {
+                high = i;
+            }
+        }
+
+        final int j = diagonal - low;
+        return Math.max(low == 0 ? 0L : credits[low - 1],
+                        j == 0 ? 0L : debts[j - 1]);
+    }
+
+    /**
+     * Returns the amount of elements of a strictly increasing array not
+     * greater than <code>value</code>.
+     */
+    private static int upperBound(final long[] array, final long value) {
+        int low = 0;
+        int high = array.length;
+
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+
+            if (array[mid] <= value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        return low;
+    }
+
+    private static int getBlockStart(final int block,
+                                     final int blocks,
+                                     final int length) {
+        return (int)((long) length * block / blocks);
+    }
+
+    private static void runAll(final ExecutorService executor,
+                               final List<Callable<Void>> tasks) {
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted.", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    /**
+     * The payments of a part.
+     */
+    private static final class Slice {
+
+        final int[] from;
+        final int[] to;
+        final long[] amount;
+        int size;
+
+        Slice(final int capacity) {
+            this.from = new int[capacity];
+            this.to = new int[capacity];
+            this.amount = new long[capacity];
+        }
+
+        void add(final int lender, final int borrower, final long value) {
+            from[size] = lender;
+            to[size] = borrower;
+            amount[size++] = value;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package net.coderodde.cskit.loan;
+
+import java.util.List;
+
+/**
+ * This class publishes the payments of the linear simplification of an
+ * equity table as they are decided, as
+ * {@link Algorithms#linearSimplify(EquityTable, PaymentSink)} does, but only
+ * as many as the subscriber has requested. The pass suspends whenever the
+ * demand runs out, and resumes on the thread of the next request, so that
+ * neither the plan nor a queue of payments is ever held in memory and the
+ * first payment is sent after scanning only up to the first account of
+ * either sign.
+ * <p>
+ * Every subscriber gets a pass of its own from the start of the table. The
+ * table must not change while a pass is running.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public class PaymentPublisher {
+
+    private final EquityTable table;
+
+    /**
+     * Constructs a publisher over an equity table.
+     *
+     * @param table the equities of the input graph.
+     */
+    public PaymentPublisher(final EquityTable table) {
+        if (table == null) {
+            throw new NullPointerException("The table is null.");
+        }
+
+        this.table = table;
+    }
+
+    /**
+     * Constructs a publisher over the equities of a graph, the accounts being
+     * the indices of <code>nodeList</code>.
+     *
+     * @param nodeList the input graph.
+     * @return the publisher.
+     */
+    public static PaymentPublisher of(final List<Node> nodeList) {
+        return new PaymentPublisher(ArrayEquityTable.of(nodeList));
+    }
+
+    /**
+     * Subscribes to the payments. The subscriber receives its subscription
+     * on the calling thread, and the payments once it requests them.
+     *
+     * @param subscriber the subscriber.
+     */
+    public void subscribe(final PaymentSubscriber subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("The subscriber is null.");
+        }
+
+        LinearSubscription subscription =
+                new LinearSubscription(subscriber, new LinearMerge(table));
+
+        subscriber.onSubscribe(subscription);
+        // Completes a pass with no payments without waiting for demand.
+        subscription.drain(0L);
+    }
+
+    /**
+     * The pass of a single subscriber. Only one thread at a time runs the
+     * pass; a request arriving meanwhile only adds to the demand, which the
+     * running thread picks up before leaving.
+     */
+    private static final class LinearSubscription
+    implements PaymentSubscription {
+
+        private final PaymentSubscriber subscriber;
+        private final LinearMerge merge;
+        private long demand;
+        private boolean draining;
+        private boolean terminated;
+        private Throwable error;
+        private volatile boolean cancelled;
+
+        LinearSubscription(final PaymentSubscriber subscriber,
+                           final LinearMerge merge) {
+            this.subscriber = subscriber;
+            this.merge = merge;
+        }
+
+        @Override
+        public void request(final long n) {
+            if (n <= 0L) {
+                synchronized (this) {
+                    if (error == null) {
+                        error = new IllegalArgumentException(
+                                "Non-positive request: " + n);
+                    }
+                }
+
+                drain(0L);
+            } else {
+                drain(n);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        /**
+         * Adds to the demand and runs the pass unless another thread is
+         * running it. The running thread stops draining in the same locked
+         * block that finds nothing left to do, so that a request either
+         * sees it draining and is picked up by it, or drains itself.
+         */
+        void drain(final long n) {
+            synchronized (this) {
+                demand = demand + n < 0L ? Long.MAX_VALUE : demand + n;
+
+                if (draining) {
+                    return;
+                }
+
+                draining = true;
+            }
+
+            try {
+                while (true) {
+                    final long budget;
+                    final Throwable failure;
+                    final boolean completed;
+
+                    synchronized (this) {
+                        if (terminated || cancelled) {
+                            draining = false;
+                            return;
+                        }
+
+                        if (error == null && merge.isImbalanced()) {
+                            error = new IllegalStateException(
+                                    "The equities of the input graph do " +
+                                    "not sum up to zero.");
+                        }
+
+                        failure = error;
+                        completed = failure == null && merge.isDone();
+
+                        if (failure == null && completed == false
+                                            && demand == 0L) {
+                            draining = false;
+                            return;
+                        }
+
+                        terminated = failure != null || completed;
+                        budget = demand;
+
+                        if (terminated) {
+                            draining = false;
+                        }
+                    }
+
+                    if (failure != null) {
+                        subscriber.onError(failure);
+                        return;
+                    }
+
+                    if (completed) {
+                        subscriber.onComplete();
+                        return;
+                    }
+
+                    long sent = 0L;
+
+                    while (sent < budget && cancelled == false
+                                         && merge.isDone() == false
+                                         && merge.isImbalanced() == false) {
+                        merge.next(subscriber);
+                        ++sent;
+                    }
+
+                    synchronized (this) {
+                        if (demand != Long.MAX_VALUE) {
+                            demand -= sent;
+                        }
+                    }
+                }
+            } catch (RuntimeException ex) {
+                abandon();
+                throw ex;
+            } catch (Error ex) {
+                abandon();
+                throw ex;
+            }
+        }
+
+        /**
+         * Abandons the pass after the subscriber threw.
+         */
+        private synchronized void abandon() {
+            cancelled = true;
+            draining = false;
+        }
+    }
+}
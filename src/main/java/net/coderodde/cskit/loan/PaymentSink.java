@@ -0,0 +1,23 @@
+package net.coderodde.cskit.loan;
+
+/**
+ * This interface defines a receiver of the edges of a simplified loan graph as
+ * they are decided by a simplification algorithm, nodes being identified by
+ * their indices in the input {@link EquityTable}.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public interface PaymentSink {
+
+    /**
+     * Receives an edge in which <code>lender</code> lends <code>amount</code>
+     * to <code>borrower</code>, as in {@link Node#connectTo(Node, long)}.
+     * Settling the edge means that the borrower pays the amount to the lender.
+     *
+     * @param lender the index of the lending node.
+     * @param borrower the index of the borrowing node.
+     * @param amount the positive amount.
+     */
+    void pay(int lender, int borrower, long amount);
+}
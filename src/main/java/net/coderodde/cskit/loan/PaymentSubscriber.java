@@ -0,0 +1,34 @@
+package net.coderodde.cskit.loan;
+
+/**
+ * This interface defines a receiver of the payments of a
+ * {@link PaymentPublisher}. The subscriber first receives its subscription,
+ * and then at most as many payments through
+ * {@link PaymentSink#pay(int, int, long)} as it has requested, followed by
+ * either {@link #onComplete()} or {@link #onError(Throwable)} unless it
+ * cancels. The callbacks are never called concurrently.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public interface PaymentSubscriber extends PaymentSink {
+
+    /**
+     * Receives the subscription before any other callback.
+     *
+     * @param subscription the subscription.
+     */
+    void onSubscribe(PaymentSubscription subscription);
+
+    /**
+     * Reports that the publisher failed. No callbacks follow.
+     *
+     * @param error the failure.
+     */
+    void onError(Throwable error);
+
+    /**
+     * Reports that all payments have been sent. No callbacks follow.
+     */
+    void onComplete();
+}
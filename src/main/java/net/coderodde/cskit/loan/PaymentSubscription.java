@@ -0,0 +1,27 @@
+package net.coderodde.cskit.loan;
+
+/**
+ * This interface defines the link between a {@link PaymentPublisher} and a
+ * {@link PaymentSubscriber}, through which the subscriber signals how many
+ * more payments it is ready to receive. Both methods may be called from any
+ * thread, including from within the callbacks of the subscriber.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public interface PaymentSubscription {
+
+    /**
+     * Adds to the amount of payments the subscriber is ready to receive. A
+     * total demand above <code>Long.MAX_VALUE</code> is unbounded.
+     *
+     * @param n the positive amount of further payments.
+     */
+    void request(long n);
+
+    /**
+     * Asks the publisher to stop sending payments. Payments may still arrive
+     * until the cancellation is seen, but no completion is signalled.
+     */
+    void cancel();
+}
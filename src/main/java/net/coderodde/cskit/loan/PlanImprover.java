@@ -0,0 +1,619 @@
+package net.coderodde.cskit.loan;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class post-optimizes settlement plans by local search. A plan linking
+ * every zero-sum group of accounts as a tree takes as many edges as there
+ * are accounts of non-zero equity less the amount of groups, so the search
+ * looks for partitions of the accounts into more zero-sum groups.
+ * <p>
+ * The groups start as the connected components of the plan. A group is
+ * <i>split</i> by extracting zero-sum subsets of two accounts, found by
+ * matching opposite equities, of three accounts, searched exhaustively in
+ * small groups and by sampling in large ones, and of four accounts in small
+ * groups. Until the time budget runs out, two random groups are then merged
+ * and split again. A move ending in three or more groups is an improvement,
+ * one ending in two groups a <i>swap</i> of accounts between them, which is
+ * accepted in order to move across plateaus, and one ending in a single
+ * group a <i>merge</i>, which is undone unless simulated annealing accepts
+ * it. Parallel restarts run the search from the same split groups with
+ * different random seeds, and the best partition wins. Each group is finally
+ * linked by the two-pointer pass of {@link Algorithms#linearSimplify()}.
+ * Without annealing, the search ends early once the moves stop improving.
+ * <p>
+ * The result never has more edges than the input plan, and implies the same
+ * equities.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public class PlanImprover {
+
+    /**
+     * Groups up to this size are searched for all zero-sum triples.
+     */
+    private static final int EXHAUSTIVE_TRIPLES = 512;
+
+    /**
+     * Groups up to this size are searched for all zero-sum quadruples.
+     */
+    private static final int EXHAUSTIVE_QUADRUPLES = 128;
+
+    /**
+     * The amount of random pairs tried, per account, in larger groups.
+     */
+    private static final int TRIPLE_SAMPLES_PER_ACCOUNT = 4;
+
+    /**
+     * Without annealing, the search stops as a local optimum after this
+     * many moves per group without an improvement.
+     */
+    private static final int STALLED_MOVES_PER_GROUP = 64;
+
+    private static final double INITIAL_TEMPERATURE = 0.5;
+
+    private final long budgetMillis;
+    private final boolean annealing;
+    private final int restarts;
+    private final long seed;
+
+    /**
+     * Constructs an improver running a single search without annealing.
+     *
+     * @param budgetMillis the time budget in milliseconds.
+     */
+    public PlanImprover(final long budgetMillis) {
+        this(budgetMillis, false, 1, 1L);
+    }
+
+    /**
+     * Constructs an improver.
+     *
+     * @param budgetMillis the time budget in milliseconds.
+     * @param annealing whether merges are accepted with the probability of
+     * simulated annealing.
+     * @param restarts the amount of searches run in parallel.
+     * @param seed the seed of the random moves.
+     */
+    public PlanImprover(final long budgetMillis,
+                        final boolean annealing,
+                        final int restarts,
+                        final long seed) {
+        if (budgetMillis < 0L) {
+            throw new IllegalArgumentException(
+                    "Illegal time budget: " + budgetMillis);
+        }
+
+        if (restarts < 1) {
+            throw new IllegalArgumentException(
+                    "Illegal amount of restarts: " + restarts);
+        }
+
+        this.budgetMillis = budgetMillis;
+        this.annealing = annealing;
+        this.restarts = restarts;
+        this.seed = seed;
+    }
+
+    /**
+     * Improves a plan.
+     *
+     * @param plan the plan to improve.
+     * @return the improved plan over the same accounts.
+     */
+    public SettlementPlan improve(final SettlementPlan plan) {
+        final long start = System.nanoTime();
+        final long deadline = start + budgetMillis * 1000000L;
+        final long[] equities = getEquities(plan);
+        final int nonZero = countNonZero(equities);
+        Random random = new Random(seed);
+        List<int[]> groups = new ArrayList<int[]>();
+
+        for (int[] component : getComponents(plan, equities)) {
+            if (System.nanoTime() < deadline) {
+                groups.addAll(split(component, equities, random));
+            } else {
+                groups.add(component);
+            }
+        }
+
+        SolverEvents.improved(toString(), nonZero - groups.size(), 0L);
+
+        if (restarts == 1) {
+            groups = search(groups, equities, random, start, deadline);
+        } else {
+            groups = searchInParallel(groups, equities, start, deadline);
+        }
+
+        SettlementPlan result = plan.emptyCopy();
+
+        for (int[] group : groups) {
+            link(group, equities, result);
+        }
+
+        return result.size() <= plan.size() ? result : plan;
+    }
+
+    @Override
+    public String toString() {
+        return "planImprover";
+    }
+
+    private List<int[]> searchInParallel(final List<int[]> groups,
+                                         final long[] equities,
+                                         final long start,
+                                         final long deadline) {
+        ExecutorService executor = Executors.newFixedThreadPool(restarts);
+        List<Future<List<int[]>>> futures =
+                new ArrayList<Future<List<int[]>>>(restarts);
+
+        try {
+            for (int i = 0; i < restarts; ++i) {
+                final Random random = new Random(seed + i);
+
+                futures.add(executor.submit(new Callable<List<int[]>>() {
+                    @Override
+                    public List<int[]> call() {
+                        return search(groups,
+                                      equities,
+                                      random,
+                                      start,
+                                      deadline);
+                    }
+                }));
+            }
+
+            List<int[]> best = groups;
+
+            for (Future<List<int[]>> future : futures) {
+                List<int[]> result = future.get();
+
+                if (result.size() > best.size()) {
+                    best = result;
+                }
+            }
+
+            return best;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return groups;
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException(ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Merges and splits random groups until the deadline.
+     *
+     * @return the partition of the most groups seen.
+     */
+    private List<int[]> search(final List<int[]> initial,
+                               final long[] equities,
+                               final Random random,
+                               final long start,
+                               final long deadline) {
+        final int nonZero = countNonZero(equities);
+        List<int[]> groups = new ArrayList<int[]>(initial);
+        List<int[]> best = initial;
+        long states = 0L;
+        long stalled = 0L;
+        long now;
+
+        while (groups.size() > 1 && (now = System.nanoTime()) < deadline) {
+            if (annealing == false
+                    && ++stalled > (long) STALLED_MOVES_PER_GROUP
+                                   * groups.size()) {
+                break;
+            }
+
+            final int a = random.nextInt(groups.size());
+            int b = random.nextInt(groups.size() - 1);
+
+            if (b >= a) {
+                ++b;
+            }
+
+            int[] merged = concatenate(groups.get(a), groups.get(b));
+            shuffle(merged, random);
+            List<int[]> parts = split(merged, equities, random);
+            final int delta = parts.size() - 2;
+            ++states;
+
+            if (delta < 0) {
+                if (annealing == false) {
+                    continue;
+                }
+
+                final double temperature =
+                        INITIAL_TEMPERATURE * (deadline - now)
+                                            / Math.max(deadline - start, 1L);
+
+                if (random.nextDouble() >= Math.exp(delta / temperature)) {
+                    continue;
+                }
+            }
+
+            // Remove the larger index first, the last group filling in.
+            removeGroup(groups, Math.max(a, b));
+            removeGroup(groups, Math.min(a, b));
+            groups.addAll(parts);
+
+            if (groups.size() > best.size()) {
+                stalled = 0L;
+                best = new ArrayList<int[]>(groups);
+                SolverEvents.improved(toString(),
+                                      nonZero - best.size(),
+                                      states);
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Splits a zero-sum group into zero-sum groups, extracting subsets of
+     * two, three and four accounts.
+     *
+     * @param group the accounts of the group.
+     * @param equities the equities of all accounts.
+     * @param random the source of the sampled pairs.
+     * @return the groups.
+     */
+    private static List<int[]> split(final int[] group,
+                                     final long[] equities,
+                                     final Random random) {
+        List<int[]> parts = new ArrayList<int[]>();
+        final int n = group.length;
+
+        if (n < 4) {
+            // Non-zero equities admit no zero-sum proper subset here.
+            parts.add(group);
+            return parts;
+        }
+
+        boolean[] removed = new boolean[n];
+        int alive = n;
+
+        // Pairs: match each equity with an unmatched opposite one.
+        Map<Long, Positions> unmatched = new HashMap<Long, Positions>();
+
+        for (int i = 0; i < n; ++i) {
+            final long value = equities[group[i]];
+            Positions opposite = unmatched.get(-value);
+
+            if (opposite != null && opposite.size > 0) {
+                final int j = opposite.pop();
+                removed[i] = removed[j] = true;
+                alive -= 2;
+                parts.add(new int[]{ group[j], group[i] });
+            } else {
+                Positions.get(unmatched, value).push(i);
+            }
+        }
+
+        // Triples: look up the negated sum of a pair.
+        if (alive >= 3) {
+            int[] rest = getAlive(removed, alive);
+            Map<Long, Positions> positions = new HashMap<Long, Positions>();
+
+            for (int i : rest) {
+                Positions.get(positions, equities[group[i]]).push(i);
+            }
+
+            if (rest.length <= EXHAUSTIVE_TRIPLES) {
+                for (int x = 0; x < rest.length; ++x) {
+                    for (int y = x + 1;
+                            y < rest.length && removed[rest[x]] == false;
+                            ++y) {
+                        if (removed[rest[y]] == false
+                                && extractTriple(group, equities, positions,
+                                                 removed, rest[x], rest[y],
+                                                 parts)) {
+                            alive -= 3;
+                        }
+                    }
+                }
+            } else {
+                final long samples =
+                        (long) TRIPLE_SAMPLES_PER_ACCOUNT * rest.length;
+
+                for (long s = 0L; s < samples && alive >= 3; ++s) {
+                    final int i = rest[random.nextInt(rest.length)];
+                    final int j = rest[random.nextInt(rest.length)];
+
+                    if (i != j
+                            && removed[i] == false
+                            && removed[j] == false
+                            && extractTriple(group, equities, positions,
+                                             removed, i, j, parts)) {
+                        alive -= 3;
+                    }
+                }
+            }
+        }
+
+        // Quadruples: look up the negated sum of a pair among earlier pairs.
+        if (alive >= 4 && alive <= EXHAUSTIVE_QUADRUPLES) {
+            int[] rest = getAlive(removed, alive);
+            int[] first = new int[rest.length * (rest.length - 1) / 2];
+            int[] second = new int[first.length];
+            int pairs = 0;
+            Map<Long, Positions> sums = new HashMap<Long, Positions>();
+
+            for (int x = 0; x < rest.length; ++x) {
+                for (int y = x + 1;
+                        y < rest.length && removed[rest[x]] == false;
+                        ++y) {
+                    final int i = rest[x];
+                    final int j = rest[y];
+
+                    if (removed[j]) {
+                        continue;
+                    }
+
+                    final long sum = equities[group[i]] + equities[group[j]];
+                    Positions opposite = sums.get(-sum);
+
+                    if (opposite != null) {
+                        for (int p = 0; p < opposite.size; ++p) {
+                            final int k = first[opposite.values[p]];
+                            final int l = second[opposite.values[p]];
+
+                            if (removed[k] == false && removed[l] == false
+                                    && k != i && k != j
+                                    && l != i && l != j) {
+                                removed[i] = removed[j] = true;
+                                removed[k] = removed[l] = true;
+                                alive -= 4;
+                                parts.add(new int[]{ group[k], group[l],
+                                                     group[i], group[j] });
+                                break;
+                            }
+                        }
+
+                        if (removed[i]) {
+                            break;
+                        }
+                    }
+
+                    first[pairs] = i;
+                    second[pairs] = j;
+                    Positions.get(sums, sum).push(pairs++);
+                }
+            }
+        }
+
+        if (alive > 0) {
+            int[] remainder = new int[alive];
+            int index = 0;
+
+            for (int i = 0; i < n; ++i) {
+                if (removed[i] == false) {
+                    remainder[index++] = group[i];
+                }
+            }
+
+            parts.add(remainder);
+        }
+
+        return parts;
+    }
+
+    /**
+     * Extracts the pair <code>i, j</code> with an account of the negated sum,
+     * if there is one.
+     *
+     * @return <code>true</code> if a triple was extracted.
+     */
+    private static boolean extractTriple(final int[] group,
+                                         final long[] equities,
+                                         final Map<Long, Positions> positions,
+                                         final boolean[] removed,
+                                         final int i,
+                                         final int j,
+                                         final List<int[]> parts) {
+        Positions candidates =
+                positions.get(-(equities[group[i]] + equities[group[j]]));
+
+        if (candidates == null) {
+            return false;
+        }
+
+        for (int p = 0; p < candidates.size; ++p) {
+            final int k = candidates.values[p];
+
+            if (k != i && k != j && removed[k] == false) {
+                removed[i] = removed[j] = removed[k] = true;
+                parts.add(new int[]{ group[i], group[j], group[k] });
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Links a zero-sum group by the linear simplification.
+     */
+    private static void link(final int[] group,
+                             final long[] equities,
+                             final SettlementPlan plan) {
+        long[] groupEquities = new long[group.length];
+
+        for (int i = 0; i < group.length; ++i) {
+            groupEquities[i] = equities[group[i]];
+        }
+
+        Algorithms.linearSimplify(new ArrayEquityTable(groupEquities),
+                                  new PaymentSink() {
+            @Override
+            public void pay(int lender, int borrower, long amount) {
+                plan.pay(group[lender], group[borrower], amount);
+            }
+        });
+    }
+
+    private static long[] getEquities(final SettlementPlan plan) {
+        long[] equities = new long[plan.getAccountAmount()];
+
+        for (int i = 0; i < plan.size(); ++i) {
+            equities[plan.getFrom(i)] += plan.getAmount(i);
+            equities[plan.getTo(i)] -= plan.getAmount(i);
+        }
+
+        return equities;
+    }
+
+    /**
+     * Returns the accounts of non-zero equity of each connected component of
+     * a plan.
+     */
+    private static List<int[]> getComponents(final SettlementPlan plan,
+                                             final long[] equities) {
+        final int N = equities.length;
+        int[] parents = new int[N];
+
+        for (int i = 0; i < N; ++i) {
+            parents[i] = i;
+        }
+
+        for (int i = 0; i < plan.size(); ++i) {
+            final int a = find(parents, plan.getFrom(i));
+            final int b = find(parents, plan.getTo(i));
+            parents[a] = b;
+        }
+
+        int[] sizes = new int[N];
+
+        for (int i = 0; i < N; ++i) {
+            if (equities[i] != 0L) {
+                ++sizes[find(parents, i)];
+            }
+        }
+
+        int[][] components = new int[N][];
+        List<int[]> result = new ArrayList<int[]>();
+
+        for (int i = 0; i < N; ++i) {
+            if (equities[i] != 0L) {
+                final int root = find(parents, i);
+
+                if (components[root] == null) {
+                    components[root] = new int[sizes[root]];
+                    result.add(components[root]);
+                    sizes[root] = 0;
+                }
+
+                components[root][sizes[root]++] = i;
+            }
+        }
+
+        return result;
+    }
+
+    private static int find(final int[] parents, int node) {
+        while (parents[node] != node) {
+            parents[node] = parents[parents[node]];
+            node = parents[node];
+        }
+
+        return node;
+    }
+
+    private static int countNonZero(final long[] equities) {
+        int count = 0;
+
+        for (long equity : equities) {
+            if (equity != 0L) {
+                ++count;
+            }
+        }
+
+        return count;
+    }
+
+    private static int[] getAlive(final boolean[] removed, final int alive) {
+        int[] result = new int[alive];
+        int index = 0;
+
+        for (int i = 0; i < removed.length; ++i) {
+            if (removed[i] == false) {
+                result[index++] = i;
+            }
+        }
+
+        return result;
+    }
+
+    private static int[] concatenate(final int[] a, final int[] b) {
+        int[] result = new int[a.length + b.length];
+        System.arraycopy(a, 0, result, 0, a.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
+    private static void shuffle(final int[] array, final Random random) {
+        for (int i = array.length - 1; i > 0; --i) {
+            final int j = random.nextInt(i + 1);
+            final int tmp = array[i];
+            array[i] = array[j];
+            array[j] = tmp;
+        }
+    }
+
+    private static void removeGroup(final List<int[]> groups,
+                                    final int index) {
+        final int[] last = groups.remove(groups.size() - 1);
+
+        if (index < groups.size()) {
+            groups.set(index, last);
+        }
+    }
+
+    /**
+     * A growable list of positions.
+     */
+    private static final class Positions {
+
+        int[] values = new int[2];
+        int size;
+
+        static Positions get(final Map<Long, Positions> map,
+                             final long key) {
+            Positions positions = map.get(key);
+
+            if (positions == null) {
+                positions = new Positions();
+                map.put(key, positions);
+            }
+
+            return positions;
+        }
+
+        void push(final int value) {
+            if (size == values.length) {
+                int[] newValues = new int[size << 1];
+                System.arraycopy(values, 0, newValues, 0, size);
+                values = newValues;
+            }
+
+            values[size++] = value;
+        }
+
+        int pop() {
+            return values[--size];
+        }
+    }
+}
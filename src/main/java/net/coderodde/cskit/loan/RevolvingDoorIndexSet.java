@@ -0,0 +1,179 @@
+package net.coderodde.cskit.loan;
+
+/**
+ * This class implements an index set which produces all non-empty index
+ * combinations of a weighted set, smaller combinations first. Combinations of
+ * the same size are produced in the revolving-door order (Algorithm R in
+ * Knuth's TAOCP 7.2.1.3), where one index leaves and one index enters the
+ * combination per step, which allows maintaining the sum of weights of the
+ * current combination in constant time.
+ * <p>
+ * The weights array is not copied. The caller may rearrange the array between
+ * the calls to {@link #reset(int)}, which makes the index set enumerate over
+ * the given prefix of the array.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public class RevolvingDoorIndexSet {
+
+    private final long[] weights;
+    private final int[] c;
+    private int n;
+    private int k;
+    private long sum;
+
+    public RevolvingDoorIndexSet(final long[] weights) {
+        this.weights = weights;
+        this.c = new int[weights.length + 3];
+        reset(weights.length);
+    }
+
+    /**
+     * Moves to the next combination.
+     *
+     * @return <code>true</code> if there is a new combination;
+     * <code>false</code> if all combinations were already produced.
+     */
+    public boolean inc() {
+        if (k > 0 && step()) {
+            return true;
+        }
+
+        if (k == n) {
+            return false;
+        }
+
+        ++k;
+        sum = 0L;
+
+        for (int j = 1; j <= k; ++j) {
+            c[j] = j - 1;
+            sum += weights[j - 1];
+        }
+
+        c[k + 1] = n;
+        c[k + 2] = n + 1;
+        return true;
+    }
+
+    /**
+     * Restarts the enumeration over the first <code>n</code> weights.
+     *
+     * @param n the amount of weights to enumerate over.
+     */
+    public void reset(final int n) {
+        if (n < 0 || n > weights.length) {
+            throw new IllegalArgumentException("Bad size: " + n);
+        }
+
+        this.n = n;
+        this.k = 0;
+        this.sum = 0L;
+    }
+
+    /**
+     * Returns the sum of weights of the current combination. Runs in
+     * <tt>O(1)</tt> - time.
+     *
+     * @return the sum of weights.
+     */
+    public long getSum() {
+        return sum;
+    }
+
+    public int getSize() {
+        return k;
+    }
+
+    /**
+     * Returns the <code>i</code>th smallest index of the current combination.
+     *
+     * @param i the rank of the index, between 0 and <code>getSize() - 1</code>.
+     * @return the index.
+     */
+    public int getIndex(final int i) {
+        return c[i + 1];
+    }
+
+    /**
+     * Copies the indices of the current combination, in ascending order, to
+     * the beginning of <code>indices</code>.
+     *
+     * @param indices the target array of at least <code>getSize()</code>
+     * entries.
+     */
+    public void loadIndices(final int[] indices) {
+        System.arraycopy(c, 1, indices, 0, k);
+    }
+
+    private boolean step() {
+        int j;
+
+        if ((k & 1) == 1) {
+            if (c[1] + 1 < c[2]) {
+                swap(c[1], c[1] + 1);
+                ++c[1];
+                return true;
+            }
+
+            j = 2;
+
+            if (j > k) {
+                return false;
+            }
+        } else {
+            if (c[1] > 0) {
+                swap(c[1], c[1] - 1);
+                --c[1];
+                return true;
+            }
+
+            j = 2;
+
+            if (tryIncrease(j)) {
+                return true;
+            }
+
+            ++j;
+        }
+
+        while (j <= k) {
+            // Try to decrease c[j]; here c[j] = c[j - 1] + 1.
+            if (c[j] >= j) {
+                swap(c[j], j - 2);
+                c[j] = c[j - 1];
+                c[j - 1] = j - 2;
+                return true;
+            }
+
+            ++j;
+
+            if (tryIncrease(j)) {
+                return true;
+            }
+
+            ++j;
+        }
+
+        return false;
+    }
+
+    /**
+     * Tries to increase c[j]; here c[j - 1] = j - 2.
+     */
+    private boolean tryIncrease(final int j) {
+        if (c[j] + 1 < c[j + 1]) {
+            swap(j - 2, c[j] + 1);
+            c[j - 1] = c[j];
+            ++c[j];
+            return true;
+        }
+
+        return false;
+    }
+
+    private void swap(final int leaving, final int entering) {
+        sum += weights[entering] - weights[leaving];
+    }
+}
@@ -0,0 +1,637 @@
+package net.coderodde.cskit.loan;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * This class benchmarks the algorithms on netted graphs of random equities,
+ * sweeping the amount of accounts, the ratio of duplicate equities and the
+ * range of amounts. The workloads are drawn from fixed seeds, so that runs are
+ * reproducible. Each run records the best time of the repeats, being the least
+ * disturbed by the JIT compiler and the collector, and their median, the bytes
+ * allocated and the edges of the result, and the peak heap usage.
+ * <p>
+ * Usage: <tt>ScalingBenchmark [OPTION VALUE]...</tt> with the options
+ * <ul>
+ * <li><tt>--algorithms</tt> the names of the algorithms, comma-separated,</li>
+ * <li><tt>--sizes</tt> the amounts of accounts,</li>
+ * <li><tt>--duplicates</tt> the ratios of duplicate equities,</li>
+ * <li><tt>--ranges</tt> the largest amounts,</li>
+ * <li><tt>--seeds</tt> the amount of workloads for each combination,</li>
+ * <li><tt>--repeats</tt> the amount of timed runs of each workload,</li>
+ * <li><tt>--budget</tt> the estimated milliseconds above which a run is
+ * skipped, as estimated by {@link SearchSpaceEstimator},</li>
+ * <li><tt>--csv</tt> and <tt>--json</tt> the report files,</li>
+ * <li><tt>--times</tt> <tt>false</tt> to leave the times out of the
+ * reports,</li>
+ * <li><tt>--baseline</tt> a CSV report to compare against,</li>
+ * <li><tt>--tolerance</tt> the allowed relative growth of the allocated
+ * bytes, and</li>
+ * <li><tt>--time-tolerance</tt> the allowed relative slowdown, which turns
+ * on the comparison of the times.</li>
+ * </ul>
+ * A run skipped for the budget is reported with the times, the bytes and the
+ * edges -1, and a time left out as -1. A run is a regression if it produces
+ * more edges than in the baseline, if it allocates more bytes by more than
+ * the tolerance and by more than {@link #NOISE_BYTES}, or if it is skipped
+ * while the baseline run is not. A run of the baseline missing from the
+ * current sweep is a regression as well, so the sweep must cover the
+ * baseline. These do not depend on the machine, as the times do, so the times
+ * are compared only if asked to, and only on the machine the baseline was
+ * recorded on: a workload is then a regression if on every seed the best
+ * time is slower than the time tolerance, more than three times the spread
+ * of the repeats of both runs, from the median to the best, and more than a
+ * millisecond. The program exits with status 1 if there are regressions.
+ * <p>
+ * The baseline <tt>benchmark/baseline.csv</tt> holds the default sweep
+ * without times. To check a change, run from the project directory
+ * <pre>
+ * mvn -q compile
+ * java -cp target/classes net.coderodde.cskit.loan.ScalingBenchmark \
+ *      --baseline benchmark/baseline.csv
+ * </pre>
+ * and to renew it after an intended change, run the same with
+ * <tt>--times false --csv benchmark/baseline.csv</tt> in place of
+ * <tt>--baseline</tt>. To compare the times as well, record a baseline with
+ * times on a quiet machine and compare against it there with
+ * <tt>--time-tolerance</tt>.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public class ScalingBenchmark {
+
+    private static final String CSV_HEADER =
+            "algorithm,accounts,duplicates,range,seed," +
+            "nanos,medianNanos,allocatedBytes,edges,peakHeapBytes";
+
+    /**
+     * Slowdowns below this are noise regardless of the tolerance.
+     */
+    private static final long NOISE_NANOS = 1000000L;
+
+    /**
+     * How many times the spread of the repeats a slowdown must exceed.
+     */
+    private static final double NOISE_SPREADS = 3.0;
+
+    /**
+     * Growths of the allocated bytes below this are noise regardless of the
+     * tolerance, such as of the lazy initialization of the JDK.
+     */
+    static final long NOISE_BYTES = 4096L;
+
+    public static void main(String... args) throws IOException {
+        String algorithms = "linearSimplify,subsetSumSimplify," +
+                            "sortedGreedyCombinatorialSimplify," +
+                            "greedyCombinatorialSimplify,partitionalSimplify";
+        String sizes = "8,12,16,32,128,1024";
+        String duplicates = "0,0.5";
+        String ranges = "100,1000000";
+        int seeds = 3;
+        int repeats = 5;
+        long budget = 2000L;
+        String csv = null;
+        String json = null;
+        boolean times = true;
+        String baseline = null;
+        double tolerance = 0.1;
+        double timeTolerance = -1.0;
+
+        if (args.length % 2 != 0) {
+            usage();
+        }
+
+        for (int i = 0; i < args.length; i += 2) {
+            final String option = args[i];
+            final String value = args[i + 1];
+
+            if (option.equals("--algorithms")) {
+                algorithms = value;
+            } else if (option.equals("--sizes")) {
+                sizes = value;
+            } else if (option.equals("--duplicates")) {
+                duplicates = value;
+            } else if (option.equals("--ranges")) {
+                ranges = value;
+            } else if (option.equals("--seeds")) {
+                seeds = Integer.parseInt(value);
+            } else if (option.equals("--repeats")) {
+                repeats = Integer.parseInt(value);
+            } else if (option.equals("--budget")) {
+                budget = Long.parseLong(value);
+            } else if (option.equals("--csv")) {
+                csv = value;
+            } else if (option.equals("--json")) {
+                json = value;
+            } else if (option.equals("--times")) {
+                times = Boolean.parseBoolean(value);
+            } else if (option.equals("--baseline")) {
+                baseline = value;
+            } else if (option.equals("--tolerance")) {
+                tolerance = Double.parseDouble(value);
+            } else if (option.equals("--time-tolerance")) {
+                timeTolerance = Double.parseDouble(value);
+            } else {
+                usage();
+            }
+        }
+
+        List<Result> results = new ArrayList<Result>();
+
+        for (String name : algorithms.split(",")) {
+            Algorithm algorithm = Algorithms.forName(name.trim());
+
+            for (String size : sizes.split(",")) {
+                for (String duplicate : duplicates.split(",")) {
+                    for (String range : ranges.split(",")) {
+                        for (int seed = 0; seed < seeds; ++seed) {
+                            Result result =
+                                    run(algorithm,
+                                        Integer.parseInt(size.trim()),
+                                        Double.parseDouble(duplicate.trim()),
+                                        Long.parseLong(range.trim()),
+                                        seed,
+                                        repeats,
+                                        budget);
+
+                            if (times == false) {
+                                result = result.withoutTimes();
+                            }
+
+                            System.out.println(result.toCsv());
+                            results.add(result);
+                        }
+                    }
+                }
+            }
+        }
+
+        if (csv != null) {
+            writeCsv(results, new File(csv));
+        }
+
+        if (json != null) {
+            writeJson(results, new File(json));
+        }
+
+        if (baseline != null) {
+            List<String> regressions =
+                    compare(results,
+                            readCsv(new File(baseline)),
+                            tolerance,
+                            timeTolerance);
+
+            for (String regression : regressions) {
+                System.err.println("Regression: " + regression);
+            }
+
+            if (regressions.isEmpty() == false) {
+                System.exit(1);
+            }
+        }
+    }
+
+    /**
+     * Benchmarks an algorithm on one workload.
+     *
+     * @return the result, skipped if the run is estimated to exceed the
+     * budget.
+     */
+    static Result run(final Algorithm algorithm,
+                      final int accounts,
+                      final double duplicates,
+                      final long range,
+                      final int seed,
+                      final int repeats,
+                      final long budgetMillis) {
+        final long workloadSeed = getSeed(accounts, duplicates, range, seed);
+        List<Node> nodeList =
+                Utilities.getRandomEquityGraph(accounts,
+                                               duplicates,
+                                               range,
+                                               new Random(workloadSeed));
+
+        if (new SearchSpaceEstimator(nodeList).estimateMillis(algorithm)
+                > budgetMillis) {
+            System.out.println("# Skipping " + algorithm + " on " +
+                               accounts + " accounts: over the budget.");
+            return new Result(algorithm.toString(),
+                              accounts,
+                              duplicates,
+                              range,
+                              workloadSeed,
+                              -1L,
+                              -1L,
+                              -1L,
+                              -1,
+                              -1L);
+        }
+
+        // Warm up.
+        algorithm.exec(nodeList);
+
+        long[] nanos = new long[Math.max(repeats, 1)];
+        long allocated = -1L;
+        int edges = 0;
+
+        // Collect the garbage of earlier runs, so that the peak is this one's.
+        System.gc();
+        resetPeakHeapUsage();
+
+        for (int i = 0; i < nanos.length; ++i) {
+            final long allocatedBefore = getAllocatedBytes();
+            final long ta = System.nanoTime();
+            List<Node> result = algorithm.exec(nodeList);
+            nanos[i] = System.nanoTime() - ta;
+            final long allocatedAfter = getAllocatedBytes();
+
+            if (allocatedBefore >= 0L && i == 0) {
+                allocated = allocatedAfter - allocatedBefore;
+            }
+
+            edges = Utilities.getEdgeAmount(result);
+        }
+
+        Arrays.sort(nanos);
+
+        return new Result(algorithm.toString(),
+                          accounts,
+                          duplicates,
+                          range,
+                          workloadSeed,
+                          nanos[0],
+                          nanos[nanos.length / 2],
+                          allocated,
+                          edges,
+                          getPeakHeapUsage());
+    }
+
+    /**
+     * Compares the results against a baseline.
+     *
+     * @param tolerance the allowed relative growth of the allocated bytes.
+     * @param timeTolerance the allowed relative slowdown, or a negative
+     * value not to compare the times.
+     * @return the descriptions of the regressions.
+     */
+    static List<String> compare(final List<Result> results,
+                                final List<Result> baseline,
+                                final double tolerance,
+                                final double timeTolerance) {
+        Map<String, Result> baselineMap = new HashMap<String, Result>();
+        List<String> regressions = new ArrayList<String>();
+        Map<String, int[]> timedWorkloads = new TreeMap<String, int[]>();
+        Map<String, StringBuilder> slowdowns =
+                new HashMap<String, StringBuilder>();
+
+        for (Result result : baseline) {
+            baselineMap.put(result.getKey(), result);
+        }
+
+        for (Result result : results) {
+            Result old = baselineMap.remove(result.getKey());
+
+            if (old == null || old.isSkipped()) {
+                continue;
+            }
+
+            if (result.isSkipped()) {
+                regressions.add(result.getKey() +
+                                ": skipped over the budget, was run");
+                continue;
+            }
+
+            if (result.edges > old.edges) {
+                regressions.add(result.getKey() + ": " + result.edges +
+                                " edges, was " + old.edges);
+            }
+
+            if (result.allocatedBytes >= 0L && old.allocatedBytes >= 0L
+                    && result.allocatedBytes >
+                       old.allocatedBytes * (1.0 + tolerance)
+                    && result.allocatedBytes - old.allocatedBytes
+                       > NOISE_BYTES) {
+                regressions.add(result.getKey() + ": " +
+                                result.allocatedBytes + " bytes, was " +
+                                old.allocatedBytes);
+            }
+
+            if (timeTolerance >= 0.0 && result.hasTimes() && old.hasTimes()) {
+                final String workload = result.getWorkloadKey();
+                final int[] counts = timedWorkloads.get(workload);
+
+                if (counts == null) {
+                    timedWorkloads.put(workload, new int[]{ 1, 0 });
+                    slowdowns.put(workload, new StringBuilder());
+                } else {
+                    ++counts[0];
+                }
+
+                if (isSlower(result, old, timeTolerance)) {
+                    ++timedWorkloads.get(workload)[1];
+                    slowdowns.get(workload).append(
+                            ", " + result.nanos / 1000 + " us, was " +
+                            old.nanos / 1000 + " us");
+                }
+            }
+        }
+
+        // A slowdown of a single seed is as likely noise of the process.
+        for (Map.Entry<String, int[]> entry : timedWorkloads.entrySet()) {
+            if (entry.getValue()[1] == entry.getValue()[0]) {
+                regressions.add(entry.getKey() + ": slower on every seed" +
+                                slowdowns.get(entry.getKey()));
+            }
+        }
+
+        for (Result old : baseline) {
+            if (baselineMap.containsKey(old.getKey())) {
+                regressions.add(old.getKey() + ": missing from this run");
+            }
+        }
+
+        return regressions;
+    }
+
+    /**
+     * Tells whether the best time of a run is slower than that of the
+     * baseline by more than the tolerance, than the noise of the repeats
+     * and than {@link #NOISE_NANOS}.
+     */
+    private static boolean isSlower(final Result result,
+                                    final Result old,
+                                    final double timeTolerance) {
+        final long slowdown = result.nanos - old.nanos;
+        final long spread = (result.medianNanos - result.nanos) +
+                            (old.medianNanos - old.nanos);
+
+        return slowdown > old.nanos * timeTolerance
+                && slowdown > NOISE_SPREADS * spread
+                && slowdown > NOISE_NANOS;
+    }
+
+    static void writeCsv(final List<Result> results, final File file)
+    throws IOException {
+        PrintWriter out = new PrintWriter(new FileWriter(file));
+
+        try {
+            out.println(CSV_HEADER);
+
+            for (Result result : results) {
+                out.println(result.toCsv());
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    static List<Result> readCsv(final File file) throws IOException {
+        BufferedReader in = new BufferedReader(new FileReader(file));
+        List<Result> results = new ArrayList<Result>();
+
+        try {
+            String line = in.readLine();
+
+            if (line == null || line.equals(CSV_HEADER) == false) {
+                throw new IOException("Not a benchmark report: " + file);
+            }
+
+            while ((line = in.readLine()) != null) {
+                if (line.length() != 0) {
+                    results.add(Result.parseCsv(line));
+                }
+            }
+        } finally {
+            in.close();
+        }
+
+        return results;
+    }
+
+    static void writeJson(final List<Result> results, final File file)
+    throws IOException {
+        PrintWriter out = new PrintWriter(new FileWriter(file));
+
+        try {
+            out.println("[");
+
+            for (int i = 0; i < results.size(); ++i) {
+                out.print("  " + results.get(i).toJson());
+                out.println(i + 1 < results.size() ? "," : "");
+            }
+
+            out.println("]");
+        } finally {
+            out.close();
+        }
+    }
+
+    private static long getSeed(final int accounts,
+                                final double duplicates,
+                                final long range,
+                                final int seed) {
+        long hash = 17L;
+        hash = 31L * hash + accounts;
+        hash = 31L * hash + Double.doubleToLongBits(duplicates);
+        hash = 31L * hash + range;
+        hash = 31L * hash + seed;
+        return hash;
+    }
+
+    /**
+     * Returns the bytes allocated by the current thread, as reported by the
+     * HotSpot extension of the thread bean, or -1 if not supported.
+     */
+    private static long getAllocatedBytes() {
+        Object bean = ManagementFactory.getThreadMXBean();
+
+        try {
+            Class<?> type = Class.forName("com.sun.management.ThreadMXBean");
+
+            if (type.isInstance(bean) == false) {
+                return -1L;
+            }
+
+            Method method = type.getMethod("getThreadAllocatedBytes",
+                                           long.class);
+            return (Long) method.invoke(bean,
+                                        Thread.currentThread().getId());
+        } catch (Exception ex) {
+            return -1L;
+        }
+    }
+
+    private static void resetPeakHeapUsage() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long getPeakHeapUsage() {
+        long sum = 0L;
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                sum += pool.getPeakUsage().getUsed();
+            }
+        }
+
+        return sum;
+    }
+
+    private static void usage() {
+        System.err.println(
+                "Usage: ScalingBenchmark [--algorithms A,B] [--sizes N,M] " +
+                "[--duplicates R,S] [--ranges X,Y] [--seeds K] " +
+                "[--repeats K] [--budget MS] [--csv FILE] [--json FILE] " +
+                "[--times false] [--baseline FILE] [--tolerance T] " +
+                "[--time-tolerance T]");
+        System.exit(1);
+    }
+
+    /**
+     * The measurements of one run.
+     */
+    static final class Result {
+
+        final String algorithm;
+        final int accounts;
+        final double duplicates;
+        final long range;
+        final long seed;
+        final long nanos;
+        final long medianNanos;
+        final long allocatedBytes;
+        final int edges;
+        final long peakHeapBytes;
+
+        Result(final String algorithm,
+               final int accounts,
+               final double duplicates,
+               final long range,
+               final long seed,
+               final long nanos,
+               final long medianNanos,
+               final long allocatedBytes,
+               final int edges,
+               final long peakHeapBytes) {
+            this.algorithm = algorithm;
+            this.accounts = accounts;
+            this.duplicates = duplicates;
+            this.range = range;
+            this.seed = seed;
+            this.nanos = nanos;
+            this.medianNanos = medianNanos;
+            this.allocatedBytes = allocatedBytes;
+            this.edges = edges;
+            this.peakHeapBytes = peakHeapBytes;
+        }
+
+        boolean isSkipped() {
+            return edges < 0;
+        }
+
+        boolean hasTimes() {
+            return nanos >= 0L && medianNanos >= 0L;
+        }
+
+        /**
+         * Returns this result with the times left out.
+         */
+        Result withoutTimes() {
+            return new Result(algorithm,
+                              accounts,
+                              duplicates,
+                              range,
+                              seed,
+                              -1L,
+                              -1L,
+                              allocatedBytes,
+                              edges,
+                              peakHeapBytes);
+        }
+
+        String getKey() {
+            return getWorkloadKey() + "," + seed;
+        }
+
+        /**
+         * Returns the key of the workload, common to all its seeds.
+         */
+        String getWorkloadKey() {
+            return algorithm + "," + accounts + "," + duplicates + "," +
+                   range;
+        }
+
+        String toCsv() {
+            return getKey() + "," + nanos + "," + medianNanos + "," +
+                   allocatedBytes + "," + edges + "," + peakHeapBytes;
+        }
+
+        String toJson() {
+            return String.format(Locale.ROOT,
+                                 "{\"algorithm\": \"%s\", " +
+                                 "\"accounts\": %d, " +
+                                 "\"duplicates\": %s, " +
+                                 "\"range\": %d, " +
+                                 "\"seed\": %d, " +
+                                 "\"nanos\": %d, " +
+                                 "\"medianNanos\": %d, " +
+                                 "\"allocatedBytes\": %d, " +
+                                 "\"edges\": %d, " +
+                                 "\"peakHeapBytes\": %d}",
+                                 algorithm,
+                                 accounts,
+                                 Double.toString(duplicates),
+                                 range,
+                                 seed,
+                                 nanos,
+                                 medianNanos,
+                                 allocatedBytes,
+                                 edges,
+                                 peakHeapBytes);
+        }
+
+        static Result parseCsv(final String line) throws IOException {
+            String[] fields = line.split(",");
+
+            if (fields.length != 10) {
+                throw new IOException("Malformed report line: " + line);
+            }
+
+            try {
+                return new Result(fields[0],
+                                  Integer.parseInt(fields[1]),
+                                  Double.parseDouble(fields[2]),
+                                  Long.parseLong(fields[3]),
+                                  Long.parseLong(fields[4]),
+                                  Long.parseLong(fields[5]),
+                                  Long.parseLong(fields[6]),
+                                  Long.parseLong(fields[7]),
+                                  Integer.parseInt(fields[8]),
+                                  Long.parseLong(fields[9]));
+            } catch (NumberFormatException ex) {
+                throw new IOException("Malformed report line: " + line);
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package net.coderodde.cskit.loan;
+
+/**
+ * This enumeration lists the search spaces of the algorithms known to
+ * {@link SearchSpaceEstimator}, each estimating the amount of states its
+ * algorithm explores from the amounts of nodes with positive and negative
+ * equity and the total equity.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+enum SearchSpace {
+
+    LINEAR(500.0, false) {
+        @Override
+        double estimateStates(int p, int n, long totalEquity) {
+            return p + n;
+        }
+    },
+
+    PARALLEL_LINEAR(500.0, false) {
+        @Override
+        double estimateStates(int p, int n, long totalEquity) {
+            return p + n;
+        }
+    },
+
+    SUBSET_SUM(1.0, false) {
+        @Override
+        double estimateStates(int p, int n, long totalEquity) {
+            if (SubsetSumSimplifier.isApplicable(totalEquity, p, n) == false) {
+                return p + n;
+            }
+
+            return (double) getGroups(p, n) * (p + n)
+                                            * ((totalEquity >>> 6) + 1);
+        }
+    },
+
+    SORTED_GREEDY(100.0, false) {
+        @Override
+        double estimateStates(int p, int n, long totalEquity) {
+            final int cap = SortedGreedySimplifier.MAX_INDEX_STATES;
+            return getGroups(p, n)
+                   * (Math.min(SearchSpaceEstimator.subsets(n), cap)
+                      + Math.min(SearchSpaceEstimator.subsets(p), cap));
+        }
+    },
+
+    INCREMENTAL_GREEDY(20.0, true) {
+        @Override
+        double estimateStates(int p, int n, long totalEquity) {
+            if (IncrementalGreedySimplifier.isApplicable(p, n) == false) {
+                return Double.POSITIVE_INFINITY;
+            }
+
+            // Each subset of a side is visited once for every group size.
+            return n * SearchSpaceEstimator.subsets(p)
+                 + p * SearchSpaceEstimator.subsets(n);
+        }
+    },
+
+    GREEDY(30.0, true) {
+        @Override
+        double estimateStates(int p, int n, long totalEquity) {
+            return SearchSpaceEstimator.subsets(p)
+                 * SearchSpaceEstimator.subsets(n);
+        }
+    },
+
+    PARTITIONAL(20.0, true) {
+        @Override
+        double estimateStates(int p, int n, long totalEquity) {
+            return SearchSpaceEstimator.bell(p) * SearchSpaceEstimator.bell(n);
+        }
+    },
+
+    PERMUTATIONAL(75.0, true) {
+        @Override
+        double estimateStates(int p, int n, long totalEquity) {
+            return SearchSpaceEstimator.factorial(p)
+                 * SearchSpaceEstimator.factorial(n);
+        }
+    };
+
+    private final double defaultNanosPerState;
+    private final boolean exhaustive;
+
+    private SearchSpace(final double defaultNanosPerState,
+                        final boolean exhaustive) {
+        this.defaultNanosPerState = defaultNanosPerState;
+        this.exhaustive = exhaustive;
+    }
+
+    /**
+     * Estimates the amount of states explored.
+     *
+     * @param p the amount of nodes with positive equity.
+     * @param n the amount of nodes with negative equity.
+     * @param totalEquity the sum of the positive equities.
+     * @return the estimated amount of states.
+     */
+    abstract double estimateStates(int p, int n, long totalEquity);
+
+    /**
+     * Returns the time per state assumed until measured.
+     *
+     * @return the nanoseconds per state.
+     */
+    double getDefaultNanosPerState() {
+        return defaultNanosPerState;
+    }
+
+    /**
+     * Tells whether the search grows so fast that it is measured on a small
+     * graph only.
+     *
+     * @return <code>true</code> for a fast-growing search.
+     */
+    boolean isExhaustive() {
+        return exhaustive;
+    }
+
+    private static int getGroups(final int p, final int n) {
+        return Math.max(1, Math.min(p, n));
+    }
+}
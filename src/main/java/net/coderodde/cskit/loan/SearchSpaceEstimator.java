@@ -0,0 +1,291 @@
+package net.coderodde.cskit.loan;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * This class estimates the work of the simplification algorithms on a given
+ * input graph from the amounts of nodes with positive and negative equity and
+ * the total equity, and chooses the best algorithm fitting a time budget.
+ * <p>
+ * The amount of states an algorithm explores is estimated from its
+ * {@link SearchSpace}: factorials for the permutational search, Bell numbers
+ * for the partitional search, subset counts for the greedy searches and the
+ * bit set table size for the subset-sum simplification. Multiplied by the
+ * time per state, this gives the estimated running time. Each estimator holds
+ * times per state of its own, preset and measured anew on the running machine
+ * by {@link #calibrate()}; an estimator of another graph may take them over
+ * by {@link #SearchSpaceEstimator(List, SearchSpaceEstimator)}.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public class SearchSpaceEstimator {
+
+    private static final int CALIBRATION_RUNS = 5;
+
+    private final int positiveAmount;
+    private final int negativeAmount;
+    private final long totalEquity;
+
+    /**
+     * The nanoseconds per state of each search space, by ordinal.
+     */
+    private double[] nanosPerState;
+
+    public SearchSpaceEstimator(final List<Node> nodeList) {
+        int positive = 0;
+        int negative = 0;
+        long total = 0L;
+
+        for (Node node : nodeList) {
+            if (node.getEquity() > 0L) {
+                ++positive;
+                total += node.getEquity();
+            } else if (node.getEquity() < 0L) {
+                ++negative;
+            }
+        }
+
+        this.positiveAmount = positive;
+        this.negativeAmount = negative;
+        this.totalEquity = total;
+        this.nanosPerState = getDefaultNanosPerState();
+    }
+
+    /**
+     * Constructs an estimator of a graph taking over the times per state of
+     * another estimator, as they are at the time of the call.
+     *
+     * @param nodeList the input graph.
+     * @param costs the estimator whose times per state to use.
+     */
+    public SearchSpaceEstimator(final List<Node> nodeList,
+                                final SearchSpaceEstimator costs) {
+        this(nodeList);
+        this.nanosPerState = costs.getNanosPerState().clone();
+    }
+
+    public SearchSpaceEstimator(final int positiveAmount,
+                                final int negativeAmount,
+                                final long totalEquity) {
+        this.positiveAmount = positiveAmount;
+        this.negativeAmount = negativeAmount;
+        this.totalEquity = totalEquity;
+        this.nanosPerState = getDefaultNanosPerState();
+    }
+
+    /**
+     * Constructs an estimator of the given amounts taking over the times per
+     * state of another estimator, as they are at the time of the call.
+     *
+     * @param positiveAmount the amount of nodes with positive equity.
+     * @param negativeAmount the amount of nodes with negative equity.
+     * @param totalEquity the sum of the positive equities.
+     * @param costs the estimator whose times per state to use, or
+     * <code>null</code> for the preset ones.
+     */
+    public SearchSpaceEstimator(final int positiveAmount,
+                                final int negativeAmount,
+                                final long totalEquity,
+                                final SearchSpaceEstimator costs) {
+        this(positiveAmount, negativeAmount, totalEquity);
+
+        if (costs != null) {
+            this.nanosPerState = costs.getNanosPerState().clone();
+        }
+    }
+
+    /**
+     * Estimates the amount of states <code>algorithm</code> explores.
+     *
+     * @param algorithm the algorithm.
+     * @return the estimated amount of states, or
+     * <code>Double.POSITIVE_INFINITY</code> for an unknown algorithm.
+     */
+    public double estimateStates(final Algorithm algorithm) {
+        final SearchSpace space = algorithm.getSearchSpace();
+
+        if (space == null) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        return space.estimateStates(positiveAmount,
+                                    negativeAmount,
+                                    totalEquity);
+    }
+
+    /**
+     * Estimates the running time of <code>algorithm</code>.
+     *
+     * @param algorithm the algorithm.
+     * @return the estimated time in milliseconds.
+     */
+    public double estimateMillis(final Algorithm algorithm) {
+        return estimateStates(algorithm) * getNanosPerState(algorithm) / 1e6;
+    }
+
+    /**
+     * Returns the time per state of <code>algorithm</code> used by this
+     * estimator.
+     *
+     * @param algorithm the algorithm.
+     * @return the nanoseconds per state, or
+     * <code>Double.POSITIVE_INFINITY</code> for an unknown algorithm.
+     */
+    public double getNanosPerState(final Algorithm algorithm) {
+        final SearchSpace space = algorithm.getSearchSpace();
+
+        if (space == null) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        return getNanosPerState()[space.ordinal()];
+    }
+
+    /**
+     * Chooses the first algorithm estimated to finish within the budget: the
+     * exact partitional search if it fits, and otherwise one of the heuristic
+     * subset-sum simplification, sorted greedy search, incremental greedy
+     * search and greedy search, in this order, falling back to the linear
+     * simplification. Only the partitional search is guaranteed to give the
+     * least edges; the heuristics are tried by their speed, and none of them
+     * is known to give fewer edges than the next.
+     *
+     * @param budgetMillis the time budget in milliseconds.
+     * @return the chosen algorithm.
+     */
+    public Algorithm choose(final long budgetMillis) {
+        Algorithm[] candidates = {
+            Algorithms.partitionalSimplify(),
+            Algorithms.subsetSumSimplify(),
+            Algorithms.sortedGreedyCombinatorialSimplify(),
+            Algorithms.incrementalGreedySimplify(),
+            Algorithms.greedyCombinatorialSimplify()
+        };
+
+        for (Algorithm algorithm : candidates) {
+            if (algorithm.getSearchSpace() == SearchSpace.SUBSET_SUM
+                    && SubsetSumSimplifier.isApplicable(totalEquity,
+                                                        positiveAmount,
+                                                        negativeAmount)
+                       == false) {
+                continue;
+            }
+
+            if (estimateMillis(algorithm) <= budgetMillis) {
+                return algorithm;
+            }
+        }
+
+        return Algorithms.linearSimplify();
+    }
+
+    /**
+     * Measures the time per state of each algorithm on random graphs, the
+     * exhaustive searches on a small graph and the others on a large one,
+     * and uses them in this estimator from then on.
+     */
+    public void calibrate() {
+        Random random = new Random(1L);
+        List<Node> small = Utilities.getRandomGraph(11, 0.4f, 30L, random);
+        List<Node> large = Utilities.getRandomGraph(60, 0.4f, 30L, random);
+        double[] measured = getNanosPerState().clone();
+
+        for (Algorithm algorithm : Algorithms.all()) {
+            final SearchSpace space = algorithm.getSearchSpace();
+
+            if (space == null) {
+                continue;
+            }
+
+            List<Node> nodeList = space.isExhaustive() ? small : large;
+            long best = Long.MAX_VALUE;
+
+            // The first runs warm up; the best run is taken.
+            for (int i = 0; i < CALIBRATION_RUNS; ++i) {
+                long ta = System.nanoTime();
+                algorithm.exec(nodeList);
+                best = Math.min(best, System.nanoTime() - ta);
+            }
+
+            double states =
+                    new SearchSpaceEstimator(nodeList).estimateStates(algorithm);
+            measured[space.ordinal()] = best / Math.max(states, 1.0);
+        }
+
+        synchronized (this) {
+            nanosPerState = measured;
+        }
+    }
+
+    private synchronized double[] getNanosPerState() {
+        return nanosPerState;
+    }
+
+    private static double[] getDefaultNanosPerState() {
+        final SearchSpace[] spaces = SearchSpace.values();
+        final double[] nanos = new double[spaces.length];
+
+        for (SearchSpace space : spaces) {
+            nanos[space.ordinal()] = space.getDefaultNanosPerState();
+        }
+
+        return nanos;
+    }
+
+    public static double factorial(final int n) {
+        double result = 1.0;
+
+        for (int i = 2; i <= n; ++i) {
+            result *= i;
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the Bell number, the amount of partitions of an
+     * <code>n</code>-element set.
+     *
+     * @param n the size of the set.
+     * @return the Bell number.
+     */
+    public static double bell(final int n) {
+        // Row i of the triangle of Stirling numbers; the sum of row n.
+        double[] row = new double[n + 1];
+        row[0] = 1.0;
+
+        for (int i = 1; i <= n; ++i) {
+            for (int j = i; j >= 1; --j) {
+                row[j] = row[j - 1] + j * row[j];
+            }
+
+            row[0] = 0.0;
+
+            if (Double.isInfinite(row[(i + 1) / 2])) {
+                // The rest of the rows only grow.
+                return Double.POSITIVE_INFINITY;
+            }
+        }
+
+        double sum = 0.0;
+
+        for (double stirling : row) {
+            sum += stirling;
+        }
+
+        return sum;
+    }
+
+    /**
+     * Returns the amount of non-empty subsets of an <code>n</code>-element
+     * set.
+     *
+     * @param n the size of the set.
+     * @return the amount of subsets.
+     */
+    public static double subsets(final int n) {
+        return Math.pow(2.0, n) - 1.0;
+    }
+}
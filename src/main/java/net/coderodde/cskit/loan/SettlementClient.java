@@ -0,0 +1,256 @@
+package net.coderodde.cskit.loan;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * This class implements a connection to a {@link SettlementServer}.
+ * Requests are sent with {@link #send(String, long[], int)}, which only
+ * buffers them, and their responses read in order with {@link #receive()};
+ * {@link #settle(String, long[])} does both. Requests may be pipelined, but
+ * as the server stops reading requests while the client is not reading the
+ * responses, which fill the socket buffers, the responses outstanding should
+ * stay within what the buffers hold, as in
+ * {@link #settleAll(String, List, int)}.
+ * <p>
+ * Usage: <tt>SettlementClient PORT ALGORITHM ACCOUNTS REQUESTS [WINDOW]</tt>
+ * sends random ledgers and prints the latency.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public class SettlementClient {
+
+    /**
+     * The most bytes of responses {@link #settleAll(String, List, int)} lets
+     * be outstanding, as bounded by the amounts of accounts. The socket
+     * buffers of the loopback interface hold this much on common systems.
+     */
+    public static final long MAX_OUTSTANDING_BYTES = 1 << 16;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private int outstanding;
+
+    public static void main(String... args) throws IOException {
+        if (args.length != 4 && args.length != 5) {
+            System.err.println(
+                    "Usage: SettlementClient PORT ALGORITHM ACCOUNTS " +
+                    "REQUESTS [WINDOW]");
+            System.exit(1);
+        }
+
+        final int accounts = Integer.parseInt(args[2]);
+        final int requests = Integer.parseInt(args[3]);
+        final int window = args.length == 5 ? Integer.parseInt(args[4]) : 1;
+        Random random = new Random(1L);
+        List<long[]> ledgers = new ArrayList<long[]>(requests);
+
+        for (int i = 0; i < requests; ++i) {
+            List<Node> nodeList =
+                    Utilities.getRandomEquityGraph(accounts, 0.0, 1000L,
+                                                   random);
+            long[] equities = new long[accounts];
+
+            for (int j = 0; j < accounts; ++j) {
+                equities[j] = nodeList.get(j).getEquity();
+            }
+
+            ledgers.add(equities);
+        }
+
+        SettlementClient client =
+                new SettlementClient(Integer.parseInt(args[0]));
+
+        try {
+            long ta = System.nanoTime();
+            List<SettlementPlan> plans =
+                    client.settleAll(args[1], ledgers, window);
+            long tb = System.nanoTime();
+            long edges = 0L;
+
+            for (SettlementPlan plan : plans) {
+                edges += plan.size();
+            }
+
+            System.out.println("Requests: " + requests + ", edges: " + edges);
+            System.out.println("Time: " + (tb - ta) / 1000000 + " ms, " +
+                               (tb - ta) / 1000 / requests +
+                               " us per request.");
+        } finally {
+            client.close();
+        }
+    }
+
+    /**
+     * Connects to a server on the loopback interface.
+     *
+     * @param port the port of the server.
+     */
+    public SettlementClient(final int port) throws IOException {
+        this.socket = new Socket(InetAddress.getByName(null), port);
+        this.socket.setTcpNoDelay(true);
+        this.in = new DataInputStream(
+                new BufferedInputStream(socket.getInputStream(),
+                                        BUFFER_SIZE));
+        this.out = new DataOutputStream(
+                new BufferedOutputStream(socket.getOutputStream(),
+                                         BUFFER_SIZE));
+        out.writeInt(SettlementServer.MAGIC);
+    }
+
+    /**
+     * Buffers a request.
+     *
+     * @param algorithm the name of the algorithm, or <tt>auto</tt>.
+     * @param equities the equities of the accounts.
+     * @param accountAmount the amount of accounts, a prefix of
+     * <code>equities</code>.
+     */
+    public void send(final String algorithm,
+                     final long[] equities,
+                     final int accountAmount) throws IOException {
+        if (accountAmount < 0
+                || accountAmount > equities.length
+                || accountAmount > SettlementServer.MAX_ACCOUNTS) {
+            throw new IllegalArgumentException(
+                    "Illegal account amount: " + accountAmount);
+        }
+
+        out.writeUTF(algorithm);
+        VarInts.writeUnsigned(out, accountAmount);
+
+        for (int i = 0; i < accountAmount; ++i) {
+            VarInts.writeSigned(out, equities[i]);
+        }
+
+        ++outstanding;
+    }
+
+    /**
+     * Sends the buffered requests.
+     */
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Reads the response to the oldest outstanding request, flushing the
+     * requests first.
+     *
+     * @return the plan over anonymous accounts.
+     * @throws IOException if the server failed the request.
+     */
+    public SettlementPlan receive() throws IOException {
+        if (outstanding == 0) {
+            throw new IllegalStateException("No outstanding requests.");
+        }
+
+        out.flush();
+        final byte status = in.readByte();
+        --outstanding;
+
+        if (status == SettlementServer.ERROR) {
+            throw new IOException("The server failed: " + in.readUTF());
+        } else if (status != SettlementServer.OK) {
+            throw new IOException("Bad status: " + status);
+        }
+
+        return SettlementPlan.readFrom(in);
+    }
+
+    public int getOutstanding() {
+        return outstanding;
+    }
+
+    /**
+     * Settles a ledger.
+     *
+     * @param algorithm the name of the algorithm, or <tt>auto</tt>.
+     * @param equities the equities of the accounts.
+     * @return the plan over anonymous accounts.
+     */
+    public SettlementPlan settle(final String algorithm,
+                                 final long[] equities) throws IOException {
+        send(algorithm, equities, equities.length);
+        return receive();
+    }
+
+    /**
+     * Settles ledgers, keeping up to <code>window</code> requests
+     * outstanding, and no more than their responses may take of
+     * {@link #MAX_OUTSTANDING_BYTES}. A response takes at most 16 bytes and
+     * 20 bytes for each account of its request, so that requests of more
+     * than about 3,000 accounts are sent one at a time.
+     *
+     * @param algorithm the name of the algorithm, or <tt>auto</tt>.
+     * @param ledgers the equities of the ledgers.
+     * @param window the largest amount of outstanding requests.
+     * @return the plans, in the order of the ledgers.
+     */
+    public List<SettlementPlan> settleAll(final String algorithm,
+                                          final List<long[]> ledgers,
+                                          final int window)
+    throws IOException {
+        if (window < 1) {
+            throw new IllegalArgumentException("Bad window: " + window);
+        }
+
+        if (outstanding != 0) {
+            throw new IllegalStateException(
+                    "Responses of earlier requests are outstanding.");
+        }
+
+        List<SettlementPlan> plans =
+                new ArrayList<SettlementPlan>(ledgers.size());
+        Deque<Long> responseBytes = new ArrayDeque<Long>();
+        long outstandingBytes = 0L;
+
+        for (long[] equities : ledgers) {
+            final long bytes = getMaxResponseBytes(equities.length);
+
+            while (outstanding == window
+                    || (outstanding > 0
+                        && outstandingBytes + bytes > MAX_OUTSTANDING_BYTES)) {
+                plans.add(receive());
+                outstandingBytes -= responseBytes.removeFirst();
+            }
+
+            send(algorithm, equities, equities.length);
+            responseBytes.addLast(bytes);
+            outstandingBytes += bytes;
+        }
+
+        while (outstanding > 0) {
+            plans.add(receive());
+        }
+
+        return plans;
+    }
+
+    /**
+     * Bounds the bytes of a response: the status, the header of the plan and
+     * up to one edge less than accounts, each of two variable-length indices
+     * and an amount.
+     */
+    private static long getMaxResponseBytes(final int accountAmount) {
+        return 16L + 20L * accountAmount;
+    }
+
+    public void close() throws IOException {
+        socket.close();
+    }
+}
@@ -0,0 +1,192 @@
+package net.coderodde.cskit.loan;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class implements the difference between two settlement plans over the
+ * same accounts: the payments to add, to modify and to cancel. A payment is
+ * identified by its lender and borrower, as an edge of
+ * {@link SettlementPlan}.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public class SettlementDelta {
+
+    /**
+     * The kinds of changes to a payment.
+     */
+    public enum Type {
+
+        /**
+         * A new payment.
+         */
+        ADD,
+
+        /**
+         * A payment whose amount changes.
+         */
+        MODIFY,
+
+        /**
+         * A payment dropped.
+         */
+        CANCEL
+    }
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private Type[] types;
+    private int[] from;
+    private int[] to;
+    private long[] previousAmount;
+    private long[] amount;
+    private int size;
+
+    public SettlementDelta() {
+        this.types = new Type[INITIAL_CAPACITY];
+        this.from = new int[INITIAL_CAPACITY];
+        this.to = new int[INITIAL_CAPACITY];
+        this.previousAmount = new long[INITIAL_CAPACITY];
+        this.amount = new long[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Records the change of the payment from <code>lender</code> to
+     * <code>borrower</code>. A previous amount of 0 means a new payment, and
+     * an amount of 0 a cancelled one.
+     *
+     * @param lender the lender.
+     * @param borrower the borrower.
+     * @param previousAmount the amount in the previous plan.
+     * @param amount the amount in the new plan.
+     */
+    void add(final int lender,
+             final int borrower,
+             final long previousAmount,
+             final long amount) {
+        if (previousAmount == amount) {
+            return;
+        }
+
+        if (size == from.length) {
+            final int capacity = size << 1;
+            types = Arrays.copyOf(types, capacity);
+            from = Arrays.copyOf(from, capacity);
+            to = Arrays.copyOf(to, capacity);
+            this.previousAmount = Arrays.copyOf(this.previousAmount, capacity);
+            this.amount = Arrays.copyOf(this.amount, capacity);
+        }
+
+        types[size] = previousAmount == 0L ? Type.ADD
+                                           : (amount == 0L ? Type.CANCEL
+                                                           : Type.MODIFY);
+        from[size] = lender;
+        to[size] = borrower;
+        this.previousAmount[size] = previousAmount;
+        this.amount[size++] = amount;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public Type getType(final int index) {
+        checkIndex(index);
+        return types[index];
+    }
+
+    public int getFrom(final int index) {
+        checkIndex(index);
+        return from[index];
+    }
+
+    public int getTo(final int index) {
+        checkIndex(index);
+        return to[index];
+    }
+
+    public long getPreviousAmount(final int index) {
+        checkIndex(index);
+        return previousAmount[index];
+    }
+
+    /**
+     * Returns the new amount of a payment, 0 if it is cancelled.
+     *
+     * @param index the index of the change.
+     * @return the new amount.
+     */
+    public long getAmount(final int index) {
+        checkIndex(index);
+        return amount[index];
+    }
+
+    /**
+     * Applies this delta to a plan. This costs time linear in the size of
+     * the plan, and is meant for checking a delta rather than for keeping a
+     * plan up to date.
+     *
+     * @param plan the previous plan.
+     * @return the new plan.
+     * @throws IllegalArgumentException if the delta does not fit the plan.
+     */
+    public SettlementPlan applyTo(final SettlementPlan plan) {
+        Map<Long, Long> amounts = new HashMap<Long, Long>(2 * plan.size());
+
+        for (int i = 0; i < plan.size(); ++i) {
+            final Long key = getKey(plan.getFrom(i), plan.getTo(i));
+            final Long old = amounts.get(key);
+            amounts.put(key, (old == null ? 0L : old) + plan.getAmount(i));
+        }
+
+        for (int i = 0; i < size; ++i) {
+            final Long key = getKey(from[i], to[i]);
+            final Long old = amounts.get(key);
+
+            if ((old == null ? 0L : old) != previousAmount[i]) {
+                throw new IllegalArgumentException(
+                        "The delta does not fit the plan at the payment " +
+                        "from " + from[i] + " to " + to[i] + ".");
+            }
+
+            if (amount[i] == 0L) {
+                amounts.remove(key);
+            } else {
+                amounts.put(key, amount[i]);
+            }
+        }
+
+        String[] names = new String[plan.getAccountAmount()];
+
+        for (int i = 0; i < names.length; ++i) {
+            names[i] = plan.getName(i);
+        }
+
+        SettlementPlan result = new SettlementPlan(names);
+
+        for (Map.Entry<Long, Long> entry : amounts.entrySet()) {
+            final long key = entry.getKey();
+            result.pay((int)(key >>> 32), (int) key, entry.getValue());
+        }
+
+        return result;
+    }
+
+    static long getKey(final int lender, final int borrower) {
+        return ((long) lender << 32) | (borrower & 0xFFFFFFFFL);
+    }
+
+    private void checkIndex(final int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(
+                    "Change index out of range: " + index);
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package net.coderodde.cskit.loan;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class implements a flat result of a simplification: the edges of the
+ * simplified loan graph in parallel arrays <code>from</code>, <code>to</code>
+ * and <code>amount</code>, where account <code>from[i]</code> lends
+ * <code>amount[i]</code> to account <code>to[i]</code>, as in
+ * {@link Node#connectTo(Node, long)}. Accounts are the indices of the input
+ * graph.
+ * <p>
+ * A plan is filled through {@link #pay(int, int, long)}, and so may be handed
+ * to the algorithms producing edges into a {@link PaymentSink}. The
+ * {@link Node} representation is built only when asked for.
+ * <p>
+ * The serialized form is the magic number {@link #MAGIC}, the amount of
+ * accounts, a flag telling whether account names follow, the names in
+ * modified UTF-8, the amount of edges and the edges as triples of
+ * variable-length integers.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public class SettlementPlan implements PaymentSink {
+
+    static final int MAGIC = 0x4C515350;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final String[] names;
+    private final int accountAmount;
+    private int[] from;
+    private int[] to;
+    private long[] amount;
+    private int size;
+    private List<Node> nodeList;
+
+    /**
+     * Constructs an empty plan over the given accounts.
+     *
+     * @param names the names of the accounts.
+     */
+    public SettlementPlan(final String[] names) {
+        this(names, names.length);
+    }
+
+    /**
+     * Constructs an empty plan over anonymous accounts, named by their
+     * indices.
+     *
+     * @param accountAmount the amount of accounts.
+     */
+    public SettlementPlan(final int accountAmount) {
+        this(null, accountAmount);
+    }
+
+    private SettlementPlan(final String[] names, final int accountAmount) {
+        if (accountAmount < 0) {
+            throw new IllegalArgumentException(
+                    "Illegal account amount: " + accountAmount);
+        }
+
+        this.names = names;
+        this.accountAmount = accountAmount;
+        this.from = new int[INITIAL_CAPACITY];
+        this.to = new int[INITIAL_CAPACITY];
+        this.amount = new long[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Builds the plan of a simplified graph over the accounts of the input
+     * graph.
+     *
+     * @param nodeList the input graph.
+     * @param result the simplified graph.
+     *
+     * @return the plan.
+     */
+    public static SettlementPlan of(final List<Node> nodeList,
+                                    final List<Node> result) {
+        SettlementPlan plan = new SettlementPlan(getNames(nodeList));
+        Map<String, Integer> indices =
+                new HashMap<String, Integer>(nodeList.size());
+
+        for (int i = 0; i < plan.names.length; ++i) {
+            indices.put(plan.names[i], i);
+        }
+
+        for (Node node : result) {
+            final int lender = indices.get(node.getName());
+
+            for (Node borrower : node) {
+                plan.pay(lender,
+                         indices.get(borrower.getName()),
+                         node.getLoanTo(borrower));
+            }
+        }
+
+        return plan;
+    }
+
+    @Override
+    public void pay(final int lender, final int borrower, final long amount) {
+        checkAccount(lender);
+        checkAccount(borrower);
+
+        if (amount <= 0) {
+            throw new IllegalArgumentException(
+                    "Illegal amount given: " + amount);
+        }
+
+        if (size == from.length) {
+            final int capacity = size << 1;
+            from = Arrays.copyOf(from, capacity);
+            to = Arrays.copyOf(to, capacity);
+            this.amount = Arrays.copyOf(this.amount, capacity);
+        }
+
+        from[size] = lender;
+        to[size] = borrower;
+        this.amount[size++] = amount;
+        nodeList = null;
+    }
+
+    /**
+     * Appends the first <code>edges</code> payments of the given arrays,
+     * which the caller has checked as {@link #pay(int, int, long)} would.
+     */
+    void payAll(final int[] lenders,
+                final int[] borrowers,
+                final long[] amounts,
+                final int edges) {
+        if (size + edges > from.length) {
+            final int capacity = Math.max(size + edges, size << 1);
+            from = Arrays.copyOf(from, capacity);
+            to = Arrays.copyOf(to, capacity);
+            amount = Arrays.copyOf(amount, capacity);
+        }
+
+        System.arraycopy(lenders, 0, from, size, edges);
+        System.arraycopy(borrowers, 0, to, size, edges);
+        System.arraycopy(amounts, 0, amount, size, edges);
+        size += edges;
+        nodeList = null;
+    }
+
+    /**
+     * Returns the amount of edges in this plan.
+     *
+     * @return the amount of edges.
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getFrom(final int index) {
+        checkIndex(index);
+        return from[index];
+    }
+
+    public int getTo(final int index) {
+        checkIndex(index);
+        return to[index];
+    }
+
+    public long getAmount(final int index) {
+        checkIndex(index);
+        return amount[index];
+    }
+
+    public int getAccountAmount() {
+        return accountAmount;
+    }
+
+    /**
+     * Returns an empty plan over the same accounts.
+     *
+     * @return the empty plan.
+     */
+    SettlementPlan emptyCopy() {
+        return new SettlementPlan(names, accountAmount);
+    }
+
+    public String getName(final int account) {
+        checkAccount(account);
+        return names == null ? Integer.toString(account) : names[account];
+    }
+
+    public long getTotalFlow() {
+        long sum = 0L;
+
+        for (int i = 0; i < size; ++i) {
+            sum += amount[i];
+        }
+
+        return sum;
+    }
+
+    /**
+     * Returns the plan as a graph of new nodes, one for each account. The
+     * graph is built on the first call and cached until the plan changes.
+     *
+     * @return the unmodifiable simplified graph.
+     */
+    public List<Node> asNodeList() {
+        if (nodeList == null) {
+            nodeList = Collections.unmodifiableList(Arrays.asList(toNodes()));
+        }
+
+        return nodeList;
+    }
+
+    /**
+     * Returns the plan as a graph of new nodes, ordered as the node-based
+     * algorithms return their graphs: the accounts of zero equity in
+     * <code>inputNodeList</code> come first, then the accounts of positive
+     * equity and then those of negative equity, each in input order. Unlike
+     * {@link #asNodeList()}, every call returns a new, modifiable list.
+     *
+     * @param inputNodeList the graph this plan was computed from.
+     * @return the simplified graph.
+     */
+    List<Node> toResultNodeList(final List<Node> inputNodeList) {
+        if (inputNodeList.size() != accountAmount) {
+            throw new IllegalArgumentException(
+                    "The input graph has " + inputNodeList.size() +
+                    " nodes, the plan " + accountAmount + " accounts.");
+        }
+
+        final Node[] nodes = toNodes();
+        final List<Node> resultNodeList = new ArrayList<Node>(accountAmount);
+        int positiveAmount = 0;
+        int i = 0;
+
+        for (Node node : inputNodeList) {
+            if (node.getEquity() == 0L) {
+                resultNodeList.add(nodes[i]);
+            } else if (node.getEquity() > 0L) {
+                ++positiveAmount;
+            }
+
+            ++i;
+        }
+
+        // The creditors go before the debtors; both keep the input order.
+        final int zeroAmount = resultNodeList.size();
+        final Node[] signed = new Node[accountAmount - zeroAmount];
+        int positiveIndex = 0;
+        int negativeIndex = positiveAmount;
+        i = 0;
+
+        for (Node node : inputNodeList) {
+            if (node.getEquity() > 0L) {
+                signed[positiveIndex++] = nodes[i];
+            } else if (node.getEquity() < 0L) {
+                signed[negativeIndex++] = nodes[i];
+            }
+
+            ++i;
+        }
+
+        resultNodeList.addAll(Arrays.asList(signed));
+        return resultNodeList;
+    }
+
+    private Node[] toNodes() {
+        Node[] nodes = new Node[accountAmount];
+
+        for (int i = 0; i < accountAmount; ++i) {
+            nodes[i] = new Node(getName(i));
+        }
+
+        for (int i = 0; i < size; ++i) {
+            nodes[from[i]].connectTo(nodes[to[i]], amount[i]);
+        }
+
+        return nodes;
+    }
+
+    public void writeTo(final OutputStream out) throws IOException {
+        DataOutputStream dos = new DataOutputStream(out);
+
+        dos.writeInt(MAGIC);
+        VarInts.writeUnsigned(dos, accountAmount);
+        dos.writeBoolean(names != null);
+
+        if (names != null) {
+            for (String name : names) {
+                dos.writeUTF(name);
+            }
+        }
+
+        VarInts.writeUnsigned(dos, size);
+
+        for (int i = 0; i < size; ++i) {
+            VarInts.writeUnsigned(dos, from[i]);
+            VarInts.writeUnsigned(dos, to[i]);
+            VarInts.writeUnsigned(dos, amount[i]);
+        }
+
+        dos.flush();
+    }
+
+    public static SettlementPlan readFrom(final InputStream in)
+    throws IOException {
+        DataInputStream dis = new DataInputStream(in);
+
+        if (dis.readInt() != MAGIC) {
+            throw new IOException("Not a settlement plan.");
+        }
+
+        final int accounts = (int) VarInts.readUnsigned(dis);
+        SettlementPlan plan;
+
+        if (dis.readBoolean()) {
+            String[] names = new String[accounts];
+
+            for (int i = 0; i < accounts; ++i) {
+                names[i] = dis.readUTF();
+            }
+
+            plan = new SettlementPlan(names);
+        } else {
+            plan = new SettlementPlan(accounts);
+        }
+
+        final long edges = VarInts.readUnsigned(dis);
+
+        for (long i = 0L; i < edges; ++i) {
+            final int lender = (int) VarInts.readUnsigned(dis);
+            final int borrower = (int) VarInts.readUnsigned(dis);
+            plan.pay(lender, borrower, VarInts.readUnsigned(dis));
+        }
+
+        return plan;
+    }
+
+    static String[] getNames(final List<Node> nodeList) {
+        String[] names = new String[nodeList.size()];
+        int i = 0;
+
+        for (Node node : nodeList) {
+            names[i++] = node.getName();
+        }
+
+        return names;
+    }
+
+    private void checkAccount(final int account) {
+        if (account < 0 || account >= accountAmount) {
+            throw new IndexOutOfBoundsException(
+                    "Account out of range: " + account);
+        }
+    }
+
+    private void checkIndex(final int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(
+                    "Edge index out of range: " + index);
+        }
+    }
+}
@@ -0,0 +1,417 @@
+package net.coderodde.cskit.loan;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * This class implements a resident settlement server on the loopback
+ * interface. Running the algorithms in one long-lived JVM spares each request
+ * the class loading and the interpreted runs before the JIT compiler catches
+ * up; the server warms the algorithms up when started.
+ * <p>
+ * A connection starts with the magic number {@link #MAGIC} sent by the
+ * client, and then carries any amount of requests, each answered in order.
+ * The client may send several requests before reading the responses. A
+ * request is the name of the algorithm in modified UTF-8, <tt>auto</tt> for
+ * the one chosen within the time budget of the server, the amount of accounts
+ * as a variable-length integer and the equity of each account, zigzag-encoded
+ * variable-length. As a request carries no loans, the edge-restricted
+ * settlement is not offered. A response is a status byte, followed for
+ * {@link #OK} by the plan over anonymous accounts as written by
+ * {@link SettlementPlan#writeTo(java.io.OutputStream)}, and for
+ * {@link #ERROR} by the message in modified UTF-8. See
+ * {@link SettlementClient}.
+ * <p>
+ * Usage: <tt>SettlementServer [--port P] [--budget MS] [--warmup K]</tt>.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public class SettlementServer {
+
+    static final int MAGIC = 0x4C515352;
+
+    static final byte OK = 0;
+
+    static final byte ERROR = 1;
+
+    /**
+     * The largest amount of accounts of a request.
+     */
+    static final int MAX_ACCOUNTS = 1 << 24;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Map<String, Algorithm> algorithms;
+    private final long budgetMillis;
+    private final SearchSpaceEstimator costs;
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor;
+    private volatile boolean closed;
+
+    public static void main(String... args) throws IOException {
+        int port = 0;
+        long budget = Algorithms.DEFAULT_BUDGET_MILLIS;
+        int warmup = 3;
+
+        if (args.length % 2 != 0) {
+            usage();
+        }
+
+        for (int i = 0; i < args.length; i += 2) {
+            if (args[i].equals("--port")) {
+                port = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("--budget")) {
+                budget = Long.parseLong(args[i + 1]);
+            } else if (args[i].equals("--warmup")) {
+                warmup = Integer.parseInt(args[i + 1]);
+            } else {
+                usage();
+            }
+        }
+
+        long ta = System.currentTimeMillis();
+        SearchSpaceEstimator costs = warmUp(warmup);
+        System.out.println("Warmed up in " +
+                           (System.currentTimeMillis() - ta) + " ms.");
+
+        SettlementServer server = new SettlementServer(port, budget, costs);
+        System.out.println("Listening on port " + server.getPort() + ".");
+        server.serve();
+    }
+
+    /**
+     * Binds a server to a port of the loopback interface.
+     *
+     * @param port the port, or 0 for any free port.
+     * @param budgetMillis the time budget of <tt>auto</tt>.
+     */
+    public SettlementServer(final int port, final long budgetMillis)
+    throws IOException {
+        this(port, budgetMillis, null);
+    }
+
+    /**
+     * Binds a server to a port of the loopback interface, estimating the
+     * running times for <tt>auto</tt> with the times per state of
+     * <code>costs</code>.
+     *
+     * @param port the port, or 0 for any free port.
+     * @param budgetMillis the time budget of <tt>auto</tt>.
+     * @param costs the estimator whose times per state to use, or
+     * <code>null</code> for the preset ones.
+     */
+    public SettlementServer(final int port,
+                            final long budgetMillis,
+                            final SearchSpaceEstimator costs)
+    throws IOException {
+        this.algorithms = new HashMap<String, Algorithm>();
+        final String edgeRestricted =
+                Algorithms.edgeRestrictedSimplify().toString();
+
+        for (Algorithm algorithm : Algorithms.all()) {
+            if (algorithm.toString().equals(edgeRestricted) == false) {
+                algorithms.put(algorithm.toString(), algorithm);
+            }
+        }
+
+        algorithms.put("auto", Algorithms.auto(budgetMillis, costs));
+        this.budgetMillis = budgetMillis;
+        this.costs = costs;
+        this.serverSocket =
+                new ServerSocket(port, 50, InetAddress.getByName(null));
+        this.executor = Executors.newCachedThreadPool();
+    }
+
+    /**
+     * Runs the algorithms on random graphs, so that their code is compiled
+     * before the first request, and measures their times per state on this
+     * machine. Only the returned estimator holds the measured times; they
+     * apply to a server constructed with it.
+     *
+     * @param rounds the amount of rounds.
+     * @return the estimator calibrated in the last round.
+     */
+    public static SearchSpaceEstimator warmUp(final int rounds) {
+        SearchSpaceEstimator costs = new SearchSpaceEstimator(0, 0, 0L);
+
+        for (int i = 0; i < rounds; ++i) {
+            costs.calibrate();
+        }
+
+        return costs;
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accepts connections until closed, serving each in a thread of its own.
+     */
+    public void serve() throws IOException {
+        try {
+            while (closed == false) {
+                final Socket socket = serverSocket.accept();
+
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        serve(socket);
+                    }
+                });
+            }
+        } catch (SocketException ex) {
+            if (closed == false) {
+                throw ex;
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Starts serving in a daemon thread.
+     */
+    public void start() {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    serve();
+                } catch (IOException ex) {
+                    System.err.println("The settlement server stopped: " +
+                                       ex);
+                }
+            }
+        }, "settlement-server");
+
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops accepting connections. The connections open are served until
+     * the clients close them.
+     */
+    public void close() throws IOException {
+        closed = true;
+        serverSocket.close();
+    }
+
+    private void serve(final Socket socket) {
+        try {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(socket.getInputStream(),
+                                            BUFFER_SIZE));
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(socket.getOutputStream(),
+                                             BUFFER_SIZE));
+
+            if (in.readInt() != MAGIC) {
+                return;
+            }
+
+            Session session = new Session(budgetMillis, costs);
+
+            while (true) {
+                String name;
+
+                try {
+                    name = in.readUTF();
+                } catch (EOFException ex) {
+                    break;
+                }
+
+                session.read(in);
+                session.respond(algorithms.get(name), name, out);
+
+                // Flush once the requests pipelined so far are answered.
+                if (in.available() == 0) {
+                    out.flush();
+                }
+            }
+
+            out.flush();
+        } catch (IOException ex) {
+            // The connection is dropped.
+        } finally {
+            // The pooled thread may idle a long time before the next one.
+            SolverWorkspace.release();
+
+            try {
+                socket.close();
+            } catch (IOException ex) {
+                // Nothing to do.
+            }
+        }
+    }
+
+    private static void usage() {
+        System.err.println(
+                "Usage: SettlementServer [--port P] [--budget MS] " +
+                "[--warmup K]");
+        System.exit(1);
+    }
+
+    /**
+     * The buffers of a connection, reused by its requests. The linear
+     * simplification, also chosen by <tt>auto</tt> for large requests, pays
+     * straight into the plan from the equities read; the other algorithms
+     * are given a graph of nodes named by the indices of the accounts.
+     */
+    private static final class Session {
+
+        private final long budgetMillis;
+        private final SearchSpaceEstimator costs;
+        private long[] equities = new long[16];
+        private int accountAmount;
+        private final List<Node> nodeList = new ArrayList<Node>();
+
+        /**
+         * The serialized plan; {@link SettlementPlan#writeTo} flushes its
+         * stream, which would send each response in packets of its own.
+         */
+        private final ByteArrayOutputStream planBuffer =
+                new ByteArrayOutputStream(BUFFER_SIZE);
+
+        Session(final long budgetMillis, final SearchSpaceEstimator costs) {
+            this.budgetMillis = budgetMillis;
+            this.costs = costs;
+        }
+
+        void read(final DataInputStream in) throws IOException {
+            final long n = VarInts.readUnsigned(in);
+
+            if (n > MAX_ACCOUNTS) {
+                throw new IOException("Too many accounts: " + n);
+            }
+
+            accountAmount = (int) n;
+
+            if (equities.length < accountAmount) {
+                equities = new long[Math.max(accountAmount,
+                                             equities.length << 1)];
+            }
+
+            for (int i = 0; i < accountAmount; ++i) {
+                equities[i] = VarInts.readSigned(in);
+            }
+        }
+
+        void respond(final Algorithm algorithm,
+                     final String name,
+                     final DataOutputStream out) throws IOException {
+            if (algorithm == null) {
+                error(out, "Unknown algorithm: " + name);
+                return;
+            }
+
+            long sum = 0L;
+            long totalEquity = 0L;
+            int positiveAmount = 0;
+            int negativeAmount = 0;
+
+            for (int i = 0; i < accountAmount; ++i) {
+                sum += equities[i];
+
+                if (equities[i] > 0L) {
+                    totalEquity += equities[i];
+                    ++positiveAmount;
+                } else if (equities[i] < 0L) {
+                    ++negativeAmount;
+                }
+            }
+
+            if (sum != 0L) {
+                error(out, "The equities do not sum up to zero: " + sum);
+                return;
+            }
+
+            Algorithm chosen = algorithm;
+
+            if (name.equals("auto")) {
+                SearchSpaceEstimator estimator =
+                        new SearchSpaceEstimator(positiveAmount,
+                                                 negativeAmount,
+                                                 totalEquity,
+                                                 costs);
+                chosen = estimator.choose(budgetMillis);
+            }
+
+            SettlementPlan plan = new SettlementPlan(accountAmount);
+
+            try {
+                if (chosen.getSearchSpace() == SearchSpace.LINEAR) {
+                    settleLinearly(plan);
+                } else {
+                    settleByNodes(chosen, plan);
+                }
+            } catch (RuntimeException ex) {
+                error(out, ex.toString());
+                return;
+            }
+
+            planBuffer.reset();
+            plan.writeTo(planBuffer);
+            out.writeByte(OK);
+            planBuffer.writeTo(out);
+        }
+
+        private void settleLinearly(final SettlementPlan plan) {
+            final long start = SolverEvents.begin();
+
+            Algorithms.linearSimplify(
+                    new ArrayEquityTable(equities, accountAmount), plan);
+            SolverEvents.end("linearSimplify",
+                             SolverPhase.EXEC,
+                             accountAmount,
+                             0L,
+                             start);
+        }
+
+        private void settleByNodes(final Algorithm algorithm,
+                                   final SettlementPlan plan) {
+            nodeList.clear();
+
+            for (int i = 0; i < accountAmount; ++i) {
+                if (equities[i] != 0L) {
+                    nodeList.add(new Node(Integer.toString(i),
+                                          equities[i]));
+                }
+            }
+
+            for (Node node : algorithm.exec(nodeList)) {
+                final int lender = Integer.parseInt(node.getName());
+
+                for (Node borrower : node) {
+                    plan.pay(lender,
+                             Integer.parseInt(borrower.getName()),
+                             node.getLoanTo(borrower));
+                }
+            }
+        }
+
+        private static void error(final DataOutputStream out,
+                                  final String message) throws IOException {
+            out.writeByte(ERROR);
+            out.writeUTF(message);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package net.coderodde.cskit.loan;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class nets a loan log in several worker processes. The log is split
+ * into shards of about equal byte length, each shard is aggregated by a child
+ * JVM running this class in the worker mode, and the partial aggregates the
+ * workers write into temporary files are merged.
+ * <p>
+ * Usage: <tt>ShardedAggregation LOG_FILE SHARDS [ALGORITHM]</tt> nets the log
+ * and settles it with the given algorithm, <tt>linearSimplify</tt> by default.
+ * The worker mode is <tt>ShardedAggregation --worker LOG_FILE START END
+ * OUTPUT_FILE</tt>.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public class ShardedAggregation {
+
+    private static final String WORKER_FLAG = "--worker";
+
+    public static void main(String... args) throws Exception {
+        if (args.length == 5 && args[0].equals(WORKER_FLAG)) {
+            work(new File(args[1]),
+                 Long.parseLong(args[2]),
+                 Long.parseLong(args[3]),
+                 new File(args[4]));
+            return;
+        }
+
+        if (args.length != 2 && args.length != 3) {
+            System.err.println(
+                    "Usage: ShardedAggregation LOG_FILE SHARDS [ALGORITHM]");
+            System.exit(1);
+        }
+
+        Algorithm algorithm =
+                Algorithms.forName(args.length == 3 ? args[2]
+                                                    : "linearSimplify");
+
+        long ta = System.currentTimeMillis();
+        EquityAggregate aggregate =
+                aggregate(new File(args[0]), Integer.parseInt(args[1]));
+        long tb = System.currentTimeMillis();
+
+        List<Node> nodeList = aggregate.toNodeList();
+        List<Node> result = algorithm.exec(nodeList);
+        long tc = System.currentTimeMillis();
+
+        System.out.println("Accounts: " + aggregate.size());
+        System.out.println("Accounts with non-zero equity: " +
+                           nodeList.size());
+        System.out.println("Time for aggregation " + (tb - ta) + " ms.");
+        System.out.println("Time for " + algorithm + " " + (tc - tb) + " ms.");
+        System.out.println("Edges in the output: " +
+                           Utilities.getEdgeAmount(result));
+        System.out.println("Total flow in output: " +
+                           Utilities.sumAllLoans(result));
+    }
+
+    /**
+     * Aggregates a loan log in <code>shards</code> worker processes.
+     *
+     * @param file the loan log.
+     * @param shards the amount of worker processes.
+     *
+     * @return the aggregate of the whole log.
+     */
+    public static EquityAggregate aggregate(final File file, final int shards)
+    throws IOException, InterruptedException {
+        if (shards < 1) {
+            throw new IllegalArgumentException("Bad shard amount: " + shards);
+        }
+
+        final long length = file.length();
+        List<Process> processes = new ArrayList<Process>(shards);
+        List<File> outputs = new ArrayList<File>(shards);
+
+        try {
+            for (int i = 0; i < shards; ++i) {
+                File output = File.createTempFile("shard", ".agg");
+                outputs.add(output);
+                processes.add(startWorker(file,
+                                          length * i / shards,
+                                          length * (i + 1) / shards,
+                                          output));
+            }
+
+            EquityAggregate aggregate = new EquityAggregate();
+
+            for (int i = 0; i < shards; ++i) {
+                Process process = processes.get(i);
+                ByteArrayOutputStream log = new ByteArrayOutputStream();
+                drain(process.getInputStream(), log);
+
+                if (process.waitFor() != 0) {
+                    throw new IOException("Worker " + i + " failed:\n" + log);
+                }
+
+                InputStream in = new BufferedInputStream(
+                        new FileInputStream(outputs.get(i)));
+
+                try {
+                    aggregate.merge(EquityAggregate.readFrom(in));
+                } finally {
+                    in.close();
+                }
+            }
+
+            return aggregate;
+        } finally {
+            for (Process process : processes) {
+                process.destroy();
+            }
+
+            for (File output : outputs) {
+                output.delete();
+            }
+        }
+    }
+
+    private static Process startWorker(final File file,
+                                       final long start,
+                                       final long end,
+                                       final File output) throws IOException {
+        String java = System.getProperty("java.home") +
+                      File.separator + "bin" + File.separator + "java";
+
+        ProcessBuilder builder =
+                new ProcessBuilder(java,
+                                   "-cp",
+                                   System.getProperty("java.class.path"),
+                                   ShardedAggregation.class.getName(),
+                                   WORKER_FLAG,
+                                   file.getPath(),
+                                   Long.toString(start),
+                                   Long.toString(end),
+                                   output.getPath());
+
+        builder.redirectErrorStream(true);
+        return builder.start();
+    }
+
+    private static void work(final File file,
+                             final long start,
+                             final long end,
+                             final File output) throws IOException {
+        EquityAggregate aggregate =
+                EquityAggregate.readLoanLog(file, start, end);
+        OutputStream out =
+                new BufferedOutputStream(new FileOutputStream(output));
+
+        try {
+            aggregate.writeTo(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void drain(final InputStream in,
+                              final OutputStream out) throws IOException {
+        byte[] buffer = new byte[4096];
+        int read;
+
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+
+        in.close();
+    }
+}
@@ -0,0 +1,132 @@
+package net.coderodde.cskit.loan;
+
+/**
+ * This class dispatches the events of the simplification algorithms to the
+ * registered {@link SolverListener}. With no listener registered, reporting
+ * a phase costs one volatile read, and the algorithms count their states in
+ * local variables either way.
+ * <p>
+ * A listener may forward the events to a profiler or a flight recorder, so
+ * that the phases of a slow run can be told apart and correlated with the
+ * garbage collection and CPU load of the process.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public final class SolverEvents {
+
+    /**
+     * The start time returned when no listener is registered.
+     */
+    static final long NOT_STARTED = Long.MIN_VALUE;
+
+    private static volatile SolverListener listener;
+
+    private SolverEvents() {}
+
+    /**
+     * Registers the listener, replacing the previous one.
+     *
+     * @param listener the listener, or <code>null</code> to disable events.
+     */
+    public static void setListener(final SolverListener listener) {
+        SolverEvents.listener = listener;
+    }
+
+    public static SolverListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Returns the start time of a phase.
+     *
+     * @return the time in nanoseconds, or {@link #NOT_STARTED} with no
+     * listener.
+     */
+    static long begin() {
+        return listener == null ? NOT_STARTED : System.nanoTime();
+    }
+
+    /**
+     * Reports the end of a phase begun at <code>start</code>.
+     */
+    static void end(final String algorithm,
+                    final SolverPhase phase,
+                    final int nodeAmount,
+                    final long states,
+                    final long start) {
+        end(algorithm, phase, nodeAmount, states, start, 0L);
+    }
+
+    /**
+     * Reports the end of a phase begun at <code>start</code>, less the
+     * <code>nestedNanos</code> spent in a phase reported on its own, such as
+     * the linking of groups as soon as the search finds them.
+     */
+    static void end(final String algorithm,
+                    final SolverPhase phase,
+                    final int nodeAmount,
+                    final long states,
+                    final long start,
+                    final long nestedNanos) {
+        SolverListener l = listener;
+
+        if (l != null && start != NOT_STARTED) {
+            l.phaseEnded(algorithm,
+                         phase,
+                         nodeAmount,
+                         states,
+                         System.nanoTime() - start - nestedNanos);
+        }
+    }
+
+    /**
+     * Returns the nanoseconds elapsed since <code>start</code>.
+     *
+     * @return the time, or 0 if the phase was not started.
+     */
+    static long since(final long start) {
+        return start == NOT_STARTED ? 0L : System.nanoTime() - start;
+    }
+
+    /**
+     * Reports a phase whose duration was summed up by the caller.
+     */
+    static void report(final String algorithm,
+                       final SolverPhase phase,
+                       final int nodeAmount,
+                       final long states,
+                       final long nanos) {
+        SolverListener l = listener;
+
+        if (l != null) {
+            l.phaseEnded(algorithm, phase, nodeAmount, states, nanos);
+        }
+    }
+
+    /**
+     * Reports phases a run has nothing to do in, so that every run of an
+     * algorithm reports the same sequence of phases.
+     */
+    static void skipped(final String algorithm,
+                        final int nodeAmount,
+                        final SolverPhase... phases) {
+        SolverListener l = listener;
+
+        if (l != null) {
+            for (SolverPhase phase : phases) {
+                l.phaseEnded(algorithm, phase, nodeAmount, 0L, 0L);
+            }
+        }
+    }
+
+    static void improved(final String algorithm,
+                         final int edgeAmount,
+                         final long states) {
+        SolverListener l = listener;
+
+        if (l != null) {
+            l.incumbentImproved(algorithm, edgeAmount, states);
+        }
+    }
+}
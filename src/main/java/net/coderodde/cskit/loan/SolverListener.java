@@ -0,0 +1,36 @@
+package net.coderodde.cskit.loan;
+
+/**
+ * This interface defines a receiver of the events of the simplification
+ * algorithms, registered through {@link SolverEvents#setListener}. The methods
+ * are called on the thread running the algorithm.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public interface SolverListener {
+
+    /**
+     * Reports the end of a phase.
+     *
+     * @param algorithm the name of the algorithm.
+     * @param phase the phase.
+     * @param nodeAmount the amount of nodes the phase worked on.
+     * @param states the amount of states explored, or 0 if not counted.
+     * @param nanos the duration of the phase in nanoseconds.
+     */
+    void phaseEnded(String algorithm,
+                    SolverPhase phase,
+                    int nodeAmount,
+                    long states,
+                    long nanos);
+
+    /**
+     * Reports that the search found a solution better than the best so far.
+     *
+     * @param algorithm the name of the algorithm.
+     * @param edgeAmount the amount of edges of the new solution.
+     * @param states the amount of states explored so far.
+     */
+    void incumbentImproved(String algorithm, int edgeAmount, long states);
+}
@@ -0,0 +1,52 @@
+package net.coderodde.cskit.loan;
+
+/**
+ * This enumeration lists the phases of a simplification reported to a
+ * {@link SolverListener}.
+ * <p>
+ * A run of a search, that is, of the greedy, sorted greedy, incremental
+ * greedy, subset-sum, partitional and permutational simplifications, reports
+ * {@link #PARTITION}, {@link #SEARCH}, {@link #RESULT} and {@link #LINK} once
+ * each, in this order, followed by {@link #EXEC}. A phase the run has nothing
+ * to do in is reported with no states and no time. The searches linking each
+ * group as soon as they find it report the summed time of the links as
+ * {@link #LINK}, which is not counted in {@link #SEARCH}.
+ * <p>
+ * The linear simplifications report {@link #EXEC} alone. An improved
+ * algorithm reports the events of its base algorithm under the name of the
+ * base, then {@link #SEARCH} for its local search and {@link #EXEC}. The
+ * automatic choice reports the events of the algorithm it chooses.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public enum SolverPhase {
+
+    /**
+     * A whole run of {@link Algorithm#exec(java.util.List)} or
+     * {@link Algorithm#settle(java.util.List)}.
+     */
+    EXEC,
+
+    /**
+     * Splitting the nodes by the sign of their equity.
+     */
+    PARTITION,
+
+    /**
+     * Enumerating the groups, partitions or permutations, or improving a
+     * plan by local search.
+     */
+    SEARCH,
+
+    /**
+     * Linking the nodes of matched groups.
+     */
+    LINK,
+
+    /**
+     * Building the result from the best solution found, or collecting the
+     * nodes of the result.
+     */
+    RESULT
+}
@@ -0,0 +1,130 @@
+package net.coderodde.cskit.loan;
+
+/**
+ * This class holds the scratch arrays of the solvers, one workspace for each
+ * thread, so that repeated calls reuse them instead of allocating new ones.
+ * An array is borrowed by its slot and is at least as long as requested; it
+ * grows when needed and is never shrunk, and its contents are unspecified.
+ * A solver must not use a slot that a solver up the call stack is still
+ * using.
+ * <p>
+ * Arrays longer than {@link #MAX_RETAINED_LENGTH} are allocated for the call
+ * and not kept, so that a single large input does not pin its scratch memory
+ * to a thread for the life of the thread; a workspace thus holds at most a
+ * few megabytes. {@link #release()} drops the arrays of the calling thread
+ * altogether.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+final class SolverWorkspace {
+
+    /**
+     * The equities of the linear simplification.
+     */
+    static final int EQUITIES = 0;
+
+    /**
+     * The equities consumed by the two-pointer linking.
+     */
+    static final int POSITIVE_EQUITIES = 1;
+    static final int NEGATIVE_EQUITIES = 2;
+
+    /**
+     * The block sums of the partitional search.
+     */
+    static final int POSITIVE_SUMS = 3;
+    static final int NEGATIVE_SUMS = 4;
+
+    private static final int LONG_SLOTS = 5;
+
+    /**
+     * The best partitions of the partitional search, as block indices.
+     */
+    static final int POSITIVE_BLOCKS = 0;
+    static final int NEGATIVE_BLOCKS = 1;
+
+    /**
+     * The nodes grouped by block, the start of each block among them and the
+     * order of the blocks.
+     */
+    static final int POSITIVE_MEMBERS = 2;
+    static final int NEGATIVE_MEMBERS = 3;
+    static final int POSITIVE_STARTS = 4;
+    static final int NEGATIVE_STARTS = 5;
+    static final int POSITIVE_ORDER = 6;
+    static final int NEGATIVE_ORDER = 7;
+
+    private static final int INT_SLOTS = 8;
+
+    /**
+     * The longest array a workspace keeps.
+     */
+    static final int MAX_RETAINED_LENGTH = 1 << 16;
+
+    private static final ThreadLocal<SolverWorkspace> WORKSPACES =
+            new ThreadLocal<SolverWorkspace>() {
+        @Override
+        protected SolverWorkspace initialValue() {
+            return new SolverWorkspace();
+        }
+    };
+
+    private final long[][] longs = new long[LONG_SLOTS][];
+    private final int[][] ints = new int[INT_SLOTS][];
+
+    private SolverWorkspace() {
+        for (int i = 0; i < LONG_SLOTS; ++i) {
+            longs[i] = new long[0];
+        }
+
+        for (int i = 0; i < INT_SLOTS; ++i) {
+            ints[i] = new int[0];
+        }
+    }
+
+    /**
+     * Returns the workspace of the calling thread.
+     *
+     * @return the workspace.
+     */
+    static SolverWorkspace get() {
+        return WORKSPACES.get();
+    }
+
+    /**
+     * Drops the workspace of the calling thread, such as a pooled thread
+     * done with solving. The next {@link #get()} starts a new one.
+     */
+    static void release() {
+        WORKSPACES.remove();
+    }
+
+    long[] getLongs(final int slot, final int capacity) {
+        if (capacity > MAX_RETAINED_LENGTH) {
+            return new long[capacity];
+        }
+
+        if (longs[slot].length < capacity) {
+            longs[slot] = new long[grow(longs[slot].length, capacity)];
+        }
+
+        return longs[slot];
+    }
+
+    int[] getInts(final int slot, final int capacity) {
+        if (capacity > MAX_RETAINED_LENGTH) {
+            return new int[capacity];
+        }
+
+        if (ints[slot].length < capacity) {
+            ints[slot] = new int[grow(ints[slot].length, capacity)];
+        }
+
+        return ints[slot];
+    }
+
+    private static int grow(final int length, final int capacity) {
+        return Math.min(MAX_RETAINED_LENGTH, Math.max(capacity, 2 * length));
+    }
+}
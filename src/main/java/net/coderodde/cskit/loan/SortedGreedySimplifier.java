@@ -0,0 +1,373 @@
+package net.coderodde.cskit.loan;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class implements the sorted-input mode of the greedy combinatorial
+ * simplification.
+ * <p>
+ * Both equity groups are sorted in ascending order of absolute equity and
+ * subsets are enumerated by size, and within a size lexicographically, so that
+ * the sums grow along every branch: as soon as a prefix together with the
+ * least possible completion exceeds the bound, the whole subtree of
+ * combinations is cut. Instead of enumerating negative subsets for each
+ * positive subset, all negative subset sums are put into a hash index once,
+ * and each positive subset sum is matched with a single lookup. The index is
+ * rebuilt only after a group is settled.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+final class SortedGreedySimplifier {
+
+    /**
+     * The maximum amount of negative combinations visited while building an
+     * index. Larger subsets are left out of the index.
+     */
+    static final int MAX_INDEX_STATES = 1 << 22;
+
+    private final Node[] positiveNodes;
+    private final Node[] negativeNodes;
+    private final long[] positiveEquities;
+    private final long[] negativeEquities;
+    private int positiveAmount;
+    private int negativeAmount;
+
+    private final Map<Long, int[]> negativeIndex = new HashMap<Long, int[]>();
+
+    /**
+     * Whether the last index was cut at {@link #MAX_INDEX_STATES}.
+     */
+    private boolean indexTruncated;
+
+    private long states;
+    private long links;
+    private long linkNanos;
+
+    private SortedGreedySimplifier(List<Node> positiveNodes,
+                                   List<Node> negativeNodes) {
+        this.positiveAmount = positiveNodes.size();
+        this.negativeAmount = negativeNodes.size();
+        this.positiveNodes = new Node[positiveAmount];
+        this.negativeNodes = new Node[negativeAmount];
+        this.positiveEquities = new long[positiveAmount];
+        this.negativeEquities = new long[negativeAmount];
+
+        for (int i = 0; i < positiveAmount; ++i) {
+            Node node = positiveNodes.get(i);
+            this.positiveEquities[i] = node.getEquity();
+            this.positiveNodes[i] = new Node(node);
+        }
+
+        for (int i = 0; i < negativeAmount; ++i) {
+            Node node = negativeNodes.get(i);
+            this.negativeEquities[i] = -node.getEquity();
+            this.negativeNodes[i] = new Node(node);
+        }
+    }
+
+    /**
+     * Simplifies a graph, reporting the phases under the name of the
+     * algorithm running it.
+     *
+     * @param nodeList the input graph.
+     * @param name the name of the algorithm.
+     * @return the simplified graph.
+     */
+    static List<Node> simplify(List<Node> nodeList, String name) {
+        final int N = nodeList.size();
+        final long partitionStart = SolverEvents.begin();
+        List<Node> positiveNodes = new ArrayList<Node>(N);
+        List<Node> negativeNodes = new ArrayList<Node>(N);
+        List<Node> resultNodeList = new ArrayList<Node>(N);
+
+        for (Node node : nodeList) {
+            if (node.getEquity() > 0L) {
+                positiveNodes.add(node);
+            } else if (node.getEquity() < 0L) {
+                negativeNodes.add(node);
+            } else {
+                resultNodeList.add(new Node(node));
+            }
+        }
+
+        Collections.sort(positiveNodes, new AbsoluteEquityComparator());
+        Collections.sort(negativeNodes, new AbsoluteEquityComparator());
+
+        SortedGreedySimplifier simplifier =
+                new SortedGreedySimplifier(positiveNodes, negativeNodes);
+        SolverEvents.end(name, SolverPhase.PARTITION, N, 0L, partitionStart);
+
+        final long searchStart = SolverEvents.begin();
+        simplifier.run();
+        SolverEvents.end(name,
+                         SolverPhase.SEARCH,
+                         N,
+                         simplifier.states,
+                         searchStart,
+                         simplifier.linkNanos);
+
+        final long resultStart = SolverEvents.begin();
+
+        for (Node node : simplifier.positiveNodes) {
+            resultNodeList.add(node);
+        }
+
+        for (Node node : simplifier.negativeNodes) {
+            resultNodeList.add(node);
+        }
+
+        SolverEvents.end(name, SolverPhase.RESULT, N, 0L, resultStart);
+        SolverEvents.report(name,
+                            SolverPhase.LINK,
+                            N,
+                            simplifier.links,
+                            simplifier.linkNanos);
+        return resultNodeList;
+    }
+
+    private void run() {
+        // Node arrays are compacted as groups get settled; keep the output.
+        Node[] positiveOutput = positiveNodes.clone();
+        Node[] negativeOutput = negativeNodes.clone();
+
+        int size = 1;
+
+        outer:
+        while (positiveAmount > 0) {
+            final long maximumNegativeSum =
+                    buildNegativeIndex(sum(positiveEquities, positiveAmount));
+
+            for (; size <= positiveAmount; ++size) {
+                SortedCombinations combinations =
+                        new SortedCombinations(positiveEquities,
+                                               positiveAmount,
+                                               size,
+                                               maximumNegativeSum);
+
+                if (combinations.first() == false) {
+                    // The least subset of this size exceeds every indexed
+                    // sum, and so do all larger subsets.
+                    break;
+                }
+
+                do {
+                    ++states;
+                    int[] negativeIndices =
+                            negativeIndex.get(combinations.getSum());
+
+                    if (negativeIndices != null) {
+                        settle(combinations.getIndices(),
+                               size,
+                               negativeIndices);
+                        // Smaller positive subsets had no match in a complete
+                        // index, and cannot have one now that there are less
+                        // negatives. A truncated index left sums out, which
+                        // the rebuilt one may hold, so rescan from the start.
+                        if (indexTruncated) {
+                            size = 1;
+                        }
+
+                        continue outer;
+                    }
+                } while (combinations.next());
+            }
+
+            // The index was truncated; settle the rest as one group.
+            settle(range(positiveAmount),
+                   positiveAmount,
+                   range(negativeAmount));
+        }
+
+        System.arraycopy(positiveOutput, 0,
+                         positiveNodes, 0, positiveOutput.length);
+        System.arraycopy(negativeOutput, 0,
+                         negativeNodes, 0, negativeOutput.length);
+    }
+
+    /**
+     * Maps each reachable negative subset sum not exceeding
+     * <code>bound</code> to the first subset found with that sum, which is a
+     * smallest one.
+     *
+     * @return the largest indexed sum.
+     */
+    private long buildNegativeIndex(final long bound) {
+        negativeIndex.clear();
+        indexTruncated = false;
+        long maximumSum = 0L;
+        int indexStates = 0;
+
+        for (int size = 1; size <= negativeAmount; ++size) {
+            SortedCombinations combinations =
+                    new SortedCombinations(negativeEquities,
+                                           negativeAmount,
+                                           size,
+                                           bound);
+
+            if (combinations.first() == false) {
+                return maximumSum;
+            }
+
+            do {
+                final long sum = combinations.getSum();
+
+                if (negativeIndex.containsKey(sum) == false) {
+                    negativeIndex.put(sum, combinations.getIndices().clone());
+                    maximumSum = Math.max(maximumSum, sum);
+                }
+
+                ++states;
+
+                if (++indexStates == MAX_INDEX_STATES) {
+                    indexTruncated = true;
+                    return maximumSum;
+                }
+            } while (combinations.next());
+        }
+
+        return maximumSum;
+    }
+
+    private void settle(int[] positiveIndices,
+                        int positiveSize,
+                        int[] negativeIndices) {
+        final long linkStart = SolverEvents.begin();
+        EquityGroups.link(positiveIndices, positiveSize,
+                          negativeIndices,
+                          positiveNodes, negativeNodes,
+                          positiveEquities, negativeEquities);
+
+        positiveAmount = EquityGroups.remove(positiveIndices, positiveSize,
+                                             positiveNodes, positiveEquities,
+                                             positiveAmount);
+        negativeAmount = EquityGroups.remove(negativeIndices,
+                                             negativeIndices.length,
+                                             negativeNodes, negativeEquities,
+                                             negativeAmount);
+        linkNanos += SolverEvents.since(linkStart);
+        ++links;
+    }
+
+    private static long sum(long[] array, int amount) {
+        long sum = 0L;
+
+        for (int i = 0; i < amount; ++i) {
+            sum += array[i];
+        }
+
+        return sum;
+    }
+
+    private static int[] range(int amount) {
+        int[] range = new int[amount];
+
+        for (int i = 0; i < amount; ++i) {
+            range[i] = i;
+        }
+
+        return range;
+    }
+
+    /**
+     * Enumerates the combinations of fixed size over an ascending array in
+     * lexicographic order, skipping every subtree whose least sum exceeds the
+     * bound. Combinations picking equal values are produced only once, as they
+     * have equal sums.
+     */
+    private static final class SortedCombinations {
+
+        private final long[] values;
+        private final int n;
+        private final int k;
+        private final long bound;
+        private final int[] indices;
+        private final long[] partialSums;
+        private final long[] prefixSums;
+
+        SortedCombinations(long[] values, int n, int k, long bound) {
+            this.values = values;
+            this.n = n;
+            this.k = k;
+            this.bound = bound;
+            this.indices = new int[k];
+            this.partialSums = new long[k];
+            this.prefixSums = new long[n + 1];
+
+            for (int i = 0; i < n; ++i) {
+                prefixSums[i + 1] = prefixSums[i] + values[i];
+            }
+        }
+
+        boolean first() {
+            return fill(0, 0);
+        }
+
+        boolean next() {
+            for (int d = k - 1; d >= 0; --d) {
+                int start = indices[d] + 1;
+
+                while (start < n && values[start] == values[indices[d]]) {
+                    ++start;
+                }
+
+                if (fill(d, start)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        long getSum() {
+            return partialSums[k - 1];
+        }
+
+        int[] getIndices() {
+            return indices;
+        }
+
+        /**
+         * Loads the least combination that agrees with the current one before
+         * position <code>d</code> and has <code>start</code> at position
+         * <code>d</code>.
+         */
+        private boolean fill(int d, int start) {
+            final int remaining = k - d;
+
+            if (start + remaining > n) {
+                return false;
+            }
+
+            long base = d == 0 ? 0L : partialSums[d - 1];
+
+            if (base + prefixSums[start + remaining] - prefixSums[start]
+                    > bound) {
+                return false;
+            }
+
+            for (int j = d; j < k; ++j) {
+                indices[j] = start + j - d;
+                base += values[indices[j]];
+                partialSums[j] = base;
+            }
+
+            return true;
+        }
+    }
+
+    private static final class AbsoluteEquityComparator
+    implements Comparator<Node> {
+
+        public int compare(Node o1, Node o2) {
+            long e1 = Math.abs(o1.getEquity());
+            long e2 = Math.abs(o2.getEquity());
+            return e1 < e2 ? -1 : (e1 > e2 ? 1 : 0);
+        }
+    }
+}
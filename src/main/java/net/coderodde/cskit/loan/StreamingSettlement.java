@@ -0,0 +1,370 @@
+package net.coderodde.cskit.loan;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * This class runs the linear simplification over streams of equity records,
+ * so that ledgers larger than the memory may be settled. An equity record is
+ * an account and an amount, both as big-endian <code>long</code>s; a payment
+ * record is the lender, the borrower and the amount.
+ * <p>
+ * {@link #split(InputStream, OutputStream, OutputStream)} splits a stream of
+ * equities into a stream of creditors, the accounts of positive equity, and a
+ * stream of debtors carrying the absolute values of the negative equities.
+ * {@link #settle(InputStream, InputStream, OutputStream)} then merges the two
+ * streams as {@link Algorithms#linearSimplify()} merges the nodes, holding
+ * only one record of each in memory. For equities in the order of accounts,
+ * the payments are those of the linear simplification.
+ * <p>
+ * Usage: <tt>StreamingSettlement split EQUITIES CREDITORS DEBTORS</tt> and
+ * <tt>StreamingSettlement settle CREDITORS DEBTORS PAYMENTS</tt>.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public final class StreamingSettlement {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private StreamingSettlement() {}
+
+    public static void main(String... args) throws IOException {
+        if (args.length != 4
+                || (args[0].equals("split") == false
+                    && args[0].equals("settle") == false)) {
+            System.err.println(
+                    "Usage: StreamingSettlement split EQUITIES CREDITORS " +
+                    "DEBTORS\n" +
+                    "       StreamingSettlement settle CREDITORS DEBTORS " +
+                    "PAYMENTS");
+            System.exit(1);
+        }
+
+        InputStream in = null;
+        OutputStream out1 = null;
+        OutputStream out2 = null;
+        long ta = System.currentTimeMillis();
+
+        try {
+            if (args[0].equals("split")) {
+                in = new FileInputStream(args[1]);
+                out1 = new FileOutputStream(args[2]);
+                out2 = new FileOutputStream(args[3]);
+                long records = split(in, out1, out2);
+                System.out.println("Equity records: " + records);
+            } else {
+                long records = settle(new File(args[1]),
+                                      new File(args[2]),
+                                      new File(args[3]));
+                System.out.println("Payment records: " + records);
+            }
+        } finally {
+            close(in);
+            close(out1);
+            close(out2);
+        }
+
+        System.out.println("Time: " + (System.currentTimeMillis() - ta) +
+                           " ms.");
+    }
+
+    /**
+     * Splits equity records into creditor and debtor records, dropping the
+     * accounts of zero equity. The streams are not closed.
+     *
+     * @param equities the equity records.
+     * @param creditors the receiver of the positive equities.
+     * @param debtors the receiver of the negated negative equities.
+     * @return the amount of equity records read.
+     * @throws IOException if the streams fail, or if a record is truncated
+     * or its equity is {@link Long#MIN_VALUE}, which has no negation.
+     */
+    public static long split(final InputStream equities,
+                             final OutputStream creditors,
+                             final OutputStream debtors) throws IOException {
+        RecordReader reader = new RecordReader(equities);
+        RecordWriter creditorWriter = new RecordWriter(creditors);
+        RecordWriter debtorWriter = new RecordWriter(debtors);
+        long records = 0L;
+
+        while (reader.next()) {
+            final long equity = reader.getAmount();
+
+            if (equity > 0L) {
+                creditorWriter.write(reader.getAccount(), equity);
+            } else if (equity == Long.MIN_VALUE) {
+                throw new IOException(
+                        "Equity " + equity + " of account " +
+                        reader.getAccount() + " out of range.");
+            } else if (equity < 0L) {
+                debtorWriter.write(reader.getAccount(), -equity);
+            }
+
+            ++records;
+        }
+
+        creditorWriter.flush();
+        debtorWriter.flush();
+        return records;
+    }
+
+    /**
+     * Merges creditor and debtor records into payment records. The streams
+     * are not closed.
+     * <p>
+     * Whether the equities sum up to zero shows only once a stream ends, and
+     * by then the payments exceeding the buffer were written. On failure,
+     * the payments written are to be discarded; those held by the buffer are
+     * not flushed.
+     *
+     * @param creditors the creditor records.
+     * @param debtors the debtor records.
+     * @param payments the receiver of the payment records.
+     * @return the amount of payment records written.
+     * @throws IOException if the streams fail, or if the equities are
+     * malformed or do not sum up to zero.
+     */
+    public static long settle(final InputStream creditors,
+                              final InputStream debtors,
+                              final OutputStream payments)
+    throws IOException {
+        RecordReader creditorReader = new RecordReader(creditors);
+        RecordReader debtorReader = new RecordReader(debtors);
+        RecordWriter writer = new RecordWriter(payments);
+        long records = 0L;
+
+        boolean hasCreditor = nextPositive(creditorReader);
+        boolean hasDebtor = nextPositive(debtorReader);
+        long credit = hasCreditor ? creditorReader.getAmount() : 0L;
+        long debt = hasDebtor ? debtorReader.getAmount() : 0L;
+
+        while (hasCreditor && hasDebtor) {
+            final long amount = Math.min(credit, debt);
+
+            writer.write(creditorReader.getAccount(),
+                         debtorReader.getAccount(),
+                         amount);
+            ++records;
+            credit -= amount;
+            debt -= amount;
+
+            if (credit == 0L) {
+                hasCreditor = nextPositive(creditorReader);
+                credit = hasCreditor ? creditorReader.getAmount() : 0L;
+            }
+
+            if (debt == 0L) {
+                hasDebtor = nextPositive(debtorReader);
+                debt = hasDebtor ? debtorReader.getAmount() : 0L;
+            }
+        }
+
+        if (hasCreditor || hasDebtor) {
+            throw new IOException(
+                    "The equities do not sum up to zero.");
+        }
+
+        writer.flush();
+        return records;
+    }
+
+    /**
+     * Merges creditor and debtor record files into a payment record file.
+     * The payments are written to a file beside <code>payments</code>, which
+     * is renamed to it only once the merge succeeded, so that a failed merge
+     * leaves no payments behind.
+     *
+     * @param creditors the creditor records.
+     * @param debtors the debtor records.
+     * @param payments the file of the payment records.
+     * @return the amount of payment records written.
+     * @throws IOException as {@link #settle(InputStream, InputStream,
+     * OutputStream)} does, or if the payments cannot be renamed.
+     */
+    static long settle(final File creditors,
+                       final File debtors,
+                       final File payments) throws IOException {
+        File partial = new File(payments.getPath() + ".partial");
+        InputStream creditorIn = null;
+        InputStream debtorIn = null;
+        OutputStream out = null;
+        boolean done = false;
+
+        try {
+            creditorIn = new FileInputStream(creditors);
+            debtorIn = new FileInputStream(debtors);
+            out = new FileOutputStream(partial);
+            final long records = settle(creditorIn, debtorIn, out);
+            out.close();
+            out = null;
+
+            if ((payments.exists() && payments.delete() == false)
+                    || partial.renameTo(payments) == false) {
+                throw new IOException(
+                        "Could not rename " + partial + " to " + payments +
+                        ".");
+            }
+
+            done = true;
+            return records;
+        } finally {
+            close(creditorIn);
+            close(debtorIn);
+            close(out);
+
+            if (done == false) {
+                partial.delete();
+            }
+        }
+    }
+
+    private static boolean nextPositive(final RecordReader reader)
+    throws IOException {
+        if (reader.next() == false) {
+            return false;
+        }
+
+        if (reader.getAmount() <= 0L) {
+            throw new IOException(
+                    "Non-positive amount " + reader.getAmount() +
+                    " of account " + reader.getAccount() + ".");
+        }
+
+        return true;
+    }
+
+    private static void close(final Closeable closeable)
+    throws IOException {
+        if (closeable != null) {
+            closeable.close();
+        }
+    }
+
+    /**
+     * Reads records of two <code>long</code>s.
+     */
+    private static final class RecordReader {
+
+        private final InputStream in;
+        private final byte[] buffer;
+        private int position;
+        private int limit;
+        private long account;
+        private long amount;
+
+        RecordReader(final InputStream in) {
+            this.in = in;
+            this.buffer = new byte[BUFFER_SIZE];
+        }
+
+        /**
+         * Reads the next record.
+         *
+         * @return <code>false</code> at the end of the stream.
+         */
+        boolean next() throws IOException {
+            if (limit - position < 16) {
+                fill();
+
+                if (position == limit) {
+                    return false;
+                }
+
+                if (limit - position < 16) {
+                    throw new IOException("Truncated record.");
+                }
+            }
+
+            account = getLong(position);
+            amount = getLong(position + 8);
+            position += 16;
+            return true;
+        }
+
+        long getAccount() {
+            return account;
+        }
+
+        long getAmount() {
+            return amount;
+        }
+
+        private void fill() throws IOException {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            position = 0;
+
+            int read;
+
+            while (limit < 16
+                    && (read = in.read(buffer, limit, buffer.length - limit))
+                       != -1) {
+                limit += read;
+            }
+        }
+
+        private long getLong(final int offset) {
+            long value = 0L;
+
+            for (int i = 0; i < 8; ++i) {
+                value = (value << 8) | (buffer[offset + i] & 0xFFL);
+            }
+
+            return value;
+        }
+    }
+
+    /**
+     * Writes records of <code>long</code>s.
+     */
+    private static final class RecordWriter {
+
+        private final OutputStream out;
+        private final byte[] buffer;
+        private int position;
+
+        RecordWriter(final OutputStream out) {
+            this.out = out;
+            this.buffer = new byte[BUFFER_SIZE];
+        }
+
+        void write(final long a, final long b) throws IOException {
+            ensure(16);
+            putLong(a);
+            putLong(b);
+        }
+
+        void write(final long a, final long b, final long c)
+        throws IOException {
+            ensure(24);
+            putLong(a);
+            putLong(b);
+            putLong(c);
+        }
+
+        void flush() throws IOException {
+            out.write(buffer, 0, position);
+            out.flush();
+            position = 0;
+        }
+
+        private void ensure(final int bytes) throws IOException {
+            if (buffer.length - position < bytes) {
+                out.write(buffer, 0, position);
+                position = 0;
+            }
+        }
+
+        private void putLong(final long value) {
+            for (int i = 56; i >= 0; i -= 8) {
+                buffer[position++] = (byte)(value >>> i);
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package net.coderodde.cskit.loan;
+
+import java.util.Arrays;
+
+/**
+ * This class computes the set of subset sums the greedy and partitional
+ * searches use as a filter: a positive group or block sum no negative subset
+ * achieves is skipped without enumerating the negative side.
+ * <p>
+ * The sums of all subsets are computed in mask order by the recurrence
+ * <tt>sums[m] = sums[m &amp; (m - 1)] + values[tz(m)]</tt>, where
+ * <tt>tz(m)</tt> is the index of the lowest set bit of <tt>m</tt>, which takes
+ * a single addition per subset.
+ * <p>
+ * This is no batched evaluation of candidate masks: the searches get the sum
+ * of each candidate from its predecessor by a single addition or subtraction,
+ * which leaves nothing for evaluating masks in lanes to save, and the Vector
+ * API is not available to code targeting Java 6.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+final class SubsetSumFilter {
+
+    /**
+     * The maximum amount of values for which all subset sums get enumerated by
+     * {@link #achievableSums(long[], int)}.
+     */
+    static final int MAX_ENUMERATED_VALUES = 20;
+
+    private SubsetSumFilter() {}
+
+    /**
+     * Computes the sorted, distinct sums of all non-empty subsets of the first
+     * <code>amount</code> values.
+     *
+     * @param values the values.
+     * @param amount the amount of values to consider.
+     *
+     * @return the achievable sums, or <code>null</code> if there are more than
+     * {@link #MAX_ENUMERATED_VALUES} values.
+     */
+    static long[] achievableSums(final long[] values, final int amount) {
+        if (amount > MAX_ENUMERATED_VALUES) {
+            return null;
+        }
+
+        final int SUBSETS = 1 << amount;
+        long[] sums = new long[SUBSETS];
+
+        // Mask 0 is the empty subset.
+        for (int m = 1; m < SUBSETS; ++m) {
+            sums[m] = sums[m & (m - 1)]
+                    + values[Integer.numberOfTrailingZeros(m)];
+        }
+
+        Arrays.sort(sums, 1, SUBSETS);
+        int distinct = 0;
+
+        for (int i = 1; i < SUBSETS; ++i) {
+            if (distinct == 0 || sums[i] != sums[distinct]) {
+                sums[++distinct] = sums[i];
+            }
+        }
+
+        return Arrays.copyOfRange(sums, 1, distinct + 1);
+    }
+
+    /**
+     * Checks whether <code>sum</code> is in the sorted array
+     * <code>sums</code>. A <code>null</code> array stands for an unknown set
+     * of sums and contains everything.
+     */
+    static boolean isAchievable(final long[] sums, final long sum) {
+        return sums == null || Arrays.binarySearch(sums, sum) >= 0;
+    }
+}
@@ -0,0 +1,290 @@
+package net.coderodde.cskit.loan;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class implements the amount-indexed simplification for ledgers with
+ * small equities.
+ * <p>
+ * For both equity groups, the sets of achievable subset sums are computed with
+ * a dynamic programming over bit sets packed into <code>long</code> words: the
+ * sums achievable with the first <tt>i</tt> nodes are the sums achievable with
+ * the first <tt>i - 1</tt> nodes, or-ed with the same set shifted by the
+ * equity of node <tt>i</tt>. This takes <tt>O(n * S / 64)</tt> time, where
+ * <tt>S</tt> is the total positive equity. The least positive sum achievable
+ * on both sides gives the next zero-sum group, whose members are reconstructed
+ * from the per-node rows of the table, and the process repeats on the rest.
+ * <p>
+ * Settling the least common sum first is a greedy heuristic, not an exact
+ * search: the group it takes may split accounts that a partition into more
+ * groups would keep apart, so the result may have more edges than the
+ * optimum of the partitional search. No exact search can be pseudo-polynomial
+ * here unless P = NP, as deciding whether <tt>3m</tt> creditors and
+ * <tt>m</tt> debtors of equity <tt>B</tt> split into <tt>m</tt> zero-sum
+ * groups is the strongly NP-complete 3-partition problem.
+ * <p>
+ * If the tables would not fit in {@link #MAX_TABLE_WORDS} words, the ledger
+ * is settled with the linear simplification instead.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+final class SubsetSumSimplifier {
+
+    /**
+     * The maximum amount of <code>long</code> words in the bit set tables.
+     */
+    static final long MAX_TABLE_WORDS = 1L << 22;
+
+    private SubsetSumSimplifier() {}
+
+    /**
+     * Checks whether the bit set tables for the given ledger fit in
+     * {@link #MAX_TABLE_WORDS} words.
+     *
+     * @param totalEquity the sum of positive equities.
+     * @param positiveAmount the amount of nodes with positive equity.
+     * @param negativeAmount the amount of nodes with negative equity.
+     *
+     * @return <code>true</code> if the ledger is small enough.
+     */
+    static boolean isApplicable(long totalEquity,
+                                int positiveAmount,
+                                int negativeAmount) {
+        final long words = (totalEquity >>> 6) + 1L;
+        return words * (positiveAmount + negativeAmount + 2L)
+                <= MAX_TABLE_WORDS;
+    }
+
+    static List<Node> simplify(List<Node> nodeList) {
+        final String NAME = "subsetSumSimplify";
+        final int N = nodeList.size();
+        final long partitionStart = SolverEvents.begin();
+        int positiveAmount = 0;
+        int negativeAmount = 0;
+        long total = 0L;
+
+        for (Node node : nodeList) {
+            if (node.getEquity() > 0L) {
+                ++positiveAmount;
+                total += node.getEquity();
+            } else if (node.getEquity() < 0L) {
+                ++negativeAmount;
+            }
+        }
+
+        if (isApplicable(total, positiveAmount, negativeAmount) == false) {
+            SolverEvents.end(NAME,
+                             SolverPhase.PARTITION,
+                             N,
+                             0L,
+                             partitionStart);
+            SolverEvents.skipped(NAME,
+                                 N,
+                                 SolverPhase.SEARCH,
+                                 SolverPhase.RESULT);
+
+            final long linkStart = SolverEvents.begin();
+            List<Node> resultNodeList =
+                    Algorithms.linearPlan(nodeList).toResultNodeList(nodeList);
+            SolverEvents.end(NAME, SolverPhase.LINK, N, 0L, linkStart);
+            return resultNodeList;
+        }
+
+        Node[] copies = new Node[N];
+        Node[] positiveNodes = new Node[positiveAmount];
+        Node[] negativeNodes = new Node[negativeAmount];
+        long[] positiveEquities = new long[positiveAmount];
+        long[] negativeEquities = new long[negativeAmount];
+
+        int pi = 0;
+        int ni = 0;
+        int ci = 0;
+
+        for (Node node : nodeList) {
+            Node copy = new Node(node);
+            copies[ci++] = copy;
+
+            if (node.getEquity() > 0L) {
+                positiveNodes[pi] = copy;
+                positiveEquities[pi++] = node.getEquity();
+            } else if (node.getEquity() < 0L) {
+                negativeNodes[ni] = copy;
+                negativeEquities[ni++] = -node.getEquity();
+            }
+        }
+
+        final int WORDS = (int)(total >>> 6) + 1;
+
+        long[] positiveTable = new long[(positiveAmount + 1) * WORDS];
+        long[] negativeTable = new long[(negativeAmount + 1) * WORDS];
+        int[] positiveIndices = new int[positiveAmount];
+        int[] negativeIndices = new int[negativeAmount];
+        SolverEvents.end(NAME, SolverPhase.PARTITION, N, 0L, partitionStart);
+
+        final long searchStart = SolverEvents.begin();
+        long states = 0L;
+        long links = 0L;
+        long linkNanos = 0L;
+
+        while (positiveAmount > 0) {
+            states += positiveAmount + negativeAmount;
+            final int words = (int)(total >>> 6) + 1;
+
+            loadReachableSums(positiveTable, positiveEquities,
+                              positiveAmount, words);
+            loadReachableSums(negativeTable, negativeEquities,
+                              negativeAmount, words);
+
+            final long sum = leastCommonSum(positiveTable, positiveAmount,
+                                            negativeTable, negativeAmount,
+                                            words);
+
+            final int positiveSize = loadSubset(positiveTable,
+                                                positiveEquities,
+                                                positiveAmount,
+                                                words,
+                                                sum,
+                                                positiveIndices);
+            final int negativeSize = loadSubset(negativeTable,
+                                                negativeEquities,
+                                                negativeAmount,
+                                                words,
+                                                sum,
+                                                negativeIndices);
+
+            final long linkStart = SolverEvents.begin();
+            EquityGroups.link(positiveIndices, positiveSize,
+                              negativeIndices,
+                              positiveNodes, negativeNodes,
+                              positiveEquities, negativeEquities);
+
+            positiveAmount = EquityGroups.remove(positiveIndices,
+                                                 positiveSize,
+                                                 positiveNodes,
+                                                 positiveEquities,
+                                                 positiveAmount);
+            negativeAmount = EquityGroups.remove(negativeIndices,
+                                                 negativeSize,
+                                                 negativeNodes,
+                                                 negativeEquities,
+                                                 negativeAmount);
+            linkNanos += SolverEvents.since(linkStart);
+            ++links;
+            total -= sum;
+        }
+
+        SolverEvents.end(NAME,
+                         SolverPhase.SEARCH,
+                         N,
+                         states,
+                         searchStart,
+                         linkNanos);
+
+        final long resultStart = SolverEvents.begin();
+        List<Node> resultNodeList = new ArrayList<Node>(Arrays.asList(copies));
+        SolverEvents.end(NAME, SolverPhase.RESULT, N, 0L, resultStart);
+        SolverEvents.report(NAME, SolverPhase.LINK, N, links, linkNanos);
+        return resultNodeList;
+    }
+
+    /**
+     * Loads into row <tt>i</tt> of <code>table</code> the bit set of sums
+     * achievable with the first <tt>i</tt> values.
+     */
+    private static void loadReachableSums(long[] table,
+                                          long[] values,
+                                          int amount,
+                                          int words) {
+        for (int w = 0; w < words; ++w) {
+            table[w] = 0L;
+        }
+
+        table[0] = 1L;
+
+        for (int i = 0; i < amount; ++i) {
+            final int from = i * words;
+            final int to = from + words;
+            final int wordShift = (int)(values[i] >>> 6);
+            final int bitShift = (int)(values[i] & 63L);
+
+            for (int w = 0; w < words; ++w) {
+                long shifted = 0L;
+                final int source = w - wordShift;
+
+                if (source >= 0) {
+                    shifted = table[from + source] << bitShift;
+
+                    if (bitShift != 0 && source > 0) {
+                        shifted |= table[from + source - 1]
+                                   >>> (64 - bitShift);
+                    }
+                }
+
+                table[to + w] = table[from + w] | shifted;
+            }
+        }
+    }
+
+    private static long leastCommonSum(long[] positiveTable,
+                                       int positiveAmount,
+                                       long[] negativeTable,
+                                       int negativeAmount,
+                                       int words) {
+        final int positiveRow = positiveAmount * words;
+        final int negativeRow = negativeAmount * words;
+
+        for (int w = 0; w < words; ++w) {
+            long common = positiveTable[positiveRow + w]
+                        & negativeTable[negativeRow + w];
+
+            if (w == 0) {
+                // The empty group.
+                common &= ~1L;
+            }
+
+            if (common != 0L) {
+                return ((long) w << 6) + Long.numberOfTrailingZeros(common);
+            }
+        }
+
+        throw new IllegalStateException(
+                "The equities of the input graph do not sum up to zero.");
+    }
+
+    /**
+     * Loads the ascending indices of a subset of values summing up to
+     * <code>sum</code> into <code>indices</code>.
+     *
+     * @return the size of the subset.
+     */
+    private static int loadSubset(long[] table,
+                                  long[] values,
+                                  int amount,
+                                  int words,
+                                  long sum,
+                                  int[] indices) {
+        int size = 0;
+
+        for (int i = amount; i > 0 && sum > 0L; --i) {
+            if (isSet(table, (i - 1) * words, sum) == false) {
+                indices[size++] = i - 1;
+                sum -= values[i - 1];
+            }
+        }
+
+        for (int i = 0, j = size - 1; i < j; ++i, --j) {
+            int tmp = indices[i];
+            indices[i] = indices[j];
+            indices[j] = tmp;
+        }
+
+        return size;
+    }
+
+    private static boolean isSet(long[] table, int row, long bit) {
+        return (table[row + (int)(bit >>> 6)] & (1L << (bit & 63L))) != 0L;
+    }
+}
@@ -42,6 +42,67 @@ public class Utilities {
         return nodeList;
     }
 
+    /**
+     * Returns a graph of netted nodes carrying random non-zero equities that
+     * sum up to zero. Each equity repeats the absolute value of an earlier
+     * one with probability <code>duplicateRatio</code>, and is drawn from
+     * <tt>1, 2, ..., maximumEquity</tt> otherwise.
+     *
+     * @param size the amount of nodes, at least 2.
+     * @param duplicateRatio the probability of repeating a value.
+     * @param maximumEquity the largest fresh absolute equity.
+     * @param r the random number generator.
+     *
+     * @return the list of nodes.
+     */
+    public static final List<Node> getRandomEquityGraph(
+            final int size,
+            final double duplicateRatio,
+            final long maximumEquity,
+            final Random r) {
+        if (size < 2) {
+            throw new IllegalArgumentException("Bad graph size: " + size);
+        }
+
+        if (maximumEquity < 1L) {
+            throw new IllegalArgumentException(
+                    "Bad maximum equity: " + maximumEquity);
+        }
+
+        long[] values = new long[size];
+        long sum = 0L;
+
+        for (int i = 0; i < size - 1; ++i) {
+            long value;
+
+            if (i > 0 && r.nextDouble() < duplicateRatio) {
+                value = Math.abs(values[r.nextInt(i)]);
+            } else {
+                value = Math.abs(r.nextLong() % maximumEquity) + 1L;
+            }
+
+            // Keep the running sum small, so that the last equity is too.
+            values[i] = sum > 0L ? -value : value;
+            sum += values[i];
+
+            if (i == size - 2 && sum == 0L) {
+                // The last equity may not be zero; flip this one.
+                sum -= 2 * values[i];
+                values[i] = -values[i];
+            }
+        }
+
+        values[size - 1] = -sum;
+
+        List<Node> nodeList = new ArrayList<Node>(size);
+
+        for (int i = 0; i < size; ++i) {
+            nodeList.add(new Node("" + i, values[i]));
+        }
+
+        return nodeList;
+    }
+
     public static final boolean loanGraphsAreEquivalent(List<Node> nodeList1,
                                                         List<Node> nodeList2) {
         Set<Node> set1 = new HashSet<Node>(nodeList1.size());
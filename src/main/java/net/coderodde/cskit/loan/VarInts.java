@@ -0,0 +1,52 @@
+package net.coderodde.cskit.loan;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * This class implements the variable-length encoding of integers used by the
+ * binary formats: seven bits per byte, least significant group first, the high
+ * bit of a byte telling whether more bytes follow. Signed values are zigzag
+ * encoded first, so that small magnitudes take few bytes.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+final class VarInts {
+
+    private VarInts() {}
+
+    static void writeUnsigned(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0L) {
+            out.writeByte((int)(value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        out.writeByte((int) value);
+    }
+
+    static long readUnsigned(DataInput in) throws IOException {
+        long value = 0L;
+
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int b = in.readUnsignedByte();
+            value |= (long)(b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IOException("Malformed variable-length integer.");
+    }
+
+    static void writeSigned(DataOutput out, long value) throws IOException {
+        writeUnsigned(out, (value << 1) ^ (value >> 63));
+    }
+
+    static long readSigned(DataInput in) throws IOException {
+        final long value = readUnsigned(in);
+        return (value >>> 1) ^ -(value & 1L);
+    }
+}
@@ -0,0 +1,231 @@
+package net.coderodde.cskit.loan;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class nets the loans of a sliding time window, such as the last 24
+ * hours. Loans enter the window as they are recorded and leave it once they
+ * are as old as the window; a retired loan is subtracted from the equities
+ * of its lender and borrower. Each {@link #advance(long)} settles the changes
+ * since the previous one through a {@link DeltaSettler}, so a tick costs time
+ * proportional to the loans recorded and retired and to the payments of the
+ * accounts involved, not to the size of the window. As the loans come and go,
+ * the settler re-settles the window whenever its payments drift too far from
+ * a linear plan, so the plan keeps at most
+ * {@link DeltaSettler#RESETTLE_FACTOR} times as many payments as one.
+ * <p>
+ * Loans must be recorded in the order of time.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public class WindowedSettler {
+
+    private final long windowLength;
+    private final Map<String, Integer> accounts;
+    private final Deque<Loan> loans;
+    private final DeltaSettler settler;
+    private long time;
+
+    /**
+     * Constructs an empty window.
+     *
+     * @param windowLength the length of the window, in the units of the
+     * timestamps.
+     * @param startTime the time of the first tick.
+     */
+    public WindowedSettler(final long windowLength, final long startTime) {
+        if (windowLength <= 0L) {
+            throw new IllegalArgumentException(
+                    "Illegal window length: " + windowLength);
+        }
+
+        this.windowLength = windowLength;
+        this.accounts = new HashMap<String, Integer>();
+        this.loans = new ArrayDeque<Loan>();
+        this.settler = new DeltaSettler(new SettlementPlan(new String[0]));
+        this.time = startTime;
+    }
+
+    /**
+     * Returns the index of an account, registering it if needed.
+     *
+     * @param name the name of the account.
+     * @return the index of the account.
+     */
+    public int getAccount(final String name) {
+        if (name == null) {
+            throw new NullPointerException("Account name is null.");
+        }
+
+        Integer account = accounts.get(name);
+
+        if (account == null) {
+            account = settler.addAccount(name);
+            accounts.put(name, account);
+        }
+
+        return account;
+    }
+
+    /**
+     * Records a loan, as in {@link Node#connectTo(Node, long)}.
+     *
+     * @param time the time of the loan.
+     * @param lender the name of the lender.
+     * @param borrower the name of the borrower.
+     * @param amount the positive amount lent.
+     */
+    public void recordLoan(final long time,
+                           final String lender,
+                           final String borrower,
+                           final long amount) {
+        recordLoan(time, getAccount(lender), getAccount(borrower), amount);
+    }
+
+    /**
+     * Records a loan between registered accounts. The loan counts from the
+     * next tick on.
+     *
+     * @param time the time of the loan, no earlier than the last loan or
+     * tick.
+     * @param lender the index of the lender.
+     * @param borrower the index of the borrower.
+     * @param amount the positive amount lent.
+     */
+    public void recordLoan(final long time,
+                           final int lender,
+                           final int borrower,
+                           final long amount) {
+        checkAccount(lender);
+        checkAccount(borrower);
+
+        if (time < this.time) {
+            throw new IllegalArgumentException(
+                    "Loan time " + time + " precedes the current time " +
+                    this.time + ".");
+        }
+
+        if (amount <= 0) {
+            throw new IllegalArgumentException(
+                    "Illegal amount given: " + amount);
+        }
+
+        if (lender == borrower) {
+            throw new IllegalArgumentException("Requesting a self-loop.");
+        }
+
+        settler.adjust(lender, amount);
+        settler.adjust(borrower, -amount);
+        loans.addLast(new Loan(time, lender, borrower, amount));
+        this.time = time;
+    }
+
+    /**
+     * Slides the window to end at <code>now</code>, retiring the loans at
+     * least <code>windowLength</code> older, and settles the changes.
+     *
+     * @param now the new time.
+     * @return the changes to the plan since the previous tick.
+     */
+    public SettlementDelta advance(final long now) {
+        if (now < time) {
+            throw new IllegalArgumentException(
+                    "Time " + now + " precedes the current time " + time +
+                    ".");
+        }
+
+        time = now;
+
+        while (loans.isEmpty() == false
+                && now - loans.peekFirst().time >= windowLength) {
+            final Loan loan = loans.removeFirst();
+            settler.adjust(loan.lender, -loan.amount);
+            settler.adjust(loan.borrower, loan.amount);
+        }
+
+        return settler.commit();
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public long getWindowLength() {
+        return windowLength;
+    }
+
+    /**
+     * Returns the amount of loans in the window, including those recorded
+     * since the last tick.
+     *
+     * @return the amount of loans.
+     */
+    public int getLoanAmount() {
+        return loans.size();
+    }
+
+    public int getAccountAmount() {
+        return settler.getAccountAmount();
+    }
+
+    /**
+     * Returns the amount of payments of the plan as of the last tick.
+     *
+     * @return the amount of payments.
+     */
+    public int getPaymentAmount() {
+        return settler.getPaymentAmount();
+    }
+
+    /**
+     * Returns the equity of an account over the loans in the window.
+     *
+     * @param account the index of the account.
+     * @return the equity.
+     */
+    public long getEquity(final int account) {
+        return settler.getEquity(account);
+    }
+
+    /**
+     * Returns the plan as of the last tick. This costs time linear in the
+     * amount of payments.
+     *
+     * @return the current plan.
+     */
+    public SettlementPlan getPlan() {
+        return settler.toPlan();
+    }
+
+    private void checkAccount(final int account) {
+        if (account < 0 || account >= settler.getAccountAmount()) {
+            throw new IndexOutOfBoundsException(
+                    "Account out of range: " + account);
+        }
+    }
+
+    /**
+     * A loan in the window.
+     */
+    private static final class Loan {
+
+        final long time;
+        final int lender;
+        final int borrower;
+        final long amount;
+
+        Loan(final long time,
+             final int lender,
+             final int borrower,
+             final long amount) {
+            this.time = time;
+            this.lender = lender;
+            this.borrower = borrower;
+            this.amount = amount;
+        }
+    }
+}
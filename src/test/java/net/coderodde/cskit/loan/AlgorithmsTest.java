@@ -0,0 +1,307 @@
+package net.coderodde.cskit.loan;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import junit.framework.TestCase;
+
+/**
+ * This class tests the simplification algorithms against the least amount of
+ * edges, found by a dynamic program over the subsets of the accounts. The
+ * partitional search enumerates the partitions of the accounts in Gray code
+ * order, and so must reach it.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public class AlgorithmsTest extends TestCase {
+
+    private static final int GRAPHS = 200;
+    private static final int MAX_ACCOUNTS = 10;
+
+    public void testPartitionalSimplifyFindsTheOptimum() {
+        assertOptimal(Algorithms.partitionalSimplify());
+    }
+
+    public void testPermutationalSimplifyFindsTheOptimum() {
+        assertOptimal(Algorithms.permutationalSimplify());
+    }
+
+    public void testEveryAlgorithmSettlesZeroEquities() {
+        // A sharded aggregate may net out completely.
+        List<Node> nodeList = new ArrayList<Node>();
+        nodeList.add(new Node("a", 0L));
+        nodeList.add(new Node("b", 0L));
+
+        for (Algorithm algorithm : Algorithms.all()) {
+            List<Node> result =
+                    Algorithms.forName(algorithm.toString()).exec(nodeList);
+
+            assertEquals(algorithm.toString(), 2, result.size());
+            assertEquals(algorithm.toString(),
+                         0,
+                         Utilities.getEdgeAmount(result));
+        }
+    }
+
+    public void testGreedyCombinatorialSimplify() {
+        assertEquivalent(Algorithms.greedyCombinatorialSimplify());
+    }
+
+    public void testSortedGreedyCombinatorialSimplify() {
+        assertEquivalent(Algorithms.sortedGreedyCombinatorialSimplify());
+    }
+
+    public void testIncrementalGreedySimplify() {
+        assertEquivalent(Algorithms.incrementalGreedySimplify());
+    }
+
+    public void testSubsetSumSimplify() {
+        assertEquivalent(Algorithms.subsetSumSimplify());
+    }
+
+    public void testSubsetSumSimplifyAgainstThePartitionalOptimum() {
+        Algorithm subsetSum = Algorithms.subsetSumSimplify();
+        Algorithm partitional = Algorithms.partitionalSimplify();
+        Random random = new Random(17L);
+
+        for (int i = 0; i < GRAPHS; ++i) {
+            // Small equities, so that the bit set tables are used.
+            List<Node> nodeList =
+                    Utilities.getRandomEquityGraph(2 + random.nextInt(
+                                                           MAX_ACCOUNTS - 1),
+                                                   0.5,
+                                                   4L,
+                                                   random);
+            List<Node> result = subsetSum.exec(nodeList);
+            final int edges = Utilities.getEdgeAmount(result);
+            final int optimum =
+                    Utilities.getEdgeAmount(partitional.exec(nodeList));
+
+            assertTrue(Utilities.loanGraphsAreEquivalent(nodeList, result));
+            assertTrue(edges >= optimum);
+            assertTrue(edges <= Math.max(getNonZeroAmount(nodeList) - 1, 0));
+        }
+    }
+
+    public void testGreedySearchesSettleZeroSumPairs() {
+        // Every account is matched by another, so the optimum is all pairs.
+        List<Node> nodeList = new ArrayList<Node>();
+        final long[] equities = { 3L, -5L, 7L, -3L, 5L, -7L, 2L, -2L };
+
+        for (int i = 0; i < equities.length; ++i) {
+            nodeList.add(new Node("" + i, equities[i]));
+        }
+
+        for (Algorithm algorithm : new Algorithm[]{
+                 Algorithms.greedyCombinatorialSimplify(),
+                 Algorithms.sortedGreedyCombinatorialSimplify(),
+                 Algorithms.incrementalGreedySimplify(),
+                 Algorithms.subsetSumSimplify(),
+                 Algorithms.partitionalSimplify()
+             }) {
+            List<Node> result = algorithm.exec(nodeList);
+
+            assertTrue(algorithm.toString(),
+                       Utilities.loanGraphsAreEquivalent(nodeList, result));
+            assertEquals(algorithm.toString(),
+                         4,
+                         Utilities.getEdgeAmount(result));
+        }
+    }
+
+    public void testLinearSimplify() {
+        assertEquivalent(Algorithms.linearSimplify());
+    }
+
+    public void testImprovedSimplifyNeverAddsEdges() {
+        Algorithm base = Algorithms.linearSimplify();
+        Algorithm improved = Algorithms.improved(base, 10L);
+        Random random = new Random(7L);
+
+        for (int i = 0; i < GRAPHS; ++i) {
+            List<Node> nodeList = getRandomGraph(random, i);
+            List<Node> result = improved.exec(nodeList);
+            final int edges = Utilities.getEdgeAmount(result);
+
+            assertTrue(Utilities.loanGraphsAreEquivalent(nodeList, result));
+            assertTrue(edges >= getOptimalEdgeAmount(nodeList));
+            assertTrue(edges
+                       <= Utilities.getEdgeAmount(base.exec(nodeList)));
+        }
+    }
+
+    public void testParallelLinearMatchesLinear() throws Exception {
+        Random random = new Random(13L);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            for (int i = 0; i < 10; ++i) {
+                List<Node> nodeList =
+                        Utilities.getRandomEquityGraph(1000 + random.nextInt(
+                                                               5000),
+                                                       0.3,
+                                                       1000L,
+                                                       random);
+                SettlementPlan expected =
+                        Algorithms.linearSimplify().settle(nodeList);
+                SettlementPlan actual =
+                        ParallelLinearSimplifier.settle(nodeList,
+                                                        executor,
+                                                        1 + i % 7);
+                assertEquals(expected.size(), actual.size());
+
+                for (int j = 0; j < expected.size(); ++j) {
+                    assertEquals(expected.getFrom(j), actual.getFrom(j));
+                    assertEquals(expected.getTo(j), actual.getTo(j));
+                    assertEquals(expected.getAmount(j), actual.getAmount(j));
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testExecResultIsModifiableAndGroupedBySign() {
+        List<Node> nodeList = new ArrayList<Node>();
+        final long[] equities = { -4L, 0L, 3L, -1L, 2L, 0L };
+
+        for (int i = 0; i < equities.length; ++i) {
+            nodeList.add(new Node("" + i, equities[i]));
+        }
+
+        for (Algorithm algorithm : new Algorithm[]{
+                 Algorithms.linearSimplify(),
+                 Algorithms.parallelLinearSimplify(),
+                 Algorithms.improved(Algorithms.linearSimplify(), 10L)
+             }) {
+            List<Node> result = algorithm.exec(nodeList);
+            StringBuilder names = new StringBuilder();
+
+            for (Node node : result) {
+                names.append(node.getName());
+            }
+
+            assertEquals(algorithm.toString(), "152403", names.toString());
+            result.remove(0);
+        }
+    }
+
+    public void testLinearSimplifyRejectsImbalance() {
+        final PaymentSink sink = new PaymentSink() {
+            @Override
+            public void pay(int lender, int borrower, long amount) {}
+        };
+
+        for (long[] equities : new long[][]{ { 5L, -10L }, { 10L, -5L } }) {
+            try {
+                Algorithms.linearSimplify(new ArrayEquityTable(equities),
+                                          sink);
+                fail("Unbalanced equities passed.");
+            } catch (IllegalStateException ex) {
+                // Expected.
+            }
+        }
+    }
+
+    /**
+     * Returns the least amount of edges settling the equities: the accounts
+     * of non-zero equity less the most disjoint groups of zero sum.
+     */
+    static int getOptimalEdgeAmount(final List<Node> nodeList) {
+        List<Long> values = new ArrayList<Long>();
+
+        for (Node node : nodeList) {
+            if (node.getEquity() != 0L) {
+                values.add(node.getEquity());
+            }
+        }
+
+        final int n = values.size();
+        final long[] sums = new long[1 << n];
+        final int[] groups = new int[1 << n];
+
+        for (int mask = 1; mask < (1 << n); ++mask) {
+            final int low = Integer.numberOfTrailingZeros(mask);
+            sums[mask] = sums[mask & (mask - 1)] + values.get(low);
+        }
+
+        for (int mask = 1; mask < (1 << n); ++mask) {
+            if (sums[mask] != 0L) {
+                continue;
+            }
+
+            final int low = mask & -mask;
+
+            // Split off each zero-sum group holding the lowest account.
+            for (int group = mask; group != 0; group = (group - 1) & mask) {
+                if ((group & low) != 0 && sums[group] == 0L) {
+                    groups[mask] = Math.max(groups[mask],
+                                            1 + groups[mask ^ group]);
+                }
+            }
+        }
+
+        return n - groups[(1 << n) - 1];
+    }
+
+    private static void assertOptimal(final Algorithm algorithm) {
+        Random random = new Random(7L);
+
+        for (int i = 0; i < GRAPHS; ++i) {
+            List<Node> nodeList = getRandomGraph(random, i);
+            List<Node> result = algorithm.exec(nodeList);
+
+            assertTrue(Utilities.loanGraphsAreEquivalent(nodeList, result));
+            assertEquals(getOptimalEdgeAmount(nodeList),
+                         Utilities.getEdgeAmount(result));
+        }
+    }
+
+    /**
+     * Asserts that the results are equivalent to the input, with no fewer
+     * edges than the optimum and no more than the linear simplification.
+     */
+    private static void assertEquivalent(final Algorithm algorithm) {
+        Random random = new Random(7L);
+
+        for (int i = 0; i < GRAPHS; ++i) {
+            List<Node> nodeList = getRandomGraph(random, i);
+            List<Node> result = algorithm.exec(nodeList);
+            final int edges = Utilities.getEdgeAmount(result);
+
+            assertTrue(Utilities.loanGraphsAreEquivalent(nodeList, result));
+            assertTrue(edges >= getOptimalEdgeAmount(nodeList));
+            assertTrue(edges <= Math.max(getNonZeroAmount(nodeList) - 1, 0));
+        }
+    }
+
+    /**
+     * Returns a small graph, alternately of loans and of netted equities
+     * with many duplicates, which make zero-sum groups likely.
+     */
+    private static List<Node> getRandomGraph(final Random random,
+                                             final int index) {
+        final int size = 2 + random.nextInt(MAX_ACCOUNTS - 1);
+
+        if (index % 2 == 0) {
+            return Utilities.getRandomGraph(size, 0.3f, 10L, random);
+        }
+
+        return Utilities.getRandomEquityGraph(size, 0.5, 6L, random);
+    }
+
+    private static int getNonZeroAmount(final List<Node> nodeList) {
+        int amount = 0;
+
+        for (Node node : nodeList) {
+            if (node.getEquity() != 0L) {
+                ++amount;
+            }
+        }
+
+        return amount;
+    }
+}
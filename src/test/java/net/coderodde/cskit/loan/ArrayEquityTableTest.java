@@ -0,0 +1,56 @@
+package net.coderodde.cskit.loan;
+
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * This class tests {@link ArrayEquityTable}.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public class ArrayEquityTableTest extends TestCase {
+
+    public void testViewsAPrefix() {
+        ArrayEquityTable table =
+                new ArrayEquityTable(new long[]{ 3L, -1L, -2L, 9L }, 3);
+
+        assertEquals(3, table.size());
+        assertEquals(3L, table.getEquity(0));
+        assertEquals(-1L, table.getEquity(1));
+        assertEquals(-2L, table.getEquity(2));
+        assertEquals(4, new ArrayEquityTable(new long[4]).size());
+        assertEquals(0, new ArrayEquityTable(new long[4], 0).size());
+    }
+
+    public void testRejectsIllegalSizes() {
+        for (int size : new int[]{ -1, 3 }) {
+            try {
+                new ArrayEquityTable(new long[2], size);
+                fail("Size " + size + " passed.");
+            } catch (IllegalArgumentException ex) {
+                // Expected.
+            }
+        }
+    }
+
+    public void testIndexesTheNodesByPosition() {
+        List<Node> nodeList = new ArrayList<Node>();
+        Node a = new Node("a");
+        Node b = new Node("b");
+        Node c = new Node("c");
+        nodeList.add(c);
+        nodeList.add(a);
+        nodeList.add(b);
+        a.connectTo(b, 4L);
+        c.connectTo(a, 1L);
+
+        ArrayEquityTable table = ArrayEquityTable.of(nodeList);
+
+        assertEquals(3, table.size());
+        assertEquals(1L, table.getEquity(0));
+        assertEquals(3L, table.getEquity(1));
+        assertEquals(-4L, table.getEquity(2));
+    }
+}
@@ -0,0 +1,210 @@
+package net.coderodde.cskit.loan;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ * This class tests {@link BatchSettlement}.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public class BatchSettlementTest extends TestCase {
+
+    private File directory;
+
+    @Override
+    protected void setUp() throws IOException {
+        directory = File.createTempFile("batch", "");
+        directory.delete();
+        assertTrue(directory.mkdir());
+    }
+
+    @Override
+    protected void tearDown() {
+        delete(directory);
+    }
+
+    public void testSettlesLogsAndFailsNamesakes() throws Exception {
+        File first = writeLog("first/a.log", 1L);
+        File second = writeLog("second/a.log", 2L);
+        File other = writeLog("first/b.log", 3L);
+        File output = new File(directory, "plans");
+        assertTrue(output.mkdir());
+
+        BatchSettlement batch =
+                new BatchSettlement(Algorithms.linearSimplify(),
+                                    output,
+                                    2,
+                                    3,
+                                    2);
+        batch.run(Arrays.asList(first, second, other));
+
+        assertEquals(2, batch.getSettledAmount());
+        assertEquals(1, batch.getFailures().size());
+        assertTrue(batch.getFailures().get(0).startsWith(second + ":"));
+        assertPlan(first, new File(output, "a.log.plan"));
+        assertPlan(other, new File(output, "b.log.plan"));
+    }
+
+    public void testErrorFailsOnlyItsLog() throws Exception {
+        List<File> files = new ArrayList<File>();
+
+        for (int i = 0; i < 6; ++i) {
+            files.add(writeLog("log" + i, i));
+        }
+
+        files.add(new File(directory, "missing"));
+
+        // Fails on the log of seed 3 as if the solver ran out of stack.
+        final int failingSize = readSize(files.get(3));
+        final Algorithm linear = Algorithms.linearSimplify();
+        Algorithm algorithm = new Algorithm("failing") {
+            @Override
+            public List<Node> exec(List<Node> nodeList) {
+                if (nodeList.size() == failingSize) {
+                    throw new StackOverflowError();
+                }
+
+                return linear.exec(nodeList);
+            }
+        };
+
+        final File output = new File(directory, "plans");
+        assertTrue(output.mkdir());
+        final BatchSettlement batch =
+                new BatchSettlement(algorithm, output, 1, 1, 1);
+        final List<File> input = files;
+        final Exception[] failure = new Exception[1];
+
+        Thread runner = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    batch.run(input);
+                } catch (Exception ex) {
+                    failure[0] = ex;
+                }
+            }
+        });
+
+        runner.setDaemon(true);
+        runner.start();
+        runner.join(30000L);
+
+        assertFalse("The pipeline hangs.", runner.isAlive());
+        assertNull(failure[0]);
+        assertEquals(2, batch.getFailures().size());
+        assertTrue(batch.getFailures().get(0).contains("StackOverflowError"));
+        assertTrue(batch.getFailures().get(1).startsWith(files.get(6) + ":"));
+        assertEquals(5, batch.getSettledAmount());
+    }
+
+    public void testExitStatus() throws Exception {
+        File logs = new File(directory, "logs");
+        writeLog("logs/a.log", 5L);
+        writeLog("logs/b.log", 6L);
+        String output = new File(directory, "plans").getPath();
+
+        assertEquals(0, BatchSettlement.execute("--solvers", "2",
+                                                "--output", output,
+                                                logs.getPath()));
+        assertEquals(1, BatchSettlement.execute(
+                "--algorithm", "linearSimplify",
+                "--output", output,
+                logs.getPath(),
+                new File(directory, "missing").getPath()));
+    }
+
+    /**
+     * Writes a random loan log of accounts of distinct amounts, so that the
+     * seeds give logs of different sizes.
+     */
+    private File writeLog(final String name, final long seed)
+    throws IOException {
+        File file = new File(directory, name);
+        file.getParentFile().mkdirs();
+        Random random = new Random(seed);
+        final int accounts = 10 + (int) seed * 7;
+        PrintWriter out = new PrintWriter(new FileWriter(file));
+
+        try {
+            for (int i = 0; i < 5 * accounts; ++i) {
+                final int lender = random.nextInt(accounts);
+                final int borrower =
+                        (lender + 1 + random.nextInt(accounts - 1)) % accounts;
+                out.println("a" + lender + " a" + borrower + " " +
+                            (1 + random.nextInt(1000)));
+            }
+
+            // Make sure every account appears.
+            for (int i = 1; i < accounts; ++i) {
+                out.println("a0 a" + i + " 1");
+            }
+        } finally {
+            out.close();
+        }
+
+        return file;
+    }
+
+    private static int readSize(final File log) throws IOException {
+        return EquityAggregate.readLoanLog(log, 0L, Long.MAX_VALUE)
+                              .toNodeList()
+                              .size();
+    }
+
+    /**
+     * Asserts that the plan settles the equities of the log.
+     */
+    private static void assertPlan(final File log, final File planFile)
+    throws IOException {
+        List<Node> nodeList =
+                EquityAggregate.readLoanLog(log, 0L, Long.MAX_VALUE)
+                               .toNodeList();
+        InputStream in =
+                new BufferedInputStream(new FileInputStream(planFile));
+        SettlementPlan plan;
+
+        try {
+            plan = SettlementPlan.readFrom(in);
+        } finally {
+            in.close();
+        }
+
+        assertEquals(nodeList.size(), plan.getAccountAmount());
+        long[] equities = new long[nodeList.size()];
+
+        for (int i = 0; i < plan.size(); ++i) {
+            equities[plan.getFrom(i)] += plan.getAmount(i);
+            equities[plan.getTo(i)] -= plan.getAmount(i);
+        }
+
+        for (int i = 0; i < nodeList.size(); ++i) {
+            assertEquals(nodeList.get(i).getName(), plan.getName(i));
+            assertEquals(nodeList.get(i).getEquity(), equities[i]);
+        }
+    }
+
+    private static void delete(final File file) {
+        File[] children = file.listFiles();
+
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+
+        file.delete();
+    }
+}
@@ -0,0 +1,191 @@
+package net.coderodde.cskit.loan;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import junit.framework.TestCase;
+
+/**
+ * This class tests {@link ConcurrentLedger}.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public class ConcurrentLedgerTest extends TestCase {
+
+    private static final int ACCOUNTS = 3000;
+    private static final int THREADS = 4;
+    private static final int LOANS_PER_THREAD = 50000;
+
+    public void testRegistersAccountsOnce() {
+        ConcurrentLedger ledger = new ConcurrentLedger();
+
+        assertEquals(0, ledger.getAccount("a"));
+        assertEquals(1, ledger.getAccount("b"));
+        assertEquals(0, ledger.getAccount("a"));
+        assertEquals(2, ledger.size());
+        assertEquals("b", ledger.getName(1));
+    }
+
+    public void testSnapshotIsIsolatedFromLaterLoans() {
+        ConcurrentLedger ledger = new ConcurrentLedger();
+        Random random = new Random(11L);
+
+        for (int i = 0; i < ACCOUNTS; ++i) {
+            ledger.getAccount("" + i);
+        }
+
+        long[] expected = recordRandomly(ledger, random, 10000);
+        ConcurrentLedger.Snapshot snapshot = ledger.snapshot();
+
+        // Write to every page after the snapshot, and add accounts.
+        long[] later = recordRandomly(ledger, random, 10000);
+        ledger.recordLoan("new lender", "0", 1000L);
+
+        assertEquals(ACCOUNTS, snapshot.size());
+        assertEquals(ACCOUNTS + 1, ledger.size());
+
+        for (int i = 0; i < ACCOUNTS; ++i) {
+            assertEquals(expected[i], snapshot.getEquity(i));
+            assertEquals(expected[i] + later[i] - (i == 0 ? 1000L : 0L),
+                         ledger.getEquity(i));
+        }
+
+        assertEquals(1000L, ledger.getEquity(ACCOUNTS));
+        assertTrue(snapshot.getEpoch() < ledger.snapshot().getEpoch());
+    }
+
+    public void testConcurrentRecording() throws InterruptedException {
+        final ConcurrentLedger ledger = new ConcurrentLedger(true);
+
+        for (int i = 0; i < ACCOUNTS; ++i) {
+            ledger.getAccount("" + i);
+        }
+
+        final long[][] expected = new long[THREADS][];
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicReference<String> failure = new AtomicReference<String>();
+        List<Thread> threads = new ArrayList<Thread>();
+
+        for (int t = 0; t < THREADS; ++t) {
+            final int thread = t;
+
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    expected[thread] = recordRandomly(ledger,
+                                                      new Random(thread),
+                                                      LOANS_PER_THREAD);
+                }
+            }));
+        }
+
+        // Every snapshot taken meanwhile must see whole loans only.
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (running.get()) {
+                    ConcurrentLedger.Snapshot snapshot = ledger.snapshot();
+                    long sum = 0L;
+
+                    for (int i = 0; i < snapshot.size(); ++i) {
+                        sum += snapshot.getEquity(i);
+                    }
+
+                    if (sum != 0L) {
+                        failure.set("A snapshot sums up to " + sum);
+                    }
+                }
+            }
+        });
+
+        reader.start();
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        running.set(false);
+        reader.join();
+        assertNull(failure.get(), failure.get());
+
+        List<Node> nodeList = ledger.toNodeList();
+
+        for (int i = 0; i < ACCOUNTS; ++i) {
+            long equity = 0L;
+
+            for (long[] equities : expected) {
+                equity += equities[i];
+            }
+
+            assertEquals(equity, ledger.getEquity(i));
+            assertEquals(equity, nodeList.get(i).getEquity());
+        }
+
+        assertTrue(Utilities.loanGraphsAreEquivalent(nodeList,
+                                                     ledger.toLoanGraph()));
+    }
+
+    public void testRejectsBadLoans() {
+        ConcurrentLedger ledger = new ConcurrentLedger();
+        ledger.getAccount("a");
+        ledger.getAccount("b");
+
+        try {
+            ledger.recordLoan(0, 0, 1L);
+            fail("A self-loop passed.");
+        } catch (IllegalArgumentException ex) {
+            // Expected.
+        }
+
+        try {
+            ledger.recordLoan(0, 1, 0L);
+            fail("A zero loan passed.");
+        } catch (IllegalArgumentException ex) {
+            // Expected.
+        }
+
+        try {
+            ledger.recordLoan(0, 2, 1L);
+            fail("An unknown account passed.");
+        } catch (IndexOutOfBoundsException ex) {
+            // Expected.
+        }
+
+        try {
+            ledger.toLoanGraph();
+            fail("A ledger without loans returned a loan graph.");
+        } catch (IllegalStateException ex) {
+            // Expected.
+        }
+    }
+
+    /**
+     * Records random loans among the first {@link #ACCOUNTS} accounts,
+     * returning the changes of their equities.
+     */
+    private static long[] recordRandomly(final ConcurrentLedger ledger,
+                                         final Random random,
+                                         final int loans) {
+        long[] changes = new long[ACCOUNTS];
+
+        for (int i = 0; i < loans; ++i) {
+            final int lender = random.nextInt(ACCOUNTS);
+            final int borrower =
+                    (lender + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+            final long amount = 1L + random.nextInt(1000);
+
+            ledger.recordLoan(lender, borrower, amount);
+            changes[lender] += amount;
+            changes[borrower] -= amount;
+        }
+
+        return changes;
+    }
+}
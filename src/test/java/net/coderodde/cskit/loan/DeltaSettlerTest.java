@@ -0,0 +1,233 @@
+package net.coderodde.cskit.loan;
+
+import java.util.Random;
+import java.util.TreeMap;
+import junit.framework.TestCase;
+
+/**
+ * This class tests {@link DeltaSettler}.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public class DeltaSettlerTest extends TestCase {
+
+    private static final int ACCOUNTS = 1000;
+    private static final int TICKS = 20000;
+
+    public void testPaymentsStayBoundedOverManyTicks() {
+        Random random = new Random(3L);
+        DeltaSettler settler = new DeltaSettler(
+                new SettlementPlan(getNames(ACCOUNTS)));
+
+        for (int tick = 0; tick < TICKS; ++tick) {
+            adjustRandomly(settler, ACCOUNTS, 3, random);
+            settler.commit();
+
+            final int nonZero = getNonZeroAmount(settler);
+            assertTrue(settler.getPaymentAmount()
+                       <= DeltaSettler.RESETTLE_FACTOR
+                          * Math.max(nonZero - 1, 0));
+        }
+
+        assertEquities(settler.toPlan(), settler);
+        assertEquals(settler.toPlan().size(), settler.getPaymentAmount());
+    }
+
+    public void testDeltasChainIntoThePlan() {
+        Random random = new Random(5L);
+        DeltaSettler settler =
+                new DeltaSettler(new SettlementPlan(getNames(6)));
+        SettlementPlan plan = settler.toPlan();
+
+        for (int tick = 0; tick < TICKS; ++tick) {
+            adjustRandomly(settler, 6, 1, random);
+            plan = settler.commit().applyTo(plan);
+            assertEquals(toMap(settler.toPlan()), toMap(plan));
+        }
+
+        assertEquities(plan, settler);
+    }
+
+    public void testDeltasChainThroughTrims() {
+        Random random = new Random(7L);
+        DeltaSettler settler =
+                new DeltaSettler(new SettlementPlan(getNames(40)));
+        SettlementPlan plan = settler.toPlan();
+
+        for (int tick = 0; tick < TICKS; ++tick) {
+            adjustRandomly(settler, 40, 3, random);
+            SettlementDelta delta = settler.commit();
+            TreeMap<Long, Long> seen = new TreeMap<Long, Long>();
+
+            // Each payment changes at most once in a delta.
+            for (int i = 0; i < delta.size(); ++i) {
+                assertNull(seen.put(SettlementDelta.getKey(delta.getFrom(i),
+                                                           delta.getTo(i)),
+                                    delta.getAmount(i)));
+            }
+
+            plan = delta.applyTo(plan);
+        }
+
+        assertEquals(toMap(settler.toPlan()), toMap(plan));
+        assertEquities(plan, settler);
+    }
+
+    public void testTrimKeepsThePairingOffCycles() {
+        SettlementPlan plan = new SettlementPlan(getNames(6));
+        plan.pay(0, 1, 5L);
+        plan.pay(1, 2, 5L);
+        plan.pay(2, 0, 5L);
+        plan.pay(3, 4, 7L);
+
+        DeltaSettler settler = new DeltaSettler(plan);
+        settler.adjust(5, 1L);
+        settler.adjust(4, -1L);
+
+        // Five payments over three accounts of non-zero equity trigger a
+        // trim, which drops the cycle and keeps the payment from 3 to 4.
+        SettlementDelta delta = settler.commit();
+
+        assertEquals(2, settler.getPaymentAmount());
+        assertEquals(4, delta.size());
+
+        for (int i = 0; i < delta.size(); ++i) {
+            if (delta.getFrom(i) == 5) {
+                assertEquals(SettlementDelta.Type.ADD, delta.getType(i));
+                assertEquals(4, delta.getTo(i));
+            } else {
+                assertEquals(SettlementDelta.Type.CANCEL, delta.getType(i));
+                assertTrue(delta.getFrom(i) < 3);
+            }
+        }
+
+        assertEquals(toMap(settler.toPlan()), toMap(delta.applyTo(plan)));
+        assertEquities(settler.toPlan(), settler);
+    }
+
+    public void testTrimBypassesSettledAccounts() {
+        SettlementPlan plan = new SettlementPlan(getNames(5));
+        plan.pay(0, 2, 2L);
+        plan.pay(2, 3, 2L);
+        plan.pay(3, 4, 2L);
+
+        DeltaSettler settler = new DeltaSettler(plan);
+        settler.adjust(0, 1L);
+        settler.adjust(4, -1L);
+
+        // The payment from 0 to 4 makes four over two accounts of non-zero
+        // equity, and the accounts 2 and 3 in between are bypassed.
+        SettlementDelta delta = settler.commit();
+
+        assertEquals(1, settler.getPaymentAmount());
+        assertEquals(4, delta.size());
+        assertEquals(toMap(settler.toPlan()), toMap(delta.applyTo(plan)));
+        assertEquals(3L, (long) toMap(settler.toPlan())
+                                     .get(SettlementDelta.getKey(0, 4)));
+        assertEquities(settler.toPlan(), settler);
+    }
+
+    public void testContinuesFromAPlan() {
+        SettlementPlan plan = new SettlementPlan(getNames(3));
+        plan.pay(0, 1, 5L);
+        plan.pay(0, 1, 2L);
+        plan.pay(1, 2, 4L);
+
+        DeltaSettler settler = new DeltaSettler(plan);
+
+        assertEquals(7L, settler.getEquity(0));
+        assertEquals(-3L, settler.getEquity(1));
+        assertEquals(-4L, settler.getEquity(2));
+        assertEquals(2, settler.getPaymentAmount());
+
+        settler.adjust(2, 4L);
+        settler.adjust(0, -4L);
+
+        SettlementDelta delta = settler.commit();
+
+        assertEquals(toMap(settler.toPlan()), toMap(delta.applyTo(plan)));
+        assertEquities(settler.toPlan(), settler);
+    }
+
+    public void testUnbalancedCommitKeepsTheAdjustments() {
+        DeltaSettler settler =
+                new DeltaSettler(new SettlementPlan(getNames(2)));
+        settler.adjust(0, 5L);
+
+        try {
+            settler.commit();
+            fail("An unbalanced commit passed.");
+        } catch (IllegalStateException ex) {
+            // Expected.
+        }
+
+        settler.adjust(1, -5L);
+        settler.commit();
+        assertEquals(1, settler.getPaymentAmount());
+    }
+
+    static void adjustRandomly(final DeltaSettler settler,
+                               final int accounts,
+                               final int transfers,
+                               final Random random) {
+        for (int i = 0; i < transfers; ++i) {
+            final long amount = 1L + random.nextInt(100);
+            settler.adjust(random.nextInt(accounts), amount);
+            settler.adjust(random.nextInt(accounts), -amount);
+        }
+    }
+
+    static String[] getNames(final int amount) {
+        String[] names = new String[amount];
+
+        for (int i = 0; i < amount; ++i) {
+            names[i] = "a" + i;
+        }
+
+        return names;
+    }
+
+    /**
+     * Asserts that the payments of <code>plan</code> imply the equities of
+     * <code>settler</code>.
+     */
+    static void assertEquities(final SettlementPlan plan,
+                               final DeltaSettler settler) {
+        long[] equities = new long[plan.getAccountAmount()];
+
+        for (int i = 0; i < plan.size(); ++i) {
+            equities[plan.getFrom(i)] += plan.getAmount(i);
+            equities[plan.getTo(i)] -= plan.getAmount(i);
+        }
+
+        for (int i = 0; i < equities.length; ++i) {
+            assertEquals(settler.getEquity(i), equities[i]);
+        }
+    }
+
+    static TreeMap<Long, Long> toMap(final SettlementPlan plan) {
+        TreeMap<Long, Long> map = new TreeMap<Long, Long>();
+
+        for (int i = 0; i < plan.size(); ++i) {
+            final Long key =
+                    SettlementDelta.getKey(plan.getFrom(i), plan.getTo(i));
+            final Long old = map.get(key);
+            map.put(key, (old == null ? 0L : old) + plan.getAmount(i));
+        }
+
+        return map;
+    }
+
+    private static int getNonZeroAmount(final DeltaSettler settler) {
+        int amount = 0;
+
+        for (int i = 0; i < settler.getAccountAmount(); ++i) {
+            if (settler.getEquity(i) != 0L) {
+                ++amount;
+            }
+        }
+
+        return amount;
+    }
+}
@@ -0,0 +1,164 @@
+package net.coderodde.cskit.loan;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ * This class tests {@link EdgeRestrictedSettler}.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public class EdgeRestrictedSettlerTest extends TestCase {
+
+    public void testSettlesRandomGraphsAlongTheirLoans() {
+        Random random = new Random(17L);
+
+        for (int i = 0; i < 300; ++i) {
+            final int size = 2 + random.nextInt(i < 200 ? 12 : 150);
+            List<Node> nodeList =
+                    Utilities.getRandomGraph(size,
+                                             0.05f + random.nextFloat() / 2,
+                                             1L + random.nextInt(100),
+                                             random);
+            assertSettlement(nodeList,
+                             EdgeRestrictedSettler.settle(nodeList));
+        }
+    }
+
+    public void testCancelsACycle() {
+        List<Node> nodeList = getNodes(3);
+        nodeList.get(0).connectTo(nodeList.get(1), 5L);
+        nodeList.get(1).connectTo(nodeList.get(2), 3L);
+        nodeList.get(2).connectTo(nodeList.get(0), 4L);
+
+        SettlementPlan plan = EdgeRestrictedSettler.settle(nodeList);
+
+        assertSettlement(nodeList, plan);
+        assertEquals(2, plan.size());
+        assertEquals(3L, plan.getTotalFlow());
+    }
+
+    public void testMergesParallelLoans() {
+        SettlementPlan plan = new SettlementPlan(3);
+        EdgeRestrictedSettler.settle(3,
+                                     new int[]{ 0, 1, 0, 1 },
+                                     new int[]{ 1, 2, 1, 0 },
+                                     new long[]{ 2L, 4L, 3L, 1L },
+                                     4,
+                                     plan);
+
+        // 0 -> 1 of 5 less 1 -> 0 of 1, and 1 -> 2 of 4.
+        assertEquals(2, plan.size());
+        assertEquals(8L, plan.getTotalFlow());
+
+        for (int i = 0; i < plan.size(); ++i) {
+            if (plan.getFrom(i) == 0) {
+                assertEquals(1, plan.getTo(i));
+                assertEquals(4L, plan.getAmount(i));
+            } else {
+                assertEquals(1, plan.getFrom(i));
+                assertEquals(2, plan.getTo(i));
+                assertEquals(4L, plan.getAmount(i));
+            }
+        }
+    }
+
+    public void testRejectsNettedEquities() {
+        List<Node> nodeList = new ArrayList<Node>();
+        nodeList.add(new Node("a", 1L));
+        nodeList.add(new Node("b", -1L));
+
+        try {
+            EdgeRestrictedSettler.settle(nodeList);
+            fail("Equities without loans passed.");
+        } catch (IllegalArgumentException ex) {
+            // Expected.
+        }
+    }
+
+    /**
+     * Asserts that the plan keeps the equities, pays only along the loans of
+     * the input, no more than lent, once for each pair, and is acyclic.
+     */
+    private static void assertSettlement(final List<Node> nodeList,
+                                         final SettlementPlan plan) {
+        final int n = nodeList.size();
+        long[] equities = new long[n];
+        long[][] payments = new long[n][n];
+        long inputFlow = 0L;
+
+        for (int i = 0; i < plan.size(); ++i) {
+            final int from = plan.getFrom(i);
+            final int to = plan.getTo(i);
+            final Node lender = nodeList.get(from);
+            final Node borrower = nodeList.get(to);
+
+            assertEquals(0L, payments[from][to]);
+            assertTrue(plan.getAmount(i) <= lender.getLoanTo(borrower));
+            payments[from][to] = plan.getAmount(i);
+            equities[from] += plan.getAmount(i);
+            equities[to] -= plan.getAmount(i);
+        }
+
+        for (int i = 0; i < n; ++i) {
+            assertEquals(nodeList.get(i).getEquity(), equities[i]);
+
+            for (Node borrower : nodeList.get(i)) {
+                inputFlow += nodeList.get(i).getLoanTo(borrower);
+            }
+        }
+
+        assertTrue(plan.getTotalFlow() <= inputFlow);
+        assertAcyclic(payments);
+    }
+
+    /**
+     * Asserts that the nodes can be removed one source at a time.
+     */
+    private static void assertAcyclic(final long[][] payments) {
+        final int n = payments.length;
+        int[] inDegrees = new int[n];
+        int[] queue = new int[n];
+        int head = 0;
+        int tail = 0;
+
+        for (int u = 0; u < n; ++u) {
+            for (int v = 0; v < n; ++v) {
+                if (payments[u][v] > 0L) {
+                    ++inDegrees[v];
+                }
+            }
+        }
+
+        for (int u = 0; u < n; ++u) {
+            if (inDegrees[u] == 0) {
+                queue[tail++] = u;
+            }
+        }
+
+        while (head < tail) {
+            final int u = queue[head++];
+
+            for (int v = 0; v < n; ++v) {
+                if (payments[u][v] > 0L && --inDegrees[v] == 0) {
+                    queue[tail++] = v;
+                }
+            }
+        }
+
+        assertEquals("The plan has a cycle.", n, tail);
+    }
+
+    private static List<Node> getNodes(final int size) {
+        List<Node> nodeList = new ArrayList<Node>(size);
+
+        for (int i = 0; i < size; ++i) {
+            nodeList.add(new Node("" + i));
+        }
+
+        return nodeList;
+    }
+}
@@ -0,0 +1,109 @@
+package net.coderodde.cskit.loan;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import junit.framework.TestCase;
+
+/**
+ * This class tests {@link GrayPartitionGenerator}.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public class GrayPartitionGeneratorTest extends TestCase {
+
+    private static final long[] BELL = {
+        1L, 1L, 2L, 5L, 15L, 52L, 203L, 877L, 4140L, 21147L, 115975L
+    };
+
+    public void testEnumeratesBellNumberOfPartitions() {
+        for (int n = 1; n < BELL.length; ++n) {
+            GrayPartitionGenerator generator =
+                    new GrayPartitionGenerator(getWeights(n));
+            Set<String> partitions = new HashSet<String>();
+
+            do {
+                partitions.add(Arrays.toString(generator.getIndices()));
+            } while (generator.inc());
+
+            assertEquals(BELL[n], partitions.size());
+            assertEquals((double) BELL[n], SearchSpaceEstimator.bell(n));
+        }
+    }
+
+    public void testMovesOneElementPerStep() {
+        GrayPartitionGenerator generator =
+                new GrayPartitionGenerator(getWeights(8));
+        int[] previous = generator.getIndices().clone();
+
+        while (generator.inc()) {
+            final int[] current = generator.getIndices();
+            int changes = 0;
+
+            for (int i = 0; i < current.length; ++i) {
+                if (current[i] != previous[i]) {
+                    ++changes;
+                }
+            }
+
+            assertEquals(1, changes);
+            previous = current.clone();
+        }
+    }
+
+    public void testMaintainsBlockSumsAndSizes() {
+        final long[] weights = getWeights(7);
+        GrayPartitionGenerator generator =
+                new GrayPartitionGenerator(weights);
+
+        do {
+            final int[] blocks = generator.getIndices();
+            long[] sums = new long[weights.length];
+            int[] sizes = new int[weights.length];
+            int blockAmount = 0;
+
+            for (int i = 0; i < weights.length; ++i) {
+                sums[blocks[i]] += weights[i];
+                ++sizes[blocks[i]];
+                blockAmount = Math.max(blockAmount, blocks[i] + 1);
+            }
+
+            assertEquals(blockAmount, generator.getBlockAmount());
+
+            for (int b = 0; b < blockAmount; ++b) {
+                assertEquals(sums[b], generator.getBlockSum(b));
+                assertEquals(sizes[b], generator.getBlockSize(b));
+            }
+        } while (generator.inc());
+    }
+
+    public void testResetRestarts() {
+        GrayPartitionGenerator generator =
+                new GrayPartitionGenerator(getWeights(5));
+        int steps = 0;
+
+        while (generator.inc()) {
+            ++steps;
+        }
+
+        generator.reset();
+        assertEquals(1, generator.getBlockAmount());
+
+        while (generator.inc()) {
+            --steps;
+        }
+
+        assertEquals(0, steps);
+    }
+
+    private static long[] getWeights(final int n) {
+        long[] weights = new long[n];
+
+        for (int i = 0; i < n; ++i) {
+            weights[i] = (i % 2 == 0 ? 1L : -1L) * (i + 1);
+        }
+
+        return weights;
+    }
+}
@@ -0,0 +1,248 @@
+package net.coderodde.cskit.loan;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import junit.framework.TestCase;
+
+/**
+ * This class tests {@link LedgerArchive} and {@link LedgerArchiveWriter}.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public class LedgerArchiveTest extends TestCase {
+
+    private static final int ACCOUNTS = 300;
+    private static final int LOANS = 5000;
+    private static final int BLOCK_LOANS = 97;
+
+    private File archiveFile;
+    private long[] lenders;
+    private long[] borrowers;
+    private long[] amounts;
+
+    @Override
+    protected void setUp() throws IOException {
+        Random random = new Random(5L);
+        LedgerArchiveWriter writer = new LedgerArchiveWriter(ACCOUNTS);
+        List<long[]> loans = new ArrayList<long[]>(LOANS);
+
+        for (int i = 0; i < LOANS; ++i) {
+            final int lender = random.nextInt(ACCOUNTS);
+            final int borrower =
+                    (lender + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+            final long amount = 1L + (random.nextLong() >>> (2 + i % 60));
+            writer.pay(lender, borrower, amount);
+            loans.add(new long[]{ lender, borrower, amount });
+        }
+
+        // The archive holds the loans stably sorted by lender and borrower.
+        Collections.sort(loans, new Comparator<long[]>() {
+            @Override
+            public int compare(long[] a, long[] b) {
+                if (a[0] != b[0]) {
+                    return a[0] < b[0] ? -1 : 1;
+                }
+
+                return a[1] < b[1] ? -1 : (a[1] == b[1] ? 0 : 1);
+            }
+        });
+
+        lenders = new long[LOANS];
+        borrowers = new long[LOANS];
+        amounts = new long[LOANS];
+
+        for (int i = 0; i < LOANS; ++i) {
+            lenders[i] = loans.get(i)[0];
+            borrowers[i] = loans.get(i)[1];
+            amounts[i] = loans.get(i)[2];
+        }
+
+        archiveFile = File.createTempFile("ledger", ".archive");
+        OutputStream out = new FileOutputStream(archiveFile);
+
+        try {
+            writer.writeTo(out, BLOCK_LOANS);
+        } finally {
+            out.close();
+        }
+    }
+
+    @Override
+    protected void tearDown() {
+        archiveFile.delete();
+    }
+
+    public void testReadsTheBlockIndex() throws IOException {
+        LedgerArchive archive = new LedgerArchive(archiveFile);
+
+        try {
+            assertEquals(ACCOUNTS, archive.getAccountAmount());
+            assertEquals(LOANS, archive.getLoanAmount());
+            assertEquals((LOANS + BLOCK_LOANS - 1) / BLOCK_LOANS,
+                         archive.getBlockAmount());
+
+            for (int b = 0; b < archive.getBlockAmount() - 1; ++b) {
+                assertEquals(BLOCK_LOANS, archive.getBlockLoanAmount(b));
+            }
+        } finally {
+            archive.close();
+        }
+    }
+
+    public void testReadsAllLoansInOrder() throws IOException {
+        LedgerArchive archive = new LedgerArchive(archiveFile);
+        final int[] index = new int[1];
+
+        try {
+            archive.readAll(new PaymentSink() {
+                @Override
+                public void pay(int lender, int borrower, long amount) {
+                    final int i = index[0]++;
+                    assertEquals(lenders[i], lender);
+                    assertEquals(borrowers[i], borrower);
+                    assertEquals(amounts[i], amount);
+                }
+            });
+        } finally {
+            archive.close();
+        }
+
+        assertEquals(LOANS, index[0]);
+    }
+
+    public void testReadsASingleBlock() throws IOException {
+        LedgerArchive archive = new LedgerArchive(archiveFile);
+        final int block = 3;
+        final int[] index = { block * BLOCK_LOANS };
+
+        try {
+            archive.readBlock(block, new PaymentSink() {
+                @Override
+                public void pay(int lender, int borrower, long amount) {
+                    final int i = index[0]++;
+                    assertEquals(lenders[i], lender);
+                    assertEquals(borrowers[i], borrower);
+                    assertEquals(amounts[i], amount);
+                }
+            });
+        } finally {
+            archive.close();
+        }
+
+        assertEquals((block + 1) * BLOCK_LOANS, index[0]);
+    }
+
+    public void testReadsEquities() throws IOException {
+        long[] expected = new long[ACCOUNTS];
+
+        for (int i = 0; i < LOANS; ++i) {
+            expected[(int) lenders[i]] += amounts[i];
+            expected[(int) borrowers[i]] -= amounts[i];
+        }
+
+        LedgerArchive archive = new LedgerArchive(archiveFile);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+
+        try {
+            assertEquities(expected, archive.readEquities());
+
+            for (int parts = 1; parts <= 8; ++parts) {
+                assertEquities(expected,
+                               archive.readEquities(executor, parts));
+            }
+        } finally {
+            executor.shutdown();
+            archive.close();
+        }
+    }
+
+    public void testRejectsCorruptBlocks() throws IOException {
+        RandomAccessFile file = new RandomAccessFile(archiveFile, "rw");
+
+        try {
+            file.seek(file.length() - 1);
+            final int last = file.read();
+            file.seek(file.length() - 1);
+            file.write(last ^ 0x40);
+        } finally {
+            file.close();
+        }
+
+        LedgerArchive archive = new LedgerArchive(archiveFile);
+
+        try {
+            archive.readEquities();
+            fail("A corrupt block passed.");
+        } catch (IOException ex) {
+            // Expected.
+        } finally {
+            archive.close();
+        }
+    }
+
+    public void testRejectsTruncatedArchives() throws IOException {
+        RandomAccessFile file = new RandomAccessFile(archiveFile, "rw");
+
+        try {
+            file.setLength(file.length() - 1);
+        } finally {
+            file.close();
+        }
+
+        try {
+            new LedgerArchive(archiveFile).close();
+            fail("A truncated archive passed.");
+        } catch (IOException ex) {
+            // Expected.
+        }
+    }
+
+    public void testRoundTripOfAPlan() throws IOException {
+        List<Node> nodeList = Utilities.getRandomEquityGraph(500,
+                                                             0.1,
+                                                             10000L,
+                                                             new Random(8L));
+        SettlementPlan plan = Algorithms.linearSimplify().settle(nodeList);
+        OutputStream out = new FileOutputStream(archiveFile);
+
+        try {
+            LedgerArchiveWriter.of(plan).writeTo(out, 16);
+        } finally {
+            out.close();
+        }
+
+        LedgerArchive archive = new LedgerArchive(archiveFile);
+
+        try {
+            assertEquals(plan.size(), archive.getLoanAmount());
+            EquityTable equities = archive.readEquities();
+
+            for (int i = 0; i < nodeList.size(); ++i) {
+                assertEquals(nodeList.get(i).getEquity(),
+                             equities.getEquity(i));
+            }
+        } finally {
+            archive.close();
+        }
+    }
+
+    private static void assertEquities(final long[] expected,
+                                       final EquityTable actual) {
+        assertEquals(expected.length, actual.size());
+
+        for (int i = 0; i < expected.length; ++i) {
+            assertEquals(expected[i], actual.getEquity(i));
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package net.coderodde.cskit.loan;
+
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * This class tests {@link LinearMerge}.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public class LinearMergeTest extends TestCase {
+
+    public void testDecidesOneEdgePerStep() {
+        LinearMerge merge = new LinearMerge(
+                new ArrayEquityTable(new long[]{ 5L, 0L, -2L, 4L, -7L }));
+        List<long[]> edges = new ArrayList<long[]>();
+        PaymentSink sink = getSink(edges);
+
+        while (merge.isDone() == false) {
+            final int before = edges.size();
+            assertTrue(merge.next(sink));
+            assertEquals(before + 1, edges.size());
+        }
+
+        assertFalse(merge.next(sink));
+        assertFalse(merge.isImbalanced());
+        assertEquals(3, edges.size());
+        assertEdge(edges.get(0), 0, 2, 2L);
+        assertEdge(edges.get(1), 0, 4, 3L);
+        assertEdge(edges.get(2), 3, 4, 4L);
+    }
+
+    public void testEndsAtOnceWithoutCreditors() {
+        LinearMerge merge =
+                new LinearMerge(new ArrayEquityTable(new long[]{ 0L, 0L }));
+
+        assertTrue(merge.isDone());
+        assertFalse(merge.isImbalanced());
+        assertFalse(merge.next(getSink(new ArrayList<long[]>())));
+    }
+
+    public void testReportsALeftOverCreditor() {
+        LinearMerge merge =
+                new LinearMerge(new ArrayEquityTable(new long[]{ 10L, -5L }));
+        PaymentSink sink = getSink(new ArrayList<long[]>());
+
+        assertTrue(merge.next(sink));
+        assertTrue(merge.isImbalanced());
+
+        try {
+            merge.next(sink);
+            fail("The pass went on without debtors.");
+        } catch (IllegalStateException ex) {
+            // Expected.
+        }
+    }
+
+    public void testReportsALeftOverDebtor() {
+        LinearMerge merge =
+                new LinearMerge(new ArrayEquityTable(new long[]{ 5L, -10L }));
+
+        assertFalse(merge.isImbalanced());
+        assertTrue(merge.next(getSink(new ArrayList<long[]>())));
+        assertTrue(merge.isDone());
+        assertTrue(merge.isImbalanced());
+    }
+
+    private static PaymentSink getSink(final List<long[]> edges) {
+        return new PaymentSink() {
+            @Override
+            public void pay(int lender, int borrower, long amount) {
+                edges.add(new long[]{ lender, borrower, amount });
+            }
+        };
+    }
+
+    private static void assertEdge(final long[] edge,
+                                   final int lender,
+                                   final int borrower,
+                                   final long amount) {
+        assertEquals((long) lender, edge[0]);
+        assertEquals((long) borrower, edge[1]);
+        assertEquals(amount, edge[2]);
+    }
+}
@@ -0,0 +1,158 @@
+package net.coderodde.cskit.loan;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ * This class tests {@link OffHeapLoanGraph}.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public class OffHeapLoanGraphTest extends TestCase {
+
+    public void testEquitiesMatchTheNodeGraph() {
+        Random random = new Random(11L);
+        final int size = 50;
+        OffHeapLoanGraph graph = new OffHeapLoanGraph(size);
+        List<Node> nodeList = new ArrayList<Node>(size);
+
+        for (int i = 0; i < size; ++i) {
+            nodeList.add(new Node("" + i));
+        }
+
+        for (int i = 0; i < 1000; ++i) {
+            final int lender = random.nextInt(size);
+            final int borrower = (lender + 1 + random.nextInt(size - 1))
+                                 % size;
+            final long amount = 1L + random.nextInt(100);
+
+            graph.connect(lender, borrower, amount);
+            nodeList.get(lender).connectTo(nodeList.get(borrower), amount);
+        }
+
+        assertEquals(size, graph.size());
+        assertEquals(1000L, graph.getEdgeAmount());
+
+        for (int i = 0; i < size; ++i) {
+            assertEquals(nodeList.get(i).getEquity(), graph.getEquity(i));
+        }
+
+        graph.close();
+    }
+
+    public void testKeepsEdgesAcrossChunks() {
+        // An edge chunk holds 2^20 records.
+        final long edges = (1L << 20) + 3L;
+        OffHeapLoanGraph graph = new OffHeapLoanGraph(3);
+
+        for (long edge = 0L; edge < edges; ++edge) {
+            graph.connect((int)(edge % 3), (int)((edge + 1) % 3), edge + 1);
+        }
+
+        assertEquals(edges, graph.getEdgeAmount());
+
+        for (long edge = edges - 6L; edge < edges; ++edge) {
+            assertEquals((int)(edge % 3), graph.getLender(edge));
+            assertEquals((int)((edge + 1) % 3), graph.getBorrower(edge));
+            assertEquals(edge + 1, graph.getAmount(edge));
+        }
+
+        long sum = 0L;
+
+        for (int i = 0; i < graph.size(); ++i) {
+            sum += graph.getEquity(i);
+        }
+
+        assertEquals(0L, sum);
+        graph.close();
+    }
+
+    public void testSettlesThroughTheEquityTable() {
+        OffHeapLoanGraph graph = new OffHeapLoanGraph(4);
+        graph.connect(0, 1, 5L);
+        graph.connect(1, 2, 3L);
+        graph.connect(3, 0, 2L);
+
+        SettlementPlan plan = new SettlementPlan(graph.size());
+        Algorithms.linearSimplify(graph, plan);
+        long[] equities = new long[graph.size()];
+
+        for (int i = 0; i < plan.size(); ++i) {
+            equities[plan.getFrom(i)] += plan.getAmount(i);
+            equities[plan.getTo(i)] -= plan.getAmount(i);
+        }
+
+        for (int i = 0; i < graph.size(); ++i) {
+            assertEquals(graph.getEquity(i), equities[i]);
+        }
+
+        graph.close();
+    }
+
+    public void testRejectsIllegalLoans() {
+        OffHeapLoanGraph graph = new OffHeapLoanGraph(2);
+
+        try {
+            graph.connect(0, 0, 1L);
+            fail("A self-loop passed.");
+        } catch (IllegalArgumentException ex) {
+            // Expected.
+        }
+
+        try {
+            graph.connect(0, 1, 0L);
+            fail("A zero amount passed.");
+        } catch (IllegalArgumentException ex) {
+            // Expected.
+        }
+
+        try {
+            graph.connect(0, 2, 1L);
+            fail("A node out of range passed.");
+        } catch (IndexOutOfBoundsException ex) {
+            // Expected.
+        }
+
+        try {
+            graph.getLender(0L);
+            fail("An edge out of range passed.");
+        } catch (IndexOutOfBoundsException ex) {
+            // Expected.
+        }
+
+        assertEquals(0L, graph.getEdgeAmount());
+        assertEquals(0L, graph.getEquity(0));
+        graph.close();
+    }
+
+    public void testRejectsAccessAfterClose() {
+        OffHeapLoanGraph graph = new OffHeapLoanGraph(2);
+        graph.connect(0, 1, 1L);
+        graph.close();
+        graph.close();
+
+        try {
+            graph.getEquity(0);
+            fail("A closed graph was read.");
+        } catch (IllegalStateException ex) {
+            // Expected.
+        }
+
+        try {
+            graph.getAmount(0L);
+            fail("A closed graph was read.");
+        } catch (IllegalStateException ex) {
+            // Expected.
+        }
+
+        try {
+            graph.connect(0, 1, 1L);
+            fail("A closed graph was written.");
+        } catch (IllegalStateException ex) {
+            // Expected.
+        }
+    }
+}
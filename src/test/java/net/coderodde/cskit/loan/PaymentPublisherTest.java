@@ -0,0 +1,260 @@
+package net.coderodde.cskit.loan;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import junit.framework.TestCase;
+
+/**
+ * This class tests {@link PaymentPublisher}.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public class PaymentPublisherTest extends TestCase {
+
+    public void testSendsPaymentsOnlyOnDemand() {
+        List<Node> nodeList = getRandomGraph(1000);
+        Recorder recorder = new Recorder();
+        PaymentPublisher.of(nodeList).subscribe(recorder);
+
+        assertEquals(0, recorder.plan.size());
+
+        recorder.subscription.request(2L);
+        assertEquals(2, recorder.plan.size());
+
+        recorder.subscription.request(3L);
+        assertEquals(5, recorder.plan.size());
+        assertFalse(recorder.completed);
+
+        recorder.subscription.request(Long.MAX_VALUE);
+        recorder.subscription.request(Long.MAX_VALUE);
+        assertTrue(recorder.completed);
+        assertNull(recorder.error);
+        assertSamePlan(Algorithms.linearSimplify().settle(nodeList),
+                       recorder.plan);
+    }
+
+    public void testRequestsFromWithinPayments() {
+        List<Node> nodeList = getRandomGraph(20000);
+        Recorder recorder = new Recorder() {
+            @Override
+            public void pay(int lender, int borrower, long amount) {
+                super.pay(lender, borrower, amount);
+                subscription.request(1L);
+            }
+        };
+
+        PaymentPublisher.of(nodeList).subscribe(recorder);
+        recorder.subscription.request(1L);
+
+        assertTrue(recorder.completed);
+        assertSamePlan(Algorithms.linearSimplify().settle(nodeList),
+                       recorder.plan);
+    }
+
+    public void testConcurrentRequests() throws InterruptedException {
+        final List<Node> nodeList = getRandomGraph(5000);
+        final AtomicBoolean inside = new AtomicBoolean();
+        final AtomicBoolean overlapped = new AtomicBoolean();
+        final Recorder recorder = new Recorder() {
+            @Override
+            public void pay(int lender, int borrower, long amount) {
+                if (inside.getAndSet(true)) {
+                    overlapped.set(true);
+                }
+
+                super.pay(lender, borrower, amount);
+                inside.set(false);
+            }
+        };
+
+        PaymentPublisher.of(nodeList).subscribe(recorder);
+        List<Thread> threads = new ArrayList<Thread>();
+
+        for (int t = 0; t < 4; ++t) {
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < nodeList.size(); ++i) {
+                        recorder.subscription.request(1L);
+                    }
+                }
+            }));
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertFalse(overlapped.get());
+        assertTrue(recorder.completed);
+        assertSamePlan(Algorithms.linearSimplify().settle(nodeList),
+                       recorder.plan);
+    }
+
+    public void testConcurrentRequestsOfExactDemand()
+    throws InterruptedException {
+        Random random = new Random(19L);
+
+        for (int trial = 0; trial < 2000; ++trial) {
+            final List<Node> nodeList =
+                    Utilities.getRandomEquityGraph(20 + random.nextInt(100),
+                                                   0.3,
+                                                   1000L,
+                                                   random);
+            final SettlementPlan expected =
+                    Algorithms.linearSimplify().settle(nodeList);
+            final Recorder recorder = new Recorder();
+            final int threadAmount = 2 + trial % 3;
+            List<Thread> threads = new ArrayList<Thread>();
+
+            PaymentPublisher.of(nodeList).subscribe(recorder);
+
+            for (int t = 0; t < threadAmount; ++t) {
+                final int thread = t;
+
+                threads.add(new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        // Together the threads request every payment once.
+                        for (int i = thread;
+                                i < expected.size();
+                                i += threadAmount) {
+                            recorder.subscription.request(1L);
+                        }
+                    }
+                }));
+            }
+
+            for (Thread thread : threads) {
+                thread.start();
+            }
+
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            assertEquals(expected.size(), recorder.plan.size());
+            assertTrue(recorder.completed);
+            assertSamePlan(expected, recorder.plan);
+        }
+    }
+
+    public void testCancelStopsThePayments() {
+        Recorder recorder = new Recorder() {
+            @Override
+            public void pay(int lender, int borrower, long amount) {
+                super.pay(lender, borrower, amount);
+
+                if (plan.size() == 3) {
+                    subscription.cancel();
+                }
+            }
+        };
+
+        PaymentPublisher.of(getRandomGraph(1000)).subscribe(recorder);
+        recorder.subscription.request(Long.MAX_VALUE);
+        recorder.subscription.request(10L);
+
+        assertEquals(3, recorder.plan.size());
+        assertFalse(recorder.completed);
+        assertNull(recorder.error);
+    }
+
+    public void testNonPositiveRequestFails() {
+        Recorder recorder = new Recorder();
+        PaymentPublisher.of(getRandomGraph(100)).subscribe(recorder);
+        recorder.subscription.request(0L);
+
+        assertTrue(recorder.error instanceof IllegalArgumentException);
+        assertEquals(0, recorder.plan.size());
+
+        recorder.subscription.request(10L);
+        assertEquals(0, recorder.plan.size());
+        assertFalse(recorder.completed);
+    }
+
+    public void testImbalancedEquitiesFail() {
+        for (long[] equities : new long[][]{ { 5L, -10L }, { 10L, -5L } }) {
+            Recorder recorder = new Recorder();
+            new PaymentPublisher(new ArrayEquityTable(equities))
+                    .subscribe(recorder);
+            recorder.subscription.request(Long.MAX_VALUE);
+
+            assertTrue(recorder.error instanceof IllegalStateException);
+            assertFalse(recorder.completed);
+        }
+    }
+
+    public void testSettledTableCompletesWithoutDemand() {
+        Recorder recorder = new Recorder();
+        new PaymentPublisher(new ArrayEquityTable(new long[]{ 0L, 0L }))
+                .subscribe(recorder);
+
+        assertTrue(recorder.completed);
+        assertEquals(0, recorder.plan.size());
+    }
+
+    private static List<Node> getRandomGraph(final int size) {
+        return Utilities.getRandomEquityGraph(size,
+                                              0.3,
+                                              1000L,
+                                              new Random(size));
+    }
+
+    private static void assertSamePlan(final SettlementPlan expected,
+                                       final SettlementPlan actual) {
+        assertEquals(expected.size(), actual.size());
+
+        for (int i = 0; i < expected.size(); ++i) {
+            assertEquals(expected.getFrom(i), actual.getFrom(i));
+            assertEquals(expected.getTo(i), actual.getTo(i));
+            assertEquals(expected.getAmount(i), actual.getAmount(i));
+        }
+    }
+
+    /**
+     * Records the callbacks, checking their order.
+     */
+    private static class Recorder implements PaymentSubscriber {
+
+        final SettlementPlan plan = new SettlementPlan(20000);
+        PaymentSubscription subscription;
+        Throwable error;
+        boolean completed;
+
+        @Override
+        public void onSubscribe(PaymentSubscription subscription) {
+            assertNull(this.subscription);
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void pay(int lender, int borrower, long amount) {
+            assertNotNull(subscription);
+            assertFalse(completed);
+            assertNull(error);
+            plan.pay(lender, borrower, amount);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            assertFalse(completed);
+            assertNull(this.error);
+            this.error = error;
+        }
+
+        @Override
+        public void onComplete() {
+            assertFalse(completed);
+            assertNull(error);
+            completed = true;
+        }
+    }
+}
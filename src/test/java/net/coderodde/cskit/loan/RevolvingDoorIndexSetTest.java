@@ -0,0 +1,124 @@
+package net.coderodde.cskit.loan;
+
+import java.util.HashSet;
+import java.util.Set;
+import junit.framework.TestCase;
+
+/**
+ * This class tests {@link RevolvingDoorIndexSet}.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public class RevolvingDoorIndexSetTest extends TestCase {
+
+    public void testEnumeratesEveryCombinationOnce() {
+        for (int n = 0; n <= 12; ++n) {
+            RevolvingDoorIndexSet set =
+                    new RevolvingDoorIndexSet(getWeights(n));
+            int[] counts = new int[n + 1];
+            Set<Integer> masks = new HashSet<Integer>();
+
+            while (set.inc()) {
+                ++counts[set.getSize()];
+                assertTrue(masks.add(getMask(set)));
+            }
+
+            assertEquals((1 << n) - 1, masks.size());
+
+            for (int k = 1; k <= n; ++k) {
+                assertEquals(choose(n, k), counts[k]);
+            }
+        }
+    }
+
+    public void testSwapsOneIndexPerStepAndKeepsTheSum() {
+        final long[] weights = getWeights(10);
+        RevolvingDoorIndexSet set = new RevolvingDoorIndexSet(weights);
+        int previousMask = 0;
+        int previousSize = 0;
+
+        while (set.inc()) {
+            final int mask = getMask(set);
+            long sum = 0L;
+
+            for (int i = 0; i < set.getSize(); ++i) {
+                sum += weights[set.getIndex(i)];
+            }
+
+            assertEquals(sum, set.getSum());
+            assertTrue(set.getSize() >= previousSize);
+
+            if (set.getSize() == previousSize) {
+                assertEquals(2, Integer.bitCount(mask ^ previousMask));
+            }
+
+            previousMask = mask;
+            previousSize = set.getSize();
+        }
+    }
+
+    public void testResetEnumeratesAPrefix() {
+        RevolvingDoorIndexSet set = new RevolvingDoorIndexSet(getWeights(8));
+        set.reset(5);
+        int amount = 0;
+
+        while (set.inc()) {
+            assertTrue(set.getIndex(set.getSize() - 1) < 5);
+            ++amount;
+        }
+
+        assertEquals(31, amount);
+
+        try {
+            set.reset(9);
+            fail("A reset past the weights passed.");
+        } catch (IllegalArgumentException ex) {
+            // Expected.
+        }
+    }
+
+    public void testLoadIndicesInAscendingOrder() {
+        RevolvingDoorIndexSet set = new RevolvingDoorIndexSet(getWeights(7));
+        int[] indices = new int[7];
+
+        while (set.inc()) {
+            set.loadIndices(indices);
+
+            for (int i = 0; i < set.getSize(); ++i) {
+                assertEquals(set.getIndex(i), indices[i]);
+                assertTrue(i == 0 || indices[i - 1] < indices[i]);
+            }
+        }
+    }
+
+    private static int getMask(final RevolvingDoorIndexSet set) {
+        int mask = 0;
+
+        for (int i = 0; i < set.getSize(); ++i) {
+            mask |= 1 << set.getIndex(i);
+        }
+
+        return mask;
+    }
+
+    private static long[] getWeights(final int n) {
+        long[] weights = new long[n];
+
+        for (int i = 0; i < n; ++i) {
+            weights[i] = 3L * i + 1L;
+        }
+
+        return weights;
+    }
+
+    private static int choose(final int n, final int k) {
+        long result = 1L;
+
+        for (int i = 0; i < k; ++i) {
+            result = result * (n - i) / (i + 1);
+        }
+
+        return (int) result;
+    }
+}
@@ -0,0 +1,139 @@
+package net.coderodde.cskit.loan;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * This class tests the comparison of {@link ScalingBenchmark} reports.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public class ScalingBenchmarkTest extends TestCase {
+
+    public void testEqualRunsPass() {
+        List<ScalingBenchmark.Result> runs = getRuns(1000000L, 1000L, 7);
+
+        assertTrue(ScalingBenchmark.compare(runs, runs, 0.1, 0.25)
+                                   .isEmpty());
+    }
+
+    public void testMoreEdgesFail() {
+        assertEquals(3, ScalingBenchmark.compare(getRuns(1000000L, 1000L, 8),
+                                                 getRuns(1000000L, 1000L, 7),
+                                                 0.1,
+                                                 -1.0).size());
+    }
+
+    public void testAllocationsFailBeyondToleranceAndNoise() {
+        final long bytes = 100000L;
+
+        assertTrue(ScalingBenchmark.compare(getRuns(1000000L, bytes + 9000L, 7),
+                                            getRuns(1000000L, bytes, 7),
+                                            0.1,
+                                            -1.0).isEmpty());
+        assertEquals(3,
+                     ScalingBenchmark.compare(getRuns(1000000L, 2 * bytes, 7),
+                                              getRuns(1000000L, bytes, 7),
+                                              0.1,
+                                              -1.0).size());
+        assertTrue(ScalingBenchmark.compare(getRuns(1000000L, 3000L, 7),
+                                            getRuns(1000000L, 1000L, 7),
+                                            0.1,
+                                            -1.0).isEmpty());
+    }
+
+    public void testTimesAreComparedOnlyIfAsked() {
+        List<ScalingBenchmark.Result> slow = getRuns(100000000L, 1000L, 7);
+        List<ScalingBenchmark.Result> fast = getRuns(10000000L, 1000L, 7);
+
+        assertTrue(ScalingBenchmark.compare(slow, fast, 0.1, -1.0).isEmpty());
+        assertEquals(1, ScalingBenchmark.compare(slow, fast, 0.1, 0.25).size());
+    }
+
+    public void testSlowdownOfASingleSeedPasses() {
+        List<ScalingBenchmark.Result> fast = getRuns(10000000L, 1000L, 7);
+        List<ScalingBenchmark.Result> runs =
+                new ArrayList<ScalingBenchmark.Result>(fast);
+        runs.set(1, getRun(1, 100000000L, 1000L, 7));
+
+        assertTrue(ScalingBenchmark.compare(runs, fast, 0.1, 0.25).isEmpty());
+    }
+
+    public void testSkippedAndMissingRunsFail() {
+        List<ScalingBenchmark.Result> runs = getRuns(1000000L, 1000L, 7);
+        List<ScalingBenchmark.Result> skipped =
+                new ArrayList<ScalingBenchmark.Result>(runs);
+        skipped.set(0, getRun(0, -1L, -1L, -1));
+
+        assertEquals(1,
+                     ScalingBenchmark.compare(skipped, runs, 0.1, -1.0)
+                                     .size());
+        assertEquals(1,
+                     ScalingBenchmark.compare(runs.subList(0, 2),
+                                              runs,
+                                              0.1,
+                                              -1.0).size());
+    }
+
+    public void testCsvRoundTripWithoutTimes() throws IOException {
+        List<ScalingBenchmark.Result> runs =
+                new ArrayList<ScalingBenchmark.Result>();
+
+        for (ScalingBenchmark.Result run : getRuns(1000000L, 1000L, 7)) {
+            runs.add(run.withoutTimes());
+        }
+
+        File file = File.createTempFile("benchmark", ".csv");
+
+        try {
+            ScalingBenchmark.writeCsv(runs, file);
+            List<ScalingBenchmark.Result> read = ScalingBenchmark.readCsv(file);
+
+            assertEquals(runs.size(), read.size());
+
+            for (int i = 0; i < runs.size(); ++i) {
+                assertEquals(runs.get(i).toCsv(), read.get(i).toCsv());
+                assertFalse(read.get(i).hasTimes());
+                assertFalse(read.get(i).isSkipped());
+            }
+
+            // Times of the current run are not compared against none.
+            assertTrue(ScalingBenchmark.compare(
+                    getRuns(100000000L, 1000L, 7), read, 0.1, 0.25).isEmpty());
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Returns the runs of the three seeds of a workload.
+     */
+    private static List<ScalingBenchmark.Result> getRuns(final long nanos,
+                                                         final long bytes,
+                                                         final int edges) {
+        return Arrays.asList(getRun(0, nanos, bytes, edges),
+                             getRun(1, nanos, bytes, edges),
+                             getRun(2, nanos, bytes, edges));
+    }
+
+    private static ScalingBenchmark.Result getRun(final int seed,
+                                                  final long nanos,
+                                                  final long bytes,
+                                                  final int edges) {
+        return new ScalingBenchmark.Result("linearSimplify",
+                                           8,
+                                           0.5,
+                                           100L,
+                                           seed,
+                                           nanos,
+                                           nanos < 0L ? -1L : nanos + 1000L,
+                                           bytes,
+                                           edges,
+                                           1L << 20);
+    }
+}
@@ -0,0 +1,108 @@
+package net.coderodde.cskit.loan;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ * This class tests {@link SettlementPlan}.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public class SettlementPlanTest extends TestCase {
+
+    public void testRoundTripWithNames() throws IOException {
+        Random random = new Random(3L);
+
+        for (int i = 0; i < 20; ++i) {
+            List<Node> nodeList =
+                    Utilities.getRandomEquityGraph(2 + random.nextInt(500),
+                                                   0.2,
+                                                   1L << (6 * (i % 8)),
+                                                   random);
+            SettlementPlan plan = Algorithms.linearSimplify().settle(nodeList);
+            SettlementPlan copy = roundTrip(plan);
+
+            assertPlansEqual(plan, copy);
+
+            for (int j = 0; j < nodeList.size(); ++j) {
+                assertEquals(nodeList.get(j).getName(), copy.getName(j));
+            }
+        }
+    }
+
+    public void testRoundTripWithoutNames() throws IOException {
+        SettlementPlan plan = new SettlementPlan(4);
+        plan.pay(0, 3, 1L);
+        plan.pay(2, 1, Long.MAX_VALUE);
+        plan.pay(3, 0, 128L);
+
+        SettlementPlan copy = roundTrip(plan);
+
+        assertPlansEqual(plan, copy);
+        assertEquals("2", copy.getName(2));
+    }
+
+    public void testRoundTripOfEmptyPlans() throws IOException {
+        assertPlansEqual(new SettlementPlan(0),
+                         roundTrip(new SettlementPlan(0)));
+        assertPlansEqual(new SettlementPlan(new String[]{ "a", "b" }),
+                         roundTrip(new SettlementPlan(new String[]{ "a",
+                                                                    "b" })));
+    }
+
+    public void testRejectsBadMagic() {
+        try {
+            SettlementPlan.readFrom(
+                    new ByteArrayInputStream(new byte[]{ 1, 2, 3, 4, 0, 0 }));
+            fail("A bad magic number passed.");
+        } catch (IOException ex) {
+            // Expected.
+        }
+    }
+
+    public void testRejectsTruncatedInput() throws IOException {
+        SettlementPlan plan = new SettlementPlan(new String[]{ "a", "b" });
+        plan.pay(0, 1, 1000L);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        plan.writeTo(out);
+        final byte[] bytes = out.toByteArray();
+
+        try {
+            SettlementPlan.readFrom(new ByteArrayInputStream(
+                    Arrays.copyOf(bytes, bytes.length - 1)));
+            fail("A truncated plan passed.");
+        } catch (IOException ex) {
+            // Expected.
+        }
+    }
+
+    private static SettlementPlan roundTrip(final SettlementPlan plan)
+    throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        plan.writeTo(out);
+        return SettlementPlan.readFrom(
+                new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    private static void assertPlansEqual(final SettlementPlan expected,
+                                         final SettlementPlan actual) {
+        assertEquals(expected.getAccountAmount(), actual.getAccountAmount());
+        assertEquals(expected.size(), actual.size());
+
+        for (int i = 0; i < expected.getAccountAmount(); ++i) {
+            assertEquals(expected.getName(i), actual.getName(i));
+        }
+
+        for (int i = 0; i < expected.size(); ++i) {
+            assertEquals(expected.getFrom(i), actual.getFrom(i));
+            assertEquals(expected.getTo(i), actual.getTo(i));
+            assertEquals(expected.getAmount(i), actual.getAmount(i));
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package net.coderodde.cskit.loan;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ * This class tests {@link SettlementServer} through {@link SettlementClient}.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public class SettlementServerTest extends TestCase {
+
+    private SettlementServer server;
+    private SettlementClient client;
+
+    @Override
+    protected void setUp() throws IOException {
+        server = new SettlementServer(0, 10L);
+        server.start();
+        client = new SettlementClient(server.getPort());
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    public void testSettlesLinearRequests() throws IOException {
+        final long[] equities = { 5L, 0L, -2L, 4L, -7L };
+        SettlementPlan plan = client.settle("linearSimplify", equities);
+        SettlementPlan expected = new SettlementPlan(equities.length);
+        Algorithms.linearSimplify(new ArrayEquityTable(equities), expected);
+
+        assertEquals(expected.size(), plan.size());
+
+        for (int i = 0; i < plan.size(); ++i) {
+            assertEquals(expected.getFrom(i), plan.getFrom(i));
+            assertEquals(expected.getTo(i), plan.getTo(i));
+            assertEquals(expected.getAmount(i), plan.getAmount(i));
+        }
+    }
+
+    public void testSettlesAutoRequests() throws IOException {
+        final long[] equities = { 3L, -5L, 7L, -3L, 5L, -7L, 2L, -2L };
+        SettlementPlan plan = client.settle("auto", equities);
+
+        assertSettles(equities, plan);
+        assertEquals(4, plan.size());
+    }
+
+    public void testSettlesWithEveryOfferedAlgorithm() throws IOException {
+        final long[] equities = getEquities(7, new Random(3L));
+
+        for (Algorithm algorithm : Algorithms.all()) {
+            final String name = algorithm.toString();
+
+            if (name.equals("edgeRestrictedSimplify") == false) {
+                assertSettles(equities, client.settle(name, equities));
+            }
+        }
+    }
+
+    public void testReportsErrorsAndGoesOn() throws IOException {
+        final long[] equities = { 4L, -4L };
+
+        for (String name : new String[]{ "noSuchSimplify",
+                                         "edgeRestrictedSimplify" }) {
+            try {
+                client.settle(name, equities);
+                fail(name + " was served.");
+            } catch (IOException ex) {
+                assertTrue(ex.getMessage().contains("Unknown algorithm"));
+            }
+        }
+
+        try {
+            client.settle("linearSimplify", new long[]{ 4L, -3L });
+            fail("Unbalanced equities were served.");
+        } catch (IOException ex) {
+            assertTrue(ex.getMessage().contains("sum up to zero"));
+        }
+
+        assertEquals(0, client.getOutstanding());
+        assertSettles(equities, client.settle("linearSimplify", equities));
+    }
+
+    public void testPipelinesRequests() throws IOException {
+        Random random = new Random(5L);
+        List<long[]> ledgers = new ArrayList<long[]>();
+
+        for (int i = 0; i < 100; ++i) {
+            ledgers.add(getEquities(2 + random.nextInt(30), random));
+        }
+
+        for (String name : new String[]{ "linearSimplify", "auto" }) {
+            List<SettlementPlan> plans = client.settleAll(name, ledgers, 16);
+
+            assertEquals(ledgers.size(), plans.size());
+
+            for (int i = 0; i < plans.size(); ++i) {
+                assertSettles(ledgers.get(i), plans.get(i));
+            }
+        }
+
+        // Interleave an error with pipelined requests.
+        client.send("linearSimplify", ledgers.get(0), ledgers.get(0).length);
+        client.send("linearSimplify", new long[]{ 1L }, 1);
+        client.send("linearSimplify", ledgers.get(1), ledgers.get(1).length);
+
+        assertSettles(ledgers.get(0), client.receive());
+
+        try {
+            client.receive();
+            fail("Unbalanced equities were served.");
+        } catch (IOException ex) {
+            // Expected.
+        }
+
+        assertSettles(ledgers.get(1), client.receive());
+    }
+
+    private static long[] getEquities(final int accounts,
+                                      final Random random) {
+        List<Node> nodeList =
+                Utilities.getRandomEquityGraph(accounts, 0.3, 20L, random);
+        long[] equities = new long[accounts];
+
+        for (int i = 0; i < accounts; ++i) {
+            equities[i] = nodeList.get(i).getEquity();
+        }
+
+        return equities;
+    }
+
+    /**
+     * Asserts that the payments of <code>plan</code> imply
+     * <code>equities</code> with at most one edge less than the accounts of
+     * non-zero equity.
+     */
+    private static void assertSettles(final long[] equities,
+                                      final SettlementPlan plan) {
+        long[] implied = new long[equities.length];
+        int nonZero = 0;
+
+        for (int i = 0; i < plan.size(); ++i) {
+            implied[plan.getFrom(i)] += plan.getAmount(i);
+            implied[plan.getTo(i)] -= plan.getAmount(i);
+        }
+
+        for (int i = 0; i < equities.length; ++i) {
+            assertEquals(equities[i], implied[i]);
+
+            if (equities[i] != 0L) {
+                ++nonZero;
+            }
+        }
+
+        assertEquals(equities.length, plan.getAccountAmount());
+        assertTrue(plan.size() <= Math.max(nonZero - 1, 0));
+    }
+}
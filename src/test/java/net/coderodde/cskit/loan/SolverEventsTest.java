@@ -0,0 +1,175 @@
+package net.coderodde.cskit.loan;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * This class tests the phases reported through {@link SolverEvents}.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public class SolverEventsTest extends TestCase {
+
+    private static final SolverPhase[] SEARCH_PHASES = {
+        SolverPhase.PARTITION,
+        SolverPhase.SEARCH,
+        SolverPhase.RESULT,
+        SolverPhase.LINK,
+        SolverPhase.EXEC
+    };
+
+    private final List<String> events = new ArrayList<String>();
+
+    @Override
+    protected void setUp() {
+        SolverEvents.setListener(new SolverListener() {
+            @Override
+            public void phaseEnded(String algorithm,
+                                   SolverPhase phase,
+                                   int nodeAmount,
+                                   long states,
+                                   long nanos) {
+                assertTrue(nanos >= 0L);
+                events.add(algorithm + " " + phase);
+            }
+
+            @Override
+            public void incumbentImproved(String algorithm,
+                                          int edgeAmount,
+                                          long states) {
+                events.add(algorithm + " improved");
+            }
+        });
+    }
+
+    @Override
+    protected void tearDown() {
+        SolverEvents.setListener(null);
+    }
+
+    public void testSearchesReportEveryPhaseOnce() {
+        final long[][] ledgers = {
+            { 3L, -5L, 7L, -3L, 5L, -7L, 2L, -2L },
+            { 0L, 0L, 0L }
+        };
+
+        for (Algorithm algorithm : getSearches()) {
+            for (long[] equities : ledgers) {
+                assertSearchPhases(algorithm, getGraph(equities));
+            }
+        }
+    }
+
+    public void testFallbacksReportTheSamePhases() {
+        long[] equities = new long[2 * (IncrementalGreedySimplifier.MAX_SIDE
+                                        + 1)];
+
+        for (int i = 0; i < equities.length; ++i) {
+            equities[i] = i % 2 == 0 ? 1L : -1L;
+        }
+
+        assertSearchPhases(Algorithms.incrementalGreedySimplify(),
+                           getGraph(equities));
+        assertSearchPhases(Algorithms.subsetSumSimplify(),
+                           getGraph(new long[]{ 1L << 40, -(1L << 40) }));
+    }
+
+    public void testLinearSimplificationsReportExecAlone() {
+        final long[] equities = { 5L, 0L, -2L, 4L, -7L };
+
+        for (Algorithm algorithm : new Algorithm[]{
+                 Algorithms.linearSimplify(),
+                 Algorithms.parallelLinearSimplify() }) {
+            events.clear();
+            algorithm.settle(getGraph(equities));
+            assertEquals(Arrays.asList(algorithm + " " + SolverPhase.EXEC),
+                         events);
+        }
+    }
+
+    public void testImprovedReportsTheBaseFirst() {
+        Algorithm base = Algorithms.linearSimplify();
+        Algorithm improved = Algorithms.improved(base, 10L);
+
+        improved.settle(getGraph(new long[]{ 3L, -5L, 7L, -3L, 5L, -7L }));
+        assertEquals(Arrays.asList(base + " " + SolverPhase.EXEC,
+                                   improved + " " + SolverPhase.SEARCH,
+                                   improved + " " + SolverPhase.EXEC),
+                     getPhases());
+    }
+
+    private static Algorithm[] getSearches() {
+        return new Algorithm[]{
+            Algorithms.greedyCombinatorialSimplify(),
+            Algorithms.sortedGreedyCombinatorialSimplify(),
+            Algorithms.incrementalGreedySimplify(),
+            Algorithms.subsetSumSimplify(),
+            Algorithms.partitionalSimplify(),
+            Algorithms.permutationalSimplify()
+        };
+    }
+
+    /**
+     * Asserts that a run of <code>algorithm</code> reports the phases of a
+     * search in order.
+     */
+    private void assertSearchPhases(final Algorithm algorithm,
+                                    final List<Node> nodeList) {
+        events.clear();
+        algorithm.exec(nodeList);
+
+        List<String> expected = new ArrayList<String>();
+
+        for (SolverPhase phase : SEARCH_PHASES) {
+            expected.add(algorithm + " " + phase);
+        }
+
+        assertEquals(expected, getPhases());
+    }
+
+    /**
+     * Returns the phases reported, asserting that incumbents were reported
+     * only during the search, after exactly one phase.
+     */
+    private List<String> getPhases() {
+        List<String> phases = new ArrayList<String>();
+
+        for (String event : events) {
+            if (event.endsWith(" improved")) {
+                assertEquals(1, phases.size());
+            } else {
+                phases.add(event);
+            }
+        }
+
+        return phases;
+    }
+
+    /**
+     * Returns a chain of loans implying <code>equities</code>.
+     */
+    private static List<Node> getGraph(final long[] equities) {
+        List<Node> nodeList = new ArrayList<Node>(equities.length);
+
+        for (int i = 0; i < equities.length; ++i) {
+            nodeList.add(new Node("" + i));
+        }
+
+        long carried = 0L;
+
+        for (int i = 0; i < equities.length - 1; ++i) {
+            carried += equities[i];
+
+            if (carried > 0L) {
+                nodeList.get(i).connectTo(nodeList.get(i + 1), carried);
+            } else if (carried < 0L) {
+                nodeList.get(i + 1).connectTo(nodeList.get(i), -carried);
+            }
+        }
+
+        return nodeList;
+    }
+}
@@ -0,0 +1,214 @@
+package net.coderodde.cskit.loan;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ * This class tests {@link StreamingSettlement}.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public class StreamingSettlementTest extends TestCase {
+
+    public void testRoundTripMatchesLinearSimplify() throws IOException {
+        Random random = new Random(9L);
+
+        // Enough payments to spill over the write buffer.
+        for (int accounts : new int[]{ 2, 10, 10000 }) {
+            List<Node> nodeList = Utilities.getRandomEquityGraph(accounts,
+                                                                 0.3,
+                                                                 1000L,
+                                                                 random);
+            long[] equities = new long[accounts];
+
+            for (int i = 0; i < accounts; ++i) {
+                equities[i] = nodeList.get(i).getEquity();
+            }
+
+            ByteArrayOutputStream creditors = new ByteArrayOutputStream();
+            ByteArrayOutputStream debtors = new ByteArrayOutputStream();
+            ByteArrayOutputStream payments = new ByteArrayOutputStream();
+
+            assertEquals(accounts,
+                         StreamingSettlement.split(toRecords(equities),
+                                                   creditors,
+                                                   debtors));
+
+            final long records = StreamingSettlement.settle(
+                    new ByteArrayInputStream(creditors.toByteArray()),
+                    new ByteArrayInputStream(debtors.toByteArray()),
+                    payments);
+
+            SettlementPlan expected = new SettlementPlan(accounts);
+            Algorithms.linearSimplify(new ArrayEquityTable(equities),
+                                      expected);
+            assertEquals(expected.size(), records);
+            assertEquals(records * 24, payments.size());
+
+            DataInputStream in = new DataInputStream(
+                    new ByteArrayInputStream(payments.toByteArray()));
+
+            for (int i = 0; i < expected.size(); ++i) {
+                assertEquals(expected.getFrom(i), in.readLong());
+                assertEquals(expected.getTo(i), in.readLong());
+                assertEquals(expected.getAmount(i), in.readLong());
+            }
+        }
+    }
+
+    public void testSplitRejectsUnnegatableEquities() throws IOException {
+        try {
+            StreamingSettlement.split(
+                    toRecords(new long[]{ Long.MAX_VALUE, Long.MIN_VALUE }),
+                    new ByteArrayOutputStream(),
+                    new ByteArrayOutputStream());
+            fail("Long.MIN_VALUE was negated.");
+        } catch (IOException ex) {
+            // Expected.
+        }
+    }
+
+    public void testRejectsTruncatedRecords() throws IOException {
+        byte[] records = getBytes(new long[]{ 0L, 5L, 1L, -5L });
+        byte[] truncated = Arrays.copyOf(records, records.length - 3);
+
+        try {
+            StreamingSettlement.split(new ByteArrayInputStream(truncated),
+                                      new ByteArrayOutputStream(),
+                                      new ByteArrayOutputStream());
+            fail("A truncated equity record passed.");
+        } catch (IOException ex) {
+            // Expected.
+        }
+
+        byte[] creditors = getBytes(new long[]{ 0L, 5L });
+        ByteArrayOutputStream payments = new ByteArrayOutputStream();
+
+        try {
+            StreamingSettlement.settle(
+                    new ByteArrayInputStream(creditors, 0, 12),
+                    new ByteArrayInputStream(getBytes(new long[]{ 1L, 5L })),
+                    payments);
+            fail("A truncated creditor record passed.");
+        } catch (IOException ex) {
+            // Expected.
+        }
+
+        assertEquals(0, payments.size());
+    }
+
+    public void testWritesNothingForUnbalancedEquities() throws IOException {
+        final long[][][] ledgers = {
+            { { 0L, 10L }, { 1L, 5L } },
+            { { 0L, 5L }, { 1L, 10L } },
+            { { 0L, 5L }, { } }
+        };
+
+        for (long[][] ledger : ledgers) {
+            ByteArrayOutputStream payments = new ByteArrayOutputStream();
+
+            try {
+                StreamingSettlement.settle(
+                        new ByteArrayInputStream(getBytes(ledger[0])),
+                        new ByteArrayInputStream(getBytes(ledger[1])),
+                        payments);
+                fail("Unbalanced equities passed.");
+            } catch (IOException ex) {
+                // Expected.
+            }
+
+            assertEquals(0, payments.size());
+        }
+    }
+
+    public void testFailedFileSettlementLeavesNoPayments()
+    throws IOException {
+        File directory = File.createTempFile("streaming", "");
+        directory.delete();
+        assertTrue(directory.mkdir());
+
+        try {
+            File creditors = writeFile(directory, "creditors",
+                                       new long[]{ 0L, 7L });
+            File debtors = writeFile(directory, "debtors",
+                                     new long[]{ 1L, 3L, 2L, 4L });
+            File unbalanced = writeFile(directory, "unbalanced",
+                                        new long[]{ 1L, 3L });
+            File payments = new File(directory, "payments");
+
+            assertEquals(2L, StreamingSettlement.settle(creditors,
+                                                        debtors,
+                                                        payments));
+            assertEquals(48L, payments.length());
+
+            try {
+                StreamingSettlement.settle(creditors, unbalanced, payments);
+                fail("Unbalanced equities passed.");
+            } catch (IOException ex) {
+                // Expected.
+            }
+
+            // The earlier payments are kept, and no partial file is left.
+            assertEquals(48L, payments.length());
+            assertEquals(4, directory.listFiles().length);
+        } finally {
+            for (File file : directory.listFiles()) {
+                file.delete();
+            }
+
+            directory.delete();
+        }
+    }
+
+    /**
+     * Returns equity records of the accounts <tt>0, 1, ...</tt>.
+     */
+    private static ByteArrayInputStream toRecords(final long[] equities)
+    throws IOException {
+        long[] records = new long[2 * equities.length];
+
+        for (int i = 0; i < equities.length; ++i) {
+            records[2 * i] = i;
+            records[2 * i + 1] = equities[i];
+        }
+
+        return new ByteArrayInputStream(getBytes(records));
+    }
+
+    private static byte[] getBytes(final long[] values) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        for (long value : values) {
+            out.writeLong(value);
+        }
+
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static File writeFile(final File directory,
+                                  final String name,
+                                  final long[] values) throws IOException {
+        File file = new File(directory, name);
+        FileOutputStream out = new FileOutputStream(file);
+
+        try {
+            out.write(getBytes(values));
+        } finally {
+            out.close();
+        }
+
+        return file;
+    }
+}
@@ -0,0 +1,62 @@
+package net.coderodde.cskit.loan;
+
+import java.util.Random;
+import java.util.TreeSet;
+import junit.framework.TestCase;
+
+/**
+ * This class tests {@link SubsetSumFilter}.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public class SubsetSumFilterTest extends TestCase {
+
+    public void testComputesTheDistinctSubsetSums() {
+        Random random = new Random(23L);
+
+        for (int i = 0; i < 100; ++i) {
+            final int amount = random.nextInt(13);
+            long[] values = new long[amount + random.nextInt(3)];
+
+            for (int j = 0; j < values.length; ++j) {
+                values[j] = 1L + random.nextInt(i % 2 == 0 ? 10 : 100000);
+            }
+
+            TreeSet<Long> expected = new TreeSet<Long>();
+
+            for (int mask = 1; mask < (1 << amount); ++mask) {
+                long sum = 0L;
+
+                for (int j = 0; j < amount; ++j) {
+                    if ((mask & (1 << j)) != 0) {
+                        sum += values[j];
+                    }
+                }
+
+                expected.add(sum);
+            }
+
+            long[] sums = SubsetSumFilter.achievableSums(values, amount);
+            assertEquals(expected.size(), sums.length);
+            int j = 0;
+
+            for (long sum : expected) {
+                assertEquals(sum, sums[j++]);
+                assertTrue(SubsetSumFilter.isAchievable(sums, sum));
+            }
+
+            assertFalse(SubsetSumFilter.isAchievable(sums, 0L));
+            assertFalse(SubsetSumFilter.isAchievable(
+                    sums, expected.isEmpty() ? 1L : expected.last() + 1L));
+        }
+    }
+
+    public void testGivesUpAboveTheLimit() {
+        final long[] values =
+                new long[SubsetSumFilter.MAX_ENUMERATED_VALUES + 1];
+
+        assertNull(SubsetSumFilter.achievableSums(values, values.length));
+        assertTrue(SubsetSumFilter.isAchievable(null, 12345L));
+    }
+}
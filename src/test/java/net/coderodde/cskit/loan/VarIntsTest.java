@@ -0,0 +1,102 @@
+package net.coderodde.cskit.loan;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ * This class tests {@link VarInts}.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public class VarIntsTest extends TestCase {
+
+    private static final long[] EDGE_VALUES = {
+        0L, 1L, -1L, 63L, -64L, 64L, 127L, 128L, 16383L, 16384L,
+        Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE
+    };
+
+    public void testSignedRoundTrip() throws IOException {
+        Random random = new Random(1L);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        long[] values = new long[EDGE_VALUES.length + 1000];
+
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = i < EDGE_VALUES.length ?
+                        EDGE_VALUES[i] :
+                        random.nextLong() >> random.nextInt(64);
+            VarInts.writeSigned(out, values[i]);
+        }
+
+        DataInputStream in = getInput(bytes);
+
+        for (long value : values) {
+            assertEquals(value, VarInts.readSigned(in));
+        }
+
+        assertEquals(0, in.available());
+    }
+
+    public void testUnsignedRoundTrip() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        for (long value : EDGE_VALUES) {
+            VarInts.writeUnsigned(out, value);
+        }
+
+        DataInputStream in = getInput(bytes);
+
+        for (long value : EDGE_VALUES) {
+            assertEquals(value, VarInts.readUnsigned(in));
+        }
+    }
+
+    public void testEncodedLengths() throws IOException {
+        assertEquals(1, getUnsignedLength(0L));
+        assertEquals(1, getUnsignedLength(127L));
+        assertEquals(2, getUnsignedLength(128L));
+        assertEquals(10, getUnsignedLength(-1L));
+        assertEquals(1, getSignedLength(-64L));
+        assertEquals(2, getSignedLength(64L));
+        assertEquals(10, getSignedLength(Long.MIN_VALUE));
+    }
+
+    public void testRejectsOverlongInput() {
+        byte[] bytes = new byte[11];
+        Arrays.fill(bytes, (byte) 0x80);
+
+        try {
+            VarInts.readUnsigned(
+                    new DataInputStream(new ByteArrayInputStream(bytes)));
+            fail("An overlong integer passed.");
+        } catch (IOException ex) {
+            // Expected.
+        }
+    }
+
+    private static int getUnsignedLength(final long value)
+    throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        VarInts.writeUnsigned(new DataOutputStream(bytes), value);
+        return bytes.size();
+    }
+
+    private static int getSignedLength(final long value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        VarInts.writeSigned(new DataOutputStream(bytes), value);
+        return bytes.size();
+    }
+
+    private static DataInputStream getInput(final ByteArrayOutputStream bytes) {
+        return new DataInputStream(
+                new ByteArrayInputStream(bytes.toByteArray()));
+    }
+}
@@ -0,0 +1,117 @@
+package net.coderodde.cskit.loan;
+
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ * This class tests {@link WindowedSettler}.
+ *
+ * @author coderodde
+ * @version 1.6
+ */
+public class WindowedSettlerTest extends TestCase {
+
+    private static final int ACCOUNTS = 500;
+    private static final int TICKS = 20000;
+    private static final long WINDOW_LENGTH = 100L;
+
+    public void testPlanFollowsTheWindowOverManyTicks() {
+        Random random = new Random(11L);
+        WindowedSettler settler = new WindowedSettler(WINDOW_LENGTH, 0L);
+
+        for (int i = 0; i < ACCOUNTS; ++i) {
+            settler.getAccount("a" + i);
+        }
+
+        SettlementPlan plan = settler.getPlan();
+        long[] equities = new long[ACCOUNTS];
+        long[][] history = new long[TICKS][];
+
+        for (int tick = 0; tick < TICKS; ++tick) {
+            final int lender = random.nextInt(ACCOUNTS);
+            final int borrower = (lender + 1 + random.nextInt(ACCOUNTS - 1))
+                                 % ACCOUNTS;
+            final long amount = 1L + random.nextInt(1000);
+
+            settler.recordLoan(tick, lender, borrower, amount);
+            history[tick] = new long[]{ lender, borrower, amount };
+            equities[lender] += amount;
+            equities[borrower] -= amount;
+
+            if (tick >= WINDOW_LENGTH) {
+                final long[] old = history[tick - (int) WINDOW_LENGTH];
+                equities[(int) old[0]] -= old[2];
+                equities[(int) old[1]] += old[2];
+            }
+
+            plan = settler.advance(tick).applyTo(plan);
+
+            assertTrue(settler.getPaymentAmount()
+                       <= DeltaSettler.RESETTLE_FACTOR
+                          * Math.max(getNonZeroAmount(equities) - 1, 0));
+        }
+
+        assertEquals(WINDOW_LENGTH, settler.getLoanAmount());
+        assertEquals(DeltaSettlerTest.toMap(settler.getPlan()),
+                     DeltaSettlerTest.toMap(plan));
+
+        long[] implied = new long[ACCOUNTS];
+
+        for (int i = 0; i < plan.size(); ++i) {
+            implied[plan.getFrom(i)] += plan.getAmount(i);
+            implied[plan.getTo(i)] -= plan.getAmount(i);
+        }
+
+        for (int i = 0; i < ACCOUNTS; ++i) {
+            assertEquals(equities[i], implied[i]);
+            assertEquals(equities[i], settler.getEquity(i));
+        }
+    }
+
+    public void testRejectsLoansBeforeTheCurrentTime() {
+        WindowedSettler settler = new WindowedSettler(10L, 5L);
+
+        try {
+            settler.recordLoan(4L, "a", "b", 1L);
+            fail("A loan before the current time passed.");
+        } catch (IllegalArgumentException ex) {
+            // Expected.
+        }
+
+        settler.recordLoan(7L, "a", "b", 3L);
+
+        try {
+            settler.advance(6L);
+            fail("A tick back in time passed.");
+        } catch (IllegalArgumentException ex) {
+            // Expected.
+        }
+    }
+
+    public void testRetiresLoansAsOldAsTheWindow() {
+        WindowedSettler settler = new WindowedSettler(10L, 0L);
+
+        settler.recordLoan(0L, "a", "b", 3L);
+        assertEquals(1, settler.advance(9L).size());
+        assertEquals(3L, settler.getEquity(0));
+
+        SettlementDelta delta = settler.advance(10L);
+
+        assertEquals(1, delta.size());
+        assertEquals(SettlementDelta.Type.CANCEL, delta.getType(0));
+        assertEquals(0, settler.getLoanAmount());
+        assertEquals(0, settler.getPaymentAmount());
+    }
+
+    private static int getNonZeroAmount(final long[] equities) {
+        int amount = 0;
+
+        for (long equity : equities) {
+            if (equity != 0L) {
+                ++amount;
+            }
+        }
+
+        return amount;
+    }
+}